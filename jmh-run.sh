@@ -11,6 +11,18 @@
 # --quick   quick run with reduced benchmark time, to check for errors
 # --no3pty  only benchmark cache2k and JDK build ins, used for continuous benchmarking against performance regressions
 # --perf    run the benchmark with Linux perf (needs testing)
+# --offheap compare on heap and off heap value storage of the 2015 implementation
+# --evictor compare eviction in the writer thread and background eviction of the 2015 implementation
+# --readthrough compare the blocking and the asynchronous loader of the 2015 implementation with a slow backend
+# --refresh compare background refresh on platform threads and virtual threads with a slow source
+# --bulk    bulk get and put with different batch sizes, reports keys per second
+# --memory  heap memory per entry for the policies and configurations of the 2015 implementation
+# --policies compare the eviction policies of the 2015 implementation with the eviction benchmarks
+# --hands   compare the global CLOCK and the partitioned clock with many evicting threads
+# --heapbound capacity bounded by the estimated heap bytes, used heap in percent of the bound
+# --expiry  compare the expiry timer and lazy expiry with a sweeper, with short lived entries
+# --openloop fixed arrival rate with a worker pool, response time from the intended start against the rate
+# --latency record the latency percentiles of hits and misses, reported as +misc.hitLatency.p99 and so on
 # JAVA_HOME
 
 set -e;
@@ -53,6 +65,18 @@ unset cache2k;
 unset no3pty;
 unset dry;
 unset backends;
+unset offheap;
+unset evictor;
+unset readthrough;
+unset refresh;
+unset bulk;
+unset memory;
+unset policies;
+unset hands;
+unset heapbound;
+unset expiry;
+unset latency;
+unset openloop;
 
 usage() {
   echo "Usage: $0 options"
@@ -61,6 +85,18 @@ usage() {
   echo "--perfnorm"
   echo "--no3pty             Do not test 3rd-party backends"
   echo "--backends backends  Test the given backends, e.g. 'thirdparty.TCache1Factory Cache2kFactory"
+  echo "--offheap            Compare on heap and off heap value storage, GC figures via GcProfiler"
+  echo "--evictor            Compare eviction by the writer and background eviction, throughput and latency percentiles"
+  echo "--readthrough        Compare the blocking and the asynchronous loader with a simulated slow backend"
+  echo "--refresh            Compare background refresh on platform threads and virtual threads"
+  echo "--bulk               Bulk get and put with different batch sizes, keys per second"
+  echo "--memory             Heap memory per entry for each policy and configuration of the 2015 implementation"
+  echo "--policies           Compare the eviction policies of the 2015 implementation, throughput with eviction"
+  echo "--hands              Compare the global CLOCK and the partitioned clock, 1 to 64 evicting threads"
+  echo "--heapbound          Bound the 2015 implementation by heap bytes, report the used heap in percent of the bound"
+  echo "--expiry             Compare the expiry timer and lazy expiry, read latency and memory held by expired entries"
+  echo "--openloop           Sweep a fixed arrival rate up to saturation, response time percentiles for each cache"
+  echo "--latency            Record latency percentiles of hits and misses, adds timing overhead to the throughput"
   echo "--dry                Log the command lines to execute, but do not run test"
 }
 
@@ -73,6 +109,18 @@ processCommandLine() {
       --no3pty) no3pty=true;;
       --cache2k) cache2k=true;;
       --backends) backends="$2"; shift; ;;
+      --offheap) offheap=true;;
+      --evictor) evictor=true;;
+      --readthrough) readthrough=true;;
+      --refresh) refresh=true;;
+      --bulk) bulk=true;;
+      --memory) memory=true;;
+      --policies) policies=true;;
+      --hands) hands=true;;
+      --heapbound) heapbound=true;;
+      --expiry) expiry=true;;
+      --latency) latency=true;;
+      --openloop) openloop=true;;
       --dry) dry=true;;
       -*) echo "unknown option: $1"; usage; exit 1;;
       *) break;;
@@ -111,6 +159,10 @@ dryEcho() {
 
 processCommandLine "$@";
 
+if test -n "$latency"; then
+  OPTIONS="$OPTIONS -p recordLatency=true";
+fi
+
 if test -z "$JAVA_HOME"; then
   echo "JAVA_HOME needs to be set" 1>&2
   exit 1;
@@ -222,6 +274,283 @@ for impl in $COMPLETE; do
   done
 done
 
+#
+# On heap versus off heap value storage with millions of entries, the GcProfiler
+# reports pauses and churn next to the throughput
+#
+if test -n "$offheap"; then
+benchmarks="LargeRandomSequenceBenchmark ReadOnlyBenchmark";
+for impl in Cache2k2015Factory Cache2k2015OffHeapFactory; do
+  for benchmark in $benchmarks; do
+    for threads in 1 4; do
+      runid="$impl-$benchmark-$threads";
+      fn="$TARGET/result-$runid";
+      echo;
+      echo "## $runid";
+      limitCores $threads $java -jar $JAR $benchmark -jvmArgs "$BENCHMARK_JVM_ARGS" $OPTIONS $STANDARD_PROFILER \
+           -t $threads -p cacheFactory=org.cache2k.benchmark.$impl \
+           -rf json -rff "$fn.json" \
+           2>&1 | tee $fn.out | filterProgress
+      if test -n "$dry"; then
+        cat $fn.out;
+      else
+        echo "=> $fn.out";
+      fi
+    done
+  done
+done
+fi
+
+#
+# Eviction in the writing thread versus background eviction. Throughput and the
+# sampled operation time, which reports the latency percentiles
+#
+if test -n "$evictor"; then
+benchmarks="NeverHitBenchmark PopulateParallelOnceBenchmark";
+for impl in Cache2k2015Factory Cache2k2015BackgroundEvictionFactory; do
+  for benchmark in $benchmarks; do
+    for threads in 1 2 4; do
+      runid="$impl-$benchmark-$threads";
+      fn="$TARGET/result-$runid";
+      mode="-bm thrpt,sample";
+      if test $benchmark = PopulateParallelOnceBenchmark; then mode=""; fi
+      echo;
+      echo "## $runid";
+      limitCores $threads $java -jar $JAR $benchmark -jvmArgs "$BENCHMARK_JVM_ARGS" $OPTIONS $STANDARD_PROFILER $mode \
+           -t $threads -p cacheFactory=org.cache2k.benchmark.$impl \
+           -rf json -rff "$fn.json" \
+           2>&1 | tee $fn.out | filterProgress
+      if test -n "$dry"; then
+        cat $fn.out;
+      else
+        echo "=> $fn.out";
+      fi
+    done
+  done
+done
+fi
+
+#
+# Read through with a simulated slow backend, blocking and asynchronous loader,
+# reported as throughput and sampled operation time
+#
+if test -n "$readthrough"; then
+for threads in 1 2 4; do
+  runid="ReadThroughBenchmark-$threads";
+  fn="$TARGET/result-$runid";
+  echo;
+  echo "## $runid";
+  limitCores $threads $java -jar $JAR ReadThroughBenchmark -jvmArgs "$BENCHMARK_JVM_ARGS" $OPTIONS $STANDARD_PROFILER \
+       -bm thrpt,sample -t $threads \
+       -rf json -rff "$fn.json" \
+       2>&1 | tee $fn.out | filterProgress
+  if test -n "$dry"; then
+    cat $fn.out;
+  else
+    echo "=> $fn.out";
+  fi
+done
+fi
+
+#
+# Background refresh of expiring entries with a slow source,
+# the benchmark has a parameter for platform and virtual threads
+#
+if test -n "$refresh"; then
+for threads in 1 2 4; do
+  runid="RefreshBenchmark-$threads";
+  fn="$TARGET/result-$runid";
+  echo;
+  echo "## $runid";
+  limitCores $threads $java -jar $JAR RefreshBenchmark -jvmArgs "$BENCHMARK_JVM_ARGS" $OPTIONS $STANDARD_PROFILER \
+       -t $threads \
+       -rf json -rff "$fn.json" \
+       2>&1 | tee $fn.out | filterProgress
+  if test -n "$dry"; then
+    cat $fn.out;
+  else
+    echo "=> $fn.out";
+  fi
+done
+fi
+
+#
+# Bulk operations with variable batch sizes, the keys per second are
+# reported as the auxiliary counter "keys"
+#
+if test -n "$bulk"; then
+for impl in Cache2k2015Factory $COMPLETE; do
+  for threads in 1 2 4; do
+    runid="$impl-BulkAccessBenchmark-$threads";
+    fn="$TARGET/result-$runid";
+    echo;
+    echo "## $runid";
+    limitCores $threads $java -jar $JAR BulkAccessBenchmark -jvmArgs "$BENCHMARK_JVM_ARGS" $OPTIONS $STANDARD_PROFILER \
+         -t $threads -p cacheFactory=org.cache2k.benchmark.$impl \
+         -rf json -rff "$fn.json" \
+         2>&1 | tee $fn.out | filterProgress
+    if test -n "$dry"; then
+      cat $fn.out;
+    else
+      echo "=> $fn.out";
+    fi
+  done
+done
+fi
+
+#
+# Heap memory per entry of the 2015 implementation, the benchmark has parameters
+# for the eviction policy and the configuration, the result is
+# +forced-gc-mem.used.perEntry
+#
+if test -n "$memory"; then
+runid="EntryMemoryBenchmark";
+fn="$TARGET/result-$runid";
+echo;
+echo "## $runid";
+$java -jar $JAR EntryMemoryBenchmark -jvmArgs "$BENCHMARK_JVM_ARGS" $OPTIONS $STANDARD_PROFILER \
+     -t 1 \
+     -rf json -rff "$fn.json" \
+     2>&1 | tee $fn.out | filterProgress
+if test -n "$dry"; then
+  cat $fn.out;
+else
+  echo "=> $fn.out";
+fi
+fi
+
+#
+# Eviction policies of the 2015 implementation: CLOCK-Pro+, LRU, ARC, LIRS, W-TinyLFU, SIEVE, S3-FIFO,
+# sampled eviction and CLOCK with the multi threaded benchmarks that run with eviction
+#
+if test -n "$policies"; then
+benchmarks="NeverHitBenchmark MultiRandomAccessBenchmark";
+for impl in Cache2k2015Factory Cache2k2015LruFactory Cache2k2015ArcFactory Cache2k2015LirsFactory \
+            Cache2k2015WTinyLfuFactory Cache2k2015SieveFactory Cache2k2015S3FifoFactory \
+            Cache2k2015SampledFactory Cache2k2015ClockFactory; do
+  for benchmark in $benchmarks; do
+    for threads in 1 2 4; do
+      runid="$impl-$benchmark-$threads";
+      fn="$TARGET/result-$runid";
+      echo;
+      echo "## $runid";
+      limitCores $threads $java -jar $JAR $benchmark -jvmArgs "$BENCHMARK_JVM_ARGS" $OPTIONS $STANDARD_PROFILER \
+           -t $threads -p cacheFactory=org.cache2k.benchmark.$impl \
+           -rf json -rff "$fn.json" \
+           2>&1 | tee $fn.out | filterProgress
+      if test -n "$dry"; then
+        cat $fn.out;
+      else
+        echo "=> $fn.out";
+      fi
+    done
+  done
+done
+fi
+
+#
+# CLOCK with one hand under the structure lock versus the partitioned clock with
+# a hand per region. All cores are used, the threads exceed the cores.
+#
+if test -n "$hands"; then
+benchmark="NeverHitBenchmark";
+for impl in Cache2k2015ClockFactory PartitionedClockFactory; do
+  for threads in 1 2 4 8 16 32 64; do
+    runid="$impl-$benchmark-$threads";
+    fn="$TARGET/result-$runid";
+    echo;
+    echo "## $runid";
+    $java -jar $JAR $benchmark -jvmArgs "$BENCHMARK_JVM_ARGS" $OPTIONS $STANDARD_PROFILER -bm thrpt,sample \
+         -t $threads -p cacheFactory=org.cache2k.benchmark.$impl \
+         -rf json -rff "$fn.json" \
+         2>&1 | tee $fn.out | filterProgress
+    if test -n "$dry"; then
+      cat $fn.out;
+    else
+      echo "=> $fn.out";
+    fi
+  done
+done
+fi
+
+#
+# Capacity bounded by the estimated heap bytes of the 2015 implementation. The
+# ForcedGcMemoryProfiler reports the used heap above the baseline in percent of the bound.
+#
+if test -n "$heapbound"; then
+benchmarks="NeverHitBenchmark MultiRandomAccessBenchmark RandomSequenceCacheBenchmark ReadOnlyBenchmark";
+for impl in Cache2k2015Factory Cache2k2015LruFactory Cache2k2015ArcFactory Cache2k2015LirsFactory \
+            Cache2k2015WTinyLfuFactory; do
+  for benchmark in $benchmarks; do
+    for bound in 16000000 64000000; do
+      runid="$impl-$benchmark-$bound";
+      fn="$TARGET/result-$runid";
+      echo;
+      echo "## $runid";
+      limitCores 1 $java -jar $JAR $benchmark -jvmArgs "$BENCHMARK_JVM_ARGS" $OPTIONS $STANDARD_PROFILER \
+           -t 1 -p cacheFactory=org.cache2k.benchmark.$impl -p maximumHeapBytes=$bound \
+           -rf json -rff "$fn.json" \
+           2>&1 | tee $fn.out | filterProgress
+      if test -n "$dry"; then
+        cat $fn.out;
+      else
+        echo "=> $fn.out";
+      fi
+    done
+  done
+done
+fi
+
+#
+# Short lived entries with a timer event per entry versus lazy expiry, the benchmark
+# has a parameter for the expiry mode. One writer inserts at a fixed rate, three
+# readers. Read latency percentiles and the expired entries still in memory as
+# +misc.staleEntries. The memory per entry of both modes via the EntryMemoryBenchmark.
+#
+if test -n "$expiry"; then
+for benchmark in ExpiryChurnBenchmark EntryMemoryBenchmark; do
+  runid="$benchmark-expiry";
+  fn="$TARGET/result-$runid";
+  echo;
+  echo "## $runid";
+  if test $benchmark = ExpiryChurnBenchmark; then
+    args="-bm sample -t 4";
+  else
+    args="-t 1 -p policy=ClockProPlusCache -p configuration=EXPIRY,LAZY";
+  fi
+  limitCores 4 $java -jar $JAR $benchmark -jvmArgs "$BENCHMARK_JVM_ARGS" $OPTIONS $STANDARD_PROFILER $args \
+       -rf json -rff "$fn.json" \
+       2>&1 | tee $fn.out | filterProgress
+  if test -n "$dry"; then
+    cat $fn.out;
+  else
+    echo "=> $fn.out";
+  fi
+done
+fi
+
+#
+# Open loop load with a fixed arrival rate, the benchmark sweeps the rate up to the
+# saturation. The response time from the intended start is reported as
+# +misc.responseTime.p99 and so on, the ConcurrentHashMap shows the limit of the driver
+#
+if test -n "$openloop"; then
+for impl in $NO_EVICTION Cache2k2015Factory $COMPLETE; do
+  runid="$impl-FixedRateBenchmark";
+  fn="$TARGET/result-$runid";
+  echo;
+  echo "## $runid";
+  limitCores 4 $java -jar $JAR FixedRateBenchmark -jvmArgs "$BENCHMARK_JVM_ARGS" $OPTIONS $STANDARD_PROFILER \
+       -p cacheFactory=org.cache2k.benchmark.$impl \
+       -rf json -rff "$fn.json" \
+       2>&1 | tee $fn.out | filterProgress
+  if test -n "$dry"; then
+    cat $fn.out;
+  else
+    echo "=> $fn.out";
+  fi
+done
+fi
 #
 # Multi threaded asymmetrical/fixed thread counts, no eviction needed
 #
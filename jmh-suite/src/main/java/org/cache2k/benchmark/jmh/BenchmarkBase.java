@@ -31,7 +31,8 @@ import org.openjdk.jmh.annotations.TearDown;
 
 /**
  * Base for all JMH cache benchmarks, controlling the cache lifecycle and
- * recording memory usage.
+ * recording memory usage. Benchmarks record the latency percentiles of hits and
+ * misses via the {@link LatencyRecorder}.
  *
  * @author Jens Wilke
  */
@@ -43,6 +44,14 @@ public class BenchmarkBase {
   @Param("DEFAULT")
   public String cacheFactory;
 
+  /**
+   * Bound the cache by the estimated heap bytes instead of the entry count, 0 for
+   * no heap bound. The {@link ForcedGcMemoryProfiler} reports the used heap in
+   * percent of the bound.
+   */
+  @Param("0")
+  public long maximumHeapBytes;
+
   public BenchmarkCacheFactory getFactory() {
     try {
       if ("DEFAULT".equals(cacheFactory)) {
@@ -50,12 +59,26 @@ public class BenchmarkBase {
       }
       BenchmarkCacheFactory _factoryInstance =
         (BenchmarkCacheFactory) Class.forName(cacheFactory).newInstance();
+      if (maximumHeapBytes > 0) {
+        _factoryInstance.withMaximumHeapBytes(maximumHeapBytes);
+      }
       return _factoryInstance;
     } catch (Exception e) {
       throw new RuntimeException(e);
     }
   }
 
+  /**
+   * Record the memory used without the cache and the heap bound for the
+   * {@link ForcedGcMemoryProfiler}. Called by the setup after the cache of the previous
+   * iteration is released and the access pattern is allocated, right before the cache
+   * is created.
+   */
+  protected void recordBaselineMemory() {
+    ForcedGcMemoryProfiler.recordBaselineMemory();
+    ForcedGcMemoryProfiler.recordTargetMemory(maximumHeapBytes);
+  }
+
   @TearDown(Level.Iteration)
   public void tearDownBase() throws Exception {
     ForcedGcMemoryProfiler.recordUsedMemory();
@@ -58,6 +58,9 @@ public class ForcedGcMemoryProfiler implements InternalProfiler {
   static long usedMemorySettled;
   static long totalMemory;
   static long gcTimeMillis;
+  static long baselineMemory;
+  static long entryCount;
+  static long targetMemory;
 
   static boolean virtualMachineLoaded;
   static Object virtualMachine;
@@ -69,16 +72,8 @@ public class ForcedGcMemoryProfiler implements InternalProfiler {
   public static void recordUsedMemory() {
     if (enable) {
       long t0 = System.currentTimeMillis();
-      long m2 = usedMemory = getUsedMemory();
-      do {
-        try {
-          Thread.sleep(567);
-        } catch (InterruptedException e) {
-          Thread.currentThread().interrupt();
-        }
-        usedMemorySettled = m2;
-        m2 = getUsedMemory();
-      } while (m2 < usedMemorySettled);
+      usedMemory = getUsedMemory();
+      usedMemorySettled = getSettledUsedMemory(usedMemory);
       gcTimeMillis = System.currentTimeMillis() - t0;
       System.err.println();
       System.err.println("Heap histogram after memory settled: ");
@@ -86,6 +81,50 @@ public class ForcedGcMemoryProfiler implements InternalProfiler {
     }
   }
 
+  /**
+   * Called from the benchmark setup before the cache is created and populated, to record
+   * the memory used by everything else, e.g. the access pattern. Together with
+   * {@link #recordEntryCount(long)} the memory per cache entry is reported.
+   */
+  public static void recordBaselineMemory() {
+    if (enable) {
+      baselineMemory = getSettledUsedMemory(getUsedMemory());
+    }
+  }
+
+  /**
+   * Number of entries in the cache at the time {@link #recordUsedMemory()} is called.
+   */
+  public static void recordEntryCount(long _count) {
+    entryCount = _count;
+  }
+
+  /**
+   * Heap bound the cache is configured with. The used memory above the baseline is
+   * reported in percent of the bound, needs {@link #recordBaselineMemory()}.
+   */
+  public static void recordTargetMemory(long _bytes) {
+    targetMemory = _bytes;
+  }
+
+  /**
+   * Repeat the garbage collection until the used memory does not decrease any more.
+   */
+  private static long getSettledUsedMemory(long _usedMemory) {
+    long _settled;
+    long m2 = _usedMemory;
+    do {
+      try {
+        Thread.sleep(567);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      _settled = m2;
+      m2 = getUsedMemory();
+    } while (m2 < _settled);
+    return _settled;
+  }
+
   /**
    * Trigger a gc, wait for completion and return used memory. Inspired from JMH approach.
    *
@@ -247,22 +286,36 @@ public class ForcedGcMemoryProfiler implements InternalProfiler {
     if (usedMemory == 0) {
       return Collections.emptyList();
     }
-    return Arrays.asList(
+    List<Result> l = new ArrayList<Result>(Arrays.asList(
       new ProfilerResult("+forced-gc-mem.used.settled", (double) usedMemorySettled, "bytes", AggregationPolicy.AVG),
       new ProfilerResult("+forced-gc-mem.used.after", (double) usedMemory, "bytes", AggregationPolicy.AVG),
       new ProfilerResult("+forced-gc-mem.total", (double) totalMemory, "bytes", AggregationPolicy.AVG),
       new ProfilerResult("+forced-gc-mem.gcTimeMillis", (double) gcTimeMillis, "ms", AggregationPolicy.AVG)
-    );
+    ));
+    if (baselineMemory > 0 && entryCount > 0) {
+      l.add(new ProfilerResult("+forced-gc-mem.used.perEntry",
+        (double) (usedMemorySettled - baselineMemory) / entryCount, "bytes", AggregationPolicy.AVG));
+    }
+    if (baselineMemory > 0 && targetMemory > 0) {
+      l.add(new ProfilerResult("+forced-gc-mem.used.targetPercent",
+        (usedMemorySettled - baselineMemory) * 100.0 / targetMemory, "%", AggregationPolicy.AVG));
+    }
+    return l;
   }
 
   @Override
   public void beforeIteration(final BenchmarkParams benchmarkParams, final IterationParams iterationParams) {
     enable = true;
+    baselineMemory = 0;
+    entryCount = 0;
+    targetMemory = 0;
   }
 
   @Override
   public String getDescription() {
-    return "Adds used memory to the result, if recorded via recordUsedMemory()";
+    return "Adds used memory to the result, if recorded via recordUsedMemory(), " +
+      "and the memory per entry, if recordBaselineMemory() and recordEntryCount() is used, " +
+      "and the memory in percent of the heap bound, if recordTargetMemory() is used";
   }
 
 }
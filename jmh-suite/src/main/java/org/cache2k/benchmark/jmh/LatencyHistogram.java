@@ -0,0 +1,128 @@
+package org.cache2k.benchmark.jmh;
+
+/*
+ * #%L
+ * Cache benchmark suite based on JMH.
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.util.Arrays;
+
+/**
+ * Log linear histogram of latencies in nanoseconds, in the style of the HdrHistogram.
+ * Values below 128 have an exact bucket. Above, each power of two range is split into
+ * 64 linear buckets, so the relative error of a reported value is below 1.6%. The
+ * buckets cover the whole positive long range in 3712 counters. Recording does a
+ * bit scan and an array increment, no allocation.
+ *
+ * <p>Not thread safe, each thread records into its own histogram. The histograms are
+ * merged at the end of the iteration.
+ *
+ * @author Jens Wilke
+ */
+public final class LatencyHistogram {
+
+  static final int SUB_BUCKET_BITS = 7;
+  static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT >> 1;
+  static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKET_HALF;
+
+  private final long[] counts = new long[BUCKET_COUNT];
+  private long totalCount;
+  private long maxValue;
+
+  static int bucketIndex(long v) {
+    if (v < SUB_BUCKET_COUNT) {
+      return (int) v;
+    }
+    int _shift = 64 - Long.numberOfLeadingZeros(v) - SUB_BUCKET_BITS;
+    return _shift * SUB_BUCKET_HALF + (int) (v >>> _shift);
+  }
+
+  /**
+   * Highest value that is recorded in the bucket.
+   */
+  static long highestEquivalentValue(int _index) {
+    if (_index < SUB_BUCKET_COUNT) {
+      return _index;
+    }
+    int _shift = _index / SUB_BUCKET_HALF - 1;
+    long _subBucket = _index - _shift * SUB_BUCKET_HALF;
+    return ((_subBucket + 1) << _shift) - 1;
+  }
+
+  /**
+   * Record a latency, negative values, e.g. from a non monotonic clock, count as 0.
+   */
+  public void record(long _nanos) {
+    if (_nanos < 0) {
+      _nanos = 0;
+    }
+    counts[bucketIndex(_nanos)]++;
+    totalCount++;
+    if (_nanos > maxValue) {
+      maxValue = _nanos;
+    }
+  }
+
+  public void merge(LatencyHistogram h) {
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      counts[i] += h.counts[i];
+    }
+    totalCount += h.totalCount;
+    maxValue = Math.max(maxValue, h.maxValue);
+  }
+
+  public void reset() {
+    Arrays.fill(counts, 0);
+    totalCount = 0;
+    maxValue = 0;
+  }
+
+  public long getTotalCount() {
+    return totalCount;
+  }
+
+  public long getMaxValue() {
+    return maxValue;
+  }
+
+  /**
+   * Value at the percentile, the given percentage of the recorded values is lower or
+   * equal. The highest value of the bucket is reported, so within the precision the
+   * value is rather too high than too low.
+   *
+   * @param _percentile percentile from 0 to 100, e.g. 99.9
+   */
+  public long getValueAtPercentile(double _percentile) {
+    if (totalCount == 0) {
+      return 0;
+    }
+    long _countAtPercentile =
+      Math.max(1, (long) Math.ceil(Math.min(_percentile, 100) / 100 * totalCount));
+    long _sum = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      _sum += counts[i];
+      if (_sum >= _countAtPercentile) {
+        return Math.min(highestEquivalentValue(i), maxValue);
+      }
+    }
+    return maxValue;
+  }
+
+}
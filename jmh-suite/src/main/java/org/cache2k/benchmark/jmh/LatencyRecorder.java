@@ -0,0 +1,93 @@
+package org.cache2k.benchmark.jmh;
+
+/*
+ * #%L
+ * Cache benchmark suite based on JMH.
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Per thread latency recording for the benchmarks extending {@link BenchmarkBase}.
+ * A hit is the time of a {@code getIfPresent} returning a value, a miss the time of
+ * the {@code getIfPresent} plus the following {@code put}. At the iteration tear
+ * down the histograms of all threads are merged by the {@link MiscResultRecorderProfiler}
+ * and reported as {@code hitLatency.p99} and so on.
+ *
+ * <p>Taking the time costs two calls of {@code System.nanoTime()} per operation, which
+ * is significant in relation to a cache hit. The recording is off by default and
+ * switched on by {@code -p recordLatency=true}. Use it like:
+ *
+ * <pre>
+ * long t = latency.start();
+ * Integer v = cache.getIfPresent(k);
+ * if (v == null) {
+ *   cache.put(k, k);
+ *   latency.recordMiss(t);
+ * } else {
+ *   latency.recordHit(t);
+ * }
+ * </pre>
+ *
+ * @author Jens Wilke
+ */
+@State(Scope.Thread)
+public class LatencyRecorder {
+
+  @Param("false")
+  public boolean recordLatency;
+
+  private final LatencyHistogram hits = new LatencyHistogram();
+  private final LatencyHistogram misses = new LatencyHistogram();
+
+  /**
+   * Start time of the operation, or 0 if not recording.
+   */
+  public long start() {
+    return recordLatency ? System.nanoTime() : 0;
+  }
+
+  public void recordHit(long _startTime) {
+    if (recordLatency) {
+      hits.record(System.nanoTime() - _startTime);
+    }
+  }
+
+  public void recordMiss(long _startTime) {
+    if (recordLatency) {
+      misses.record(System.nanoTime() - _startTime);
+    }
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDown() {
+    if (!recordLatency) {
+      return;
+    }
+    MiscResultRecorderProfiler.addHistogram("hitLatency", hits);
+    MiscResultRecorderProfiler.addHistogram("missLatency", misses);
+    hits.reset();
+    misses.reset();
+  }
+
+}
@@ -52,6 +52,10 @@ public class MiscResultRecorderProfiler implements InternalProfiler {
 
   static final Map<String, CounterResult> counters = new ConcurrentHashMap<>();
   static final Map<String, ProfilerResult> results = new ConcurrentHashMap<>();
+  static final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+  /** Reported percentiles of the latency histograms */
+  static final double[] PERCENTILES = {50, 90, 99, 99.9};
 
   /**
    * Insert the counter value as secondary result. If a value is already inserted the
@@ -78,9 +82,23 @@ public class MiscResultRecorderProfiler implements InternalProfiler {
       new ProfilerResult(SECONDARY_RESULT_PREFIX + key,_result, _unit, _aggregationPolicy));
   }
 
+  /**
+   * Merge the latency histogram into the histogram of the iteration. Used to merge the
+   * histograms of all threads at the iteration tear down. At the end of the iteration
+   * the percentiles 50, 90, 99, 99.9 and the maximum are inserted as secondary results,
+   * e.g. {@code key.p99.9}.
+   */
+  public static void addHistogram(String key, LatencyHistogram h) {
+    LatencyHistogram _sum = histograms.computeIfAbsent(key, any -> new LatencyHistogram());
+    synchronized (_sum) {
+      _sum.merge(h);
+    }
+  }
+
   @Override
   public void beforeIteration(final BenchmarkParams benchmarkParams, final IterationParams iterationParams) {
     counters.clear();
+    histograms.clear();
   }
 
   @Override
@@ -91,6 +109,18 @@ public class MiscResultRecorderProfiler implements InternalProfiler {
         new ProfilerResult(SECONDARY_RESULT_PREFIX + e.key, (double) e.counter.get(), e.unit, e.aggregationPolicy))
       .sequential().forEach(e -> all.add(e));
     all.addAll(results.values());
+    histograms.forEach((key, h) -> {
+      if (h.getTotalCount() == 0) {
+        return;
+      }
+      for (double p : PERCENTILES) {
+        String _label = p == Math.rint(p) ? Long.toString((long) p) : Double.toString(p);
+        all.add(new ProfilerResult(SECONDARY_RESULT_PREFIX + key + ".p" + _label,
+          h.getValueAtPercentile(p), "ns", AggregationPolicy.AVG));
+      }
+      all.add(new ProfilerResult(SECONDARY_RESULT_PREFIX + key + ".max",
+        h.getMaxValue(), "ns", AggregationPolicy.MAX));
+    });
     return all;
   }
 
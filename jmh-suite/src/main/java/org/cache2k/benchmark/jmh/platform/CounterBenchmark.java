@@ -55,6 +55,24 @@ public class CounterBenchmark {
     long index = random.nextInt(1234);
   }
 
+  /**
+   * Counter block per thread, padded to not share a cache line with other blocks,
+   * like the statistics of the 2015 implementation.
+   */
+  static class PaddedCounters {
+    long p01, p02, p03, p04, p05, p06, p07, p08;
+    long counter1;
+    long counter2;
+    long q01, q02, q03, q04, q05, q06, q07, q08;
+  }
+
+  ThreadLocal<PaddedCounters> threadCounters = new ThreadLocal<PaddedCounters>() {
+    @Override
+    protected PaddedCounters initialValue() {
+      return new PaddedCounters();
+    }
+  };
+
   @Benchmark
   public long incrementAtomicLongSingle() {
     return counter1.incrementAndGet();
@@ -97,6 +115,22 @@ public class CounterBenchmark {
     return 4711;
   }
 
+  @Benchmark
+  public long incrementThreadLocalBlockSingle() {
+    return threadCounters.get().counter1++;
+  }
+
+  @Benchmark @Threads(10)
+  public long incrementThreadLocalBlock10Threads() {
+    return threadCounters.get().counter1++;
+  }
+
+  @Benchmark @Threads(10)
+  public long increment2ThreadLocalBlock10Threads() {
+    PaddedCounters c = threadCounters.get();
+    return c.counter1++ + c.counter2++;
+  }
+
   @Benchmark @Threads(10)
   public long incrementSpread(IndexState s) {
     return spreadCounter.incrementAndGet((int) (s.index++ % spreadSize));
@@ -0,0 +1,76 @@
+package org.cache2k.benchmark.jmh.platform;
+
+/*
+ * #%L
+ * Cache benchmark suite based on JMH.
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.benchmark.impl2015.FrequencySketch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Cost of the TinyLFU frequency sketch per access. The admission filter does one
+ * increment per access and two frequency estimations per eviction.
+ *
+ * @author Jens Wilke
+ */
+@State(Scope.Thread)
+public class FrequencySketchBenchmark {
+
+  static final int HASH_COUNT = 1 << 16;
+
+  @Param({"1000", "1000000"})
+  public int size;
+
+  FrequencySketch sketch;
+  int[] hashes = new int[HASH_COUNT];
+  int index;
+
+  @Setup
+  public void setup() {
+    sketch = new FrequencySketch(size);
+    Random _random = new Random(1802);
+    for (int i = 0; i < HASH_COUNT; i++) {
+      hashes[i] = _random.nextInt();
+    }
+  }
+
+  @Benchmark
+  public void increment() {
+    sketch.increment(hashes[index++ & (HASH_COUNT - 1)]);
+  }
+
+  @Benchmark
+  public int frequency() {
+    return sketch.frequency(hashes[index++ & (HASH_COUNT - 1)]);
+  }
+
+  @Benchmark
+  public int incrementAndCompare() {
+    int h = hashes[index++ & (HASH_COUNT - 1)];
+    sketch.increment(h);
+    return sketch.frequency(h) - sketch.frequency(hashes[index & (HASH_COUNT - 1)]);
+  }
+
+}
@@ -0,0 +1,141 @@
+package org.cache2k.benchmark.jmh.suite.eviction.symmetrical;
+
+/*
+ * #%L
+ * Cache benchmark suite based on JMH.
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.benchmark.BenchmarkCache;
+import org.cache2k.benchmark.jmh.BenchmarkBase;
+import org.cache2k.benchmark.util.AccessPattern;
+import org.cache2k.benchmark.util.RandomAccessPattern;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bulk operations with different batch sizes on a prepopulated cache with 100k entries.
+ * The keys are random, with a hit rate of 50 percent the cache needs to evict.
+ * Besides the operations per second, the keys per second are reported via an
+ * auxiliary counter.
+ *
+ * @author Jens Wilke
+ */
+@State(Scope.Benchmark)
+public class BulkAccessBenchmark extends BenchmarkBase {
+
+  public static final int ENTRY_COUNT = 100 * 1000;
+  public static final int PATTERN_COUNT = 1000 * 1000;
+
+  @Param({"1", "10", "50", "100"})
+  public int batchSize = 50;
+
+  @Param({"100", "50"})
+  public int hitRate = 0;
+
+  private final static AtomicInteger offset = new AtomicInteger(0);
+
+  @AuxCounters @State(Scope.Thread)
+  public static class ThreadState {
+    long index = offset.getAndAdd(PATTERN_COUNT / 16);
+    public long keys;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+      keys = 0;
+    }
+  }
+
+  BenchmarkCache<Integer, Integer> cache;
+
+  Integer[] ints;
+
+  @Setup(Level.Iteration)
+  public void setup() throws Exception {
+    cache = null;
+    ints = null;
+    ints = new Integer[PATTERN_COUNT];
+    AccessPattern _pattern =
+      new RandomAccessPattern((int) (ENTRY_COUNT * (100D / hitRate)));
+    for (int i = 0; i < PATTERN_COUNT; i++) {
+      ints[i] = _pattern.next();
+    }
+    recordBaselineMemory();
+    getsDestroyed = cache = getFactory().create(ENTRY_COUNT);
+    for (int i = 0; i < ENTRY_COUNT; i++) {
+      cache.put(i, i);
+    }
+  }
+
+  private List<Integer> nextKeys(ThreadState ts) {
+    List<Integer> _keys = new ArrayList<Integer>(batchSize);
+    for (int i = 0; i < batchSize; i++) {
+      _keys.add(ints[(int) (ts.index++ % PATTERN_COUNT)]);
+    }
+    ts.keys += batchSize;
+    return _keys;
+  }
+
+  @Benchmark @BenchmarkMode(Mode.Throughput)
+  public int getAll(ThreadState ts) {
+    return cache.getAll(nextKeys(ts)).size();
+  }
+
+  @Benchmark @BenchmarkMode(Mode.Throughput)
+  public int putAll(ThreadState ts) {
+    Map<Integer, Integer> m = new HashMap<Integer, Integer>();
+    for (Integer k : nextKeys(ts)) {
+      m.put(k, k);
+    }
+    cache.putAll(m);
+    return m.size();
+  }
+
+  /**
+   * Multi get and insert the missing values, like a client of a remote cache would do.
+   */
+  @Benchmark @BenchmarkMode(Mode.Throughput)
+  public int getAllAndPutMisses(ThreadState ts) {
+    List<Integer> _keys = nextKeys(ts);
+    Map<Integer, Integer> _result = cache.getAll(_keys);
+    if (_result.size() == _keys.size()) {
+      return _result.size();
+    }
+    Map<Integer, Integer> _misses = new HashMap<Integer, Integer>();
+    for (Integer k : _keys) {
+      if (!_result.containsKey(k)) {
+        _misses.put(k, k);
+      }
+    }
+    cache.putAll(_misses);
+    return _result.size();
+  }
+
+}
@@ -0,0 +1,101 @@
+package org.cache2k.benchmark.jmh.suite.eviction.symmetrical;
+
+/*
+ * #%L
+ * Cache benchmark suite based on JMH.
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.benchmark.BenchmarkCache;
+import org.cache2k.benchmark.jmh.BenchmarkBase;
+import org.cache2k.benchmark.jmh.LatencyRecorder;
+import org.cache2k.benchmark.util.AccessPattern;
+import org.cache2k.benchmark.util.RandomAccessPattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Like {@link RandomSequenceCacheBenchmark} but with millions of entries, to see
+ * the impact of the heap size on the garbage collector, e.g. for on heap versus
+ * off heap value storage. The cache is populated before the measurement, so the
+ * GC profiler reports the pauses and churn of a filled cache.
+ *
+ * @author Jens Wilke
+ */
+@State(Scope.Benchmark)
+public class LargeRandomSequenceBenchmark extends BenchmarkBase {
+
+  public static final int PATTERN_COUNT = 4 * 1000 * 1000;
+  public static final int HIT_RATE = 80;
+
+  @Param({"1000000", "3000000"})
+  public int entryCount = 0;
+
+  private final static AtomicInteger offset = new AtomicInteger(0);
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+    long index = offset.getAndAdd(PATTERN_COUNT / 16);
+  }
+
+  BenchmarkCache<Integer, Integer> cache;
+
+  Integer[] ints;
+
+  @Setup(Level.Iteration)
+  public void setup() throws Exception {
+    cache = null;
+    ints = null;
+    ints = new Integer[PATTERN_COUNT];
+    AccessPattern _pattern =
+      new RandomAccessPattern((int) (entryCount * (100D / HIT_RATE)));
+    for (int i = 0; i < PATTERN_COUNT; i++) {
+      ints[i] = _pattern.next();
+    }
+    recordBaselineMemory();
+    getsDestroyed = cache = getFactory().create(entryCount);
+    for (int i = 0; i < entryCount; i++) {
+      cache.put(i, i);
+    }
+  }
+
+  @Benchmark @BenchmarkMode(Mode.Throughput)
+  public long operation(ThreadState threadState, HitCountRecorder rec, LatencyRecorder latency) {
+    int idx = (int) (threadState.index++ % PATTERN_COUNT);
+    Integer k = ints[idx];
+    long t = latency.start();
+    Integer v = cache.getIfPresent(k);
+    if (v == null) {
+      cache.put(k, k);
+      latency.recordMiss(t);
+      rec.missCount++;
+    } else {
+      latency.recordHit(t);
+      rec.hitCount++;
+    }
+    return idx;
+  }
+
+}
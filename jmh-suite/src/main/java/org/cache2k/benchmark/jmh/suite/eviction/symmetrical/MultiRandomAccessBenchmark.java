@@ -22,6 +22,7 @@ package org.cache2k.benchmark.jmh.suite.eviction.symmetrical;
 
 import org.cache2k.benchmark.BenchmarkCache;
 import org.cache2k.benchmark.jmh.BenchmarkBase;
+import org.cache2k.benchmark.jmh.LatencyRecorder;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Level;
@@ -80,18 +81,23 @@ public class MultiRandomAccessBenchmark extends BenchmarkBase {
 
   @Setup(Level.Iteration)
   public void setup() throws Exception {
+    cache = null;
+    recordBaselineMemory();
     getsDestroyed = cache = getFactory().create(ENTRY_COUNT);
   }
 
   @Benchmark @BenchmarkMode(Mode.Throughput)
-  public long operation(ThreadState threadState, HitCountRecorder rec) {
+  public long operation(ThreadState threadState, HitCountRecorder rec, LatencyRecorder latency) {
     int idx = (int) (threadState.index++ % PATTERN_COUNT);
     Integer k = threadState.ints[idx];
+    long t = latency.start();
     Integer v = cache.getIfPresent(k);
     if (v == null) {
       cache.put(k, k);
+      latency.recordMiss(t);
       rec.missCount++;
     } else {
+      latency.recordHit(t);
       rec.hitCount++;
     }
     return idx;
@@ -22,6 +22,7 @@ package org.cache2k.benchmark.jmh.suite.eviction.symmetrical;
 
 import org.cache2k.benchmark.BenchmarkCache;
 import org.cache2k.benchmark.jmh.BenchmarkBase;
+import org.cache2k.benchmark.jmh.LatencyRecorder;
 import org.cache2k.benchmark.util.AccessPattern;
 import org.cache2k.benchmark.util.RandomAccessPattern;
 import org.openjdk.jmh.annotations.Benchmark;
@@ -63,24 +64,30 @@ public class RandomSequenceCacheBenchmark extends BenchmarkBase {
 
   @Setup(Level.Iteration)
   public void setup() throws Exception {
-    getsDestroyed = cache = getFactory().create(ENTRY_COUNT);
+    cache = null;
+    ints = null;
     ints = new Integer[PATTERN_COUNT];
     AccessPattern _pattern =
       new RandomAccessPattern((int) (ENTRY_COUNT * (100D / hitRate)));
     for (int i = 0; i < PATTERN_COUNT; i++) {
       ints[i] = _pattern.next();
     }
+    recordBaselineMemory();
+    getsDestroyed = cache = getFactory().create(ENTRY_COUNT);
   }
 
   @Benchmark @BenchmarkMode(Mode.Throughput)
-  public long operation(ThreadState threadState, HitCountRecorder rec) {
+  public long operation(ThreadState threadState, HitCountRecorder rec, LatencyRecorder latency) {
     int idx = (int) (threadState.index++ % PATTERN_COUNT);
     Integer k = ints[idx];
+    long t = latency.start();
     Integer v = cache.getIfPresent(k);
     if (v == null) {
       cache.put(k, k);
+      latency.recordMiss(t);
       rec.missCount++;
     } else {
+      latency.recordHit(t);
       rec.hitCount++;
     }
     return idx;
@@ -0,0 +1,183 @@
+package org.cache2k.benchmark.jmh.suite.expiry;
+
+/*
+ * #%L
+ * Cache benchmark suite based on JMH.
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.cache2k.benchmark.impl2015.CacheConfig;
+import org.cache2k.benchmark.impl2015.ClockProPlusCache;
+import org.cache2k.benchmark.impl2015.InternalCacheInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.results.AggregationPolicy;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.cache2k.benchmark.jmh.MiscResultRecorderProfiler.*;
+
+/**
+ * Entries are inserted at a fixed rate and expire after a short time, most of them
+ * are not read again. Compares the timing wheel with a timer event per entry and
+ * lazy expiry with the sweeper. Readers access keys written within twice the expiry
+ * time, so about half of the reads hit an expired key. The capacity is above the
+ * number of live entries, only expiry removes entries.
+ *
+ * <p>Run with {@code -bm sample} for the read latency. A thread counts the entries
+ * with a passed expiry time, that still occupy memory, every 100 milliseconds, this
+ * is reported as {@code +misc.staleEntries} and {@code +misc.staleEntriesMax}.
+ * The memory per entry of both modes is reported by the {@code EntryMemoryBenchmark}
+ * with the configurations {@code EXPIRY} and {@code LAZY}.
+ *
+ * @author Jens Wilke
+ */
+@State(Scope.Benchmark)
+public class ExpiryChurnBenchmark {
+
+  /**
+   * {@code TIMER} or {@code LAZY}
+   */
+  @Param({"TIMER", "LAZY"})
+  public String expiry;
+
+  @Param({"100000"})
+  public int entryCount;
+
+  @Param({"1000"})
+  public int expiryMillis;
+
+  @Param({"40000"})
+  public int putsPerSecond;
+
+  ClockProPlusCache<Integer, Integer> cache;
+
+  Integer[] keys;
+
+  int readWindow;
+
+  long startNanos;
+
+  long nanosPerPut;
+
+  final AtomicLong putCount = new AtomicLong();
+
+  Thread staleCounter;
+
+  volatile boolean stopped;
+
+  long staleSum;
+  long staleMax;
+  long staleSampleCnt;
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+    Random random = new Random();
+  }
+
+  @Setup(Level.Iteration)
+  public void setup() {
+    keys = new Integer[entryCount * 4];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = i;
+    }
+    readWindow = (int) Math.min(keys.length / 2, putsPerSecond * 2L * expiryMillis / 1000);
+    ClockProPlusCache<Integer, Integer> c = new ClockProPlusCache<Integer, Integer>();
+    CacheConfig<Integer, Integer> cc = new CacheConfig<Integer, Integer>();
+    cc.setName("expiryChurn");
+    cc.setEntryCapacity(entryCount);
+    cc.setExpiryMillis(expiryMillis);
+    cc.setKeepDataAfterExpired(false);
+    cc.setLazyExpiry("LAZY".equals(expiry));
+    c.setCacheConfig(cc);
+    c.init();
+    cache = c;
+    putCount.set(0);
+    nanosPerPut = TimeUnit.SECONDS.toNanos(1) / putsPerSecond;
+    startNanos = System.nanoTime();
+    staleSum = staleMax = staleSampleCnt = 0;
+    stopped = false;
+    staleCounter = new Thread("staleCounter") {
+      @Override
+      public void run() {
+        while (!stopped) {
+          LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+          int _count = cache.calculateExpiredEntryCount();
+          staleSum += _count;
+          staleMax = Math.max(staleMax, _count);
+          staleSampleCnt++;
+        }
+      }
+    };
+    staleCounter.setDaemon(true);
+    staleCounter.start();
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDown() throws InterruptedException {
+    stopped = true;
+    staleCounter.join();
+    if (staleSampleCnt > 0) {
+      setResult("staleEntries", (double) staleSum / staleSampleCnt, "entries", AggregationPolicy.AVG);
+      setResult("staleEntriesMax", staleMax, "entries", AggregationPolicy.MAX);
+    }
+    InternalCacheInfo _info = cache.getInfo();
+    setResult("expiredCnt", _info.getExpiredCnt(), "entries", AggregationPolicy.AVG);
+    System.out.println();
+    System.out.println(_info);
+    cache.destroy();
+    cache = null;
+  }
+
+  /**
+   * Insert the next key, paced to the configured rate.
+   */
+  @Benchmark @Group("churn") @GroupThreads(1)
+  public void put() {
+    long _index = putCount.getAndIncrement();
+    long _delay = startNanos + _index * nanosPerPut - System.nanoTime();
+    if (_delay > 0) {
+      LockSupport.parkNanos(_delay);
+    }
+    Integer k = keys[(int) (_index % keys.length)];
+    cache.put(k, k);
+  }
+
+  /**
+   * Read a key written within twice the expiry time.
+   */
+  @Benchmark @Group("churn") @GroupThreads(3)
+  public Integer read(ThreadState ts) {
+    long _index = putCount.get() - 1 - ts.random.nextInt(readWindow);
+    if (_index < 0) {
+      return null;
+    }
+    return cache.peek(keys[(int) (_index % keys.length)]);
+  }
+
+}
@@ -0,0 +1,124 @@
+package org.cache2k.benchmark.jmh.suite.memory;
+
+/*
+ * #%L
+ * Cache benchmark suite based on JMH.
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.benchmark.impl2015.BaseCache;
+import org.cache2k.benchmark.impl2015.CacheConfig;
+import org.cache2k.benchmark.impl2015.CacheSource;
+import org.cache2k.benchmark.jmh.ForcedGcMemoryProfiler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Random;
+
+/**
+ * Populate a cache of the 2015 implementation with 100k entries to report the heap
+ * memory per entry for each eviction policy and configuration. The eternal configuration
+ * uses the compact entry, with expiry or a cache source the entry has the timer links
+ * and the modification time. Lazy expiry needs no timer and uses the compact entry. The keys and values are allocated before the baseline is
+ * recorded, so the result is the overhead of the cache only.
+ *
+ * <p>Needs the {@link ForcedGcMemoryProfiler}, the result is reported as
+ * {@code +forced-gc-mem.used.perEntry}. The benchmark method just reads, the
+ * throughput is not of interest.
+ *
+ * @author Jens Wilke
+ */
+@State(Scope.Benchmark)
+public class EntryMemoryBenchmark {
+
+  public static final int ENTRY_COUNT = 100 * 1000;
+
+  @Param({"ClockProPlusCache", "ClockCache", "CarCache", "ArcCache", "LruCache", "RandomCache",
+          "LirsCache", "WTinyLfuCache", "SieveCache", "S3FifoCache", "SampledCache"})
+  public String policy;
+
+  /**
+   * {@code ETERNAL}, {@code EXPIRY}, {@code LAZY} or {@code SOURCE}
+   */
+  @Param({"ETERNAL", "EXPIRY", "LAZY", "SOURCE"})
+  public String configuration;
+
+  BaseCache<?, Integer, Integer> cache;
+
+  Integer[] keys;
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+    Random random = new Random();
+  }
+
+  @Setup(Level.Iteration)
+  public void setup() throws Exception {
+    keys = new Integer[ENTRY_COUNT];
+    for (int i = 0; i < ENTRY_COUNT; i++) {
+      keys[i] = i;
+    }
+    ForcedGcMemoryProfiler.recordBaselineMemory();
+    BaseCache<?, Integer, Integer> c = (BaseCache<?, Integer, Integer>)
+      Class.forName(BaseCache.class.getPackage().getName() + "." + policy).newInstance();
+    CacheConfig<Integer, Integer> cc = new CacheConfig<Integer, Integer>();
+    cc.setName("entryMemory");
+    cc.setEntryCapacity(ENTRY_COUNT);
+    cc.setKeepDataAfterExpired(false);
+    if ("EXPIRY".equals(configuration) || "LAZY".equals(configuration)) {
+      cc.setExpirySeconds(5 * 60);
+      cc.setLazyExpiry("LAZY".equals(configuration));
+    } else {
+      cc.setEternal(true);
+    }
+    c.setCacheConfig(cc);
+    if ("SOURCE".equals(configuration)) {
+      c.setSource(new CacheSource<Integer, Integer>() {
+        @Override
+        public Integer get(Integer key) {
+          return key;
+        }
+      });
+    }
+    c.init();
+    for (Integer k : keys) {
+      c.put(k, k);
+    }
+    ForcedGcMemoryProfiler.recordEntryCount(ENTRY_COUNT);
+    cache = c;
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDown() {
+    ForcedGcMemoryProfiler.recordUsedMemory();
+    System.out.println();
+    System.out.println(cache.toString());
+    cache.destroy();
+    cache = null;
+  }
+
+  @Benchmark
+  public Integer read(ThreadState ts) {
+    return cache.peek(keys[ts.random.nextInt(ENTRY_COUNT)]);
+  }
+
+}
@@ -22,6 +22,7 @@ package org.cache2k.benchmark.jmh.suite.noEviction.asymmetrical;
 
 import org.cache2k.benchmark.BenchmarkCache;
 import org.cache2k.benchmark.jmh.BenchmarkBase;
+import org.cache2k.benchmark.jmh.LatencyRecorder;
 import org.cache2k.benchmark.util.AccessPattern;
 import org.cache2k.benchmark.util.ScrambledZipfianPattern;
 import org.openjdk.jmh.annotations.*;
@@ -55,18 +56,30 @@ public class CombinedReadWriteBenchmark extends BenchmarkBase {
 
   @Setup(Level.Iteration)
   public void setup() throws Exception {
-    getsDestroyed = cache = getFactory().create(SIZE * 2);
+    cache = null;
+    ints = null;
     ints = new Integer[SIZE];
     AccessPattern _pattern = new ScrambledZipfianPattern(ITEMS);
     for (int i = 0; i < SIZE; i++) {
       ints[i] = _pattern.next();
+    }
+    recordBaselineMemory();
+    getsDestroyed = cache = getFactory().create(SIZE * 2);
+    for (int i = 0; i < SIZE; i++) {
       cache.put(ints[i], i);
     }
   }
 
   @Benchmark @Group("readOnly") @GroupThreads(8) @BenchmarkMode(Mode.Throughput)
-  public Integer readOnly(ThreadState threadState) {
-    return cache.getIfPresent(ints[threadState.index++ & MASK]);
+  public Integer readOnly(ThreadState threadState, LatencyRecorder latency) {
+    long t = latency.start();
+    Integer v = cache.getIfPresent(ints[threadState.index++ & MASK]);
+    if (v == null) {
+      latency.recordMiss(t);
+    } else {
+      latency.recordHit(t);
+    }
+    return v;
   }
 
   @Benchmark @Group("writeOnly") @GroupThreads(8) @BenchmarkMode(Mode.Throughput)
@@ -75,8 +88,15 @@ public class CombinedReadWriteBenchmark extends BenchmarkBase {
   }
 
   @Benchmark @Group("readWrite") @GroupThreads(6) @BenchmarkMode(Mode.Throughput)
-  public Integer readWrite_get(ThreadState threadState) {
-    return cache.getIfPresent(ints[threadState.index++ & MASK]);
+  public Integer readWrite_get(ThreadState threadState, LatencyRecorder latency) {
+    long t = latency.start();
+    Integer v = cache.getIfPresent(ints[threadState.index++ & MASK]);
+    if (v == null) {
+      latency.recordMiss(t);
+    } else {
+      latency.recordHit(t);
+    }
+    return v;
   }
 
   @Benchmark @Group("readWrite") @GroupThreads(2) @BenchmarkMode(Mode.Throughput)
@@ -50,6 +50,8 @@ public class PopulateParallelOnceBenchmark extends BenchmarkBase {
 
   @Setup(Level.Iteration)
   public void setup() throws Exception {
+    cache = null;
+    recordBaselineMemory();
     getsDestroyed = cache = getFactory().create(size);
   }
 
@@ -22,6 +22,8 @@ package org.cache2k.benchmark.jmh.suite.noEviction.symmetrical;
 
 import org.cache2k.benchmark.BenchmarkCache;
 import org.cache2k.benchmark.jmh.BenchmarkBase;
+import org.cache2k.benchmark.jmh.ForcedGcMemoryProfiler;
+import org.cache2k.benchmark.jmh.LatencyRecorder;
 import org.cache2k.benchmark.util.AccessPattern;
 import org.cache2k.benchmark.util.RandomAccessPattern;
 import org.openjdk.jmh.annotations.Benchmark;
@@ -38,7 +40,9 @@ import java.util.concurrent.atomic.AtomicInteger;
 /**
  * Prepopulate cache with 100k entries and access it in a random pattern
  * with different miss rates. The main aim of this benchmark is to check
- * how different miss rations influence the throughput.
+ * how different miss rations influence the throughput. With the
+ * {@link ForcedGcMemoryProfiler} enabled the memory per entry is reported as well.
+ * The recorded latency of a miss is only the {@code getIfPresent}, there is no put.
  *
  * @author Jens Wilke
  */
@@ -64,23 +68,34 @@ public class ReadOnlyBenchmark extends BenchmarkBase {
 
   @Setup(Level.Iteration)
   public void setup() throws Exception {
-    getsDestroyed = cache = getFactory().create(ENTRY_COUNT);
+    // the previous iteration's cache is destroyed but still referenced, release it
+    // and the old pattern so the baseline only holds the new pattern
+    cache = null;
+    ints = null;
     ints = new Integer[PATTERN_COUNT];
     AccessPattern _pattern =
       new RandomAccessPattern((int) (ENTRY_COUNT * (100D / hitRate)));
     for (int i = 0; i < PATTERN_COUNT; i++) {
       ints[i] = _pattern.next();
     }
+    recordBaselineMemory();
+    getsDestroyed = cache = getFactory().create(ENTRY_COUNT);
     for (int i = 0; i < ENTRY_COUNT; i++) {
       cache.put(i, i);
     }
+    ForcedGcMemoryProfiler.recordEntryCount(ENTRY_COUNT);
   }
 
   @Benchmark @BenchmarkMode(Mode.Throughput)
-  public long read(ThreadState threadState) {
+  public long read(ThreadState threadState, LatencyRecorder latency) {
     int idx = (int) (threadState.index++ % PATTERN_COUNT);
     Integer key = ints[idx];
-    cache.getIfPresent(key);
+    long t = latency.start();
+    if (cache.getIfPresent(key) == null) {
+      latency.recordMiss(t);
+    } else {
+      latency.recordHit(t);
+    }
     return idx;
   }
 
@@ -0,0 +1,217 @@
+package org.cache2k.benchmark.jmh.suite.openLoop;
+
+/*
+ * #%L
+ * Cache benchmark suite based on JMH.
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.benchmark.BenchmarkCache;
+import org.cache2k.benchmark.jmh.BenchmarkBase;
+import org.cache2k.benchmark.jmh.LatencyHistogram;
+import org.cache2k.benchmark.util.AccessPattern;
+import org.cache2k.benchmark.util.RandomAccessPattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.results.AggregationPolicy;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.cache2k.benchmark.jmh.MiscResultRecorderProfiler.*;
+
+/**
+ * Open loop load: the operations arrive on a fixed schedule, independent of how fast
+ * the cache answers. In a throughput benchmark a thread that is stuck, e.g. in a
+ * GC pause or waiting for a lock, issues no operations, so the latency that queued
+ * requests would see does not show up, also known as coordinated omission. Here the
+ * operation {@code n} is due at {@code n / rate} seconds after the start. A pool of
+ * worker threads takes the operations in order, waits until they are due and does
+ * a {@code getIfPresent} and a {@code put} on a miss. The response time is measured
+ * from the intended start, so a stall delays all operations due in the meantime.
+ *
+ * <p>The key pattern is random with the hit rate of 80 percent on a prepopulated cache
+ * with 100k entries, like in the {@code RandomSequenceCacheBenchmark}. The rates
+ * sweep from low load to beyond the saturation of most caches. Reported are the
+ * percentiles of {@code +misc.responseTime}, separately for hits and misses, the pure
+ * operation time {@code +misc.serviceTime} and the {@code +misc.achievedRate}. If
+ * the operations lag behind the schedule for more than the run duration, the run is
+ * stopped and {@code +misc.overloaded} is 1. The percentiles of an overloaded run
+ * are too optimistic, since the late operations are not executed.
+ *
+ * <p>The benchmark method is the schedule of one run, so it runs in a single JMH
+ * thread, the concurrency is set by {@code workers}. The load generator itself
+ * saturates at some million operations per second, which is visible with the
+ * {@code ConcurrentHashMapFactory}.
+ *
+ * @author Jens Wilke
+ */
+@State(Scope.Benchmark)
+public class FixedRateBenchmark extends BenchmarkBase {
+
+  public static final int ENTRY_COUNT = 100 * 1000;
+  public static final int PATTERN_COUNT = 1000 * 1000;
+  public static final int HIT_RATE = 80;
+
+  /** Waits shorter than this are spun, longer waits park the thread */
+  static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+  /** Operations per second of all workers together */
+  @Param({"25000", "50000", "100000", "200000", "400000", "800000", "1600000", "3200000", "6400000"})
+  public long rate;
+
+  @Param({"4"})
+  public int workers;
+
+  @Param({"3000"})
+  public int durationMillis;
+
+  BenchmarkCache<Integer, Integer> cache;
+
+  Integer[] ints;
+
+  final AtomicLong ticket = new AtomicLong();
+
+  long operationCount;
+
+  volatile long startNanos;
+
+  volatile boolean overloaded;
+
+  @Setup(Level.Iteration)
+  public void setup() throws Exception {
+    cache = null;
+    ints = null;
+    ints = new Integer[PATTERN_COUNT];
+    AccessPattern _pattern =
+      new RandomAccessPattern((int) (ENTRY_COUNT * (100D / HIT_RATE)));
+    for (int i = 0; i < PATTERN_COUNT; i++) {
+      ints[i] = _pattern.next();
+    }
+    recordBaselineMemory();
+    getsDestroyed = cache = getFactory().create(ENTRY_COUNT);
+    for (int i = 0; i < ENTRY_COUNT; i++) {
+      cache.put(i, i);
+    }
+    operationCount = rate * durationMillis / 1000;
+    ticket.set(0);
+    overloaded = false;
+  }
+
+  /**
+   * Run the schedule with the worker pool and report the merged histograms.
+   */
+  @Benchmark @BenchmarkMode(Mode.SingleShotTime) @OutputTimeUnit(TimeUnit.MILLISECONDS) @Threads(1)
+  public long run() throws InterruptedException {
+    Worker[] _workers = new Worker[workers];
+    for (int i = 0; i < workers; i++) {
+      _workers[i] = new Worker();
+      _workers[i].setName("fixedRateWorker-" + i);
+      _workers[i].setDaemon(true);
+    }
+    startNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(1);
+    for (Worker w : _workers) {
+      w.start();
+    }
+    long _count = 0;
+    long _endNanos = startNanos;
+    for (Worker w : _workers) {
+      w.join();
+      _count += w.count;
+      _endNanos = Math.max(_endNanos, w.endNanos);
+      addHistogram("responseTime", w.response);
+      addHistogram("hitResponseTime", w.hitResponse);
+      addHistogram("missResponseTime", w.missResponse);
+      addHistogram("serviceTime", w.service);
+    }
+    double _seconds = Math.max(1, _endNanos - startNanos) / 1E9;
+    setResult("achievedRate", _count / _seconds, "ops/s", AggregationPolicy.AVG);
+    setResult("overloaded", overloaded ? 1 : 0, "boolean", AggregationPolicy.MAX);
+    return _count;
+  }
+
+  /**
+   * Wait until the intended start time of the operation.
+   *
+   * @return the current time
+   */
+  static long waitUntil(long _intendedNanos) {
+    long _now = System.nanoTime();
+    while (_now < _intendedNanos) {
+      long _delay = _intendedNanos - _now;
+      if (_delay > SPIN_NANOS) {
+        LockSupport.parkNanos(_delay - SPIN_NANOS);
+      } else {
+        Thread.yield();
+      }
+      _now = System.nanoTime();
+    }
+    return _now;
+  }
+
+  class Worker extends Thread {
+
+    final LatencyHistogram response = new LatencyHistogram();
+    final LatencyHistogram hitResponse = new LatencyHistogram();
+    final LatencyHistogram missResponse = new LatencyHistogram();
+    final LatencyHistogram service = new LatencyHistogram();
+    long count;
+    long endNanos;
+
+    @Override
+    public void run() {
+      long _start = startNanos;
+      long _maximumLag = TimeUnit.MILLISECONDS.toNanos(durationMillis);
+      long n;
+      while (!overloaded && (n = ticket.getAndIncrement()) < operationCount) {
+        long _intended = _start + n * 1000000000L / rate;
+        long _now = waitUntil(_intended);
+        if (_now - _intended > _maximumLag) {
+          overloaded = true;
+          break;
+        }
+        Integer k = ints[(int) (n % PATTERN_COUNT)];
+        Integer v = cache.getIfPresent(k);
+        if (v == null) {
+          cache.put(k, k);
+        }
+        long _end = System.nanoTime();
+        long _responseTime = _end - _intended;
+        response.record(_responseTime);
+        if (v == null) {
+          missResponse.record(_responseTime);
+        } else {
+          hitResponse.record(_responseTime);
+        }
+        service.record(_end - _now);
+        count++;
+        endNanos = _end;
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,161 @@
+package org.cache2k.benchmark.jmh.suite.readThrough;
+
+/*
+ * #%L
+ * Cache benchmark suite based on JMH.
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.benchmark.impl2015.AsyncCacheSource;
+import org.cache2k.benchmark.impl2015.BaseCache;
+import org.cache2k.benchmark.impl2015.CacheConfig;
+import org.cache2k.benchmark.impl2015.CacheSource;
+import org.cache2k.benchmark.impl2015.ClockProPlusCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Read through with a simulated slow backend, comparing the blocking loader
+ * of the 2015 implementation with the asynchronous, coalescing loader. The cache
+ * holds half of the key space, so about half of the accesses are misses.
+ *
+ * <p>The blocking source parks the calling thread for the backend latency.
+ * The asynchronous source completes the future from a timer after the latency,
+ * so no thread is blocked while a load is in flight. The pipelined variants
+ * issue {@value #BATCH_SIZE} requests before waiting for the results.
+ *
+ * @author Jens Wilke
+ */
+@State(Scope.Benchmark)
+public class ReadThroughBenchmark {
+
+  public static final int BATCH_SIZE = 16;
+
+  @Param({"100"})
+  public int backendLatencyMicros;
+
+  @Param({"100000"})
+  public int keySpace;
+
+  BaseCache<?, Integer, Integer> cache;
+  ScheduledExecutorService backend;
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+    Random random = new Random();
+  }
+
+  @Setup(Level.Iteration)
+  public void setup() {
+    final long _latencyNanos = TimeUnit.MICROSECONDS.toNanos(backendLatencyMicros);
+    backend = Executors.newScheduledThreadPool(2);
+    ClockProPlusCache<Integer, Integer> c = new ClockProPlusCache<Integer, Integer>();
+    CacheConfig<Integer, Integer> cc = new CacheConfig<Integer, Integer>();
+    cc.setName("readThrough");
+    cc.setEternal(true);
+    cc.setEntryCapacity(keySpace / 2);
+    cc.setKeepDataAfterExpired(false);
+    c.setCacheConfig(cc);
+    c.setSource(new CacheSource<Integer, Integer>() {
+      @Override
+      public Integer get(Integer key) {
+        LockSupport.parkNanos(_latencyNanos);
+        return key;
+      }
+    });
+    c.setAsyncSource(new AsyncCacheSource<Integer, Integer>() {
+      @Override
+      public CompletableFuture<Integer> load(final Integer key) {
+        final CompletableFuture<Integer> f = new CompletableFuture<Integer>();
+        backend.schedule(() -> f.complete(key), _latencyNanos, TimeUnit.NANOSECONDS);
+        return f;
+      }
+
+      @Override
+      public CompletableFuture<Map<Integer, Integer>> loadAll(final Set<Integer> keys) {
+        final CompletableFuture<Map<Integer, Integer>> f = new CompletableFuture<Map<Integer, Integer>>();
+        final Map<Integer, Integer> m = new HashMap<Integer, Integer>();
+        for (Integer k : keys) {
+          m.put(k, k);
+        }
+        backend.schedule(() -> f.complete(m), _latencyNanos, TimeUnit.NANOSECONDS);
+        return f;
+      }
+    });
+    c.init();
+    cache = c;
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDown() {
+    System.out.println();
+    System.out.println(cache.toString());
+    cache.destroy();
+    backend.shutdownNow();
+  }
+
+  @Benchmark
+  public Integer blockingGet(ThreadState ts) {
+    return cache.get(ts.random.nextInt(keySpace));
+  }
+
+  @Benchmark
+  public Integer asyncGet(ThreadState ts) {
+    return cache.getAsync(ts.random.nextInt(keySpace)).join();
+  }
+
+  @Benchmark @OperationsPerInvocation(BATCH_SIZE)
+  public long asyncGetPipelined(ThreadState ts) {
+    List<CompletableFuture<Integer>> _futures = new ArrayList<CompletableFuture<Integer>>(BATCH_SIZE);
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      _futures.add(cache.getAsync(ts.random.nextInt(keySpace)));
+    }
+    long _sum = 0;
+    for (CompletableFuture<Integer> f : _futures) {
+      _sum += f.join();
+    }
+    return _sum;
+  }
+
+  @Benchmark @OperationsPerInvocation(BATCH_SIZE)
+  public int asyncGetAll(ThreadState ts) {
+    List<Integer> _keys = new ArrayList<Integer>(BATCH_SIZE);
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      _keys.add(ts.random.nextInt(keySpace));
+    }
+    return cache.getAllAsync(_keys).join().size();
+  }
+
+}
@@ -0,0 +1,115 @@
+package org.cache2k.benchmark.jmh.suite.refresh;
+
+/*
+ * #%L
+ * Cache benchmark suite based on JMH.
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.benchmark.impl2015.BaseCache;
+import org.cache2k.benchmark.impl2015.CacheConfig;
+import org.cache2k.benchmark.impl2015.CacheSource;
+import org.cache2k.benchmark.impl2015.ClockProPlusCache;
+import org.cache2k.benchmark.impl2015.InternalCacheInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.results.AggregationPolicy;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.cache2k.benchmark.jmh.MiscResultRecorderProfiler.*;
+
+/**
+ * All entries expire after a short time and get refreshed in the background by
+ * a slow source. Compares the platform thread pool for refresh with virtual threads.
+ * When a refresh cannot be submitted, the entry expires and the next read
+ * waits for the source, which shows in the throughput and in the
+ * secondary results.
+ *
+ * @author Jens Wilke
+ */
+@State(Scope.Benchmark)
+public class RefreshBenchmark {
+
+  @Param({"false", "true"})
+  public boolean virtualThreads;
+
+  @Param({"10000"})
+  public int entryCount;
+
+  @Param({"1000"})
+  public int expiryMillis;
+
+  @Param({"20"})
+  public int sourceLatencyMillis;
+
+  BaseCache<?, Integer, Integer> cache;
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+    Random random = new Random();
+  }
+
+  @Setup(Level.Iteration)
+  public void setup() {
+    final long _latencyNanos = TimeUnit.MILLISECONDS.toNanos(sourceLatencyMillis);
+    ClockProPlusCache<Integer, Integer> c = new ClockProPlusCache<Integer, Integer>();
+    CacheConfig<Integer, Integer> cc = new CacheConfig<Integer, Integer>();
+    cc.setName("refresh");
+    cc.setEntryCapacity(entryCount);
+    cc.setExpiryMillis(expiryMillis);
+    cc.setBackgroundRefresh(true);
+    cc.setRefreshOnVirtualThreads(virtualThreads);
+    c.setCacheConfig(cc);
+    c.setSource(new CacheSource<Integer, Integer>() {
+      @Override
+      public Integer get(Integer key) {
+        LockSupport.parkNanos(_latencyNanos);
+        return key;
+      }
+    });
+    c.init();
+    for (int i = 0; i < entryCount; i++) {
+      c.put(i, i);
+    }
+    cache = c;
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDown() {
+    InternalCacheInfo _info = cache.getInfo();
+    setResult("refreshCnt", _info.getRefreshCnt(), "refresh", AggregationPolicy.AVG);
+    setResult("refreshSubmitFailedCnt", _info.getRefreshSubmitFailedCnt(), "failure", AggregationPolicy.AVG);
+    setResult("missCnt", _info.getMissCnt(), "miss", AggregationPolicy.AVG);
+    System.out.println();
+    System.out.println(_info);
+    cache.destroy();
+  }
+
+  @Benchmark
+  public Integer get(ThreadState ts) {
+    return cache.get(ts.random.nextInt(entryCount));
+  }
+
+}
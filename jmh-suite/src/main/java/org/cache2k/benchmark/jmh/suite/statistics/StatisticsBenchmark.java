@@ -0,0 +1,109 @@
+package org.cache2k.benchmark.jmh.suite.statistics;
+
+/*
+ * #%L
+ * Cache benchmark suite based on JMH.
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.benchmark.impl2015.BaseCache;
+import org.cache2k.benchmark.impl2015.CacheConfig;
+import org.cache2k.benchmark.impl2015.ClockProPlusCache;
+import org.cache2k.benchmark.impl2015.InternalCacheInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.results.AggregationPolicy;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.cache2k.benchmark.jmh.MiscResultRecorderProfiler.*;
+
+/**
+ * Read and insert on a 2015 implementation with eviction, so most statistics
+ * counters are incremented. Each thread counts its puts itself. After the iteration
+ * the put counter of the cache is compared with the sum, a deviation means
+ * lost updates.
+ *
+ * @author Jens Wilke
+ * @see StatisticsDisabledBenchmark
+ */
+@State(Scope.Benchmark)
+public class StatisticsBenchmark {
+
+  @Param({"100000"})
+  public int entryCount;
+
+  BaseCache<?, Integer, Integer> cache;
+  List<ThreadState> threads = new CopyOnWriteArrayList<ThreadState>();
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+    Random random = new Random();
+    long putCnt;
+
+    @Setup(Level.Iteration)
+    public void setup(StatisticsBenchmark b) {
+      putCnt = 0;
+      b.threads.add(this);
+    }
+  }
+
+  @Setup(Level.Iteration)
+  public void setup() {
+    threads.clear();
+    ClockProPlusCache<Integer, Integer> c = new ClockProPlusCache<Integer, Integer>();
+    CacheConfig<Integer, Integer> cc = new CacheConfig<Integer, Integer>();
+    cc.setName("statistics");
+    cc.setEntryCapacity(entryCount);
+    cc.setEternal(true);
+    c.setCacheConfig(cc);
+    c.init();
+    cache = c;
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDown() {
+    long _expectedPutCnt = 0;
+    for (ThreadState ts : threads) {
+      _expectedPutCnt += ts.putCnt;
+    }
+    InternalCacheInfo _info = cache.getInfo();
+    setResult("expectedPutCnt", _expectedPutCnt, "put", AggregationPolicy.AVG);
+    setResult("putCnt", _info.getPutCnt(), "put", AggregationPolicy.AVG);
+    setResult("putCntDeviation", _expectedPutCnt - _info.getPutCnt(), "put", AggregationPolicy.AVG);
+    cache.destroy();
+  }
+
+  @Benchmark
+  public Integer getOrPut(ThreadState ts) {
+    Integer k = ts.random.nextInt(entryCount * 2);
+    Integer v = cache.peek(k);
+    if (v == null) {
+      cache.put(k, k);
+      ts.putCnt++;
+    }
+    return v;
+  }
+
+}
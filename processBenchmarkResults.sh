@@ -222,7 +222,7 @@ rm -rf $RESULT/*.dat;
 rm -rf $RESULT/*.svg;
 rm -rf $RESULT/*.plot;
 
-header="Size OPT LRU S/LRU CLOCK Cache2k ARC CAR S/Lirs EHCache2 Guava Caffeine S/Mru S/Lfu S/WTLfu S/WTLfu90 RAND";
+header="Size OPT LRU S/LRU CLOCK Cache2k ARC CAR SIEVE S3-FIFO LIRS W-TinyLFU SAMPLED PCLOCK S/Lirs EHCache2 Guava Caffeine S/Mru S/Lfu S/WTLfu S/WTLfu90 RAND";
 impls="org.cache2k.benchmark.thirdparty.CaffeineSimulatorOptBenchmark \
 	org.cache2k.benchmark.LruCacheBenchmark \
         org.cache2k.benchmark.thirdparty.CaffeineSimulatorLruBenchmark \
@@ -230,6 +230,12 @@ impls="org.cache2k.benchmark.thirdparty.CaffeineSimulatorOptBenchmark \
         org.cache2k.benchmark.ClockProPlusCacheBenchmark \
         org.cache2k.benchmark.ArcCacheBenchmark \
         org.cache2k.benchmark.CarCacheBenchmark \
+        org.cache2k.benchmark.SieveCacheBenchmark \
+        org.cache2k.benchmark.S3FifoCacheBenchmark \
+        org.cache2k.benchmark.LirsCacheBenchmark \
+        org.cache2k.benchmark.WTinyLfuCacheBenchmark \
+        org.cache2k.benchmark.SampledCacheBenchmark \
+        org.cache2k.benchmark.PartitionedClockCacheBenchmark \
         org.cache2k.benchmark.thirdparty.CaffeineSimulatorLirsBenchmark \
         org.cache2k.benchmark.thirdparty.EhCache2Benchmark \
         org.cache2k.benchmark.thirdparty.GuavaCacheBenchmark \
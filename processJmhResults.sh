@@ -327,6 +327,57 @@ json | \
 plot $f "${name} / Used Heap Memory" "MB" "threads - hit rate"
 }
 
+# plotHeapBound
+#
+# Used heap above the baseline in percent of the heap bound, for the runs with
+# the capacity bounded by heap bytes. 100 means the estimate is exact.
+#
+plotHeapBound() {
+f=$RESULT/heapBound.dat
+(
+echo "benchmark-bound CLOCK-Pro+ LRU ARC LIRS W-TinyLFU";
+json | \
+    jq -r '.[] | select (.params.maximumHeapBytes != null and .params.maximumHeapBytes != "0") | [ (.benchmark | split(".") | .[-2] | sub("Benchmark$"; "")) + "-" + ((.params.maximumHeapBytes | tonumber) / 1000000 | tostring) + "MB", .params.cacheFactory, .["secondaryMetrics"]["+forced-gc-mem.used.targetPercent"]["score"] ] | @csv' | \
+    sort | tr -d '"' | \
+    pivot \
+          "org.cache2k.benchmark.Cache2k2015Factory" \
+          "org.cache2k.benchmark.Cache2k2015LruFactory" \
+          "org.cache2k.benchmark.Cache2k2015ArcFactory" \
+          "org.cache2k.benchmark.Cache2k2015LirsFactory" \
+          "org.cache2k.benchmark.Cache2k2015WTinyLfuFactory" \
+          | sort | \
+    stripEmpty
+) > $f
+plot $f "Used heap in percent of the heap bound" "percent" "benchmark - heap bound"
+}
+
+# plotOpenLoop <percentile>
+#
+# Response time percentile in microseconds against the arrival rate of the
+# FixedRateBenchmark for each cache. Runs that were stopped, because the operations
+# lagged too much behind the schedule, are left out, so the curve ends at the saturation.
+#
+plotOpenLoop() {
+local percentile="$1";
+f=$RESULT/fixedRateResponseTime-$percentile.dat
+(
+echo "rate CHM cache2k cache2k-2015 Caffeine Guava EhCache2";
+json | \
+    jq -r ".[] | select (.benchmark | contains (\"FixedRateBenchmark\") ) | select (.[\"secondaryMetrics\"][\"+misc.overloaded\"][\"score\"] == 0) | [ .params.rate, .params.cacheFactory, .[\"secondaryMetrics\"][\"+misc.responseTime.$percentile\"][\"score\"] / 1000 ] | @csv" | \
+    tr -d '"' | sort -t, -k1,1n -k2,2 | \
+    pivot \
+          "org.cache2k.benchmark.ConcurrentHashMapFactory" \
+          "org.cache2k.benchmark.Cache2kFactory" \
+          "org.cache2k.benchmark.Cache2k2015Factory" \
+          "org.cache2k.benchmark.thirdparty.CaffeineCacheFactory" \
+          "org.cache2k.benchmark.thirdparty.GuavaCacheFactory" \
+          "org.cache2k.benchmark.thirdparty.EhCache2Factory" \
+          | \
+    stripEmpty
+) > $f
+plot $f "FixedRateBenchmark / Response time $percentile" "microseconds" "operations per second"
+}
+
 plotOps() {
 name="$1";
 f=$RESULT/${name}.dat
@@ -367,6 +418,18 @@ json | \
 ) > $f
 plot $f "PopulateParallelOnceBenchmark multiple threads" "runtime in seconds" "threads - cache size (entries)"
 
+f=$RESULT/populateParallelOnceCache2k2015.dat
+(
+echo "threads-size cache2k-2015 cache2k-2015+expiry";
+json | \
+    jq -r '.[] |  select (.benchmark | contains ("PopulateParallelOnceBenchmark") ) | [ (.threads | tostring) + "-" + .params.size, .params.cacheFactory, .primaryMetric.score ] | @csv'  | \
+    sort | tr -d '"' | \
+    pivot "org.cache2k.benchmark.Cache2k2015Factory" \
+          "org.cache2k.benchmark.Cache2k2015WithExpiryFactory" | sort | \
+    stripEmpty
+) > $f
+plot $f "PopulateParallelOnceBenchmark 2015 implementation with expiry" "runtime in seconds" "threads - cache size (entries)"
+
 f=$RESULT/populateParallelOnce.dat
 (
 echo "threads-size CHM cache2k Caffeine Guava EHCache2 tCache";
@@ -485,6 +548,12 @@ for I in NeverHitBenchmark MultiRandomAccessBenchmark; do
   plotEffectiveHitrate $I;
 done
 
+plotHeapBound;
+
+for p in p50 p99 p99.9; do
+  plotOpenLoop $p;
+done
+
 }
 
 processCommandLine "$@";
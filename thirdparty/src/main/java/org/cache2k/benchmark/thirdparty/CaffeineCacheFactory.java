@@ -26,6 +26,8 @@ import com.github.benmanes.caffeine.cache.LoadingCache;
 import org.cache2k.benchmark.BenchmarkCache;
 import org.cache2k.benchmark.BenchmarkCacheFactory;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
@@ -91,6 +93,16 @@ public class CaffeineCacheFactory extends BenchmarkCacheFactory {
       cache.put(key, value);
     }
 
+    @Override
+    public Map<Integer, Integer> getAll(final Collection<Integer> keys) {
+      return cache.getAllPresent(keys);
+    }
+
+    @Override
+    public void putAll(final Map<Integer, Integer> m) {
+      cache.putAll(m);
+    }
+
     @Override
     public void destroy() {
       cache.cleanUp();
@@ -29,6 +29,12 @@ import net.sf.ehcache.store.MemoryStoreEvictionPolicy;
 import org.cache2k.benchmark.BenchmarkCache;
 import org.cache2k.benchmark.BenchmarkCacheFactory;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Factory for EHCache2
  *
@@ -101,6 +107,26 @@ public class EhCache2Factory extends BenchmarkCacheFactory {
       cache.put(new Element(key, value));
     }
 
+    @Override
+    public Map<Integer, Integer> getAll(final Collection<Integer> keys) {
+      Map<Integer, Integer> _result = new HashMap<Integer, Integer>();
+      for (Map.Entry<Object, Element> e : cache.getAll(keys).entrySet()) {
+        if (e.getValue() != null) {
+          _result.put((Integer) e.getKey(), (Integer) e.getValue().getObjectValue());
+        }
+      }
+      return _result;
+    }
+
+    @Override
+    public void putAll(final Map<Integer, Integer> m) {
+      List<Element> _elements = new ArrayList<Element>(m.size());
+      for (Map.Entry<Integer, Integer> e : m.entrySet()) {
+        _elements.add(new Element(e.getKey(), e.getValue()));
+      }
+      cache.putAll(_elements);
+    }
+
     @Override
     public void destroy() {
       CacheManager.getInstance().removeCache("testCache");
@@ -27,6 +27,8 @@ import com.google.common.cache.LoadingCache;
 import org.cache2k.benchmark.BenchmarkCache;
 import org.cache2k.benchmark.BenchmarkCacheFactory;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -70,6 +72,16 @@ public class GuavaCacheFactory extends BenchmarkCacheFactory {
       cache.put(key, value);
     }
 
+    @Override
+    public Map<Integer, Integer> getAll(final Collection<Integer> keys) {
+      return cache.getAllPresent(keys);
+    }
+
+    @Override
+    public void putAll(final Map<Integer, Integer> m) {
+      cache.putAll(m);
+    }
+
     @Override
     public void destroy() {
       cache.cleanUp();
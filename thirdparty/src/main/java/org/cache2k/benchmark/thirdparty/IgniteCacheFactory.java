@@ -6,6 +6,11 @@ import org.apache.ignite.Ignition;
 import org.cache2k.benchmark.BenchmarkCache;
 import org.cache2k.benchmark.BenchmarkCacheFactory;
 
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * Created by sbt-morozov-kv on 27.09.2016.
  */
@@ -47,6 +52,16 @@ public class IgniteCacheFactory extends BenchmarkCacheFactory {
             cache.put(key, value);
         }
 
+        @Override
+        public Map<Integer, Integer> getAll(final Collection<Integer> keys) {
+            return cache.getAll(keys instanceof Set ? (Set<Integer>) keys : new HashSet<Integer>(keys));
+        }
+
+        @Override
+        public void putAll(final Map<Integer, Integer> m) {
+            cache.putAll(m);
+        }
+
         @Override
         public void destroy() {
             cache.destroy();
@@ -28,6 +28,7 @@ import org.infinispan.manager.DefaultCacheManager;
 import org.infinispan.manager.EmbeddedCacheManager;
 import org.infinispan.Cache;
 
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -94,6 +95,14 @@ public class InfinispanCacheFactory extends BenchmarkCacheFactory {
       cache.put(key, value);
     }
 
+    /**
+     * Infinispan 7.1 has no bulk get, so only the put is a bulk operation.
+     */
+    @Override
+    public void putAll(Map<Integer, Integer> m) {
+      cache.putAll(m);
+    }
+
     @Override
     public void destroy() {
       cache.getCacheManager().removeCache(CACHE_NAME);
@@ -20,6 +20,10 @@ package org.cache2k.benchmark;
  * #L%
  */
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Interface to a cache implementation we use for benchmarking.
  *
@@ -41,6 +45,32 @@ public abstract class BenchmarkCache<K, T> {
     throw new UnsupportedOperationException();
   }
 
+  /**
+   * Return the elements present in the cache, keys not present are not contained in the
+   * returned map. The default implementation calls {@link #getIfPresent} for each key,
+   * adapters override this with the bulk operation of the cache.
+   */
+  public Map<K, T> getAll(Collection<K> keys) {
+    Map<K, T> _result = new HashMap<K, T>();
+    for (K key : keys) {
+      T v = getIfPresent(key);
+      if (v != null) {
+        _result.put(key, v);
+      }
+    }
+    return _result;
+  }
+
+  /**
+   * Puts all entries in the cache. The default implementation calls {@link #put}
+   * for each entry, adapters override this with the bulk operation of the cache.
+   */
+  public void putAll(Map<K, T> m) {
+    for (Map.Entry<K, T> e : m.entrySet()) {
+      put(e.getKey(), e.getValue());
+    }
+  }
+
   /** free up all resources of the cache */
   public abstract void destroy();
 
@@ -27,6 +27,8 @@ public abstract class BenchmarkCacheFactory {
 
   protected boolean withExpiry;
 
+  protected long maximumHeapBytes;
+
   public abstract BenchmarkCache<Integer, Integer> create(int _maxElements);
 
   public BenchmarkCacheFactory withExpiry(boolean v) {
@@ -34,4 +36,14 @@ public abstract class BenchmarkCacheFactory {
     return this;
   }
 
+  /**
+   * Bound the cache by the estimated heap bytes of the entries. The element count
+   * passed to {@link #create(int)} stays the upper bound of the entries. Only supported
+   * by the factories of the 2015 implementation, other factories ignore it.
+   */
+  public BenchmarkCacheFactory withMaximumHeapBytes(long v) {
+    maximumHeapBytes = v;
+    return this;
+  }
+
 }
@@ -26,6 +26,8 @@ import org.cache2k.benchmark.impl2015.CacheConfig;
 import org.cache2k.benchmark.impl2015.ClockProPlus64Cache;
 import org.cache2k.benchmark.impl2015.ClockProPlusCache;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -36,6 +38,12 @@ public class Cache2k2015Factory extends BenchmarkCacheFactory {
   Class<?> implementation =  "64".equals(System.getProperty("sun.arch.data.model"))
           ? ClockProPlus64Cache.class : ClockProPlusCache.class;
 
+  boolean admissionFilter = false;
+
+  boolean backgroundEviction = false;
+
+  boolean lazyExpiry = false;
+
   AtomicInteger counter = new AtomicInteger();
 
   @Override
@@ -51,8 +59,12 @@ public class Cache2k2015Factory extends BenchmarkCacheFactory {
     cc.setName("testCache-" + counter.incrementAndGet());
     cc.setExpirySeconds(withExpiry ? 5 * 60 : Integer.MAX_VALUE);
     cc.setEntryCapacity(_maxElements);
+    cc.setMaximumHeapBytes(maximumHeapBytes);
     cc.setBackgroundRefresh(false);
     cc.setKeepDataAfterExpired(false);
+    cc.setAdmissionFilter(admissionFilter);
+    cc.setBackgroundEviction(backgroundEviction);
+    cc.setLazyExpiry(lazyExpiry);
     bc.setCacheConfig(cc);
     bc.init();
     return new BenchmarkCache<Integer, Integer>() {
@@ -72,6 +84,16 @@ public class Cache2k2015Factory extends BenchmarkCacheFactory {
         c.put(key, value);
       }
 
+      @Override
+      public Map<Integer, Integer> getAll(Collection<Integer> keys) {
+        return c.peekAll(keys);
+      }
+
+      @Override
+      public void putAll(Map<Integer, Integer> m) {
+        c.putAll(m);
+      }
+
       @Override
       public void destroy() {
         c.destroy();
@@ -101,6 +123,11 @@ public class Cache2k2015Factory extends BenchmarkCacheFactory {
     return this;
   }
 
+  public Cache2k2015Factory admissionFilter(boolean f) {
+    admissionFilter = f;
+    return this;
+  }
+
   /**
    * @author Jens Wilke; created: 2013-06-24
    */
@@ -23,6 +23,10 @@ package org.cache2k.benchmark;
 import org.cache2k.Cache;
 import org.cache2k.Cache2kBuilder;
 
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -68,6 +72,16 @@ public class Cache2kFactory extends BenchmarkCacheFactory {
         c.put(key, value);
       }
 
+      @Override
+      public Map<Integer, Integer> getAll(Collection<Integer> keys) {
+        return c.peekAll(keys instanceof Set ? (Set<Integer>) keys : new HashSet<Integer>(keys));
+      }
+
+      @Override
+      public void putAll(Map<Integer, Integer> m) {
+        c.putAll(m);
+      }
+
       @Override
       public void destroy() {
         c.destroy();
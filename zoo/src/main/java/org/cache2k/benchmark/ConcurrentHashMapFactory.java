@@ -62,6 +62,11 @@ public class ConcurrentHashMapFactory extends BenchmarkCacheFactory {
       return map.get(key);
     }
 
+    @Override
+    public void putAll(Map<Integer, Integer> m) {
+      map.putAll(m);
+    }
+
     @Override
     public int getCacheSize() {
       return map.size();
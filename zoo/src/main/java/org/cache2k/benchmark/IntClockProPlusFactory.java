@@ -0,0 +1,119 @@
+package org.cache2k.benchmark;
+
+/*
+ * #%L
+ * zoo
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.benchmark.impl2015.IntIntClockProPlusCache;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * CLOCK-Pro+ with primitive int keys and values stored in parallel arrays.
+ * {@link Integer#MIN_VALUE} is used to signal a miss and cannot be stored.
+ *
+ * @author Jens Wilke
+ */
+public class IntClockProPlusFactory extends BenchmarkCacheFactory {
+
+  static final int MISSING = Integer.MIN_VALUE;
+
+  @Override
+  public BenchmarkCache<Integer, Integer> create(final int _maxElements) {
+    final IntIntClockProPlusCache c = new IntIntClockProPlusCache(_maxElements);
+    return new BenchmarkCache<Integer, Integer>() {
+
+      @Override
+      public int getCacheSize() {
+        return _maxElements;
+      }
+
+      @Override
+      public Integer getIfPresent(Integer key) {
+        int v = c.peek(key, MISSING);
+        return v == MISSING ? null : v;
+      }
+
+      @Override
+      public void put(Integer key, Integer value) {
+        if (value == MISSING) {
+          throw new IllegalArgumentException("value not supported: " + value);
+        }
+        c.put(key, value);
+      }
+
+      @Override
+      public Map<Integer, Integer> getAll(Collection<Integer> keys) {
+        int[] _keys = new int[keys.size()];
+        int i = 0;
+        for (Integer k : keys) {
+          _keys[i++] = k;
+        }
+        int[] _values = new int[_keys.length];
+        c.peekAll(_keys, _values, MISSING);
+        Map<Integer, Integer> _result = new HashMap<Integer, Integer>();
+        for (i = 0; i < _keys.length; i++) {
+          if (_values[i] != MISSING) {
+            _result.put(_keys[i], _values[i]);
+          }
+        }
+        return _result;
+      }
+
+      @Override
+      public void putAll(Map<Integer, Integer> m) {
+        int[] _keys = new int[m.size()];
+        int[] _values = new int[_keys.length];
+        int i = 0;
+        for (Map.Entry<Integer, Integer> e : m.entrySet()) {
+          int v = e.getValue();
+          if (v == MISSING) {
+            throw new IllegalArgumentException("value not supported: " + v);
+          }
+          _keys[i] = e.getKey();
+          _values[i++] = v;
+        }
+        c.putAll(_keys, _values);
+      }
+
+      @Override
+      public void destroy() {
+        c.clear();
+      }
+
+      @Override
+      public String getStatistics() {
+        return c.toString();
+      }
+
+      @Override
+      public void checkIntegrity() {
+        c.checkIntegrity();
+      }
+
+      @Override
+      public Object getOriginalCache() {
+        return c;
+      }
+    };
+  }
+
+}
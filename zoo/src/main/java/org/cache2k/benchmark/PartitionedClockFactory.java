@@ -0,0 +1,76 @@
+package org.cache2k.benchmark;
+
+/*
+ * #%L
+ * zoo
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.benchmark.impl2015.PartitionedClockCache;
+
+/**
+ * CLOCK with a hand per region of the slot array, threads evict concurrently
+ * without a structure lock. {@link BenchmarkCache#getAll} and {@link BenchmarkCache#putAll}
+ * keep the per-key default, since there is no lock that a batch could acquire once.
+ *
+ * @author Jens Wilke
+ */
+public class PartitionedClockFactory extends BenchmarkCacheFactory {
+
+  @Override
+  public BenchmarkCache<Integer, Integer> create(final int _maxElements) {
+    final PartitionedClockCache<Integer, Integer> c = new PartitionedClockCache<Integer, Integer>(_maxElements);
+    return new BenchmarkCache<Integer, Integer>() {
+
+      @Override
+      public int getCacheSize() {
+        return _maxElements;
+      }
+
+      @Override
+      public Integer getIfPresent(Integer key) {
+        return c.peek(key);
+      }
+
+      @Override
+      public void put(Integer key, Integer value) {
+        c.put(key, value);
+      }
+
+      @Override
+      public void destroy() {
+        c.clear();
+      }
+
+      @Override
+      public String getStatistics() {
+        return c.toString();
+      }
+
+      @Override
+      public void checkIntegrity() {
+        c.checkIntegrity();
+      }
+
+      @Override
+      public Object getOriginalCache() {
+        return c;
+      }
+    };
+  }
+
+}
@@ -0,0 +1,149 @@
+package org.cache2k.benchmark.impl2015;
+
+/*
+ * #%L
+ * zoo
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.benchmark.impl2015.util.TunableConstants;
+import org.cache2k.benchmark.impl2015.util.TunableFactory;
+
+/**
+ * {@link ClockProPlusCache} with an adaptive size of the hot clock, similar to the
+ * adaptive cold target of CLOCK-Pro. The test period of an entry is its time in the
+ * cold clock plus its time in the ghost history:
+ *
+ * <ul>
+ *   <li>A ghost hit shows that the test period was too short, the hot target shrinks</li>
+ *   <li>A ghost dropped from the history without a hit, passed the test period without
+ *       access, the hot target grows</li>
+ *   <li>A hit on a cold entry is a success of the test period, too</li>
+ * </ul>
+ *
+ * @author Jens Wilke
+ */
+public class AdaptiveClockProPlusCache<K, T> extends ClockProPlusCache<K, T> {
+
+  private static final Tunable TUNABLE_ADAPTIVE = TunableFactory.get(Tunable.class);
+
+  private int hotMaxLowBound;
+  private int hotMaxHighBound;
+
+  private long adaptGhostHitCnt;
+  private long adaptColdHitCnt;
+  private long adaptGhostDropCnt;
+  private long hotMaxIncreaseCnt;
+  private long hotMaxDecreaseCnt;
+  private int hotMaxLowest;
+  private int hotMaxHighest;
+
+  @Override
+  protected void initializeHeapCache() {
+    super.initializeHeapCache();
+    hotMaxLowBound = (int) ((long) maxSize * TUNABLE_ADAPTIVE.hotMaxLowBoundPercentage / 100);
+    hotMaxHighBound = (int) ((long) maxSize * TUNABLE_ADAPTIVE.hotMaxHighBoundPercentage / 100);
+    hotMax = Math.max(hotMaxLowBound, Math.min(hotMaxHighBound, hotMax));
+    hotMaxLowest = hotMaxHighest = hotMax;
+  }
+
+  /**
+   * Keep the adapted hot size in proportion to the capacity.
+   */
+  @Override
+  protected void maxSizeChanged(int _previousMaxSize) {
+    int _hotMax = (int) ((long) hotMax * maxSize / _previousMaxSize);
+    super.maxSizeChanged(_previousMaxSize);
+    hotMaxLowBound = (int) ((long) maxSize * TUNABLE_ADAPTIVE.hotMaxLowBoundPercentage / 100);
+    hotMaxHighBound = (int) ((long) maxSize * TUNABLE_ADAPTIVE.hotMaxHighBoundPercentage / 100);
+    hotMax = Math.max(hotMaxLowBound, Math.min(hotMaxHighBound, _hotMax));
+  }
+
+  @Override
+  protected Entry checkForGhost(K key, int hc) {
+    Entry e = super.checkForGhost(key, hc);
+    if (e != null) {
+      adaptGhostHitCnt++;
+      changeHotMax(-TUNABLE_ADAPTIVE.ghostHitStep);
+    }
+    return e;
+  }
+
+  @Override
+  protected void ghostDropped() {
+    adaptGhostDropCnt++;
+    changeHotMax(TUNABLE_ADAPTIVE.ghostDropStep);
+  }
+
+  @Override
+  protected Entry findEvictionCandidate() {
+    int _hotSize = hotSize;
+    long _hotRunCnt = hotRunCnt;
+    Entry e = super.findEvictionCandidate();
+    int _promoted = hotSize - _hotSize + (int) (hotRunCnt - _hotRunCnt);
+    if (_promoted > 0) {
+      adaptColdHitCnt += _promoted;
+      changeHotMax(-TUNABLE_ADAPTIVE.coldHitStep * _promoted);
+    }
+    return e;
+  }
+
+  private void changeHotMax(int _delta) {
+    int v = Math.max(hotMaxLowBound, Math.min(hotMaxHighBound, hotMax + _delta));
+    if (v > hotMax) {
+      hotMaxIncreaseCnt++;
+      hotMaxHighest = Math.max(hotMaxHighest, v);
+    } else if (v < hotMax) {
+      hotMaxDecreaseCnt++;
+      hotMaxLowest = Math.min(hotMaxLowest, v);
+    }
+    hotMax = v;
+  }
+
+  @Override
+  protected String getExtraStatistics() {
+    return super.getExtraStatistics() +
+      ", hotMaxAvg=" + (coldRunCnt > 0 ? hotSizeSum / coldRunCnt : hotMax) +
+      ", hotMaxLowest=" + hotMaxLowest +
+      ", hotMaxHighest=" + hotMaxHighest +
+      ", hotMaxIncreaseCnt=" + hotMaxIncreaseCnt +
+      ", hotMaxDecreaseCnt=" + hotMaxDecreaseCnt +
+      ", adaptGhostHitCnt=" + adaptGhostHitCnt +
+      ", adaptGhostDropCnt=" + adaptGhostDropCnt +
+      ", adaptColdHitCnt=" + adaptColdHitCnt;
+  }
+
+  public static class Tunable extends TunableConstants {
+
+    /** Lower limit of the hot clock size in percent of the cache size */
+    public int hotMaxLowBoundPercentage = 85;
+
+    /** Upper limit of the hot clock size in percent of the cache size */
+    public int hotMaxHighBoundPercentage = 97;
+
+    /** Entries the hot clock shrinks on a ghost hit */
+    public int ghostHitStep = 8;
+
+    /** Entries the hot clock grows when a ghost is dropped without a hit */
+    public int ghostDropStep = 1;
+
+    /** Entries the hot clock shrinks for each cold entry with hits promoted to hot */
+    public int coldHitStep = 1;
+
+  }
+
+}
@@ -39,25 +39,23 @@ package org.cache2k.benchmark.impl2015;
  * @author Jens Wilke
  */
 @SuppressWarnings("unchecked")
-public class ArcCache<K, T> extends BaseCache<ArcCache.Entry, K, T> {
+public class ArcCache<K, T> extends BufferedHitCache<Entry, K, T> {
 
   int arcP = 0;
 
-  Hash<Entry> b1HashCtrl;
-  Entry[] b1Hash;
+  /** Ghost history of entries evicted from T1 */
+  GhostDirectory b1;
 
-  Hash<Entry> b2HashCtrl;
-  Entry[] b2Hash;
+  /** Ghost history of entries evicted from T2 */
+  GhostDirectory b2;
 
   /** Statistics */
   long t2Hit;
   long t1Hit;
 
   int t1Size = 0;
-  Entry<K,T> t2Head;
-  Entry<K,T> t1Head;
-  Entry<K,T> b1Head;
-  Entry<K,T> b2Head;
+  Entry t2Head;
+  Entry t1Head;
 
   boolean b2HitPreferenceForEviction;
 
@@ -66,13 +64,19 @@ public class ArcCache<K, T> extends BaseCache<ArcCache.Entry, K, T> {
     return t2Hit + t1Hit;
   }
 
+  /**
+   * Buffered hits may arrive after the entry was removed, ignore them.
+   */
   @Override
   protected void recordHit(Entry e) {
+    if (e.isRemovedFromReplacementList()) {
+      return;
+    }
     moveToFront(t2Head, e);
-    if (e.withinT2) {
+    if (isWithinT2(e)) {
       t2Hit++;
     } else {
-      e.withinT2 = true;
+      e.hitCnt = 1;
       t1Hit++;
       t1Size--;
     }
@@ -87,25 +91,19 @@ public class ArcCache<K, T> extends BaseCache<ArcCache.Entry, K, T> {
   /** Emtpy, done by replace / checkForGhost. */
 
   @Override
-  protected Entry<K, T> newEntry() {
-    return new Entry<K, T>();
+  protected Entry newEntry() {
+    return newEntryOfConfiguredType();
   }
 
   @Override
   protected Entry checkForGhost(K key, int hc) {
-    Entry e = b1HashCtrl.remove(b1Hash, key, hc);
-    if (e != null) {
-      removeFromList(e);
+    if (b1.remove(hc)) {
       b1HitAdaption();
-      insertT2(e);
-      return e;
+      return insertT2(key, hc);
     }
-    e = b2HashCtrl.remove(b2Hash, key, hc);
-    if (e != null) {
-      removeFromList(e);
+    if (b2.remove(hc)) {
       b2HitAdaption();
-      insertT2(e);
-      return e;
+      return insertT2(key, hc);
     }
     allMissEvictGhosts();
     return null;
@@ -113,74 +111,70 @@ public class ArcCache<K, T> extends BaseCache<ArcCache.Entry, K, T> {
 
   @Override
   protected void removeEntryFromReplacementList(Entry e) {
-    if (!e.withinT2) {
+    if (!isWithinT2(e)) {
       t1Size--;
     }
     super.removeEntryFromReplacementList(e);
-    e.withinT2 = false;
+    e.hitCnt = 0;
+  }
+
+  /**
+   * The hit counter is used as marker, an entry moves to T2 on the first hit.
+   */
+  private static boolean isWithinT2(Entry e) {
+    return e.hitCnt != 0;
   }
 
   private void b1HitAdaption() {
-    int _b1Size = b1HashCtrl.size + 1;
-    int _b2Size = b2HashCtrl.size;
+    int _b1Size = b1.size() + 1;
+    int _b2Size = b2.size();
     int _delta = _b1Size >= _b2Size ? 1 : _b2Size / _b1Size;
     arcP = Math.min(arcP + _delta, maxSize);
     b2HitPreferenceForEviction = false;
   }
 
   private void b2HitAdaption() {
-    int _b1Size = b1HashCtrl.size;
-    int _b2Size = b2HashCtrl.size + 1;
+    int _b1Size = b1.size();
+    int _b2Size = b2.size() + 1;
     int _delta = _b2Size >= _b1Size ? 1 : _b1Size / _b2Size;
     arcP = Math.max(arcP - _delta, 0);
     b2HitPreferenceForEviction = true;
   }
 
-  private void insertT2(Entry<K, T> e) {
-    e.withinT2 = true;
+  private Entry insertT2(K key, int hc) {
+    Entry e = newEntry();
+    e.key = key;
+    e.hashCode = hc;
+    e.hitCnt = 1;
     insertInList(t2Head, e);
+    return e;
   }
 
   int getT2Size() {
     return getLocalSize() - t1Size;
   }
 
-  Entry cloneGhost(Entry e) {
-    Entry e2 = new Entry();
-    e2.hashCode = e.hashCode;
-    e2.key = e.key;
-    return e2;
-  }
-
   /**
    * Called when no entry was hit within b1 or b2. This checks whether we need to
    * remove some entries from the b1 and b2 lists.
    */
   private void allMissEvictGhosts() {
-    if ((t1Size + b1HashCtrl.size) >= maxSize) {
-      if (b1HashCtrl.size > 0) {
-        Entry e = b1Head.prev;
-        removeFromList(e);
-        boolean f = b1HashCtrl.remove(b1Hash, e);
+    if ((t1Size + b1.size()) >= maxSize) {
+      if (b1.size() > 0) {
+        b1.removeOldest();
       } else {
-        if (b2HashCtrl.size >= maxSize) {
-          Entry e = b2Head.prev;
-          removeFromList(e);
-          boolean f = b2HashCtrl.remove(b2Hash, e);
+        if (b2.size() >= maxSize) {
+          b2.removeOldest();
         }
       }
     } else {
-      int _totalCnt = b1HashCtrl.size + b2HashCtrl.size;
+      int _totalCnt = b1.size() + b2.size();
       if (_totalCnt >= maxSize) {
-        if (b2HashCtrl.size == 0) {
-          Entry e = b1Head.prev;
-          removeFromList(e);
-          boolean f = b1HashCtrl.remove(b1Hash, e);
+        if (b2.size() == 0) {
+          b1.removeOldest();
           return;
         }
-        Entry e = b2Head.prev;
-        removeFromList(e);
-        boolean f = b2HashCtrl.remove(b2Hash, e);
+        b2.removeOldest();
       }
     }
   }
@@ -193,7 +187,7 @@ public class ArcCache<K, T> extends BaseCache<ArcCache.Entry, K, T> {
     } else {
       e = replace();
     }
-    if (b1HashCtrl.size + b2HashCtrl.size > maxSize) {
+    if (b1.size() + b2.size() > maxSize) {
       allMissEvictGhosts();
     }
     return e;
@@ -207,18 +201,14 @@ public class ArcCache<K, T> extends BaseCache<ArcCache.Entry, K, T> {
     return replace((t1Size >= arcP && t1Size > 0) || getT2Size() == 0);
   }
 
-  private Entry<K,T> replace(boolean _fromT1) {
-    Entry<K,T> e;
+  private Entry replace(boolean _fromT1) {
+    Entry e;
     if (_fromT1) {
       e = t1Head.prev;
-      Entry<K,T> e2 = cloneGhost(e);
-      insertInList(b1Head, e2);
-      b1Hash = b1HashCtrl.insert(b1Hash, e2);
+      b1.insert(e.hashCode);
     } else {
       e = t2Head.prev;
-      Entry<K,T> e2 = cloneGhost(e);
-      insertInList(b2Head, e2);
-      b2Hash = b2HashCtrl.insert(b2Hash, e2);
+      b2.insert(e.hashCode);
     }
     return e;
   }
@@ -227,14 +217,34 @@ public class ArcCache<K, T> extends BaseCache<ArcCache.Entry, K, T> {
   protected void initializeHeapCache() {
     super.initializeHeapCache();
     t1Size = 0;
-    b1HashCtrl = new Hash<Entry>();
-    b2HashCtrl = new Hash<Entry>();
-    b1Hash = b1HashCtrl.init(Entry.class);
-    b2Hash = b2HashCtrl.init(Entry.class);
-    t1Head = new Entry<K,T>().shortCircuit();
-    t2Head = new Entry<K,T>().shortCircuit();
-    b1Head = new Entry<K,T>().shortCircuit();
-    b2Head = new Entry<K,T>().shortCircuit();
+    b1 = new GhostDirectory(maxSize);
+    b2 = new GhostDirectory(maxSize);
+    t1Head = new Entry().shortCircuit();
+    t2Head = new Entry().shortCircuit();
+  }
+
+  /**
+   * Drop ghosts until both histories together are within the capacity, from B1 if
+   * T1 and B1 exceed the capacity, like in {@link #allMissEvictGhosts()}.
+   */
+  @Override
+  protected void maxSizeChanged(int _previousMaxSize) {
+    arcP = Math.min(arcP, maxSize);
+    while (b1.size() + b2.size() > maxSize) {
+      if (b2.size() == 0 || (b1.size() > 0 && t1Size + b1.size() >= maxSize)) {
+        b1.removeOldest();
+      } else {
+        b2.removeOldest();
+      }
+    }
+    b1 = b1.resize(maxSize);
+    b2 = b2.resize(maxSize);
+  }
+
+  @Override
+  protected long getPolicyHeapBytes() {
+    return super.getPolicyHeapBytes() +
+      HeapSizeEstimator.deepSize(b1, null) + HeapSizeEstimator.deepSize(b2, null);
   }
 
   final int getListEntryCount() {
@@ -243,11 +253,12 @@ public class ArcCache<K, T> extends BaseCache<ArcCache.Entry, K, T> {
 
   @Override
   protected String getExtraStatistics() {
-    return  ", arcP=" + arcP + ", "
+    return  super.getExtraStatistics()
+          + ", arcP=" + arcP + ", "
           + "t1Size=" + t1Size + ", "
           + "t2Size=" + (mainHashCtrl.size - t1Size) + ", "
-          + "b1Size=" + b1HashCtrl.size + ", "
-          + "b2Size=" + b2HashCtrl.size ;
+          + "b1Size=" + b1.size() + ", "
+          + "b2Size=" + b2.size();
   }
 
   @Override
@@ -258,17 +269,10 @@ public class ArcCache<K, T> extends BaseCache<ArcCache.Entry, K, T> {
       .checkEquals("t1Size == getListEntryCount(t1Head)", t1Size, getListEntryCount(t1Head))
       .checkEquals("getSize() - t1Size == getListEntryCount(t2Head)", getLocalSize() - t1Size, getListEntryCount(t2Head))
       .checkLessOrEquals(
-        "b1HashCtrl.size + b2HashCtrl.size <= maxSize",
-        b1HashCtrl.size + b2HashCtrl.size, maxSize)
-      .checkEquals("b1HashCtrl.size == getListEntryCount(b1Head)", b1HashCtrl.size, getListEntryCount(b1Head))
-      .checkEquals("b2HashCtrl.size == getListEntryCount(b2Head)", b2HashCtrl.size, getListEntryCount(b2Head));
-  }
-
-  /** An entry in the hash table */
-  protected static class Entry<K,T> extends org.cache2k.benchmark.impl2015.Entry<Entry<K,T>, K, T> {
-
-    boolean withinT2;
-
+        "b1.size() + b2.size() <= maxSize",
+        b1.size() + b2.size(), maxSize)
+      .checkEquals("b1.size() == b1.calculateIndexCount()", b1.size(), b1.calculateIndexCount())
+      .checkEquals("b2.size() == b2.calculateIndexCount()", b2.size(), b2.calculateIndexCount());
   }
 
 }
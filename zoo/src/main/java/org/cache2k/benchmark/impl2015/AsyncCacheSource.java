@@ -0,0 +1,44 @@
+package org.cache2k.benchmark.impl2015;
+
+/*
+ * #%L
+ * zoo
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Source for the asynchronous loads of {@link Cache#getAsync} and
+ * {@link Cache#getAllAsync}. The methods should only start the load and
+ * return immediately.
+ *
+ * @author Jens Wilke
+ */
+public interface AsyncCacheSource<K, T> {
+
+  CompletableFuture<T> load(K key);
+
+  /**
+   * Load the values for the set of keys in one backend call. A key missing in
+   * the resulting map is treated as a {@code null} value, which is not cached.
+   */
+  CompletableFuture<Map<K, T>> loadAll(Set<K> keys);
+
+}
@@ -0,0 +1,102 @@
+package org.cache2k.benchmark.impl2015;
+
+/*
+ * #%L
+ * zoo
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Evictor thread of a cache with background eviction. Writers only signal when the
+ * cache size went above the capacity, the thread then evicts in a batch until
+ * the size drops below the low watermark.
+ *
+ * @author Jens Wilke
+ * @see BaseCache#evictBatch(int)
+ */
+final class BackgroundEvictor implements Runnable {
+
+  private final BaseCache cache;
+  private final Thread thread;
+  private volatile boolean signalled;
+  private boolean cancelled;
+  private long signalCnt;
+  private long runCnt;
+
+  BackgroundEvictor(BaseCache _cache, String _name) {
+    cache = _cache;
+    thread = new Thread(this, _name);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Request a batch eviction. Cheap if the evictor was signalled already and
+   * did not start yet.
+   */
+  void signal() {
+    if (signalled) {
+      return;
+    }
+    synchronized (this) {
+      if (!signalled) {
+        signalled = true;
+        signalCnt++;
+        notify();
+      }
+    }
+  }
+
+  synchronized void cancel() {
+    cancelled = true;
+    notify();
+  }
+
+  @Override
+  public void run() {
+    for (;;) {
+      synchronized (this) {
+        try {
+          while (!signalled && !cancelled) {
+            wait();
+          }
+        } catch (InterruptedException ex) {
+          return;
+        }
+        if (cancelled) {
+          return;
+        }
+        signalled = false;
+        runCnt++;
+      }
+      try {
+        cache.evictBatch(cache.evictionLowWatermark);
+      } catch (CacheClosedException ex) {
+        return;
+      } catch (Throwable t) {
+        cache.getLog().warn("Exception in background eviction", t);
+      }
+    }
+  }
+
+  synchronized String getStatistics() {
+    return
+      ", evictorSignalCnt=" + signalCnt +
+      ", evictorRunCnt=" + runCnt;
+  }
+
+}
@@ -26,17 +26,23 @@ import org.cache2k.benchmark.impl2015.util.TunableConstants;
 import org.cache2k.benchmark.impl2015.util.TunableFactory;
 import static org.cache2k.benchmark.impl2015.util.Util.*;
 
-import java.lang.reflect.Field;
+import java.io.File;
 import java.security.SecureRandom;
-import java.util.Date;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Random;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Foundation for all cache variants. All common functionality is in here.
@@ -58,6 +64,12 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
 
   protected static final Tunable TUNABLE = TunableFactory.get(Tunable.class);
 
+  /**
+   * Statistics are counted. Static final, so the JIT removes the counting
+   * code if statistics are disabled.
+   */
+  static final boolean STATISTICS = !TUNABLE.disableStatistics;
+
   protected int hashSeed;
 
   {
@@ -73,6 +85,14 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
 
   protected String name;
   protected CacheSourceWithMetaInfo<K, T> source;
+
+  protected AsyncCacheSource<K, T> asyncSource;
+
+  /**
+   * Loads of the asynchronous source in flight. Concurrent misses on the same key
+   * get the same future.
+   */
+  private final ConcurrentHashMap<K, CompletableFuture<T>> asyncLoads = new ConcurrentHashMap<K, CompletableFuture<T>>();
   /** Statistics */
 
   /** Time in milliseconds we keep an element */
@@ -89,98 +109,107 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
   protected long clearedTime = 0;
   protected long startedTime;
   protected long touchedTime;
-  protected int timerCancelCount = 0;
 
   protected long keyMutationCount = 0;
-  protected long putCnt = 0;
-  protected long putButExpiredCnt = 0;
-  protected long putNewEntryCnt = 0;
-  protected long removedCnt = 0;
-  /** Number of entries removed by clear. */
-  protected long clearedCnt = 0;
-  protected long expiredKeptCnt = 0;
-  protected long expiredRemoveCnt = 0;
-  protected long evictedCnt = 0;
-  protected long refreshCnt = 0;
-  protected long suppressedExceptionCnt = 0;
-  protected long fetchExceptionCnt = 0;
-  /* that is a miss, but a hit was already counted. */
-  protected long peekHitNotFreshCnt = 0;
-  /* no heap hash hit */
-  protected long peekMissCnt = 0;
-
-  protected long fetchCnt = 0;
-
-  protected long fetchButHitCnt = 0;
-  protected long bulkGetCnt = 0;
-  protected long fetchMillis = 0;
-  protected long refreshHitCnt = 0;
-  protected long newEntryCnt = 0;
-
   /**
-   * Entries created for processing via invoke or replace, but no operation happened on it.
-   * The entry processor may just have checked the entry state or an exception happened.
+   * Counters of the asynchronous loads, updated without the structure lock.
    */
-  protected long atomicOpNewEntryCnt = 0;
+  protected final LongAdder asyncLoadCnt = new LongAdder();
+  protected final LongAdder asyncBulkLoadCnt = new LongAdder();
+  protected final LongAdder asyncCoalescedCnt = new LongAdder();
+  protected final LongAdder asyncLoadExceptionCnt = new LongAdder();
 
   /**
-   * Loaded from storage, but the entry was not fresh and cannot be returned.
+   * Needed to correct the counter invariants, because during eviction the entry
+   * might be removed from the replacement list, but still in the hash.
    */
-  protected long loadNonFreshCnt = 0;
+  protected int evictedButInHashCnt = 0;
 
   /**
-   * Entry was loaded from storage and fresh.
+   * Statistics counters, one block per thread. Increments are guarded by
+   * {@link #STATISTICS}.
    */
-  protected long loadHitCnt = 0;
+  final CacheStatistics statistics = new CacheStatistics();
 
   /**
-   * Separate counter for loaded entries that needed a fetch.
+   * Structure lock of the cache. Every operation that needs a consistent structure
+   * of the cache or modifies it needs to synchronize on this. Since this is a global
+   * lock, locking on it should be avoided and any operation under the lock should be
+   * quick.
    */
-  protected long loadNonFreshAndFetchedCnt;
+  protected final Object lock = new Object();
+
+  protected CacheRefreshThreadPool refreshPool;
+
+  protected Hash<E> mainHashCtrl;
+  protected E[] mainHash;
 
-  protected long refreshSubmitFailedCnt = 0;
+  protected Hash<E> refreshHashCtrl;
+  protected E[] refreshHash;
+
+  protected TimingWheel<E> timer;
 
   /**
-   * An exception that should not have happened and was not thrown to the
-   * application. Only used for the refresh thread yet.
+   * Removes expired entries if lazy expiry is enabled, or {@code null}. With lazy
+   * expiry there is no {@link #timer}.
    */
-  protected long internalExceptionCnt = 0;
+  protected ExpirySweeper sweeper;
 
   /**
-   * Needed to correct the counter invariants, because during eviction the entry
-   * might be removed from the replacement list, but still in the hash.
+   * The policy creates a {@link TimedEntry} in {@link #newEntry()}, since there is a timer
+   * or a source that needs the last modification time. Set when the heap cache is initialized.
    */
-  protected int evictedButInHashCnt = 0;
+  protected boolean timedEntries;
 
   /**
-   * Storage did not contain the requested entry.
+   * Lazy expiry without a source: the policy creates a {@link ModificationTimeEntry}, which
+   * keeps the modification time for the expiry calculator and the snapshot, but has
+   * no timer links. Otherwise the compact {@link Entry} is used.
    */
-  protected long loadMissCnt = 0;
+  protected boolean modificationTimeEntries;
 
   /**
-   * A newly inserted entry was removed by the eviction without the fetch to complete.
+   * Access frequencies for the admission filter, or {@code null} if disabled.
    */
-  protected long virginEvictCnt = 0;
+  protected FrequencySketch admissionSketch;
 
-  protected long timerEvents = 0;
+  private boolean admissionFilter;
 
   /**
-   * Structure lock of the cache. Every operation that needs a consistent structure
-   * of the cache or modifies it needs to synchronize on this. Since this is a global
-   * lock, locking on it should be avoided and any operation under the lock should be
-   * quick.
+   * Evictor thread if background eviction is enabled, or {@code null}.
    */
-  protected final Object lock = new Object();
+  protected BackgroundEvictor evictor;
 
-  protected CacheRefreshThreadPool refreshPool;
+  private boolean backgroundEviction;
 
-  protected Hash<E> mainHashCtrl;
-  protected E[] mainHash;
+  /**
+   * Snapshot of the content, read at {@link #init()} and written on {@link #close()},
+   * or {@code null}. See {@link CacheSnapshot}.
+   */
+  private File snapshotFile;
+  private SnapshotSerializer<K> snapshotKeySerializer;
+  private SnapshotSerializer<T> snapshotValueSerializer;
 
-  protected Hash<E> refreshHashCtrl;
-  protected E[] refreshHash;
+  /**
+   * Estimates the entry sizes if the capacity is bounded by heap bytes, otherwise
+   * {@code null}. With the heap bound {@link #maxSize} follows the estimate.
+   */
+  protected HeapSizeEstimator heapSizeEstimator;
+
+  /** Sample count of the estimator when the entry limit was calculated */
+  private long heapBoundSampleCnt;
 
-  protected Timer timer;
+  /** The evictor thread evicts until the size is at or below the low watermark */
+  int evictionLowWatermark;
+
+  /** Above the high watermark writers do the eviction to limit the overshoot */
+  int evictionHighWatermark;
+
+  /**
+   * Entry inserted last when the cache was full and that needs to compete
+   * with the eviction candidate.
+   */
+  private E admissionCandidate;
 
   protected boolean shutdownInitiated = false;
 
@@ -203,6 +232,7 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
   private static final int KEEP_AFTER_EXPIRED = 2;
   private static final int SUPPRESS_EXCEPTIONS = 4;
   private static final int NULL_VALUE_SUPPORT = 8;
+  private static final int LAZY_EXPIRY = 16;
 
   protected final boolean hasSharpTimeout() {
     return (featureBits & SHARP_TIMEOUT_FEATURE) > 0;
@@ -212,6 +242,10 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
     return (featureBits & KEEP_AFTER_EXPIRED) > 0;
   }
 
+  protected final boolean hasLazyExpiry() {
+    return (featureBits & LAZY_EXPIRY) > 0;
+  }
+
   protected final boolean hasNullValueSupport() {
     return (featureBits & NULL_VALUE_SUPPORT) > 0;
   }
@@ -261,7 +295,7 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
       maxSize = c.getHeapEntryCapacity();
     }
     if (c.isBackgroundRefresh()) {
-      refreshPool = CacheRefreshThreadPool.getInstance();
+      refreshPool = CacheRefreshThreadPool.getInstance(c.isRefreshOnVirtualThreads());
     }
     long _expiryMillis  = c.getExpiryMillis();
     if (_expiryMillis == Long.MAX_VALUE || _expiryMillis < 0) {
@@ -282,6 +316,21 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
     setFeatureBit(KEEP_AFTER_EXPIRED, c.isKeepDataAfterExpired());
     setFeatureBit(SHARP_TIMEOUT_FEATURE, c.isSharpExpiry());
     setFeatureBit(SUPPRESS_EXCEPTIONS, c.isSuppressExceptions());
+    setFeatureBit(LAZY_EXPIRY, c.isLazyExpiry());
+    if (c.isLazyExpiry() && c.isBackgroundRefresh()) {
+      throw new CacheMisconfigurationException("lazy expiry, but background refresh needs the timer");
+    }
+    admissionFilter = c.isAdmissionFilter();
+    backgroundEviction = c.isBackgroundEviction();
+    snapshotFile = c.getSnapshotFile();
+    snapshotKeySerializer = c.getSnapshotKeySerializer();
+    snapshotValueSerializer = c.getSnapshotValueSerializer();
+    if (snapshotFile != null && (snapshotKeySerializer == null || snapshotValueSerializer == null)) {
+      throw new CacheMisconfigurationException("snapshot file, but no key or value serializer");
+    }
+    if (c.getMaximumHeapBytes() > 0) {
+      heapSizeEstimator = new HeapSizeEstimator(c.getMaximumHeapBytes(), maxSize);
+    }
     /*
     if (c.isPersistent()) {
       storage = new PassingStorageAdapter();
@@ -289,6 +338,10 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
     -*/
   }
 
+  public void setAsyncSource(AsyncCacheSource<K, T> _source) {
+    asyncSource = _source;
+  }
+
   @SuppressWarnings("unused")
   public void setSource(CacheSourceWithMetaInfo<K, T> eg) {
     source = eg;
@@ -345,6 +398,12 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
       }
       initializeHeapCache();
       initTimer();
+      if (snapshotFile != null && snapshotFile.exists()) {
+        restoreSnapshot();
+      }
+      if (backgroundEviction && evictor == null) {
+        evictor = new BackgroundEvictor(this, "cache2k-evictor:" + name);
+      }
       if (refreshPool != null &&
         source == null) {
         throw new CacheMisconfigurationException("backgroundRefresh, but no source");
@@ -361,6 +420,95 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
     }
   }
 
+  /**
+   * Fill the empty cache from the snapshot. A snapshot that cannot be read is
+   * not fatal, the cache starts cold.
+   */
+  private void restoreSnapshot() {
+    try {
+      CacheSnapshot.read((BaseCache) this, snapshotFile, snapshotKeySerializer, snapshotValueSerializer);
+    } catch (CacheStorageException ex) {
+      getLog().warn("snapshot not restored, starting empty: " + ex.getMessage());
+      clearLocalCache();
+    }
+  }
+
+  /**
+   * Write the content and the state of the replacement algorithm to the snapshot
+   * file of the configuration. Only entries with valid data are written. The cache
+   * stays operational while the values are written.
+   *
+   * @return number of written entries
+   * @throws CacheStorageException if the file cannot be written
+   */
+  public int writeSnapshot() {
+    if (snapshotFile == null) {
+      throw new CacheMisconfigurationException("no snapshot file configured");
+    }
+    return CacheSnapshot.write((BaseCache) this, snapshotFile, snapshotKeySerializer, snapshotValueSerializer);
+  }
+
+  /**
+   * Adds the entries to the snapshot in the order they get inserted on restore,
+   * the coldest first, together with the replacement state of each entry. Called
+   * under the structure lock. The default is the hash order without a state, so the
+   * entries are restored as if newly inserted.
+   */
+  protected void collectSnapshotEntries(CacheSnapshot.Collector c) {
+    Iterator<Entry> it = iterateAllHeapEntries();
+    while (it.hasNext()) {
+      c.add(it.next(), 0);
+    }
+  }
+
+  /**
+   * Insert an entry read from the snapshot with the state from
+   * {@link #collectSnapshotEntries}. Called under the structure lock.
+   */
+  protected void restoreIntoReplacementList(E e, long _state) {
+    insertIntoReplacementList(e);
+  }
+
+  /**
+   * Fingerprints of the ghost history for the snapshot, oldest first.
+   */
+  protected int[] getSnapshotGhosts() {
+    return new int[0];
+  }
+
+  /**
+   * Restore the ghost history from the snapshot, called before the entries
+   * are restored.
+   */
+  protected void restoreSnapshotGhosts(int[] _fingerprints) { }
+
+  /**
+   * Insert an entry from the snapshot. Called under the structure lock when the
+   * cache is initialized, the capacity is not exceeded.
+   *
+   * @throws CacheStorageException if the key was restored already, which only
+   *         happens with a corrupt snapshot
+   */
+  final void restoreSnapshotEntry(K key, T _value, long _state, long _expiry, long _lastModification, long now) {
+    int hc = modifiedHash(key.hashCode());
+    if (mainHashCtrl.find(mainHash, key, hc) != null) {
+      throw new CacheStorageException("snapshot corrupt, duplicate key");
+    }
+    E e = newEntry();
+    e.key = key;
+    e.hashCode = hc;
+    storeValue(e, _value);
+    e.setLastModification(_lastModification);
+    restoreIntoReplacementList(e, _state);
+    mainHash = mainHashCtrl.insert(mainHash, e);
+    e.nextRefreshTime = stopStartTimer(_expiry, e, now);
+    if (STATISTICS) {
+      CacheStatistics.Counters _stat = statistics.get();
+      _stat.newEntryCnt++;
+      _stat.loadHitCnt++;
+    }
+  }
+
   boolean isNeedingTimer() {
     return
         maxLinger > 0 || entryExpiryCalculator != null ||
@@ -368,18 +516,27 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
   }
 
   /**
-   * Either add a timer or remove the timer if needed or not needed.
+   * Either add a timer or remove the timer if needed or not needed. With lazy
+   * expiry the sweeper is started instead.
    */
   private void initTimer() {
     if (isNeedingTimer()) {
-      if (timer == null) {
-        timer = new Timer(name, true);
+      if (hasLazyExpiry()) {
+        if (sweeper == null) {
+          sweeper = new ExpirySweeper(this, "cache2k-sweeper:" + name);
+        }
+      } else if (timer == null) {
+        timer = new TimingWheel<E>(name, this, TUNABLE.timerTickMillisShift);
       }
     } else {
       if (timer != null) {
         timer.cancel();
         timer = null;
       }
+      if (sweeper != null) {
+        sweeper.cancel();
+        sweeper = null;
+      }
     }
   }
 
@@ -403,7 +560,9 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
 
   protected final void clearLocalCache() {
     iterateAllEntriesRemoveAndCancelTimer();
-    clearedCnt += getLocalSize();
+    if (STATISTICS) {
+      statistics.get().clearedCnt += getLocalSize();
+    }
     initializeHeapCache();
     clearedTime = System.currentTimeMillis();
     touchedTime = clearedTime;
@@ -416,6 +575,7 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
       Entry e = it.next();
       e.removedFromList();
       cancelExpiryTimer(e);
+      releaseValue((E) e);
       _count++;
     }
   }
@@ -425,6 +585,14 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
       mainHashCtrl.cleared();
       refreshHashCtrl.cleared();
     }
+    timedEntries = (isNeedingTimer() && !hasLazyExpiry()) || source != null;
+    modificationTimeEntries = !timedEntries && isNeedingTimer();
+    if (heapSizeEstimator != null) {
+      maxSize = heapSizeEstimator.getEntryCapacity();
+      heapSizeEstimator.setEntryOverheadBytes(
+        HeapSizeEstimator.shallowSize(newEntry()) + getHashSlotBytes());
+      heapBoundSampleCnt = 0;
+    }
     mainHashCtrl = new Hash<E>();
     refreshHashCtrl = new Hash<E>();
     mainHash = mainHashCtrl.init((Class<E>) newEntry().getClass());
@@ -432,6 +600,11 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
     if (startedTime == 0) {
       startedTime = System.currentTimeMillis();
     }
+    admissionCandidate = null;
+    if (admissionFilter) {
+      admissionSketch = new FrequencySketch(maxSize);
+    }
+    setEvictionWatermarks();
     if (timer != null) {
       timer.cancel();
       timer = null;
@@ -439,6 +612,81 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
     }
   }
 
+  private void setEvictionWatermarks() {
+    evictionLowWatermark = (int) ((long) maxSize * TUNABLE.evictionLowWatermarkPercent / 100);
+    evictionHighWatermark = (int) Math.min(Integer.MAX_VALUE,
+      Math.max(maxSize + 1L, (long) maxSize * TUNABLE.evictionHighWatermarkPercent / 100));
+  }
+
+  /**
+   * Number of resident entries the eviction keeps. With background eviction the
+   * evictor runs the size down to the low watermark, so the size is mostly below
+   * the capacity. A policy that sizes a segment close to the capacity uses this,
+   * otherwise a batch evicts from the segment that should be protected.
+   */
+  protected int getEvictionTargetSize() {
+    return backgroundEviction ? evictionLowWatermark : maxSize;
+  }
+
+  /**
+   * Average bytes of the hash table per entry. The table doubles when the
+   * fill reaches the load percentage, so it is between half and fully loaded.
+   */
+  private static long getHashSlotBytes() {
+    return HeapSizeEstimator.REFERENCE_SIZE * 100L * 4 / (TUNABLE.hashLoadPercent * 3);
+  }
+
+  /**
+   * Heap bytes of the policy structures that are not within the entries, like ghost
+   * histories and frequency sketches. Used for the capacity bound in heap bytes,
+   * called under the structure lock.
+   */
+  protected long getPolicyHeapBytes() {
+    return admissionSketch != null ? HeapSizeEstimator.deepSize(admissionSketch, null) : 0;
+  }
+
+  /**
+   * The capacity is bounded by heap bytes and {@link #maxSize} was changed to follow
+   * the estimated entry size. Policies update the sizes they derive from the capacity.
+   * The cache may be above the new capacity, eviction is triggered after this.
+   * Called under the structure lock.
+   */
+  protected void maxSizeChanged(int _previousMaxSize) { }
+
+  /**
+   * Recalculate the entry limit after a new sample of the entry size. The capacity is
+   * only changed if the limit differs by more than the threshold percentage.
+   * Called under the structure lock.
+   */
+  private void updateHeapBound() {
+    long _sampleCnt = heapSizeEstimator.getSampleCount();
+    if (_sampleCnt == heapBoundSampleCnt) {
+      return;
+    }
+    heapBoundSampleCnt = _sampleCnt;
+    int _limit = heapSizeEstimator.calculateEntryLimit(getPolicyHeapBytes());
+    long _delta = Math.abs((long) _limit - maxSize);
+    if (_delta * 100 <= (long) maxSize * HeapSizeEstimator.TUNABLE.resizeThresholdPercentage) {
+      return;
+    }
+    int _previousMaxSize = maxSize;
+    maxSize = _limit;
+    setEvictionWatermarks();
+    maxSizeChanged(_previousMaxSize);
+    evictionNeeded = getLocalSize() > maxSize;
+  }
+
+  /**
+   * Estimated heap statistics for the cache info, if the capacity is bounded by heap bytes.
+   * Called under the structure lock.
+   */
+  String getHeapBoundStatistics() {
+    if (heapSizeEstimator == null) {
+      return "";
+    }
+    return heapSizeEstimator.getStatistics(getLocalSize(), getPolicyHeapBytes());
+  }
+
   /**
    * Preparation for shutdown. Cancel all pending timer jobs e.g. for
    * expiry/refresh or flushing the storage.
@@ -448,6 +696,9 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
       if (timer != null) {
         timer.cancel();
       }
+      if (sweeper != null) {
+        sweeper.cancel();
+      }
     }
   }
 
@@ -470,6 +721,13 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
       shutdownInitiated = true;
     }
     cancelTimerJobs();
+    if (snapshotFile != null) {
+      try {
+        writeSnapshot();
+      } catch (CacheStorageException ex) {
+        getLog().warn("snapshot not written: " + ex.getMessage());
+      }
+    }
     synchronized (lock) {
       mainHashCtrl.close();
       refreshHashCtrl.close();
@@ -479,6 +737,11 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
         timer.cancel();
         timer = null;
       }
+      sweeper = null;
+      if (evictor != null) {
+        evictor.cancel();
+        evictor = null;
+      }
       if (refreshPool != null) {
         refreshPool.destroy();
         refreshPool = null;
@@ -780,10 +1043,26 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
 
   /**
    * Entry object factory. Return an entry of the proper entry subtype for
-   * the replacement/eviction algorithm.
+   * the replacement/eviction algorithm. This is a {@link TimedEntry} if
+   * {@link #timedEntries} is set, see {@link #newEntryOfConfiguredType()}.
    */
   protected abstract E newEntry();
 
+  /**
+   * Entry for policies without own entry fields: a {@link TimedEntry}, a
+   * {@link ModificationTimeEntry} or the compact {@link Entry}, as needed by the
+   * configuration.
+   */
+  protected final Entry newEntryOfConfiguredType() {
+    if (timedEntries) {
+      return new TimedEntry();
+    }
+    if (modificationTimeEntries) {
+      return new ModificationTimeEntry();
+    }
+    return new Entry();
+  }
+
 
   /**
    * Find an entry that should be evicted. Called within structure lock.
@@ -845,7 +1124,7 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
     }
     synchronized (e) {
       final K _key = e.getKey();
-      final T _value = e.getValue();
+      final T _value = loadValueNoException((E) e);
       final Throwable _exception = e.getException();
       final long _lastModification = e.getLastModification();
       return returnCacheEntry(_key, _value, _exception, _lastModification);
@@ -860,16 +1139,8 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
   private String generateEntryStateString(E e) {
     synchronized (e) {
       String _timerState = "n/a";
-      if (e.task != null) {
-        _timerState = "<unavailable>";
-        try {
-          Field f = TimerTask.class.getDeclaredField("state");
-          f.setAccessible(true);
-          int _state = f.getInt(e.task);
-          _timerState = _state + "";
-        } catch (Exception x) {
-          _timerState = x.toString();
-        }
+      if (timer != null) {
+        _timerState = timer.isScheduled(e) ? "scheduled" : "idle";
       }
       return
           "Entry{" + System.identityHashCode(e) + "}, " +
@@ -880,7 +1151,7 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
           "keyMutation=" + (modifiedHash(e.key.hashCode()) != e.hashCode) + ", " +
           "modified=" + e.getLastModification() + ", " +
           "nextRefreshTime(with state)=" + e.nextRefreshTime + ", " +
-          "hasTimer=" + (e.task != null ? "true" : "false") + ", " +
+          "hasTimer=" + (timer != null && timer.isScheduled(e) ? "true" : "false") + ", " +
           "timerState=" + _timerState;
     }
   }
@@ -988,6 +1259,20 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
   }
 
   protected final void evictEventually() {
+    BackgroundEvictor _evictor = evictor;
+    if (_evictor != null) {
+      if (evictionNeeded) {
+        if (getLocalSize() > evictionHighWatermark) {
+          if (STATISTICS) {
+            statistics.get().writerEvictBatchCnt++;
+          }
+          evictBatch(maxSize);
+        } else {
+          _evictor.signal();
+        }
+      }
+      return;
+    }
     int _spinCount = TUNABLE.maximumEvictSpins;
     E _previousCandidate = null;
     while (evictionNeeded) {
@@ -1000,6 +1285,9 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
           return;
         }
         e = findEvictionCandidate();
+        if (admissionSketch != null) {
+          e = admit(e);
+        }
       }
       synchronized (e) {
         if (e.isRemovedState()) {
@@ -1020,23 +1308,109 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
     }
   }
 
-  private void evictEntryFromHeap(E e) {
+  /**
+   * Let the last inserted entry compete with the eviction candidate. The entry with
+   * the lower estimated frequency gets evicted, on a tie the new entry. The candidate
+   * stays at its position within the eviction data structure, if the new entry is
+   * rejected. Called under the structure lock.
+   */
+  private E admit(E _victim) {
+    E _candidate = admissionCandidate;
+    admissionCandidate = null;
+    if (_candidate == null || _candidate == _victim ||
+      _candidate.isRemovedState() || _candidate.isRemovedFromReplacementList() ||
+      _victim.isRemovedFromReplacementList()) {
+      return _victim;
+    }
+    if (admissionSketch.frequency(_candidate.hashCode) > admissionSketch.frequency(_victim.hashCode)) {
+      return _victim;
+    }
+    if (STATISTICS) {
+      statistics.get().admissionRejectCnt++;
+    }
+    return _candidate;
+  }
+
+  /**
+   * Evict until the cache size is at the low watermark. Used by the background
+   * eviction. The entry lock is always acquired before the structure lock,
+   * so the entries of a batch are removed one by one. Removing an entry and
+   * selecting the next candidate happens within one acquisition of the structure
+   * lock. Stops if a pinned candidate comes up twice.
+   */
+  final void evictBatch(int _lowWatermark) {
+    E e;
     synchronized (lock) {
-      if (e.isRemovedFromReplacementList()) {
-        if (removeEntryFromHash(e)) {
-          evictedButInHashCnt--;
-          evictedCnt++;
+      checkClosed();
+      e = nextBatchCandidate(_lowWatermark);
+    }
+    E _previousPinned = null;
+    while (e != null) {
+      E _next;
+      synchronized (e) {
+        boolean _evict = !e.isRemovedState() && !e.isPinned();
+        if (e.isPinned()) {
+          if (e == _previousPinned) {
+            return;
+          }
+          _previousPinned = e;
         }
-      } else {
-        if (removeEntry(e)) {
-          evictedCnt++;
+        synchronized (lock) {
+          checkClosed();
+          if (_evict) {
+            removeEvictedEntry(e);
+            if (STATISTICS) {
+              statistics.get().batchEvictCnt++;
+            }
+          }
+          _next = nextBatchCandidate(_lowWatermark);
         }
+        e.notifyAll();
       }
+      e = _next;
+    }
+  }
+
+  private E nextBatchCandidate(int _lowWatermark) {
+    if (getLocalSize() <= _lowWatermark) {
       evictionNeeded = getLocalSize() > maxSize;
+      return null;
+    }
+    E e = findEvictionCandidate();
+    if (admissionSketch != null) {
+      e = admit(e);
+    }
+    return e;
+  }
+
+  private void evictEntryFromHeap(E e) {
+    synchronized (lock) {
+      removeEvictedEntry(e);
     }
     e.notifyAll();
   }
 
+  /**
+   * Called under the entry and the structure lock.
+   */
+  private void removeEvictedEntry(E e) {
+    if (e.isRemovedFromReplacementList()) {
+      if (removeEntryFromHash(e)) {
+        evictedButInHashCnt--;
+        if (STATISTICS) {
+          statistics.get().evictedCnt++;
+        }
+      }
+    } else {
+      if (removeEntry(e)) {
+        if (STATISTICS) {
+          statistics.get().evictedCnt++;
+        }
+      }
+    }
+    evictionNeeded = getLocalSize() > maxSize;
+  }
+
   /**
    * Remove the entry from the hash and the replacement list.
    * There is a race condition to catch: The eviction may run
@@ -1062,16 +1436,21 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
         }
       }
       if (e == null) {
-        peekMissCnt++;
+        if (STATISTICS) {
+          statistics.get().peekMissCnt++;
+        }
         return null;
       }
+      recordAccess(hc);
       if (e.hasFreshData()) { return e; }
       boolean _hasFreshData = false;
       evictEventually();
       if (_hasFreshData) {
         return e;
       }
-      peekHitNotFreshCnt++;
+      if (STATISTICS) {
+        statistics.get().peekHitNotFreshCnt++;
+      }
       return null;
     }
   }
@@ -1091,6 +1470,251 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
     return null;
   }
 
+  /**
+   * The keys not found without locking are looked up with one acquisition of
+   * the structure lock for the whole batch.
+   */
+  @Override
+  public Map<K, T> peekAll(Collection<? extends K> keys) {
+    if (STATISTICS) {
+      statistics.get().bulkGetCnt++;
+    }
+    Map<K, T> _result = new HashMap<K, T>();
+    List<K> _missed = null;
+    for (K key : keys) {
+      int hc = modifiedHash(key.hashCode());
+      E e = lookupEntryUnsynchronized(key, hc);
+      if (e == null) {
+        if (_missed == null) {
+          _missed = new ArrayList<K>();
+        }
+        _missed.add(key);
+        continue;
+      }
+      addPeekResult(_result, key, hc, e);
+    }
+    if (_missed == null) {
+      return _result;
+    }
+    int _count = _missed.size();
+    int[] _hashCodes = new int[_count];
+    Object[] _entries = new Object[_count];
+    synchronized (lock) {
+      checkClosed();
+      for (int i = 0; i < _count; i++) {
+        K key = _missed.get(i);
+        int hc = _hashCodes[i] = modifiedHash(key.hashCode());
+        _entries[i] = lookupEntry(key, hc);
+      }
+    }
+    for (int i = 0; i < _count; i++) {
+      addPeekResult(_result, _missed.get(i), _hashCodes[i], (E) _entries[i]);
+    }
+    return _result;
+  }
+
+  private void addPeekResult(Map<K, T> _result, K key, int hc, E e) {
+    if (e == null) {
+      if (STATISTICS) {
+        statistics.get().peekMissCnt++;
+      }
+      return;
+    }
+    recordAccess(hc);
+    if (!e.hasFreshData()) {
+      if (STATISTICS) {
+        statistics.get().peekHitNotFreshCnt++;
+      }
+      return;
+    }
+    T v = (T) returnValue(e);
+    if (v != null) {
+      _result.put(key, v);
+    }
+  }
+
+  /**
+   * A miss registers a future for the key first, so concurrent misses share
+   * the load. No lock is held while the load is in flight. A put or remove of the
+   * key unregisters the future, so the loaded value is not inserted over the newer
+   * mapping. The waiting requests still receive the loaded value.
+   */
+  @Override
+  public CompletableFuture<T> getAsync(K key) {
+    CompletableFuture<T> f = new CompletableFuture<T>();
+    CompletableFuture<T> _result = lookupOrRegisterAsyncLoad(key, f);
+    if (_result != f) {
+      return _result;
+    }
+    asyncLoadCnt.increment();
+    CompletableFuture<T> _load;
+    try {
+      _load = asyncSource.load(key);
+    } catch (Throwable t) {
+      _load = new CompletableFuture<T>();
+      _load.completeExceptionally(t);
+    }
+    final CompletableFuture<T> _future = f;
+    final K _key = key;
+    _load.whenComplete((v, t) -> completeAsyncLoad(_key, _future, v, t));
+    return f;
+  }
+
+  @Override
+  public CompletableFuture<Map<K, T>> getAllAsync(Collection<? extends K> keys) {
+    final Map<K, CompletableFuture<T>> _futures = new HashMap<K, CompletableFuture<T>>();
+    final Map<K, CompletableFuture<T>> _loads = new HashMap<K, CompletableFuture<T>>();
+    for (K key : keys) {
+      if (_futures.containsKey(key)) {
+        continue;
+      }
+      CompletableFuture<T> f = new CompletableFuture<T>();
+      CompletableFuture<T> _result = lookupOrRegisterAsyncLoad(key, f);
+      if (_result == f) {
+        _loads.put(key, f);
+      }
+      _futures.put(key, _result);
+    }
+    if (!_loads.isEmpty()) {
+      asyncBulkLoadCnt.increment();
+      asyncLoadCnt.add(_loads.size());
+      CompletableFuture<Map<K, T>> _load;
+      try {
+        _load = asyncSource.loadAll(_loads.keySet());
+      } catch (Throwable t) {
+        _load = new CompletableFuture<Map<K, T>>();
+        _load.completeExceptionally(t);
+      }
+      _load.whenComplete((m, t) -> {
+        for (Map.Entry<K, CompletableFuture<T>> e : _loads.entrySet()) {
+          completeAsyncLoad(e.getKey(), e.getValue(), m != null ? m.get(e.getKey()) : null, t);
+        }
+      });
+    }
+    return CompletableFuture.allOf(_futures.values().toArray(new CompletableFuture[_futures.size()]))
+      .thenApply(v -> {
+        Map<K, T> _result = new HashMap<K, T>();
+        for (Map.Entry<K, CompletableFuture<T>> e : _futures.entrySet()) {
+          _result.put(e.getKey(), e.getValue().join());
+        }
+        return _result;
+      });
+  }
+
+  /**
+   * Return a completed future for a cached value, or the future of a load in flight.
+   * If the future passed in is returned, it is registered for the key and the
+   * caller needs to start the load.
+   */
+  private CompletableFuture<T> lookupOrRegisterAsyncLoad(K key, CompletableFuture<T> f) {
+    if (asyncSource == null) {
+      throw new CacheMisconfigurationException("no asynchronous source");
+    }
+    E e = peekEntryInternal(key);
+    if (e != null) {
+      return completedAsyncValue(e);
+    }
+    CompletableFuture<T> _inFlight = asyncLoads.putIfAbsent(key, f);
+    if (_inFlight != null) {
+      asyncCoalescedCnt.increment();
+      return _inFlight;
+    }
+    e = lookupEntrySynchronizedNoHitRecord(key);
+    if (e != null && e.hasFreshData()) {
+      asyncLoads.remove(key, f);
+      return completedAsyncValue(e);
+    }
+    return f;
+  }
+
+  private CompletableFuture<T> completedAsyncValue(E e) {
+    CompletableFuture<T> f = new CompletableFuture<T>();
+    try {
+      f.complete((T) returnValue(e));
+    } catch (Throwable t) {
+      f.completeExceptionally(t);
+    }
+    return f;
+  }
+
+  /**
+   * Insert the loaded value into the cache and complete the future. Exceptions of
+   * the load are passed to the waiting requests but not cached. If the insert fails,
+   * the future is completed exceptionally, so no waiting request hangs.
+   */
+  private void completeAsyncLoad(K key, CompletableFuture<T> f, T _value, Throwable _exception) {
+    if (_exception != null) {
+      asyncLoadExceptionCnt.increment();
+      asyncLoads.remove(key, f);
+      f.completeExceptionally(_exception);
+      return;
+    }
+    try {
+      insertAsyncLoad(key, f, _value);
+    } catch (CacheClosedException ignore) {
+      asyncLoads.remove(key, f);
+    } catch (Throwable t) {
+      asyncLoads.remove(key, f);
+      f.completeExceptionally(t);
+      return;
+    }
+    f.complete(_value);
+  }
+
+  /**
+   * Like {@link #put}, but the future is unregistered under the entry lock and the
+   * value is only inserted if the future was still registered and the entry has no
+   * fresh data. The load was registered on a miss, so fresh data was written after the
+   * load started, by a put or another load. A put or remove also unregisters the
+   * future under the entry lock, see {@link #cancelAsyncLoadInsert}.
+   */
+  private void insertAsyncLoad(K key, CompletableFuture<T> f, T _value) {
+    if (_value == null) {
+      asyncLoads.remove(key, f);
+      return;
+    }
+    int _spinCount = TUNABLE.maximumEntryLockSpins;
+    E e;
+    for (;;) {
+      if (_spinCount-- <= 0) {
+        throw new CacheLockSpinsExceededError();
+      }
+      e = lookupOrNewEntrySynchronized(key);
+      synchronized (e) {
+        if (e.isRemovedState()) {
+          continue;
+        }
+        if (e.isFetchInProgress()) {
+          e.waitForFetch();
+          continue;
+        }
+        long t = System.currentTimeMillis();
+        if (!asyncLoads.remove(key, f) || e.hasFreshData(t)) {
+          if (e.isVirgin()) {
+            synchronized (lock) {
+              removeEntry(e);
+            }
+          }
+          return;
+        }
+        long _nextRefreshTime = insertOnPut(e, _value, t, t, e.nextRefreshTime);
+        e.nextRefreshTime = stopStartTimer(_nextRefreshTime, e, System.currentTimeMillis());
+      }
+      evictEventually();
+      return;
+    }
+  }
+
+  /**
+   * Called by a put or remove under the entry lock, before the entry is written. A load
+   * in flight for the key was started before the write, so its value must not be inserted.
+   */
+  private void cancelAsyncLoadInsert(K key) {
+    if (!asyncLoads.isEmpty()) {
+      asyncLoads.remove(key);
+    }
+  }
+
   @Override
   public CacheEntry<K, T> peekEntry(K key) {
     return returnEntry(peekEntryInternal(key));
@@ -1113,6 +1737,7 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
           e.waitForFetch();
           continue;
         }
+        cancelAsyncLoadInsert(key);
         long t = System.currentTimeMillis();
         long _nextRefreshTime = e.nextRefreshTime;
         if (e.hasFreshData(t)) {
@@ -1126,6 +1751,66 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
     }
   }
 
+  /**
+   * The entries of the batch are looked up or created with one acquisition of the
+   * structure lock. Then the values are stored like in {@link #put}. The eviction runs
+   * once for the whole batch. If an entry was removed or is fetching before the value
+   * is stored, the mapping is inserted via {@link #put}.
+   */
+  @Override
+  public void putAll(Map<? extends K, ? extends T> m) {
+    int _count = m.size();
+    Object[] _entries = new Object[_count];
+    Object[] _values = new Object[_count];
+    int i = 0;
+    synchronized (lock) {
+      checkClosed();
+      for (Map.Entry<? extends K, ? extends T> me : m.entrySet()) {
+        K key = me.getKey();
+        int hc = modifiedHash(key.hashCode());
+        E e = lookupEntry(key, hc);
+        if (e == null) {
+          e = newEntry(key, hc);
+        } else {
+          recordAccess(hc);
+        }
+        _entries[i] = e;
+        _values[i] = me.getValue();
+        i++;
+      }
+    }
+    Map<K, T> _retry = null;
+    for (i = 0; i < _count; i++) {
+      E e = (E) _entries[i];
+      synchronized (e) {
+        if (e.isRemovedState() || e.isFetchInProgress()) {
+          if (_retry == null) {
+            _retry = new HashMap<K, T>();
+          }
+          _retry.put((K) e.key, (T) _values[i]);
+          continue;
+        }
+        cancelAsyncLoadInsert((K) e.key);
+        long t = System.currentTimeMillis();
+        if (e.hasFreshData(t)) {
+          e.nextRefreshTime = Entry.REPUT_STATE;
+        }
+        long _nextRefreshTime = insertOnPut(e, (T) _values[i], t, t, e.nextRefreshTime);
+        e.nextRefreshTime = stopStartTimer(_nextRefreshTime, e, System.currentTimeMillis());
+      }
+    }
+    if (evictor == null && evictionNeeded) {
+      evictBatch(maxSize);
+    } else {
+      evictEventually();
+    }
+    if (_retry != null) {
+      for (Map.Entry<K, T> me : _retry.entrySet()) {
+        put(me.getKey(), me.getValue());
+      }
+    }
+  }
+
   @Override
   public boolean remove(K key, T _value) {
     return removeWithFlag(key, true, _value);
@@ -1147,9 +1832,12 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
    */
   public boolean removeWithFlag(K key, boolean _checkValue, T _value) {
     E e = lookupEntrySynchronized(key);
-    if (e != null) {
+    if (e == null) {
+      cancelAsyncLoadInsert(key);
+    } else {
       synchronized (e) {
         e.waitForFetch();
+        cancelAsyncLoadInsert(key);
         if (!e.isRemovedState()) {
           synchronized (lock) {
             boolean f = e.hasFreshData();
@@ -1159,7 +1847,9 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
               }
             }
             if (removeEntry(e)) {
-              removedCnt++;
+              if (STATISTICS) {
+                statistics.get().removedCnt++;
+              }
               return f;
             }
             return false;
@@ -1191,15 +1881,79 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
         checkClosed();
         e = lookupEntry(key, hc);
         if (e == null) {
-          e = newEntry(key, hc);
+          return newEntry(key, hc);
         }
       }
     }
+    recordAccess(hc);
     return e;
   }
 
+  /**
+   * Value or {@link ExceptionWrapper} of the entry. A subclass storing the value
+   * outside the entry, overrides this together with {@link #storeValue} and
+   * {@link #releaseValue}.
+   */
+  protected T loadValue(E e) {
+    return (T) e.value;
+  }
+
+  /**
+   * Store the value or exception wrapper in the entry. Called with the entry lock
+   * held, not holding the structure lock. With the capacity bound in heap bytes,
+   * an entry is sampled for the size estimate.
+   */
+  protected void storeValue(E e, T _value) {
+    e.value = _value;
+    HeapSizeEstimator _estimator = heapSizeEstimator;
+    if (_estimator != null && _estimator.isSampleNeeded()) {
+      sampleHeapSize(e);
+    }
+  }
+
+  /**
+   * Measure key and value of a random entry in the hash table. The average of the
+   * entries in the cache differs from the average of the stored values, when the
+   * policy keeps older entries of another size. New entries are inserted at the head
+   * of the collision chain, so the entry is chosen randomly within the chain.
+   * If no entry with data is drawn, the entry just stored is measured. The table is
+   * read without the structure lock, a concurrent expand or removal only affects
+   * the choice of the entry.
+   */
+  private void sampleHeapSize(E _stored) {
+    E[] _hash = mainHash;
+    E e = null;
+    ThreadLocalRandom _random = ThreadLocalRandom.current();
+    for (int i = 0; i < HeapSizeEstimator.MAXIMUM_SLOT_DRAWS && e == null; i++) {
+      int _count = 0;
+      for (Entry x = _hash[_random.nextInt(_hash.length)]; x != null; x = x.another) {
+        if (x.isDataValidState() && _random.nextInt(++_count) == 0) {
+          e = (E) x;
+        }
+      }
+    }
+    if (e == null) {
+      e = _stored;
+    }
+    Object _value = e.value;
+    if (_value != null && !(_value instanceof ExceptionWrapper)) {
+      heapSizeEstimator.sample(e.key, _value);
+    }
+  }
+
+  /**
+   * The entry is removed from the cache, free the resources the value may hold.
+   * Called under the structure lock.
+   */
+  protected void releaseValue(E e) { }
+
+  private T loadValueNoException(E e) {
+    T v = loadValue(e);
+    return v instanceof ExceptionWrapper ? null : v;
+  }
+
   protected T returnValue(Entry<E, K,T> e) {
-    T v = e.value;
+    T v = loadValue((E) e);
     if (v instanceof ExceptionWrapper) {
       ExceptionWrapper w = (ExceptionWrapper) v;
       if (w.additionalExceptionMessage == null) {
@@ -1221,6 +1975,9 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
         e = lookupEntry(key, hc);
       }
     }
+    if (e != null) {
+      recordAccess(hc);
+    }
     return e;
   }
 
@@ -1236,14 +1993,16 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
   }
 
   protected final E lookupEntry(K key, int hc) {
-    E e = Hash.lookup(mainHash, key, hc);
+    E e = mainHashCtrl.find(mainHash, key, hc);
     if (e != null) {
       recordHit(e);
       return e;
     }
     e = refreshHashCtrl.remove(refreshHash, key, hc);
     if (e != null) {
-      refreshHitCnt++;
+      if (STATISTICS) {
+        statistics.get().refreshHitCnt++;
+      }
       mainHash = mainHashCtrl.insert(mainHash, e);
       recordHit(e);
       return e;
@@ -1252,13 +2011,15 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
   }
 
   protected final E lookupEntryNoHitRecord(K key, int hc) {
-    E e = Hash.lookup(mainHash, key, hc);
+    E e = mainHashCtrl.find(mainHash, key, hc);
     if (e != null) {
       return e;
     }
     e = refreshHashCtrl.remove(refreshHash, key, hc);
     if (e != null) {
-      refreshHitCnt++;
+      if (STATISTICS) {
+        statistics.get().refreshHitCnt++;
+      }
       mainHash = mainHashCtrl.insert(mainHash, e);
       return e;
     }
@@ -1271,7 +2032,11 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
    * entry if the maximum capacity is reached.
    */
   protected E newEntry(K key, int hc) {
-    if (getLocalSize() >= maxSize) {
+    if (heapSizeEstimator != null) {
+      updateHeapBound();
+    }
+    boolean _full = getLocalSize() >= maxSize;
+    if (_full) {
       evictionNeeded = true;
     }
     E e = checkForGhost(key, hc);
@@ -1282,10 +2047,27 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
       insertIntoReplacementList(e);
     }
     mainHash = mainHashCtrl.insert(mainHash, e);
-    newEntryCnt++;
+    if (STATISTICS) {
+      statistics.get().newEntryCnt++;
+    }
+    recordAccess(hc);
+    if (_full) {
+      admissionCandidate = e;
+    }
     return e;
   }
 
+  /**
+   * Count the access in the frequency sketch if the admission filter is enabled.
+   * A racy increment without the structure lock is tolerated.
+   */
+  protected final void recordAccess(int hc) {
+    FrequencySketch _sketch = admissionSketch;
+    if (_sketch != null) {
+      _sketch.increment(hc);
+    }
+  }
+
   /**
    * Called when expiry of an entry happens. Remove it from the
    * main cache, refresh cache and from the (lru) list. Also cancel the timer.
@@ -1301,21 +2083,18 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
     checkForHashCodeChange(e);
     cancelExpiryTimer(e);
     if (e.isVirgin()) {
-      virginEvictCnt++;
+      if (STATISTICS) {
+        statistics.get().virginEvictCnt++;
+      }
     }
     e.setRemovedState();
+    releaseValue(e);
     return f;
   }
 
   protected final void cancelExpiryTimer(Entry e) {
-    if (e.task != null) {
-      e.task.cancel();
-      timerCancelCount++;
-      if (timerCancelCount >= 10000) {
-        timer.purge();
-        timerCancelCount = 0;
-      }
-      e.task = null;
+    if (timer != null) {
+      timer.cancel(e);
     }
   }
 
@@ -1424,7 +2203,7 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
       if (e.isVirgin() || e.hasException()) {
         v = source.get((K) e.key, t0, null, e.getLastModification());
       } else {
-        v = source.get((K) e.key, t0, (T) e.getValue(), e.getLastModification());
+        v = source.get((K) e.key, t0, loadValueNoException(e), e.getLastModification());
       }
       e.setLastModification(t0);
     } catch (Throwable _ouch) {
@@ -1444,7 +2223,7 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
    */
   protected final long insertOrUpdateAndCalculateExpiry(E e, T v, long t0, long t, byte _updateStatistics, long _previousNextRefreshTime) {
     long _nextRefreshTime = maxLinger == 0 ? 0 : Long.MAX_VALUE;
-    if (timer != null) {
+    if (timer != null || sweeper != null) {
       try {
         _nextRefreshTime = calculateNextRefreshTime(e, v, t0, _previousNextRefreshTime);
       } catch (Exception ex) {
@@ -1484,7 +2263,7 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
       _value instanceof ExceptionWrapper && hasSuppressExceptions() && e.getValue() != Entry.INITIAL_VALUE && !e.hasException();
 
     if (!_suppressException) {
-      e.value = _value;
+      storeValue(e, _value);
     }
     if (_value instanceof ExceptionWrapper && !_suppressException) {
       Log log = getLog();
@@ -1510,7 +2289,9 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
         }
       }
       if (_updateStatistics == INSERT_STAT_PUT && !e.hasFreshData(t, _nextRefreshTime)) {
-        putButExpiredCnt++;
+        if (STATISTICS) {
+          statistics.get().putButExpiredCnt++;
+        }
       }
     } // synchronized (lock)
 
@@ -1525,58 +2306,59 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
 
   private void updateStatisticsNeedsLock(E e, T _value, long t0, long t, byte _updateStatistics, boolean _suppressException) {
     touchedTime = t;
+    if (!STATISTICS) {
+      return;
+    }
+    CacheStatistics.Counters _stat = statistics.get();
     if (_updateStatistics == INSERT_STAT_UPDATE) {
       if (_suppressException) {
-        suppressedExceptionCnt++;
-        fetchExceptionCnt++;
+        _stat.suppressedExceptionCnt++;
+        _stat.fetchExceptionCnt++;
       } else {
         if (_value instanceof ExceptionWrapper) {
-          fetchExceptionCnt++;
+          _stat.fetchExceptionCnt++;
         }
       }
-      fetchCnt++;
-      fetchMillis += t - t0;
+      _stat.fetchCnt++;
+      _stat.fetchMillis += t - t0;
       if (e.isGettingRefresh()) {
-        refreshCnt++;
+        _stat.refreshCnt++;
       }
       if (e.isLoadedNonValidAndFetch()) {
-        loadNonFreshAndFetchedCnt++;
+        _stat.loadNonFreshAndFetchedCnt++;
       } else if (!e.isVirgin()) {
-        fetchButHitCnt++;
+        _stat.fetchButHitCnt++;
       }
 
     } else if (_updateStatistics == INSERT_STAT_PUT) {
-      putCnt++;
-      eventuallyAdjustPutNewEntryCount(e);
+      _stat.putCnt++;
+      if (e.isVirgin()) {
+        _stat.putNewEntryCnt++;
+      }
       if (e.nextRefreshTime == Entry.LOADED_NON_VALID_AND_PUT) {
-        peekHitNotFreshCnt++;
+        _stat.peekHitNotFreshCnt++;
       }
     }
   }
 
-  private void eventuallyAdjustPutNewEntryCount(E e) {
-    if (e.isVirgin()) {
-      putNewEntryCnt++;
-    }
-  }
-
   private void cleanupAfterWriterException(E e) {
     if (e.isVirgin()) {
       synchronized (lock) {
-        putNewEntryCnt++;
+        if (STATISTICS) {
+          statistics.get().putNewEntryCnt++;
+        }
       }
     }
   }
 
   protected long stopStartTimer(long _nextRefreshTime, E e, long now) {
-    if (e.task != null) {
-      e.task.cancel();
-    }
+    cancelExpiryTimer(e);
     if ((_nextRefreshTime > Entry.EXPIRY_TIME_MIN && _nextRefreshTime <= now) &&
         (_nextRefreshTime < -1 && (now >= -_nextRefreshTime))) {
       return Entry.EXPIRED_STATE;
     }
-    if (hasSharpTimeout() && _nextRefreshTime > Entry.EXPIRY_TIME_MIN && _nextRefreshTime != Long.MAX_VALUE) {
+    if ((hasSharpTimeout() || hasLazyExpiry()) &&
+        _nextRefreshTime > Entry.EXPIRY_TIME_MIN && _nextRefreshTime != Long.MAX_VALUE) {
       _nextRefreshTime = -_nextRefreshTime;
     }
     if (timer != null &&
@@ -1585,17 +2367,11 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
         long _timerTime =
           -_nextRefreshTime - TUNABLE.sharpExpirySafetyGapMillis;
         if (_timerTime >= now) {
-          MyTimerTask tt = new MyTimerTask();
-          tt.entry = e;
-          timer.schedule(tt, new Date(_timerTime));
-          e.task = tt;
+          timer.schedule(e, _timerTime);
           _nextRefreshTime = -_nextRefreshTime;
         }
       } else {
-        MyTimerTask tt = new MyTimerTask();
-        tt.entry = e;
-        timer.schedule(tt, new Date(_nextRefreshTime));
-        e.task = tt;
+        timer.schedule(e, _nextRefreshTime);
       }
     } else {
     }
@@ -1614,7 +2390,9 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
     if (refreshPool != null) {
       synchronized (e) {
         synchronized (lock) {
-          timerEvents++;
+          if (STATISTICS) {
+            statistics.get().timerEvents++;
+          }
           if (isClosed()) {
             return;
           }
@@ -1626,7 +2404,9 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
             refreshHash = refreshHashCtrl.insert(refreshHash, e);
             if (e.hashCode != modifiedHash(e.key.hashCode())) {
               if (!e.isRemovedState() && removeEntryFromHash(e)) {
-                expiredRemoveCnt++;
+                if (STATISTICS) {
+                  statistics.get().expiredRemoveCnt++;
+                }
               }
               return;
             }
@@ -1648,7 +2428,9 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
                 } catch (Throwable ex) {
                   e.ensureFetchAbort(false);
                   synchronized (lock) {
-                    internalExceptionCnt++;
+                    if (STATISTICS) {
+                      statistics.get().internalExceptionCnt++;
+                    }
                   }
                   getLog().warn("Refresh exception", ex);
                   try {
@@ -1662,7 +2444,9 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
             if (_submitOkay) {
               return;
             }
-            refreshSubmitFailedCnt++;
+            if (STATISTICS) {
+              statistics.get().refreshSubmitFailedCnt++;
+            }
           } else { // if (mainHashCtrl.remove(mainHash, e)) ...
           }
         }
@@ -1670,7 +2454,9 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
 
     } else {
       synchronized (lock) {
-        timerEvents++;
+        if (STATISTICS) {
+          statistics.get().timerEvents++;
+        }
       }
     }
     synchronized (e) {
@@ -1702,16 +2488,59 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
       synchronized (lock) {
         checkClosed();
         if (hasKeepAfterExpired()) {
-          expiredKeptCnt++;
+          if (STATISTICS) {
+            statistics.get().expiredKeptCnt++;
+          }
         } else {
           if (removeEntry(e)) {
-            expiredRemoveCnt++;
+            if (STATISTICS) {
+              statistics.get().expiredRemoveCnt++;
+            }
           }
         }
       }
     }
   }
 
+  /**
+   * Expire the entry if its expiry time has passed. Called by the {@link ExpirySweeper}
+   * without the structure lock, the entry may be updated or removed meanwhile.
+   *
+   * @return true, if the entry was expired
+   */
+  final boolean sweepEntry(E e, long now) {
+    synchronized (e) {
+      long t = e.nextRefreshTime;
+      if (t >= -1 || now < -t) {
+        return false;
+      }
+      expireEntry(e);
+      return true;
+    }
+  }
+
+  /**
+   * Count the entries in the heap with a passed expiry time, which are not yet
+   * removed by the timer or the sweeper. Iterates all entries.
+   */
+  public int calculateExpiredEntryCount() {
+    ClosableConcurrentHashEntryIterator<Entry> it;
+    synchronized (lock) {
+      checkClosed();
+      it = iterateAllHeapEntries();
+    }
+    long now = System.currentTimeMillis();
+    int _count = 0;
+    while (it.hasNext()) {
+      long t = it.next().getValueExpiryTime();
+      if (t > 0 && t <= now) {
+        _count++;
+      }
+    }
+    it.close();
+    return _count;
+  }
+
   /**
    * Returns all cache entries within the heap cache. Entries that
    * are expired or contain no valid data are not filtered out.
@@ -1725,7 +2554,7 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
   public abstract long getHitCnt();
 
   protected final int calculateHashEntryCount() {
-    return Hash.calcEntryCount(mainHash) + Hash.calcEntryCount(refreshHash);
+    return mainHashCtrl.calcTotalEntryCount(mainHash) + refreshHashCtrl.calcTotalEntryCount(refreshHash);
   }
 
   protected final int getLocalSize() {
@@ -1739,39 +2568,42 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
   }
 
   public long getExpiredCnt() {
-    return expiredRemoveCnt + expiredKeptCnt;
+    return statistics.sum().getExpiredCnt();
   }
 
   /**
    * For peek no fetch is counted if there is a storage miss, hence the extra counter.
    */
   public long getFetchesBecauseOfNewEntries() {
-    return fetchCnt - fetchButHitCnt;
+    return statistics.sum().getFetchesBecauseOfNewEntries();
   }
 
   protected int getFetchesInFlight() {
-    long _fetchesBecauseOfNoEntries = getFetchesBecauseOfNewEntries();
-    return (int) (newEntryCnt - putNewEntryCnt - virginEvictCnt
-        - loadNonFreshCnt
-        - loadHitCnt
-        - _fetchesBecauseOfNoEntries
-        - atomicOpNewEntryCnt
-    );
+    return statistics.sum().getFetchesInFlight();
   }
 
+  /**
+   * The counter invariants are only checked with statistics enabled. The counters
+   * are summed up under the structure lock, so the counters incremented under
+   * the lock are consistent with the cache structure.
+   */
   protected IntegrityState getIntegrityState() {
     synchronized (lock) {
-      return new IntegrityState()
-        .checkEquals(
+      IntegrityState is = new IntegrityState();
+      if (STATISTICS) {
+        CacheStatistics.Counters c = statistics.sum();
+        is.checkEquals(
             "newEntryCnt - virginEvictCnt == " +
                 "getFetchesBecauseOfNewEntries() + getFetchesInFlight() + putNewEntryCnt + loadNonFreshCnt + loadHitCnt + atomicOpNewEntryCnt",
-            newEntryCnt - virginEvictCnt,
-            getFetchesBecauseOfNewEntries() + getFetchesInFlight() + putNewEntryCnt + loadNonFreshCnt + loadHitCnt + atomicOpNewEntryCnt)
-        .checkLessOrEquals("getFetchesInFlight() <= 100", getFetchesInFlight(), 100)
-        .checkEquals("newEntryCnt == getSize() + evictedCnt + expiredRemoveCnt + removeCnt + clearedCnt", newEntryCnt, getLocalSize() + evictedCnt + expiredRemoveCnt + removedCnt + clearedCnt)
-        .checkEquals("newEntryCnt == getSize() + evictedCnt + getExpiredCnt() - expiredKeptCnt + removeCnt + clearedCnt", newEntryCnt, getLocalSize() + evictedCnt + getExpiredCnt() - expiredKeptCnt + removedCnt + clearedCnt)
-        .checkEquals("mainHashCtrl.size == Hash.calcEntryCount(mainHash)", mainHashCtrl.size, Hash.calcEntryCount(mainHash))
-        .checkEquals("refreshHashCtrl.size == Hash.calcEntryCount(refreshHash)", refreshHashCtrl.size, Hash.calcEntryCount(refreshHash))
+            c.newEntryCnt - c.virginEvictCnt,
+            c.getFetchesBecauseOfNewEntries() + c.getFetchesInFlight() + c.putNewEntryCnt + c.loadNonFreshCnt + c.loadHitCnt + c.atomicOpNewEntryCnt)
+          .checkLessOrEquals("getFetchesInFlight() <= 100", c.getFetchesInFlight(), 100)
+          .checkEquals("newEntryCnt == getSize() + evictedCnt + expiredRemoveCnt + removeCnt + clearedCnt", c.newEntryCnt, getLocalSize() + c.evictedCnt + c.expiredRemoveCnt + c.removedCnt + c.clearedCnt)
+          .checkEquals("newEntryCnt == getSize() + evictedCnt + getExpiredCnt() - expiredKeptCnt + removeCnt + clearedCnt", c.newEntryCnt, getLocalSize() + c.evictedCnt + c.getExpiredCnt() - c.expiredKeptCnt + c.removedCnt + c.clearedCnt);
+      }
+      return is
+        .checkEquals("mainHashCtrl.size == mainHashCtrl.calcTotalEntryCount(mainHash)", mainHashCtrl.size, mainHashCtrl.calcTotalEntryCount(mainHash))
+        .checkEquals("refreshHashCtrl.size == refreshHashCtrl.calcTotalEntryCount(refreshHash)", refreshHashCtrl.size, refreshHashCtrl.calcTotalEntryCount(refreshHash))
         .check("!!evictionNeeded | (getSize() <= maxSize)", !!evictionNeeded | (getLocalSize() <= maxSize));
     }
   }
@@ -1850,12 +2682,14 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
 
   }
 
-  protected class MyTimerTask extends TimerTask {
-    E entry;
-
-    public void run() {
-      timerEvent(entry, scheduledExecutionTime());
-    }
+  /**
+   * Inverse of {@link #modifiedHash}, yields the hash code of the key. The seed
+   * differs per cache, so the ghost fingerprints are stored like this in the snapshot.
+   */
+  protected final int unmodifiedHash(int h) {
+    h ^= (h >>> 15) ^ (h >>> 30);
+    h ^= (h >>> 7) ^ (h >>> 14) ^ (h >>> 21) ^ (h >>> 28);
+    return h ^ hashSeed;
   }
 
   public static class Tunable extends TunableConstants {
@@ -1889,6 +2723,26 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
      */
     public int maximumEvictSpins = 5;
 
+    /**
+     * Background eviction: the evictor thread removes entries until the size is at
+     * this percentage of the capacity.
+     */
+    public int evictionLowWatermarkPercent = 98;
+
+    /**
+     * Background eviction: when the size goes above this percentage of the capacity,
+     * the writing thread evicts itself, so the size stays limited when the evictor
+     * thread falls behind.
+     */
+    public int evictionHighWatermarkPercent = 105;
+
+    /**
+     * Do not count statistics. The counting code is removed by the JIT, the cache
+     * info reports zero for all counters and the integrity checks of the counter
+     * invariants are skipped.
+     */
+    public boolean disableStatistics = false;
+
     /**
      * Size of the hash table before inserting the first entry. Must be power
      * of two. Default: 64.
@@ -1901,6 +2755,14 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
      */
     public int hashLoadPercent = 64;
 
+    /**
+     * Buckets of the old table moved to the expanded table on each insert. The expand
+     * itself only allocates the new table, so an insert never rehashes the whole
+     * table under the lock. A value of 0 rehashes all entries at once when expanding.
+     * Default: 8.
+     */
+    public int rehashBucketsPerInsert = 8;
+
     /**
      * The hash code will randomized by default. This is a countermeasure
      * against from outside that know the hash function.
@@ -1924,6 +2786,43 @@ public abstract class BaseCache<E extends Entry, K, T> implements Cache<K,T> {
      */
     public long sharpExpirySafetyGapMillis = 666;
 
+    /**
+     * Tick length of the expiry timing wheel as power of two in milliseconds.
+     * A timer event may be late by one tick. Default: 4, which is 16 milliseconds.
+     */
+    public int timerTickMillisShift = 4;
+
+    /**
+     * Lazy expiry: entries examined by the sweeper under one acquisition of the
+     * structure lock. Default: 256.
+     */
+    public int sweepBatchSize = 256;
+
+    /**
+     * Lazy expiry: the sweeper adapts the time for a round through the hash table, so
+     * the expired entries not yet removed are at about this percentage of the
+     * entries on average. Default: 10.
+     */
+    public int sweepStalePercent = 10;
+
+    /**
+     * Lazy expiry: number of runs of the sweeper for one round through the hash
+     * table. Default: 16.
+     */
+    public int sweepRunsPerRound = 16;
+
+    /**
+     * Lazy expiry: lower limit of the time for a round through the hash table, also
+     * the round time after the start. Default: 100.
+     */
+    public int sweepMinimumRoundMillis = 100;
+
+    /**
+     * Lazy expiry: upper limit of the time for a round through the hash table.
+     * Default: 10000.
+     */
+    public int sweepMaximumRoundMillis = 10000;
+
     /**
      * Some statistic values need processing time to gather and compute it. This is a safety
      * time delta, to ensure that the machine is not busy due to statistics generation. Default: 333.
@@ -0,0 +1,141 @@
+package org.cache2k.benchmark.impl2015;
+
+/*
+ * #%L
+ * zoo
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.benchmark.impl2015.util.TunableConstants;
+import org.cache2k.benchmark.impl2015.util.TunableFactory;
+
+/**
+ * Base for eviction algorithms that need to reorder a list on every hit,
+ * like LRU and ARC. Instead of taking the structure lock on every read, hits
+ * are recorded in a {@link StripedHitBuffer} and applied in batches under the
+ * structure lock, when a buffer is full or a new entry is inserted.
+ *
+ * <p>Hits may get lost under contention. Within a single thread no hit is lost
+ * and the hit order is kept, since all pending hits are applied before a new entry
+ * is inserted and an eviction candidate is searched.
+ *
+ * @author Jens Wilke
+ */
+public abstract class BufferedHitCache<E extends Entry, K, T>
+  extends BaseCache<E, K, T> {
+
+  private static final Tunable TUNABLE_HIT_BUFFER = TunableFactory.get(Tunable.class);
+
+  private final StripedHitBuffer<E> hitBuffer =
+    TUNABLE_HIT_BUFFER.bufferSize > 0 ?
+      new StripedHitBuffer<E>(
+        TUNABLE_HIT_BUFFER.stripeCount > 0 ?
+          TUNABLE_HIT_BUFFER.stripeCount : Runtime.getRuntime().availableProcessors() * 2,
+        TUNABLE_HIT_BUFFER.bufferSize) :
+      null;
+
+  /**
+   * Record the hit in the buffer. If the buffer is full, drain it.
+   */
+  private void recordHitBuffered(E e) {
+    if (!hitBuffer.offer(e)) {
+      synchronized (lock) {
+        drainHitBuffer();
+      }
+    }
+  }
+
+  /**
+   * Apply all buffered hits. Called within the structure lock.
+   */
+  protected final void drainHitBuffer() {
+    if (hitBuffer != null) {
+      hitBuffer.drain(this);
+    }
+  }
+
+  @Override
+  protected final void recordHitLocked(E e) {
+    if (hitBuffer == null) {
+      super.recordHitLocked(e);
+      return;
+    }
+    recordHitBuffered(e);
+  }
+
+  @Override
+  protected final E lookupEntryUnsynchronized(K key, int hc) {
+    if (hitBuffer == null) {
+      return null;
+    }
+    E e = mainHashCtrl.find(mainHash, key, hc);
+    if (e != null) {
+      recordHitBuffered(e);
+      return e;
+    }
+    return null;
+  }
+
+  @Override
+  protected final E lookupEntryUnsynchronizedNoHitRecord(K key, int hc) {
+    if (hitBuffer == null) {
+      return null;
+    }
+    return mainHashCtrl.find(mainHash, key, hc);
+  }
+
+  /**
+   * Apply pending hits before the insert, which may lead to an eviction.
+   */
+  @Override
+  protected E newEntry(K key, int hc) {
+    drainHitBuffer();
+    return super.newEntry(key, hc);
+  }
+
+  /**
+   * Pending hits are applied first, so the hit counters are exact.
+   */
+  @Override
+  protected String getExtraStatistics() {
+    if (hitBuffer == null) {
+      return "";
+    }
+    drainHitBuffer();
+    return ", hitBufferStripes=" + hitBuffer.getStripeCount() +
+           ", hitBufferSize=" + hitBuffer.getBufferSize() +
+           ", hitBufferDrainCnt=" + hitBuffer.drainCnt +
+           ", hitBufferDrainedHitCnt=" + hitBuffer.drainedHitCnt +
+           ", hitBufferDropCnt=" + hitBuffer.getDropCnt();
+  }
+
+  public static class Tunable extends TunableConstants {
+
+    /**
+     * Number of buffer stripes. 0 means two times the available processors.
+     */
+    public int stripeCount = 0;
+
+    /**
+     * Hits recorded per stripe until the buffer gets drained. 0 switches off
+     * hit buffering and records each hit within the structure lock.
+     */
+    public int bufferSize = 32;
+
+  }
+
+}
@@ -22,7 +22,10 @@ package org.cache2k.benchmark.impl2015;
  */
 
 import java.io.Closeable;
+import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 @SuppressWarnings("UnusedDeclaration")
 public interface Cache<K, T> extends Iterable<CacheEntry<K, T>>, Closeable {
@@ -37,12 +40,32 @@ public interface Cache<K, T> extends Iterable<CacheEntry<K, T>>, Closeable {
 
   T peek(K key);
 
+  /**
+   * Return the cached value or load it with the {@link AsyncCacheSource}. Concurrent
+   * requests for a key that is loading share the same load.
+   */
+  CompletableFuture<T> getAsync(K key);
+
+  /**
+   * Like {@link #getAsync} for many keys. All keys that are not cached or loading
+   * are loaded with one call to {@link AsyncCacheSource#loadAll}.
+   */
+  CompletableFuture<Map<K, T>> getAllAsync(Collection<? extends K> keys);
+
   CacheEntry<K, T> peekEntry(K key);
 
+  /**
+   * Values of the keys present in the cache. Keys not present are not
+   * contained in the returned map. The source is not called.
+   */
+  Map<K, T> peekAll(Collection<? extends K> keys);
+
   boolean contains(K key);
 
   void put(K key, T value);
 
+  void putAll(Map<? extends K, ? extends T> m);
+
   void remove(K key);
 
   boolean remove(K key, T value);
@@ -42,29 +42,58 @@ class CacheBaseInfo implements InternalCacheInfo {
   long usageCnt;
   BaseCache.CollisionInfo collisionInfo;
   String extraStatistics;
+  String timerStatistics;
+  String admissionStatistics;
+  String evictorStatistics;
+  String heapStatistics;
+  String asyncStatistics;
+  String refreshPoolStatistics;
   int fetchesInFlight;
+  CacheStatistics.Counters counters;
   IntegrityState integrityState;
 
   public CacheBaseInfo(BaseCache baseCache) {
     this.baseCache = baseCache;
+    counters = baseCache.statistics.sum();
     integrityState = baseCache.getIntegrityState();
     collisionInfo = new BaseCache.CollisionInfo();
-    Hash.calcHashCollisionInfo(collisionInfo, baseCache.mainHash);
-    Hash.calcHashCollisionInfo(collisionInfo, baseCache.refreshHash);
+    baseCache.mainHashCtrl.calcCollisionInfo(collisionInfo, baseCache.mainHash);
+    baseCache.refreshHashCtrl.calcCollisionInfo(collisionInfo, baseCache.refreshHash);
     extraStatistics = baseCache.getExtraStatistics();
+    TimingWheel _timer = baseCache.timer;
+    ExpirySweeper _sweeper = baseCache.sweeper;
+    timerStatistics = _timer != null ? _timer.getStatistics() :
+      _sweeper != null ? _sweeper.getStatistics() : "";
+    FrequencySketch _sketch = baseCache.admissionSketch;
+    admissionStatistics = _sketch != null ?
+      ", admissionRejectCnt=" + counters.admissionRejectCnt +
+      ", admissionSketchResetCnt=" + _sketch.getResetCount() : "";
+    heapStatistics = baseCache.getHeapBoundStatistics();
+    BackgroundEvictor _evictor = baseCache.evictor;
+    evictorStatistics = _evictor != null ?
+      _evictor.getStatistics() +
+      ", batchEvictCnt=" + counters.batchEvictCnt +
+      ", writerEvictBatchCnt=" + counters.writerEvictBatchCnt : "";
+    CacheRefreshThreadPool _refreshPool = baseCache.refreshPool;
+    refreshPoolStatistics = _refreshPool != null ? _refreshPool.getStatistics() : "";
+    asyncStatistics = baseCache.asyncSource != null ?
+      ", asyncLoadCnt=" + baseCache.asyncLoadCnt.sum() +
+      ", asyncBulkLoadCnt=" + baseCache.asyncBulkLoadCnt.sum() +
+      ", asyncCoalescedCnt=" + baseCache.asyncCoalescedCnt.sum() +
+      ", asyncLoadExceptionCnt=" + baseCache.asyncLoadExceptionCnt.sum() : "";
     if (extraStatistics.startsWith(", ")) {
       extraStatistics = extraStatistics.substring(2);
     }
-    fetchesInFlight = baseCache.getFetchesInFlight();
+    fetchesInFlight = counters.getFetchesInFlight();
     size = baseCache.getLocalSize();
-    missCnt = baseCache.fetchCnt - baseCache.refreshCnt + baseCache.peekHitNotFreshCnt + baseCache.peekMissCnt;
-    storageMissCnt = baseCache.loadMissCnt + baseCache.loadNonFreshCnt + baseCache.loadNonFreshAndFetchedCnt;
-    storageLoadCnt = storageMissCnt + baseCache.loadHitCnt;
-    newEntryCnt = baseCache.newEntryCnt - baseCache.virginEvictCnt;
+    missCnt = counters.fetchCnt - counters.refreshCnt + counters.peekHitNotFreshCnt + counters.peekMissCnt;
+    storageMissCnt = counters.loadMissCnt + counters.loadNonFreshCnt + counters.loadNonFreshAndFetchedCnt;
+    storageLoadCnt = storageMissCnt + counters.loadHitCnt;
+    newEntryCnt = counters.newEntryCnt - counters.virginEvictCnt;
     hitCnt = baseCache.getHitCnt();
-    correctedPutCnt = baseCache.putCnt - baseCache.putButExpiredCnt;
+    correctedPutCnt = counters.putCnt - counters.putButExpiredCnt;
     usageCnt =
-            hitCnt + newEntryCnt + baseCache.peekMissCnt;
+            hitCnt + newEntryCnt + counters.peekMissCnt;
   }
 
   String percentString(double d) {
@@ -79,12 +108,12 @@ class CacheBaseInfo implements InternalCacheInfo {
 
   @Override
   public long getFetchButHitCnt() {
-    return baseCache.fetchButHitCnt;
+    return counters.fetchButHitCnt;
   }
 
   @Override
   public long getVirginEvictCnt() {
-    return baseCache.virginEvictCnt;
+    return counters.virginEvictCnt;
   }
 
   @Override
@@ -92,13 +121,13 @@ class CacheBaseInfo implements InternalCacheInfo {
   @Override
   public int getMaxSize() { return baseCache.maxSize; }
   @Override
-  public long getStorageHitCnt() { return baseCache.loadHitCnt; }
+  public long getStorageHitCnt() { return counters.loadHitCnt; }
   @Override
   public long getStorageLoadCnt() { return storageLoadCnt; }
   @Override
   public long getStorageMissCnt() { return storageMissCnt; }
   @Override
-  public long getReadUsageCnt() { return usageCnt - baseCache.putCnt - baseCache.removedCnt - baseCache.atomicOpNewEntryCnt; }
+  public long getReadUsageCnt() { return usageCnt - counters.putCnt - counters.removedCnt - counters.atomicOpNewEntryCnt; }
   @Override
   public long getUsageCnt() { return usageCnt; }
   @Override
@@ -106,37 +135,37 @@ class CacheBaseInfo implements InternalCacheInfo {
   @Override
   public long getNewEntryCnt() { return newEntryCnt; }
   @Override
-  public long getFetchCnt() { return baseCache.fetchCnt; }
+  public long getFetchCnt() { return counters.fetchCnt; }
   @Override
   public int getFetchesInFlightCnt() { return fetchesInFlight; }
   @Override
-  public long getBulkGetCnt() { return baseCache.bulkGetCnt; }
+  public long getBulkGetCnt() { return counters.bulkGetCnt; }
   @Override
-  public long getRefreshCnt() { return baseCache.refreshCnt; }
+  public long getRefreshCnt() { return counters.refreshCnt; }
   @Override
-  public long getInternalExceptionCnt() { return baseCache.internalExceptionCnt; }
+  public long getInternalExceptionCnt() { return counters.internalExceptionCnt; }
   @Override
-  public long getRefreshSubmitFailedCnt() { return baseCache.refreshSubmitFailedCnt; }
+  public long getRefreshSubmitFailedCnt() { return counters.refreshSubmitFailedCnt; }
   @Override
-  public long getSuppressedExceptionCnt() { return baseCache.suppressedExceptionCnt; }
+  public long getSuppressedExceptionCnt() { return counters.suppressedExceptionCnt; }
   @Override
-  public long getFetchExceptionCnt() { return baseCache.fetchExceptionCnt; }
+  public long getFetchExceptionCnt() { return counters.fetchExceptionCnt; }
   @Override
-  public long getRefreshHitCnt() { return baseCache.refreshHitCnt; }
+  public long getRefreshHitCnt() { return counters.refreshHitCnt; }
   @Override
-  public long getExpiredCnt() { return baseCache.getExpiredCnt(); }
+  public long getExpiredCnt() { return counters.getExpiredCnt(); }
   @Override
-  public long getEvictedCnt() { return baseCache.evictedCnt - baseCache.virginEvictCnt; }
+  public long getEvictedCnt() { return counters.evictedCnt - counters.virginEvictCnt; }
   @Override
-  public long getRemovedCnt() { return baseCache.removedCnt; }
+  public long getRemovedCnt() { return counters.removedCnt; }
   @Override
-  public long getPutNewEntryCnt() { return baseCache.putNewEntryCnt; }
+  public long getPutNewEntryCnt() { return counters.putNewEntryCnt; }
   @Override
   public long getPutCnt() { return correctedPutCnt; }
   @Override
   public long getKeyMutationCnt() { return baseCache.keyMutationCount; }
   @Override
-  public long getTimerEventCnt() { return baseCache.timerEvents; }
+  public long getTimerEventCnt() { return counters.timerEvents; }
   @Override
   public double getDataHitRate() {
     long cnt = getReadUsageCnt();
@@ -145,7 +174,7 @@ class CacheBaseInfo implements InternalCacheInfo {
   @Override
   public String getDataHitString() { return percentString(getDataHitRate()); }
   @Override
-  public double getEntryHitRate() { return usageCnt == 0 ? 100 : (usageCnt - newEntryCnt + baseCache.putCnt) * 100D / usageCnt; }
+  public double getEntryHitRate() { return usageCnt == 0 ? 100 : (usageCnt - newEntryCnt + counters.putCnt) * 100D / usageCnt; }
   @Override
   public String getEntryHitString() { return percentString(getEntryHitRate()); }
   /** How many items will be accessed with collision */
@@ -214,9 +243,9 @@ class CacheBaseInfo implements InternalCacheInfo {
     return _metric0;
   }
   @Override
-  public double getMillisPerFetch() { return baseCache.fetchCnt == 0 ? 0 : (baseCache.fetchMillis * 1D / baseCache.fetchCnt); }
+  public double getMillisPerFetch() { return counters.fetchCnt == 0 ? 0 : (counters.fetchMillis * 1D / counters.fetchCnt); }
   @Override
-  public long getFetchMillis() { return baseCache.fetchMillis; }
+  public long getFetchMillis() { return counters.fetchMillis; }
   @Override
   public int getCollisionCnt() { return collisionInfo.collisionCnt; }
   @Override
@@ -264,10 +293,10 @@ class CacheBaseInfo implements InternalCacheInfo {
 
   public String toString() {
     return "size=" + getSize() + ", "
-            + "maxSize=" + getMaxSize() + ", "
+            + "maxSize=" + getMaxSize() + heapStatistics + ", "
             + "usageCnt=" + getUsageCnt() + ", "
             + "missCnt=" + getMissCnt() + ", "
-            + "fetchCnt=" + getFetchCnt() + ", "
+            + "fetchCnt=" + getFetchCnt() + asyncStatistics + ", "
             + "fetchButHitCnt=" + getFetchButHitCnt() + ", "
             + "heapHitCnt=" + hitCnt + ", "
             + "virginEvictCnt=" + getVirginEvictCnt() + ", "
@@ -275,14 +304,14 @@ class CacheBaseInfo implements InternalCacheInfo {
             + "newEntryCnt=" + getNewEntryCnt() + ", "
             + "bulkGetCnt=" + getBulkGetCnt() + ", "
             + "refreshCnt=" + getRefreshCnt() + ", "
-            + "refreshSubmitFailedCnt=" + getRefreshSubmitFailedCnt() + ", "
+            + "refreshSubmitFailedCnt=" + getRefreshSubmitFailedCnt() + refreshPoolStatistics + ", "
             + "refreshHitCnt=" + getRefreshHitCnt() + ", "
             + "putCnt=" + getPutCnt() + ", "
             + "putNewEntryCnt=" + getPutNewEntryCnt() + ", "
             + "expiredCnt=" + getExpiredCnt() + ", "
-            + "evictedCnt=" + getEvictedCnt() + ", "
+            + "evictedCnt=" + getEvictedCnt() + admissionStatistics + evictorStatistics + ", "
             + "removedCnt=" + getRemovedCnt() + ", "
-            + "timerEventCnt=" + getTimerEventCnt() + ", "
+            + "timerEventCnt=" + getTimerEventCnt() + timerStatistics + ", "
             + "storageLoadCnt=" + getStorageLoadCnt() + ", "
             + "storageMissCnt=" + getStorageMissCnt() + ", "
             + "storageHitCnt=" + getStorageHitCnt() + ", "
@@ -20,6 +20,7 @@ package org.cache2k.benchmark.impl2015;
  * #L%
  */
 
+import java.io.File;
 import java.io.Serializable;
 import java.util.List;
 
@@ -37,13 +38,21 @@ public class CacheConfig<K, V> implements Serializable {
   private int maxSizeHighBound = Integer.MAX_VALUE;
   private int maxSizeLowBound = 0;
   private int heapEntryCapacity = -1;
+  private long maximumHeapBytes = 0;
   private boolean backgroundRefresh = false;
+  private boolean refreshOnVirtualThreads = false;
   private long expiryMillis  = 10 * 60 * 1000;
   private long exceptionExpiryMillis = -1;
   private boolean keepDataAfterExpired = true;
   private boolean sharpExpiry = false;
+  private boolean lazyExpiry = false;
   private List<Object> moduleConfiguration;
   private boolean suppressExceptions = true;
+  private boolean admissionFilter = false;
+  private boolean backgroundEviction = false;
+  private File snapshotFile;
+  private SnapshotSerializer<K> snapshotKeySerializer;
+  private SnapshotSerializer<V> snapshotValueSerializer;
 
   public String getName() {
     return name;
@@ -117,6 +126,20 @@ public class CacheConfig<K, V> implements Serializable {
     this.backgroundRefresh = backgroundRefresh;
   }
 
+  public boolean isRefreshOnVirtualThreads() {
+    return refreshOnVirtualThreads;
+  }
+
+  /**
+   * Run background refreshes on virtual threads with a concurrency limit and
+   * a bounded queue, instead of the fixed platform thread pool.
+   *
+   * @see CacheRefreshThreadPool
+   */
+  public void setRefreshOnVirtualThreads(boolean refreshOnVirtualThreads) {
+    this.refreshOnVirtualThreads = refreshOnVirtualThreads;
+  }
+
   void checkNull(Object v) {
     if (v == null) {
       throw new NullPointerException("null value not allowed");
@@ -201,6 +224,20 @@ public class CacheConfig<K, V> implements Serializable {
     this.sharpExpiry = sharpExpiry;
   }
 
+  public boolean isLazyExpiry() {
+    return lazyExpiry;
+  }
+
+  /**
+   * Entries only keep their expiry time and no timer event is scheduled. A read
+   * checks the time and treats an expired entry as miss. A sweeper thread removes
+   * expired entries, which are not accessed again, to free the memory. Not
+   * possible together with background refresh.
+   */
+  public void setLazyExpiry(boolean lazyExpiry) {
+    this.lazyExpiry = lazyExpiry;
+  }
+
   public boolean isSuppressExceptions() {
     return suppressExceptions;
   }
@@ -211,6 +248,62 @@ public class CacheConfig<K, V> implements Serializable {
     this.suppressExceptions = suppressExceptions;
   }
 
+  public boolean isAdmissionFilter() {
+    return admissionFilter;
+  }
+
+  /**
+   * Only admit a new entry if the eviction would otherwise remove an entry that
+   * was less frequently used in the recent history. The frequencies are estimated
+   * by a {@link FrequencySketch}, this is TinyLFU admission on top of the
+   * eviction algorithm of the implementation.
+   */
+  public void setAdmissionFilter(boolean admissionFilter) {
+    this.admissionFilter = admissionFilter;
+  }
+
+  public boolean isBackgroundEviction() {
+    return backgroundEviction;
+  }
+
+  /**
+   * A writer only signals a separate evictor thread when the capacity is exceeded,
+   * which evicts in batches down to a low watermark. The cache size may exceed
+   * the capacity by a few percent.
+   */
+  public void setBackgroundEviction(boolean backgroundEviction) {
+    this.backgroundEviction = backgroundEviction;
+  }
+
+  public File getSnapshotFile() {
+    return snapshotFile;
+  }
+
+  /**
+   * The cache content and the state of the eviction algorithm is written to this
+   * file when the cache is closed and read back when the cache is initialized,
+   * so the cache starts warm after a restart. Needs the serializers for keys and values.
+   */
+  public void setSnapshotFile(File snapshotFile) {
+    this.snapshotFile = snapshotFile;
+  }
+
+  public SnapshotSerializer<K> getSnapshotKeySerializer() {
+    return snapshotKeySerializer;
+  }
+
+  public void setSnapshotKeySerializer(SnapshotSerializer<K> snapshotKeySerializer) {
+    this.snapshotKeySerializer = snapshotKeySerializer;
+  }
+
+  public SnapshotSerializer<V> getSnapshotValueSerializer() {
+    return snapshotValueSerializer;
+  }
+
+  public void setSnapshotValueSerializer(SnapshotSerializer<V> snapshotValueSerializer) {
+    this.snapshotValueSerializer = snapshotValueSerializer;
+  }
+
   public int getHeapEntryCapacity() {
     return heapEntryCapacity;
   }
@@ -223,6 +316,21 @@ public class CacheConfig<K, V> implements Serializable {
     this.heapEntryCapacity = v;
   }
 
+  public long getMaximumHeapBytes() {
+    return maximumHeapBytes;
+  }
+
+  /**
+   * Bound the cache by the estimated heap bytes of the entries, including keys and
+   * values, instead of the entry count. The sizes of keys and values are sampled
+   * when stored. The entry capacity stays the upper bound of the entry count and
+   * determines the size of the policy structures, like ghost histories. 0 means
+   * the capacity is the entry count only.
+   */
+  public void setMaximumHeapBytes(long v) {
+    this.maximumHeapBytes = v;
+  }
+
   public List<Object> getModuleConfiguration() {
     return moduleConfiguration;
   }
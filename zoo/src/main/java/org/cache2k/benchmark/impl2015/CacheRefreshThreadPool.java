@@ -20,31 +20,72 @@ package org.cache2k.benchmark.impl2015;
  * #L%
  */
 
+import org.cache2k.benchmark.impl2015.util.Log;
+import org.cache2k.benchmark.impl2015.util.TunableConstants;
+import org.cache2k.benchmark.impl2015.util.TunableFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Provides a shared thread pool used by all caches for background refreshes of expired
  * entries. The maximum thread size is the processor count times two.
  *
+ * <p>Alternatively refreshes can run on virtual threads, which suits refreshes that
+ * mostly wait for I/O. There is no fixed set of threads, instead the number of concurrent
+ * refreshes is limited and further refresh tasks wait in a bounded queue. When the queue
+ * is full, the submit fails and the cache expires the entry, as it does if the platform
+ * pool has no free thread. If the runtime has no virtual threads, daemon platform threads
+ * are started on demand instead, with the same limits.
+ *
  * @author Jens Wilke; created: 2013-06-13
  */
 public class CacheRefreshThreadPool {
 
+  private static final Tunable TUNABLE_REFRESH = TunableFactory.get(Tunable.class);
+
   public static final int THREAD_COUNT = Runtime.getRuntime().availableProcessors() * 2;
   private static ThreadPoolExecutor executorForAll;
   private static int leasedPoolInstances = 0;
+  private static VirtualThreadExecutor virtualExecutorForAll;
+  private static int leasedVirtualPoolInstances = 0;
   private static MyStatus status;
 
   /**
    * Get an instance of the pool. When the consumer is destroyed it must
    * call {@link #destroy()} in turn to free resources.
    */
-  public synchronized static CacheRefreshThreadPool getInstance() {
+  public static CacheRefreshThreadPool getInstance() {
+    return getInstance(false);
+  }
+
+  /**
+   * Get an instance of the platform thread pool or of the virtual thread executor.
+   * When the consumer is destroyed it must call {@link #destroy()} in turn to free resources.
+   */
+  public synchronized static CacheRefreshThreadPool getInstance(boolean _virtualThreads) {
+    CacheRefreshThreadPool p = new CacheRefreshThreadPool();
+    if (_virtualThreads) {
+      if (virtualExecutorForAll == null) {
+        virtualExecutorForAll =
+          new VirtualThreadExecutor(
+            TUNABLE_REFRESH.virtualThreadConcurrencyLimit,
+            TUNABLE_REFRESH.platformThreadFallbackConcurrencyLimit > 0 ?
+              TUNABLE_REFRESH.platformThreadFallbackConcurrencyLimit : THREAD_COUNT * 4,
+            TUNABLE_REFRESH.virtualThreadQueueCapacity);
+      }
+      leasedVirtualPoolInstances++;
+      p.executor = virtualExecutorForAll;
+      return p;
+    }
     if (executorForAll == null) {
       executorForAll =
         new ThreadPoolExecutor(0, THREAD_COUNT,
@@ -54,12 +95,19 @@ public class CacheRefreshThreadPool {
           new ThreadPoolExecutor.AbortPolicy());
     }
     leasedPoolInstances++;
-    CacheRefreshThreadPool p = new CacheRefreshThreadPool();
     p.executor = executorForAll;
     return p;
   }
 
-  synchronized static void disposeOne() {
+  synchronized static void disposeOne(Executor _executor) {
+    if (_executor == virtualExecutorForAll) {
+      leasedVirtualPoolInstances--;
+      if (leasedVirtualPoolInstances == 0) {
+        virtualExecutorForAll.shutdown();
+        virtualExecutorForAll = null;
+      }
+      return;
+    }
     leasedPoolInstances--;
     if (leasedPoolInstances == 0) {
       executorForAll.shutdown();
@@ -67,38 +115,200 @@ public class CacheRefreshThreadPool {
     }
   }
 
-  private ThreadPoolExecutor executor;
+  private Executor executor;
+
+  /** Statistics of this consumer, the executor is shared */
+  private final LongAdder submitCnt = new LongAdder();
+  private final LongAdder submitFailedCnt = new LongAdder();
+  private final LongAdder startedCnt = new LongAdder();
+  private final LongAdder taskExceptionCnt = new LongAdder();
+  private final LongAdder queueNanos = new LongAdder();
+  private final LongAccumulator queueNanosMax = new LongAccumulator(Math::max, 0);
 
   private CacheRefreshThreadPool() {
   }
 
-  public boolean submit(Runnable r) {
+  public boolean submit(final Runnable r) {
+    submitCnt.increment();
+    final long _submitTime = System.nanoTime();
+    Runnable _task = () -> {
+      long _queueNanos = System.nanoTime() - _submitTime;
+      queueNanos.add(_queueNanos);
+      queueNanosMax.accumulate(_queueNanos);
+      startedCnt.increment();
+      try {
+        r.run();
+      } catch (Throwable t) {
+        taskExceptionCnt.increment();
+        throw t;
+      }
+    };
     try {
-      executor.execute(r);
+      executor.execute(_task);
     } catch (RejectedExecutionException e) {
+      submitFailedCnt.increment();
       return false;
     }
     return true;
   }
 
   public void destroy() {
-    disposeOne();
+    disposeOne(executor);
     executor = null;
   }
 
+  /**
+   * Counters of the tasks submitted by this consumer. The queue time is the time from
+   * the submit until the task starts running.
+   */
+  public String getStatistics() {
+    long _startedCnt = startedCnt.sum();
+    Executor _executor = executor;
+    return
+      ", refreshPoolMode=" + (_executor instanceof VirtualThreadExecutor ?
+        (((VirtualThreadExecutor) _executor).isVirtual() ? "virtual" : "lightweight") : "platform") +
+      ", refreshPoolSubmitCnt=" + submitCnt.sum() +
+      ", refreshPoolSubmitFailedCnt=" + submitFailedCnt.sum() +
+      ", refreshPoolStartedCnt=" + _startedCnt +
+      ", refreshPoolTaskExceptionCnt=" + taskExceptionCnt.sum() +
+      ", refreshPoolQueueMicrosAvg=" + (_startedCnt == 0 ? 0 : queueNanos.sum() / _startedCnt / 1000) +
+      ", refreshPoolQueueMicrosMax=" + queueNanosMax.get() / 1000 +
+      (_executor instanceof VirtualThreadExecutor ? ((VirtualThreadExecutor) _executor).getStatistics() : "");
+  }
+
   static class MyThreadFactory implements ThreadFactory {
 
     AtomicInteger count = new AtomicInteger();
+    String prefix;
+
+    MyThreadFactory() {
+      this("cache2k-refresh-");
+    }
+
+    MyThreadFactory(String _prefix) {
+      prefix = _prefix;
+    }
 
     @Override
     public synchronized Thread newThread(Runnable r) {
-      Thread t = new Thread(r, "cache2k-refresh-" + count.incrementAndGet());
+      Thread t = new Thread(r, prefix + count.incrementAndGet());
       t.setDaemon(true);
       return t;
     }
 
   }
 
+  /**
+   * Runs each task on a new thread, at most {@code limit} tasks run concurrently and
+   * up to {@code queueCapacity} tasks wait. A thread takes waiting tasks before it
+   * terminates, so the number of threads never exceeds the limit. Virtual threads are
+   * created via reflection, since we compile for Java 8. Without virtual threads, e.g.
+   * before Java 21, platform threads are used with the lower fallback limit, since a
+   * thousand platform threads are no lightweight alternative.
+   */
+  static class VirtualThreadExecutor implements Executor {
+
+    private final int limit;
+    private final ArrayBlockingQueue<Runnable> queue;
+    private final ThreadFactory threadFactory;
+    private final boolean virtual;
+    private final AtomicInteger running = new AtomicInteger();
+    private volatile boolean shutdown;
+
+    private final LongAdder threadStartCnt = new LongAdder();
+    private final LongAccumulator runningMax = new LongAccumulator(Math::max, 0);
+
+    VirtualThreadExecutor(int _limit, int _fallbackLimit, int _queueCapacity) {
+      queue = new ArrayBlockingQueue<Runnable>(_queueCapacity);
+      ThreadFactory _factory = createVirtualThreadFactory();
+      virtual = _factory != null;
+      if (virtual) {
+        limit = _limit;
+        threadFactory = _factory;
+      } else {
+        limit = _fallbackLimit;
+        threadFactory = new MyThreadFactory("cache2k-refresh-lw-");
+        Log.getLog(CacheRefreshThreadPool.class).warn(
+          "Virtual threads not available, refresh uses platform threads with concurrency limit " + limit);
+      }
+    }
+
+    static ThreadFactory createVirtualThreadFactory() {
+      try {
+        Class<?> _builderClass = Class.forName("java.lang.Thread$Builder");
+        Object _builder = Thread.class.getMethod("ofVirtual").invoke(null);
+        _builder = _builderClass.getMethod("name", String.class, long.class)
+          .invoke(_builder, "cache2k-refresh-virtual-", 1L);
+        return (ThreadFactory) _builderClass.getMethod("factory").invoke(_builder);
+      } catch (Exception ex) {
+        return null;
+      }
+    }
+
+    boolean isVirtual() {
+      return virtual;
+    }
+
+    @Override
+    public void execute(Runnable r) {
+      if (shutdown || !queue.offer(r)) {
+        throw new RejectedExecutionException();
+      }
+      startThreadIfNeeded();
+    }
+
+    private void startThreadIfNeeded() {
+      for (;;) {
+        int _running = running.get();
+        if (_running >= limit || queue.isEmpty()) {
+          return;
+        }
+        if (running.compareAndSet(_running, _running + 1)) {
+          runningMax.accumulate(_running + 1);
+          threadStartCnt.increment();
+          threadFactory.newThread(this::runTasks).start();
+          return;
+        }
+      }
+    }
+
+    /**
+     * Run waiting tasks. After giving up the slot, check the queue again, since
+     * a submitter may have seen the limit reached just before.
+     */
+    private void runTasks() {
+      for (;;) {
+        Runnable r;
+        while ((r = queue.poll()) != null) {
+          try {
+            r.run();
+          } catch (Throwable ignore) {
+          }
+        }
+        running.decrementAndGet();
+        int _running = running.get();
+        if (queue.isEmpty() || _running >= limit || !running.compareAndSet(_running, _running + 1)) {
+          return;
+        }
+      }
+    }
+
+    void shutdown() {
+      shutdown = true;
+      queue.clear();
+    }
+
+    String getStatistics() {
+      return
+        ", refreshPoolRunning=" + running.get() +
+        ", refreshPoolRunningMax=" + runningMax.get() +
+        ", refreshPoolLimit=" + limit +
+        ", refreshPoolQueueSize=" + queue.size() +
+        ", refreshPoolThreadStartCnt=" + threadStartCnt.sum();
+    }
+
+  }
+
   static class MyStatus {
     public String toString() {
       return "CacheRefreshThreadPool(" +
@@ -109,4 +319,27 @@ public class CacheRefreshThreadPool {
     }
   }
 
+  public static class Tunable extends TunableConstants {
+
+    /**
+     * Maximum number of refreshes running concurrently on virtual threads.
+     * Shared by all caches using virtual threads for refresh.
+     */
+    public int virtualThreadConcurrencyLimit = 1000;
+
+    /**
+     * Maximum number of refreshes running concurrently, when virtual threads are
+     * requested but the runtime has none, so platform threads are started instead.
+     * 0 means four times the size of the platform pool.
+     */
+    public int platformThreadFallbackConcurrencyLimit = 0;
+
+    /**
+     * Maximum number of refreshes waiting for a free slot, when the limit is
+     * reached. Further refresh requests fail and the entry expires.
+     */
+    public int virtualThreadQueueCapacity = 10000;
+
+  }
+
 }
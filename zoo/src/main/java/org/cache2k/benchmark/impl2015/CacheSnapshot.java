@@ -0,0 +1,290 @@
+package org.cache2k.benchmark.impl2015;
+
+/*
+ * #%L
+ * zoo
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Snapshot of the cache content and the state of the replacement algorithm in a
+ * memory mapped file, so a restarted cache starts warm.
+ *
+ * <p>The file starts with a header, followed by the fingerprints of the ghost history
+ * and the entry records. The hash seed differs per cache, so a fingerprint is stored
+ * as the hash code of the key. A record holds the replacement state, the expiry time and
+ * the modification time, followed by key and value written by the serializers. The
+ * records are in the order the entries are inserted on restore, the coldest first.
+ * If the capacity is lower than the number of records, the coldest are skipped.
+ *
+ * <p>The entries and their replacement state are collected under the structure lock,
+ * via {@link BaseCache#collectSnapshotEntries}. That is a consistent view of clock hands
+ * and hot/cold membership, at the cost of one pass copying references. The values are
+ * serialized after the lock is released, entries removed meanwhile are skipped.
+ * A snapshot is written to a temporary file and moved in place, so a crash while
+ * writing keeps the previous snapshot.
+ *
+ * @author Jens Wilke
+ */
+@SuppressWarnings("unchecked")
+final class CacheSnapshot {
+
+  static final int MAGIC = 0x63326b53;
+  static final int VERSION = 1;
+  static final int HEADER_SIZE = 32;
+  /** State, expiry and modification time, key and value follow */
+  static final int RECORD_HEADER_SIZE = 24;
+
+  /** Initial size of the mapped window, doubled when a record does not fit */
+  static final int INITIAL_WINDOW_SIZE = 1 << 20;
+
+  private final FileChannel channel;
+  private final FileChannel.MapMode mode;
+  private final long fileSize;
+  private MappedByteBuffer window;
+  private long windowStart;
+
+  private CacheSnapshot(FileChannel _channel, FileChannel.MapMode _mode) throws IOException {
+    channel = _channel;
+    mode = _mode;
+    fileSize = _mode == FileChannel.MapMode.READ_ONLY ? _channel.size() : Long.MAX_VALUE;
+  }
+
+  /**
+   * Write the snapshot of the cache.
+   *
+   * @return number of written entries
+   */
+  static <K, T> int write(BaseCache<Entry, K, T> _cache, File _file,
+                          SnapshotSerializer<K> _keySerializer, SnapshotSerializer<T> _valueSerializer) {
+    Collector _collector = new Collector();
+    int[] _ghosts;
+    synchronized (_cache.lock) {
+      _cache.collectSnapshotEntries(_collector);
+      _ghosts = _cache.getSnapshotGhosts();
+    }
+    File _tmp = new File(_file.getPath() + ".tmp");
+    int _count;
+    try (FileChannel _channel = FileChannel.open(_tmp.toPath(),
+      StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+      StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      CacheSnapshot _snapshot = new CacheSnapshot(_channel, FileChannel.MapMode.READ_WRITE);
+      _count = _snapshot.writeContent(_cache, _collector, _ghosts, _keySerializer, _valueSerializer);
+      _channel.truncate(_snapshot.position());
+      _channel.force(true);
+    } catch (IOException ex) {
+      throw new CacheStorageException("writing snapshot " + _file, ex);
+    }
+    try {
+      Files.move(_tmp.toPath(), _file.toPath(),
+        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException ex) {
+      throw new CacheStorageException("moving snapshot to " + _file, ex);
+    }
+    return _count;
+  }
+
+  /**
+   * Read the snapshot into the cache. Called from {@link BaseCache#init()} with the
+   * structure lock held and an empty cache.
+   *
+   * @return number of restored entries
+   */
+  static <K, T> int read(BaseCache<Entry, K, T> _cache, File _file,
+                         SnapshotSerializer<K> _keySerializer, SnapshotSerializer<T> _valueSerializer) {
+    try (FileChannel _channel = FileChannel.open(_file.toPath(), StandardOpenOption.READ)) {
+      CacheSnapshot _snapshot = new CacheSnapshot(_channel, FileChannel.MapMode.READ_ONLY);
+      return _snapshot.readContent(_cache, _keySerializer, _valueSerializer);
+    } catch (IOException ex) {
+      throw new CacheStorageException("reading snapshot " + _file, ex);
+    }
+  }
+
+  private <K, T> int writeContent(BaseCache<Entry, K, T> _cache, Collector _collector, int[] _ghosts,
+                                  SnapshotSerializer<K> _keySerializer, SnapshotSerializer<T> _valueSerializer)
+    throws IOException {
+    map(HEADER_SIZE, Math.max(INITIAL_WINDOW_SIZE, _ghosts.length * 4L));
+    for (int _fingerprint : _ghosts) {
+      window.putInt(_cache.unmodifiedHash(_fingerprint));
+    }
+    int _count = 0;
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < _collector.size; i++) {
+      Entry e = _collector.entries[i];
+      T _value;
+      long _expiry;
+      long _lastModification;
+      synchronized (e) {
+        if (e.isRemovedState() || !e.hasFreshData(now) || e.hasException()) {
+          continue;
+        }
+        _value = _cache.loadValue(e);
+        _expiry = e.nextRefreshTime < 0 ? -e.nextRefreshTime : e.nextRefreshTime;
+        if (_expiry < Entry.EXPIRY_TIME_MIN) {
+          _expiry = Entry.FETCHED_STATE;
+        }
+        _lastModification = e.getLastModification();
+      }
+      writeRecord(_collector.states[i], _expiry, _lastModification,
+        (K) e.key, _value, _keySerializer, _valueSerializer);
+      _count++;
+    }
+    ByteBuffer _header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+    _header.putInt(MAGIC);
+    _header.putInt(VERSION);
+    _header.putInt(_count);
+    _header.putInt(_ghosts.length);
+    _header.putLong(now);
+    return _count;
+  }
+
+  private <K, T> void writeRecord(
+    final long _state, final long _expiry, final long _lastModification, final K key, final T _value,
+    final SnapshotSerializer<K> _keySerializer, final SnapshotSerializer<T> _valueSerializer)
+    throws IOException {
+    long _start = position();
+    for (;;) {
+      try {
+        window.putLong(_state);
+        window.putLong(_expiry);
+        window.putLong(_lastModification);
+        _keySerializer.write(window, key);
+        _valueSerializer.write(window, _value);
+        return;
+      } catch (BufferOverflowException ex) {
+        map(_start, window.capacity() * 2L);
+      }
+    }
+  }
+
+  private <K, T> int readContent(BaseCache<Entry, K, T> _cache,
+                                 SnapshotSerializer<K> _keySerializer, SnapshotSerializer<T> _valueSerializer)
+    throws IOException {
+    if (fileSize < HEADER_SIZE) {
+      throw new CacheStorageException("snapshot truncated");
+    }
+    map(0, HEADER_SIZE);
+    if (window.getInt() != MAGIC || window.getInt() != VERSION) {
+      throw new CacheStorageException("no snapshot or incompatible version");
+    }
+    int _recordCount = window.getInt();
+    int _ghostCount = window.getInt();
+    long _available = fileSize - HEADER_SIZE;
+    if (_ghostCount < 0 || _ghostCount * 4L > _available) {
+      throw new CacheStorageException("snapshot corrupt, ghost count " + _ghostCount);
+    }
+    _available -= _ghostCount * 4L;
+    if (_recordCount < 0 || _recordCount * (long) RECORD_HEADER_SIZE > _available) {
+      throw new CacheStorageException("snapshot corrupt, record count " + _recordCount);
+    }
+    map(HEADER_SIZE, Math.max(INITIAL_WINDOW_SIZE, _ghostCount * 4L));
+    int[] _ghosts = new int[_ghostCount];
+    for (int i = 0; i < _ghostCount; i++) {
+      _ghosts[i] = _cache.modifiedHash(window.getInt());
+    }
+    _cache.restoreSnapshotGhosts(_ghosts);
+    int _skip = Math.max(0, _recordCount - _cache.maxSize);
+    int _count = 0;
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < _recordCount; i++) {
+      long _start = position();
+      long _state;
+      long _expiry;
+      long _lastModification;
+      K key;
+      T _value;
+      for (;;) {
+        try {
+          _state = window.getLong();
+          _expiry = window.getLong();
+          _lastModification = window.getLong();
+          key = _keySerializer.read(window);
+          _value = _valueSerializer.read(window);
+          break;
+        } catch (BufferUnderflowException ex) {
+          if (windowStart + window.capacity() >= fileSize) {
+            throw new CacheStorageException("snapshot truncated");
+          }
+          map(_start, window.capacity() * 2L);
+        } catch (RuntimeException ex) {
+          throw new CacheStorageException("snapshot corrupt, record " + i, ex);
+        }
+      }
+      if (key == null) {
+        throw new CacheStorageException("snapshot corrupt, record " + i);
+      }
+      if (i < _skip || (_expiry >= Entry.EXPIRY_TIME_MIN && _expiry <= now)) {
+        continue;
+      }
+      _cache.restoreSnapshotEntry(key, _value, _state, _expiry, _lastModification, now);
+      _count++;
+    }
+    return _count;
+  }
+
+  private long position() {
+    return windowStart + window.position();
+  }
+
+  /**
+   * Map a window of the file. When reading, the window is cut at the end of the file.
+   */
+  private void map(long _start, long _size) throws IOException {
+    windowStart = _start;
+    window = channel.map(mode, _start, Math.min(Math.min(_size, Integer.MAX_VALUE), fileSize - _start));
+  }
+
+  /**
+   * Entries of the snapshot with their replacement state, filled by the cache under the
+   * structure lock.
+   */
+  static final class Collector {
+
+    Entry[] entries = new Entry[64];
+    long[] states = new long[64];
+    int size;
+
+    /**
+     * Add the entry. The state is passed back on restore to
+     * {@link BaseCache#restoreIntoReplacementList}.
+     */
+    void add(Entry e, long _state) {
+      if (size == entries.length) {
+        entries = Arrays.copyOf(entries, size * 2);
+        states = Arrays.copyOf(states, size * 2);
+      }
+      entries[size] = e;
+      states[size] = _state;
+      size++;
+    }
+
+  }
+
+}
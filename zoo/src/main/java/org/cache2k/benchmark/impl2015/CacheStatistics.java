@@ -0,0 +1,284 @@
+package org.cache2k.benchmark.impl2015;
+
+/*
+ * #%L
+ * zoo
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+
+/**
+ * Statistics counters of a cache. Each thread increments its own block of
+ * counters, so there is no contention and no shared cache line between threads.
+ * The blocks are only summed up when the statistics are requested.
+ *
+ * <p>A block is only written by its thread. Counters incremented under the structure
+ * lock are summed up consistently, when the sum is taken under the structure lock as
+ * well. Counters incremented without the lock may lag behind, as before.
+ *
+ * <p>The block of a terminated thread is added to a retired block and dropped, so
+ * only the blocks of live threads are kept. This happens when the block array is
+ * full and when the sum is taken. A pool that replaces its threads does not let the
+ * array grow without bound.
+ *
+ * <p>If statistics are disabled via {@link BaseCache.Tunable#disableStatistics}
+ * the cache guards all increments with the static final {@link BaseCache#STATISTICS}
+ * flag, so the JIT removes the counting completely.
+ *
+ * @author Jens Wilke
+ */
+final class CacheStatistics {
+
+  private final ThreadLocal<Counters> local = new ThreadLocal<Counters>() {
+    @Override
+    protected Counters initialValue() {
+      return register();
+    }
+  };
+
+  private Counters[] blocks = new Counters[4];
+  /** Thread writing the block with the same index */
+  private Thread[] owners = new Thread[4];
+  private int blockCount;
+  /** Sum of the blocks of terminated threads */
+  private final Counters retired = new Counters();
+
+  /**
+   * Counter block of the current thread.
+   */
+  Counters get() {
+    return local.get();
+  }
+
+  private synchronized Counters register() {
+    if (blockCount == blocks.length) {
+      retireTerminated();
+      if (blockCount * 2 > blocks.length) {
+        blocks = Arrays.copyOf(blocks, blocks.length * 2);
+        owners = Arrays.copyOf(owners, owners.length * 2);
+      }
+    }
+    Counters c = new Counters();
+    blocks[blockCount] = c;
+    owners[blockCount] = Thread.currentThread();
+    blockCount++;
+    return c;
+  }
+
+  /**
+   * Add the blocks of terminated threads to the retired block and compact the array.
+   * A terminated thread does not write its block any more, and all its writes are
+   * visible after {@link Thread#isAlive()} returned false.
+   */
+  private void retireTerminated() {
+    int j = 0;
+    for (int i = 0; i < blockCount; i++) {
+      if (owners[i].isAlive()) {
+        blocks[j] = blocks[i];
+        owners[j] = owners[i];
+        j++;
+      } else {
+        retired.add(blocks[i]);
+      }
+    }
+    Arrays.fill(blocks, j, blockCount, null);
+    Arrays.fill(owners, j, blockCount, null);
+    blockCount = j;
+  }
+
+  /**
+   * Sum of the counters of all threads.
+   */
+  synchronized Counters sum() {
+    retireTerminated();
+    Counters _sum = new Counters();
+    _sum.add(retired);
+    for (int i = 0; i < blockCount; i++) {
+      _sum.add(blocks[i]);
+    }
+    return _sum;
+  }
+
+  /**
+   * Number of counter blocks, which is the number of live threads that used the cache.
+   */
+  synchronized int getBlockCount() {
+    retireTerminated();
+    return blockCount;
+  }
+
+  /**
+   * Padding before the counters, to avoid sharing a cache line with another
+   * object. Fields of the super class are laid out first.
+   */
+  static class PaddingBefore {
+    long p01, p02, p03, p04, p05, p06, p07, p08;
+  }
+
+  static class CounterFields extends PaddingBefore {
+
+    long putCnt;
+    long putButExpiredCnt;
+    long putNewEntryCnt;
+    long removedCnt;
+    /** Number of entries removed by clear. */
+    long clearedCnt;
+    long expiredKeptCnt;
+    long expiredRemoveCnt;
+    long evictedCnt;
+    long refreshCnt;
+    long suppressedExceptionCnt;
+    long fetchExceptionCnt;
+    /* that is a miss, but a hit was already counted. */
+    long peekHitNotFreshCnt;
+    /* no heap hash hit */
+    long peekMissCnt;
+    long fetchCnt;
+    long fetchButHitCnt;
+    long bulkGetCnt;
+    long fetchMillis;
+    long refreshHitCnt;
+    long newEntryCnt;
+
+    /**
+     * Entries created for processing via invoke or replace, but no operation happened on it.
+     * The entry processor may just have checked the entry state or an exception happened.
+     */
+    long atomicOpNewEntryCnt;
+
+    /**
+     * Loaded from storage, but the entry was not fresh and cannot be returned.
+     */
+    long loadNonFreshCnt;
+
+    /**
+     * Entry was loaded from storage or restored from the snapshot and fresh.
+     */
+    long loadHitCnt;
+
+    /**
+     * Separate counter for loaded entries that needed a fetch.
+     */
+    long loadNonFreshAndFetchedCnt;
+
+    long refreshSubmitFailedCnt;
+
+    /**
+     * An exception that should not have happened and was not thrown to the
+     * application. Only used for the refresh thread yet.
+     */
+    long internalExceptionCnt;
+
+    /**
+     * Storage did not contain the requested entry.
+     */
+    long loadMissCnt;
+
+    /**
+     * A newly inserted entry was removed by the eviction without the fetch to complete.
+     */
+    long virginEvictCnt;
+
+    long timerEvents;
+
+    /**
+     * The admission filter rejected a new entry and evicted it instead of the
+     * candidate of the eviction algorithm.
+     */
+    long admissionRejectCnt;
+
+    /**
+     * Entries evicted by a batch of the background eviction.
+     */
+    long batchEvictCnt;
+
+    /**
+     * The cache size reached the high watermark and a writer ran the batch eviction
+     * instead of the evictor thread.
+     */
+    long writerEvictBatchCnt;
+
+    /**
+     * Hits counted for eviction algorithms that keep no hit counter in the entry.
+     */
+    long policyHitCnt;
+
+  }
+
+  static final class Counters extends CounterFields {
+
+    long q01, q02, q03, q04, q05, q06, q07, q08;
+
+    void add(Counters c) {
+      putCnt += c.putCnt;
+      putButExpiredCnt += c.putButExpiredCnt;
+      putNewEntryCnt += c.putNewEntryCnt;
+      removedCnt += c.removedCnt;
+      clearedCnt += c.clearedCnt;
+      expiredKeptCnt += c.expiredKeptCnt;
+      expiredRemoveCnt += c.expiredRemoveCnt;
+      evictedCnt += c.evictedCnt;
+      refreshCnt += c.refreshCnt;
+      suppressedExceptionCnt += c.suppressedExceptionCnt;
+      fetchExceptionCnt += c.fetchExceptionCnt;
+      peekHitNotFreshCnt += c.peekHitNotFreshCnt;
+      peekMissCnt += c.peekMissCnt;
+      fetchCnt += c.fetchCnt;
+      fetchButHitCnt += c.fetchButHitCnt;
+      bulkGetCnt += c.bulkGetCnt;
+      fetchMillis += c.fetchMillis;
+      refreshHitCnt += c.refreshHitCnt;
+      newEntryCnt += c.newEntryCnt;
+      atomicOpNewEntryCnt += c.atomicOpNewEntryCnt;
+      loadNonFreshCnt += c.loadNonFreshCnt;
+      loadHitCnt += c.loadHitCnt;
+      loadNonFreshAndFetchedCnt += c.loadNonFreshAndFetchedCnt;
+      refreshSubmitFailedCnt += c.refreshSubmitFailedCnt;
+      internalExceptionCnt += c.internalExceptionCnt;
+      loadMissCnt += c.loadMissCnt;
+      virginEvictCnt += c.virginEvictCnt;
+      timerEvents += c.timerEvents;
+      admissionRejectCnt += c.admissionRejectCnt;
+      batchEvictCnt += c.batchEvictCnt;
+      writerEvictBatchCnt += c.writerEvictBatchCnt;
+      policyHitCnt += c.policyHitCnt;
+    }
+
+    long getExpiredCnt() {
+      return expiredRemoveCnt + expiredKeptCnt;
+    }
+
+    /**
+     * For peek no fetch is counted if there is a storage miss, hence the extra counter.
+     */
+    long getFetchesBecauseOfNewEntries() {
+      return fetchCnt - fetchButHitCnt;
+    }
+
+    int getFetchesInFlight() {
+      return (int) (newEntryCnt - putNewEntryCnt - virginEvictCnt
+        - loadNonFreshCnt
+        - loadHitCnt
+        - getFetchesBecauseOfNewEntries()
+        - atomicOpNewEntryCnt
+      );
+    }
+
+  }
+
+}
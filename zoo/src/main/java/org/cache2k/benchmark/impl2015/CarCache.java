@@ -26,7 +26,7 @@ package org.cache2k.benchmark.impl2015;
  *
  * @author Jens Wilke
  */
-public class CarCache<K, T> extends LockFreeCache<CarCache.Entry, K, T> {
+public class CarCache<K, T> extends LockFreeCache<Entry, K, T> {
 
   int size;
   int arcP = 0;
@@ -39,10 +39,10 @@ public class CarCache<K, T> extends LockFreeCache<CarCache.Entry, K, T> {
 
   int t1Size;
   int t2Size;
-  Entry<K,T> t2Head;
-  Entry<K,T> t1Head;
-  Entry<K,T> b1Head;
-  Entry<K,T> b2Head;
+  Entry t2Head;
+  Entry t1Head;
+  Entry b1Head;
+  Entry b2Head;
 
   boolean b2HitPreferenceForEviction;
 
@@ -54,10 +54,10 @@ public class CarCache<K, T> extends LockFreeCache<CarCache.Entry, K, T> {
     t2Size = 0;
     t1Head = null;
     t2Head = null;
-    b1Head = new Entry<K, T>();
-    b2Head = new Entry<K, T>();
-    b1Head = new Entry<K,T>().shortCircuit();
-    b2Head = new Entry<K,T>().shortCircuit();
+    b1Head = new Entry();
+    b2Head = new Entry();
+    b1Head = new Entry().shortCircuit();
+    b2Head = new Entry().shortCircuit();
     b1HashCtrl = new Hash<Entry>();
     b2HashCtrl = new Hash<Entry>();
     b1Hash = b1HashCtrl.init(Entry.class);
@@ -78,7 +78,7 @@ public class CarCache<K, T> extends LockFreeCache<CarCache.Entry, K, T> {
 
   @Override
   protected Entry newEntry() {
-    return new Entry();
+    return newEntryOfConfiguredType();
   }
 
   @Override
@@ -92,7 +92,7 @@ public class CarCache<K, T> extends LockFreeCache<CarCache.Entry, K, T> {
     Entry _head = e;
     do {
       cnt += e.hitCnt;
-      e = (Entry) e.prev;
+      e = e.prev;
     } while (e != _head);
     return cnt;
   }
@@ -137,8 +137,8 @@ public class CarCache<K, T> extends LockFreeCache<CarCache.Entry, K, T> {
     return replace();
   }
 
-  private Entry<K, T> replace() {
-    Entry<K, T> e = null;
+  private Entry replace() {
+    Entry e = null;
     for (;;) {
       if (t1Size >= Math.max(1, arcP) || t2Size == 0) {
         e = t1Head;
@@ -169,7 +169,7 @@ public class CarCache<K, T> extends LockFreeCache<CarCache.Entry, K, T> {
 
   private void evictGhosts() {
     int _b1Size = b1HashCtrl.size;
-    if (t1Size + _b1Size == maxSize && _b1Size > 0) {
+    if (t1Size + _b1Size >= maxSize && _b1Size > 0) {
       Entry e = b1Head.prev;
       removeFromList(e);
       boolean f = b1HashCtrl.remove(b1Hash, e);
@@ -183,30 +183,64 @@ public class CarCache<K, T> extends LockFreeCache<CarCache.Entry, K, T> {
     }
   }
 
-  private void insertT2(Entry<K, T> e) {
+  private void insertT2(Entry e) {
     t2Size++;
     t2Head = insertIntoTailCyclicList(t2Head, e);
   }
 
+  /**
+   * Drop the oldest ghosts until the history limits of {@link #evictGhosts()} are met
+   * for the new capacity.
+   */
+  @Override
+  protected void maxSizeChanged(int _previousMaxSize) {
+    arcP = Math.min(arcP, maxSize);
+    while (t1Size + b1HashCtrl.size > maxSize && b1HashCtrl.size > 0) {
+      Entry e = b1Head.prev;
+      removeFromList(e);
+      b1HashCtrl.remove(b1Hash, e);
+    }
+    while (t1Size + t2Size + b1HashCtrl.size + b2HashCtrl.size > 2 * maxSize && b2HashCtrl.size > 0) {
+      Entry e = b2Head.prev;
+      removeFromList(e);
+      b2HashCtrl.remove(b2Hash, e);
+    }
+  }
+
+  /**
+   * The ghosts are entries that keep the key, so the key size counts for them.
+   */
+  @Override
+  protected long getPolicyHeapBytes() {
+    long _ghostBytes = HeapSizeEstimator.shallowSize(Entry.class) + heapSizeEstimator.getAverageKeyBytes();
+    return super.getPolicyHeapBytes() +
+      HeapSizeEstimator.shallowSize(b1Hash) + HeapSizeEstimator.shallowSize(b2Hash) +
+      (b1HashCtrl.size + b2HashCtrl.size) * _ghostBytes;
+  }
+
   private int getListSize() {
     return t1Size + t2Size;
   }
 
-  private void insertCopyIntoB1(Entry<K, T> e) {
-    Entry<K,T> e2 = copyEntryForGhost(e);
+  private void insertCopyIntoB1(Entry e) {
+    Entry e2 = copyEntryForGhost(e);
     b1Hash = b1HashCtrl.insert(b1Hash, e2);
     insertInList(b1Head, e2);
   }
 
-  private void insertCopyIntoB2(Entry<K, T> e) {
-    Entry<K,T> e2 = copyEntryForGhost(e);
+  private void insertCopyIntoB2(Entry e) {
+    Entry e2 = copyEntryForGhost(e);
     b2Hash = b2HashCtrl.insert(b2Hash, e2);
     insertInList(b2Head, e2);
   }
 
-  private Entry<K, T> copyEntryForGhost(Entry<K, T> e) {
-    Entry<K, T> e2;
-    e2 = new Entry<K, T>();
+  /**
+   * The ghost goes back into the main hash on a ghost hit, so it is created with
+   * {@link #newEntry()} to match the entry type of the configuration.
+   */
+  private Entry copyEntryForGhost(Entry e) {
+    Entry e2;
+    e2 = newEntry();
     e2.key = (K) e.key;
     e2.hashCode = e.hashCode;
     return e2;
@@ -219,7 +253,7 @@ public class CarCache<K, T> extends LockFreeCache<CarCache.Entry, K, T> {
     if (!_t1Hit || !_t2Hit) {
       if (t1Size < t2Size) {
         _t1Hit = false; _t2Hit = true;
-        Entry<K, T> x = t1Head;
+        Entry x = t1Head;
         if (x != null) {
           do {
             if (x == e) {
@@ -232,7 +266,7 @@ public class CarCache<K, T> extends LockFreeCache<CarCache.Entry, K, T> {
         }
       } else {
         _t1Hit = true; _t2Hit = false;
-        Entry<K, T> x = t2Head;
+        Entry x = t2Head;
         if (x != null) {
           do {
             if (x == e) {
@@ -256,10 +290,4 @@ public class CarCache<K, T> extends LockFreeCache<CarCache.Entry, K, T> {
     }
   }
 
-  static class Entry<K, T> extends org.cache2k.benchmark.impl2015.Entry<Entry, K, T> {
-
-    int hitCnt;
-
-  }
-
 }
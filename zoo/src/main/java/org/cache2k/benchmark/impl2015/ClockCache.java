@@ -26,7 +26,7 @@ package org.cache2k.benchmark.impl2015;
  *
  * @author Jens Wilke; created: 2013-12-01
  */
-public class ClockCache<K, T> extends LockFreeCache<ClockCache.Entry, K, T> {
+public class ClockCache<K, T> extends LockFreeCache<Entry, K, T> {
 
   long hits;
   int runCnt;
@@ -47,7 +47,7 @@ public class ClockCache<K, T> extends LockFreeCache<ClockCache.Entry, K, T> {
     Entry _head = e;
     do {
       cnt += e.hitCnt;
-      e = (Entry) e.prev;
+      e = e.prev;
     } while (e != _head);
     return cnt;
   }
@@ -70,8 +70,9 @@ public class ClockCache<K, T> extends LockFreeCache<ClockCache.Entry, K, T> {
         _hits += e.hitCnt;
         e.removedFromList();
         cancelExpiryTimer(e);
+        releaseValue(e);
         _count++;
-        e = (Entry) e.prev;
+        e = e.prev;
       } while (e != _head);
       hits += _hits;
     }
@@ -101,7 +102,7 @@ public class ClockCache<K, T> extends LockFreeCache<ClockCache.Entry, K, T> {
 
   @Override
   protected Entry newEntry() {
-    return new Entry();
+    return newEntryOfConfiguredType();
   }
 
   /**
@@ -116,7 +117,7 @@ public class ClockCache<K, T> extends LockFreeCache<ClockCache.Entry, K, T> {
       _scanCnt++;
       hits += hand.hitCnt;
       hand.hitCnt = 0;
-      hand = (Entry) hand.next;
+      hand = hand.next;
     }
     if (_scanCnt > size) {
       scan24hCnt++;
@@ -125,6 +126,29 @@ public class ClockCache<K, T> extends LockFreeCache<ClockCache.Entry, K, T> {
     return hand;
   }
 
+  /**
+   * The clock starting at the hand, so the hand and the reference counters are
+   * the same on restore. The restored hits are not counted again.
+   */
+  @Override
+  protected void collectSnapshotEntries(CacheSnapshot.Collector c) {
+    Entry e = hand;
+    if (e == null) {
+      return;
+    }
+    do {
+      c.add(e, e.hitCnt);
+      e = e.next;
+    } while (e != hand);
+  }
+
+  @Override
+  protected void restoreIntoReplacementList(Entry e, long _state) {
+    e.hitCnt = _state;
+    hits -= _state;
+    insertIntoReplacementList(e);
+  }
+
   @Override
   protected IntegrityState getIntegrityState() {
     synchronized (lock) {
@@ -142,10 +166,4 @@ public class ClockCache<K, T> extends LockFreeCache<ClockCache.Entry, K, T> {
             ", scan24hCnt=" + scan24hCnt;
   }
 
-  static class Entry<K, T> extends org.cache2k.benchmark.impl2015.Entry<Entry, K, T> {
-
-    int hitCnt;
-
-  }
-
 }
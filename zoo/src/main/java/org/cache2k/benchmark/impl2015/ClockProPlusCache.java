@@ -40,6 +40,9 @@ public class ClockProPlusCache<K, T> extends LockFreeCache<Entry, K, T> {
 
   private static final Tunable TUNABLE_CLOCK_PRO = TunableFactory.get(Tunable.class);
 
+  /** Marks an entry of the hot clock in the snapshot state, the lower bits are the hits */
+  private static final long SNAPSHOT_HOT = 1L << 32;
+
   long hotHits;
   long coldHits;
   long ghostHits;
@@ -64,10 +67,7 @@ public class ClockProPlusCache<K, T> extends LockFreeCache<Entry, K, T> {
 
   Entry handCold;
   Entry handHot;
-  Entry handGhost;
-  Hash<Entry> ghostHashCtrl;
-  Entry[] ghostHash;
-  long ghostInsertCnt = 0;
+  GhostDirectory ghosts;
 
   private long sumUpListHits(Entry e) {
     if (e == null) { return 0; }
@@ -94,9 +94,7 @@ public class ClockProPlusCache<K, T> extends LockFreeCache<Entry, K, T> {
     staleSize = 0;
     handCold = null;
     handHot = null;
-    handGhost = null;
-    ghostHashCtrl = new Hash<Entry>();
-    ghostHash = ghostHashCtrl.init(Entry.class);
+    ghosts = new GhostDirectory(ghostMax);
   }
 
   @Override
@@ -111,6 +109,7 @@ public class ClockProPlusCache<K, T> extends LockFreeCache<Entry, K, T> {
         if (!e.isStale()) {
           e.removedFromList();
           cancelExpiryTimer(e);
+          releaseValue(e);
           _count++;
         }
         e = (Entry) e.prev;
@@ -125,6 +124,7 @@ public class ClockProPlusCache<K, T> extends LockFreeCache<Entry, K, T> {
         if (!e.isStale()) {
           e.removedFromList();
           cancelExpiryTimer(e);
+          releaseValue(e);
           _count++;
         }
         e = (Entry) e.prev;
@@ -157,14 +157,8 @@ public class ClockProPlusCache<K, T> extends LockFreeCache<Entry, K, T> {
   }
 
   private void insertCopyIntoGhosts(Entry e) {
-    Entry<Entry, K,T> e2 = new Entry<Entry, K, T>();
-    e2.key = (K) e.key;
-    e2.hashCode = e.hashCode;
-    e2.fetchedTime = ghostInsertCnt++;
-    ghostHash = ghostHashCtrl.insert(ghostHash, e2);
-    handGhost = insertIntoTailCyclicList(handGhost, e2);
-    if (ghostHashCtrl.size > ghostMax) {
-      runHandGhost();
+    if (ghosts.insert(e.hashCode)) {
+      ghostDropped();
     }
   }
 
@@ -214,7 +208,7 @@ public class ClockProPlusCache<K, T> extends LockFreeCache<Entry, K, T> {
 
   @Override
   protected Entry newEntry() {
-    return new Entry();
+    return newEntryOfConfiguredType();
   }
 
   protected Entry<Entry, K,T> runHandHot() {
@@ -318,38 +312,108 @@ public class ClockProPlusCache<K, T> extends LockFreeCache<Entry, K, T> {
     return _hand;
   }
 
-  protected void runHandGhost() {
-    boolean f = ghostHashCtrl.remove(ghostHash, handGhost);
-    Entry e = handGhost;
-    handGhost = (Entry) removeFromCyclicList(handGhost);
-  }
+  /**
+   * The oldest ghost was dropped from the history without being hit.
+   */
+  protected void ghostDropped() { }
 
+  /**
+   * A key within the ghost history is inserted directly into the hot clock.
+   * The ghosts only keep the hash code, so a new entry is created.
+   */
   @Override
   protected Entry checkForGhost(K key, int hc) {
-    Entry e = ghostHashCtrl.remove(ghostHash, key, hc);
-    if (e != null) {
-      handGhost = removeFromCyclicList(handGhost, e);
-      ghostHits++;
+    if (!ghosts.remove(hc)) {
+      return null;
+    }
+    Entry e = newEntry();
+    e.key = key;
+    e.hashCode = hc;
+    ghostHits++;
+    hotSize++;
+    handHot = insertIntoTailCyclicList(handHot, e);
+    return e;
+  }
+
+  /**
+   * The cold clock starting at the hand, then the hot clock starting at the hand.
+   * Inserted at the tail in this order, the clocks and hands are the same on restore.
+   */
+  @Override
+  protected void collectSnapshotEntries(CacheSnapshot.Collector c) {
+    collectSnapshotEntries(c, handCold, 0);
+    collectSnapshotEntries(c, handHot, SNAPSHOT_HOT);
+  }
+
+  private static void collectSnapshotEntries(CacheSnapshot.Collector c, Entry _hand, long _hotBit) {
+    if (_hand == null) {
+      return;
+    }
+    Entry e = _hand;
+    do {
+      if (!e.isStale()) {
+        c.add(e, Math.min(e.hitCnt, SNAPSHOT_HOT - 1) | _hotBit);
+      }
+      e = (Entry) e.next;
+    } while (e != _hand);
+  }
+
+  /**
+   * The hit counters are restored for the clock, the hits are subtracted from
+   * the statistics, since they were counted before the restart.
+   */
+  @Override
+  protected void restoreIntoReplacementList(Entry e, long _state) {
+    long _hits = _state & (SNAPSHOT_HOT - 1);
+    e.hitCnt = _hits;
+    if ((_state & SNAPSHOT_HOT) != 0) {
+      hotHits -= _hits;
       hotSize++;
       handHot = insertIntoTailCyclicList(handHot, e);
+    } else {
+      coldHits -= _hits;
+      coldSize++;
+      handCold = insertIntoTailCyclicList(handCold, e);
     }
-    return e;
+  }
+
+  @Override
+  protected int[] getSnapshotGhosts() {
+    return ghosts.toArray();
+  }
+
+  @Override
+  protected void restoreSnapshotGhosts(int[] _fingerprints) {
+    for (int _fingerprint : _fingerprints) {
+      ghosts.insert(_fingerprint);
+    }
+  }
+
+  @Override
+  protected void maxSizeChanged(int _previousMaxSize) {
+    ghostMax = maxSize;
+    hotMax = maxSize * TUNABLE_CLOCK_PRO.hotMaxPercentage / 100;
+    ghosts = ghosts.resize(ghostMax);
+  }
+
+  @Override
+  protected long getPolicyHeapBytes() {
+    return super.getPolicyHeapBytes() + HeapSizeEstimator.deepSize(ghosts, null);
   }
 
   @Override
   protected IntegrityState getIntegrityState() {
     synchronized (lock) {
       return super.getIntegrityState()
-              .checkEquals("ghostHashCtrl.size == Hash.calcEntryCount(refreshHash)",
-                      ghostHashCtrl.size, Hash.calcEntryCount(ghostHash))
+              .checkEquals("ghosts.size() == ghosts.calculateIndexCount()",
+                      ghosts.size(), ghosts.calculateIndexCount())
+              .checkLessOrEquals("ghosts.size() <= ghostMax", ghosts.size(), ghostMax)
               .check("hotMax <= maxElements", hotMax <= maxSize)
               .checkEquals("getListSize() == getSize()", (getListSize()) , getLocalSize())
               .check("checkCyclicListIntegrity(handHot)", checkCyclicListIntegrity(handHot))
               .check("checkCyclicListIntegrity(handCold)", checkCyclicListIntegrity(handCold))
-              .check("checkCyclicListIntegrity(handGhost)", checkCyclicListIntegrity(handGhost))
               .checkEquals("getCyclicListEntryCount(handHot) == hotSize", getCyclicListEntryCount(handHot), hotSize)
-              .checkEquals("getCyclicListEntryCount(handCold) == coldSize", getCyclicListEntryCount(handCold), coldSize)
-              .checkEquals("getCyclicListEntryCount(handGhost) == ghostSize", getCyclicListEntryCount(handGhost), ghostHashCtrl.size);
+              .checkEquals("getCyclicListEntryCount(handCold) == coldSize", getCyclicListEntryCount(handCold), coldSize);
     }
   }
 
@@ -358,7 +422,7 @@ public class ClockProPlusCache<K, T> extends LockFreeCache<Entry, K, T> {
     return ", coldSize=" + coldSize +
            ", hotSize=" + hotSize +
            ", hotMaxSize=" + hotMax +
-           ", ghostSize=" + ghostHashCtrl.size +
+           ", ghostSize=" + ghosts.size() +
            ", staleSize=" + staleSize +
            ", coldHits=" + (coldHits + sumUpListHits(handCold)) +
            ", hotHits=" + (hotHits + sumUpListHits(handHot)) +
@@ -374,9 +438,14 @@ public class ClockProPlusCache<K, T> extends LockFreeCache<Entry, K, T> {
 
   public static class Tunable extends TunableConstants {
 
-    int hotMaxPercentage = 97;
+    /** Maximum size of the hot clock in percent of the cache capacity */
+    public int hotMaxPercentage = 97;
 
-    int hitCounterDecreaseShift = 6;
+    /**
+     * The hot hand decreases the hit counters by the sum of the counters of the two
+     * entries at the hand start, shifted right by this value, plus one.
+     */
+    public int hitCounterDecreaseShift = 6;
 
   }
 
@@ -37,6 +37,10 @@ import java.util.NoSuchElementException;
  * exceptions during an iteration. Since there is a measure for the
  * hash quality, a problem like this may be detected.
  *
+ * <p>If an incremental expand of the hash is in progress, the
+ * buckets not yet moved are iterated after the expanded table. The
+ * move of the buckets is suspended by the same counter.
+ *
  * <p>Rationale: We need to keep track of the entries/keys iterated.
  * The cache may remove and insert entries from hash to refreshHash,
  * also the application may do a remove and insert. A removed entry
@@ -108,6 +112,12 @@ public class ClosableConcurrentHashEntryIterator<E extends Entry>
     }
     for (;;) {
       if (idx >= hash.length) {
+        Entry[] _migrationSource = hashCtl.getMigrationSource();
+        if (_migrationSource != null && hash != _migrationSource) {
+          hash = _migrationSource;
+          idx = 0;
+          continue;
+        }
         if (switchAndCheckAbort()) {
           return null;
         }
@@ -127,7 +137,7 @@ public class ClosableConcurrentHashEntryIterator<E extends Entry>
 
   protected E checkIteratedOrNext(E e) {
     do {
-      boolean _notYetIterated = !Hash.contains(iterated, e.key, e.hashCode);
+      boolean _notYetIterated = !iteratedCtl.contains(iterated, e.key, e.hashCode);
       if (_notYetIterated) {
         Entry _newEntryIterated = new Entry();
         _newEntryIterated.key = e.key;
@@ -27,6 +27,11 @@ import org.cache2k.CacheEntry;
  * and collision list (other field) and it contains a double linked list
  * (next and previous) for the eviction algorithm.
  *
+ * <p>This is the compact entry without the timer links and the modification time.
+ * A cache with expiry or a cache source uses {@link TimedEntry}, with lazy expiry
+ * {@link ModificationTimeEntry}. The policy creates the matching class in
+ * {@code newEntry()}, see {@link BaseCache#timedEntries}.
+ *
  * @author Jens Wilke
  */
 @SuppressWarnings("unchecked")
@@ -73,20 +78,13 @@ public class Entry<E extends Entry, K, T>
 
   final static InitialValueInEntryNeverReturned INITIAL_VALUE = new InitialValueInEntryNeverReturned();
 
-  public BaseCache.MyTimerTask task;
-
   /**
-   * Hit counter for clock pro. Not used by every eviction algorithm.
+   * Hit counter for the clock based algorithms. Algorithms that update the entry
+   * within the structure lock use it for their own bookkeeping: ARC marks the
+   * entries in T2, LIRS keeps the stack position and W-TinyLFU the segment.
    */
   long hitCnt;
 
-  /**
-   * Time the entry was last updated by put or by fetching it from the cache source.
-   * The time is the time in millis times 2. A set bit 1 means the entry is fetched from
-   * the storage and not modified since then.
-   */
-  public long fetchedTime;
-
   /**
    * Contains the next time a refresh has to occur, or if no background refresh is configured, when the entry
    * is expired. Low values have a special meaning, see defined constants.
@@ -121,24 +119,21 @@ public class Entry<E extends Entry, K, T>
   /** Lru list: pointer to previous element or list head */
   public E prev;
 
-  public void setLastModification(long t) {
-    fetchedTime = t << 1;
-  }
+  /**
+   * The compact entry does not record the modification time.
+   */
+  public void setLastModification(long t) { }
 
   /**
    * Memory entry needs to be send to the storage.
    */
   public boolean isDirty() {
-    return (fetchedTime & 1) == 0;
+    return false;
   }
 
-  public void setLastModificationFromStorage(long t) {
-    fetchedTime = t << 1 | 1;
-  }
+  public void setLastModificationFromStorage(long t) { }
 
-  public void resetDirty() {
-    fetchedTime = fetchedTime | 1;
-  }
+  public void resetDirty() { }
 
   /** Reset next as a marker for {@link #isRemovedFromReplacementList()} */
   public final void removedFromList() {
@@ -395,7 +390,7 @@ public class Entry<E extends Entry, K, T>
 
   @Override
   public long getLastModification() {
-    return fetchedTime >> 1;
+    return 0;
   }
 
   /**
@@ -0,0 +1,214 @@
+package org.cache2k.benchmark.impl2015;
+
+/*
+ * #%L
+ * zoo
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.util.Arrays;
+
+/**
+ * Sweeper thread of a cache with lazy expiry. An entry only keeps its expiry time
+ * and a read treats an expired entry as miss, so there is no timer event per entry.
+ * The sweeper removes the expired entries that are not accessed again, to free the memory.
+ *
+ * <p>A hand walks through the slots of the hash table, like the hand of a clock, and
+ * finishes a round in {@link BaseCache.Tunable#sweepRunsPerRound} runs. The expired
+ * entries of a batch are collected under the structure lock and expired after the
+ * lock is released via {@link BaseCache#sweepEntry}. An expired entry stays in memory
+ * for half a round on average. After each round the round time is adapted to the
+ * expiry rate, so the expired entries stay at about
+ * {@link BaseCache.Tunable#sweepStalePercent} of the entries. The first round takes the
+ * minimum round time. The round time at most doubles per round, an idle cache is swept
+ * once per maximum round time.
+ * While an incremental expand is in progress, the hand walks the old table after the
+ * expanded table, since the entries inserted before the expand are still there.
+ *
+ * @author Jens Wilke
+ * @see CacheConfig#setLazyExpiry(boolean)
+ */
+@SuppressWarnings("unchecked")
+final class ExpirySweeper implements Runnable {
+
+  private final BaseCache cache;
+  private final Thread thread;
+  private Entry[] batch = new Entry[16];
+  private int hand;
+  private long roundMillis = BaseCache.TUNABLE.sweepMinimumRoundMillis;
+  private long roundStartTime = System.currentTimeMillis();
+  private boolean cancelled;
+
+  /** Slots left to visit in this run, -1 at the start of the run */
+  private int runSlots;
+  /** Slots visited in this round */
+  private int roundSlots;
+  /** Entries expired in this round */
+  private long roundExpired;
+  private boolean roundComplete;
+
+  private long runCnt;
+  private long roundCnt;
+  private long batchCnt;
+  private long scanCnt;
+  private long expiredCnt;
+
+  ExpirySweeper(BaseCache _cache, String _name) {
+    cache = _cache;
+    thread = new Thread(this, _name);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  synchronized void cancel() {
+    cancelled = true;
+    notify();
+  }
+
+  @Override
+  public void run() {
+    for (;;) {
+      synchronized (this) {
+        try {
+          if (!cancelled) {
+            wait(Math.max(1, roundMillis / BaseCache.TUNABLE.sweepRunsPerRound));
+          }
+        } catch (InterruptedException ex) {
+          return;
+        }
+        if (cancelled) {
+          return;
+        }
+      }
+      try {
+        sweep();
+      } catch (CacheClosedException ex) {
+        return;
+      } catch (Throwable t) {
+        cache.getLog().warn("Exception in expiry sweep", t);
+      }
+    }
+  }
+
+  /**
+   * Sweep the slots of one run in batches and adapt the round time at the end of a round.
+   */
+  private void sweep() {
+    runSlots = -1;
+    do {
+      sweepBatch();
+    } while (runSlots > 0);
+    synchronized (this) {
+      runCnt++;
+    }
+    if (roundComplete) {
+      roundComplete = false;
+      adaptRoundTime();
+    }
+  }
+
+  /**
+   * The entries expire at a rate of about {@code roundExpired / duration}, and stay for half
+   * a round until swept. Choose the round time that keeps the average at the stale
+   * percentage of the cache size.
+   */
+  private void adaptRoundTime() {
+    BaseCache.Tunable t = BaseCache.TUNABLE;
+    long now = System.currentTimeMillis();
+    long _duration = Math.max(1, now - roundStartTime);
+    long _allowedStale = Math.max(1, (long) cache.getLocalSize() * t.sweepStalePercent / 100);
+    long _millis = roundExpired == 0 ?
+      roundMillis * 2 : _allowedStale * 2 * _duration / roundExpired;
+    _millis = Math.min(roundMillis * 2, _millis);
+    _millis = Math.max(t.sweepMinimumRoundMillis, Math.min(t.sweepMaximumRoundMillis, _millis));
+    synchronized (this) {
+      roundMillis = _millis;
+      roundCnt++;
+    }
+    roundStartTime = now;
+    roundExpired = 0;
+  }
+
+  /**
+   * Collect the expired entries of the next slots under the structure lock, then
+   * expire them.
+   */
+  private void sweepBatch() {
+    int _limit = BaseCache.TUNABLE.sweepBatchSize;
+    int _count = 0;
+    int _scanned = 0;
+    long now = System.currentTimeMillis();
+    synchronized (cache.lock) {
+      cache.checkClosed();
+      Entry[] _hash = cache.mainHash;
+      Entry[] _old = cache.mainHashCtrl.getMigrationSource();
+      int _tableLength = _hash.length + (_old != null ? _old.length : 0);
+      if (hand >= _tableLength) {
+        hand = 0;
+      }
+      if (runSlots < 0) {
+        int _runs = BaseCache.TUNABLE.sweepRunsPerRound;
+        runSlots = (_tableLength + _runs - 1) / _runs;
+      }
+      while (_scanned < _limit && runSlots > 0) {
+        Entry _head = hand < _hash.length ? _hash[hand] : _old[hand - _hash.length];
+        for (Entry e = _head; e != null; e = e.another) {
+          _scanned++;
+          long nrt = e.nextRefreshTime;
+          if (nrt < -1 && now >= -nrt) {
+            if (_count == batch.length) {
+              batch = Arrays.copyOf(batch, _count * 2);
+            }
+            batch[_count++] = e;
+          }
+        }
+        runSlots--;
+        hand = hand + 1 == _tableLength ? 0 : hand + 1;
+        if (++roundSlots >= _tableLength) {
+          roundSlots = 0;
+          roundComplete = true;
+          runSlots = 0;
+        }
+      }
+    }
+    int _expired = 0;
+    for (int i = 0; i < _count; i++) {
+      if (cache.sweepEntry(batch[i], now)) {
+        _expired++;
+      }
+      batch[i] = null;
+    }
+    roundExpired += _expired;
+    synchronized (this) {
+      batchCnt++;
+      scanCnt += _scanned;
+      expiredCnt += _expired;
+    }
+  }
+
+  synchronized String getStatistics() {
+    return
+      ", sweepRoundMillis=" + roundMillis +
+      ", sweepRoundCnt=" + roundCnt +
+      ", sweepRunCnt=" + runCnt +
+      ", sweepBatchCnt=" + batchCnt +
+      ", sweepScanCnt=" + scanCnt +
+      ", sweepExpiredCnt=" + expiredCnt;
+  }
+
+}
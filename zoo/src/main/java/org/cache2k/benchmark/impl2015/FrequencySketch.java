@@ -0,0 +1,125 @@
+package org.cache2k.benchmark.impl2015;
+
+/*
+ * #%L
+ * zoo
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Count-min sketch with 4-bit counters as used by TinyLFU. Every key hash maps to
+ * four counters, each in a different long of the table. The estimated frequency
+ * is the minimum of the four. After ten times the cache size increments all counters
+ * are halved, so the history ages and the sketch follows changes in the workload.
+ *
+ * <p>The sketch is not thread safe. Concurrent increments may get lost, which only
+ * adds a little noise to the estimation and is tolerated.
+ *
+ * @author Jens Wilke
+ */
+public class FrequencySketch {
+
+  private static final long[] SEED = {
+    0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+  private static final long RESET_MASK = 0x7777777777777777L;
+  private static final int MAXIMUM_COUNT = 15;
+
+  private final long[] table;
+  private final int tableMask;
+  private final int sampleSize;
+  private int additions;
+  private long resetCnt;
+
+  /**
+   * @param _maximumSize number of entries in the cache
+   */
+  public FrequencySketch(int _maximumSize) {
+    int _size = Integer.highestOneBit(Math.max(8, _maximumSize) - 1) << 1;
+    if (_size <= 0) {
+      _size = 1 << 30;
+    }
+    table = new long[_size];
+    tableMask = _size - 1;
+    sampleSize = (int) Math.min(Integer.MAX_VALUE, Math.max(1, _maximumSize) * 10L);
+  }
+
+  /**
+   * Estimated access frequency of the key hash, between 0 and 15.
+   */
+  public int frequency(int _hash) {
+    int _frequency = MAXIMUM_COUNT;
+    for (int i = 0; i < 4; i++) {
+      long h = spread(_hash, i);
+      int _count = (int) ((table[index(h)] >>> offset(h)) & 0xf);
+      if (_count < _frequency) {
+        _frequency = _count;
+      }
+    }
+    return _frequency;
+  }
+
+  /**
+   * Record an access of the key hash. Counters at the maximum stay unchanged.
+   */
+  public void increment(int _hash) {
+    boolean _added = false;
+    for (int i = 0; i < 4; i++) {
+      long h = spread(_hash, i);
+      int _index = index(h);
+      int _offset = offset(h);
+      long v = table[_index];
+      if (((v >>> _offset) & 0xf) < MAXIMUM_COUNT) {
+        table[_index] = v + (1L << _offset);
+        _added = true;
+      }
+    }
+    if (_added && ++additions >= sampleSize) {
+      reset();
+    }
+  }
+
+  /**
+   * Halve all counters.
+   */
+  private void reset() {
+    long[] _table = table;
+    for (int i = 0; i < _table.length; i++) {
+      _table[i] = (_table[i] >>> 1) & RESET_MASK;
+    }
+    additions >>>= 1;
+    resetCnt++;
+  }
+
+  public long getResetCount() {
+    return resetCnt;
+  }
+
+  private static long spread(int _hash, int i) {
+    long h = (_hash + SEED[i]) * SEED[i];
+    return h ^ (h >>> 29);
+  }
+
+  private int index(long h) {
+    return (int) h & tableMask;
+  }
+
+  /** Bit offset of one of the 16 counters in a long, taken from the upper hash bits */
+  private static int offset(long h) {
+    return (int) (h >>> 60) << 2;
+  }
+
+}
@@ -0,0 +1,277 @@
+package org.cache2k.benchmark.impl2015;
+
+/*
+ * #%L
+ * zoo
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+
+/**
+ * Compact history of evicted keys for the ghost lists of CLOCK-Pro and ARC.
+ * Instead of keeping an entry object per ghost, only the hash code of the key is
+ * stored as fingerprint in a ring. The ring is in insertion order, an insert into
+ * a full directory drops the oldest fingerprint. An open addressing index with linear
+ * probing maps the fingerprint to its ring position. The index length is not a power
+ * of two but a third larger than the capacity, so a ghost needs about 10 bytes.
+ *
+ * <p>A removed fingerprint leaves a hole in the ring. The ring has a quarter more
+ * positions than the capacity. When all positions are used, the holes are
+ * compacted. Two keys with identical hash codes are indistinguishable,
+ * which may lead to a false ghost hit in rare cases.
+ *
+ * <p>Not thread safe, used under the structure lock of the cache.
+ *
+ * @author Jens Wilke
+ */
+final class GhostDirectory {
+
+  private final int capacity;
+  private final int[] ring;
+  /** Open addressing index, contains the ring position + 1, 0 means empty. */
+  private final int[] index;
+  /** Oldest used position in the ring */
+  private int tail;
+  /** Number of used ring positions including holes */
+  private int used;
+  /** Number of fingerprints in the index */
+  private int size;
+
+  GhostDirectory(int _capacity) {
+    capacity = Math.max(1, _capacity);
+    ring = new int[(int) Math.min(Integer.MAX_VALUE - 8, capacity + (capacity >> 2) + 1L)];
+    index = new int[(int) Math.min(Integer.MAX_VALUE - 8, capacity * 4L / 3 + 1)];
+  }
+
+  /**
+   * Home slot of the fingerprint. Maps the mixed hash to the index length by
+   * a multiplication instead of a modulo.
+   */
+  private int home(int _hash) {
+    int h = _hash * 0x9E3779B9;
+    h ^= h >>> 16;
+    return (int) (((h & 0xffffffffL) * index.length) >>> 32);
+  }
+
+  private int nextSlot(int i) {
+    return ++i == index.length ? 0 : i;
+  }
+
+  int size() {
+    return size;
+  }
+
+  int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Append the fingerprint. If the directory is full the oldest fingerprint is dropped.
+   *
+   * @return true, if a fingerprint was dropped
+   */
+  boolean insert(int _fingerprint) {
+    boolean _dropped = false;
+    if (size == capacity) {
+      _dropped = removeOldest();
+    }
+    if (used == ring.length) {
+      compact();
+    }
+    int _position = tail + used;
+    if (_position >= ring.length) {
+      _position -= ring.length;
+    }
+    ring[_position] = _fingerprint;
+    used++;
+    int i = home(_fingerprint);
+    while (index[i] != 0) {
+      i = nextSlot(i);
+    }
+    index[i] = _position + 1;
+    size++;
+    return _dropped;
+  }
+
+  /**
+   * Remove the oldest fingerprint in the ring.
+   *
+   * @return false, if the directory is empty
+   */
+  boolean removeOldest() {
+    while (used > 0) {
+      if (dropTail()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Remove the fingerprint, the ring position becomes a hole.
+   *
+   * @return true, if the fingerprint was present
+   */
+  boolean remove(int _fingerprint) {
+    int i = home(_fingerprint);
+    for (;;) {
+      int _position = index[i] - 1;
+      if (_position < 0) {
+        return false;
+      }
+      if (ring[_position] == _fingerprint) {
+        removeIndexSlot(i);
+        return true;
+      }
+      i = nextSlot(i);
+    }
+  }
+
+  /**
+   * Move the fingerprints together towards the tail, preserving the order,
+   * and rebuild the index. Called when all ring positions are used. At least
+   * a fifth of the positions are holes, so the costs are amortized.
+   */
+  private void compact() {
+    boolean[] _live = new boolean[ring.length];
+    for (int v : index) {
+      if (v != 0) {
+        _live[v - 1] = true;
+      }
+    }
+    Arrays.fill(index, 0);
+    int _source = tail;
+    int _target = tail;
+    int _count = 0;
+    for (int i = 0; i < used; i++) {
+      if (_live[_source]) {
+        int _fingerprint = ring[_source];
+        ring[_target] = _fingerprint;
+        int j = home(_fingerprint);
+        while (index[j] != 0) {
+          j = nextSlot(j);
+        }
+        index[j] = _target + 1;
+        _target = _target + 1 == ring.length ? 0 : _target + 1;
+        _count++;
+      }
+      _source = _source + 1 == ring.length ? 0 : _source + 1;
+    }
+    used = _count;
+  }
+
+  /**
+   * The fingerprints in insertion order, oldest first. Inserting them in this order
+   * into an empty directory rebuilds the history, used for the cache snapshot.
+   */
+  int[] toArray() {
+    boolean[] _live = new boolean[ring.length];
+    for (int v : index) {
+      if (v != 0) {
+        _live[v - 1] = true;
+      }
+    }
+    int[] _fingerprints = new int[size];
+    int _position = tail;
+    int _count = 0;
+    for (int i = 0; i < used; i++) {
+      if (_live[_position]) {
+        _fingerprints[_count++] = ring[_position];
+      }
+      _position = _position + 1 == ring.length ? 0 : _position + 1;
+    }
+    return _fingerprints;
+  }
+
+  /**
+   * Directory with another capacity and the same history. If the capacity is lower,
+   * the oldest fingerprints are dropped. Used when the capacity of the cache changes.
+   */
+  GhostDirectory resize(int _capacity) {
+    GhostDirectory d = new GhostDirectory(_capacity);
+    for (int _fingerprint : toArray()) {
+      d.insert(_fingerprint);
+    }
+    return d;
+  }
+
+  void clear() {
+    Arrays.fill(index, 0);
+    tail = used = size = 0;
+  }
+
+  /**
+   * Free the oldest ring position.
+   *
+   * @return true, if the position contained a fingerprint and not a hole
+   */
+  private boolean dropTail() {
+    int _position = tail;
+    tail = _position + 1 == ring.length ? 0 : _position + 1;
+    used--;
+    int i = home(ring[_position]);
+    for (;;) {
+      int v = index[i] - 1;
+      if (v < 0) {
+        return false;
+      }
+      if (v == _position) {
+        removeIndexSlot(i);
+        return true;
+      }
+      i = nextSlot(i);
+    }
+  }
+
+  /**
+   * Clear the index slot and close the gap by shifting back the following
+   * slots of the probe sequence, so no tombstones are needed.
+   */
+  private void removeIndexSlot(int i) {
+    size--;
+    int j = i;
+    for (;;) {
+      j = nextSlot(j);
+      int _position = index[j] - 1;
+      if (_position < 0) {
+        index[i] = 0;
+        return;
+      }
+      int _home = home(ring[_position]);
+      boolean _stays = i <= j ? (i < _home && _home <= j) : (i < _home || _home <= j);
+      if (!_stays) {
+        index[i] = index[j];
+        i = j;
+      }
+    }
+  }
+
+  /**
+   * Count the occupied index slots, for the integrity check.
+   */
+  int calculateIndexCount() {
+    int _count = 0;
+    for (int v : index) {
+      if (v != 0) {
+        _count++;
+      }
+    }
+    return _count;
+  }
+
+}
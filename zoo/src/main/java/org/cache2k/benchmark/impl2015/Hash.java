@@ -38,6 +38,13 @@ import java.lang.reflect.Array;
  * Fourth, we can leave out "details" of a general hash table, like shrinking. Our hash table
  * only expands.
  *
+ * The expand is incremental: {@link #insert} allocates the table with double size and
+ * returns it, the entries stay in the old table. Each following insert moves a bounded
+ * number of buckets of the old table, see {@link BaseCache.Tunable#rehashBucketsPerInsert}.
+ * Until all buckets are moved, the old table is consulted by {@link #find} and the remove
+ * operations. An unsynchronized reader may miss an entry while its bucket is moved, which
+ * is the same effect as with a concurrent insert or remove.
+ *
  * Access needs to be public, since we want to access the hash primitives from classes
  * in another package.
  */
@@ -47,6 +54,13 @@ public class Hash<E extends Entry> {
   public int maxFill = 0;
   private int suppressExpandCount;
 
+  /** Old table while an expand is in progress, otherwise null */
+  private E[] migrationSource;
+  /** The expanded table the entries of the old table are moved to */
+  private E[] migrationTarget;
+  /** Next bucket in the old table to move */
+  private int migrationIndex;
+
   public static int index(Entry[] _hashTable, int _hashCode) {
     return _hashCode & (_hashTable.length - 1);
   }
@@ -65,7 +79,33 @@ public class Hash<E extends Entry> {
     return null;
   }
 
-  public static boolean contains(Entry[] _hashTable, Object key, int _hashCode) {
+  /**
+   * Lookup the entry in the table and, if an expand is in progress, in the old table.
+   */
+  public E find(E[] _hashTable, Object key, int _hashCode) {
+    E e = lookup(_hashTable, key, _hashCode);
+    if (e != null) {
+      return e;
+    }
+    E[] _source = migrationSource;
+    if (_source != null) {
+      return lookup(_source, key, _hashCode);
+    }
+    return null;
+  }
+
+  /**
+   * Check for the key in the table and, if an expand is in progress, in the old table.
+   */
+  public boolean contains(Entry[] _hashTable, Object key, int _hashCode) {
+    if (containsInTable(_hashTable, key, _hashCode)) {
+      return true;
+    }
+    E[] _source = migrationSource;
+    return _source != null && containsInTable(_source, key, _hashCode);
+  }
+
+  private static boolean containsInTable(Entry[] _hashTable, Object key, int _hashCode) {
     int i = index(_hashTable, _hashCode);
     Entry e = _hashTable[i];
     while (e != null) {
@@ -95,14 +135,57 @@ public class Hash<E extends Entry> {
     }
   }
 
-  private static <E extends Entry> E[] expandHash(E[] _hashTable) {
-    E[] a2 = (E[]) Array.newInstance(
+  private static <E extends Entry> E[] allocateExpanded(E[] _hashTable) {
+    return (E[]) Array.newInstance(
         _hashTable.getClass().getComponentType(),
         _hashTable.length * 2);
+  }
+
+  private static <E extends Entry> E[] expandHash(E[] _hashTable) {
+    E[] a2 = allocateExpanded(_hashTable);
     rehash(_hashTable, a2);
     return a2;
   }
 
+  /**
+   * Move up to the given number of buckets from the old table to the expanded table.
+   * The bucket is cleared before the entries are relinked, so a concurrent reader
+   * never sees an entry twice.
+   */
+  private void migrate(int _bucketCount) {
+    E[] _source = migrationSource;
+    Entry[] _target = migrationTarget;
+    int i = migrationIndex;
+    int _end = _source.length - i > _bucketCount ? i + _bucketCount : _source.length;
+    for (; i < _end; i++) {
+      Entry e = _source[i];
+      if (e != null) {
+        _source[i] = null;
+        while (e != null) {
+          Entry _next = e.another;
+          insertWoExpand(_target, e);
+          e = _next;
+        }
+      }
+    }
+    migrationIndex = i;
+    if (i == _source.length) {
+      migrationSource = null;
+      migrationTarget = null;
+    }
+  }
+
+  /**
+   * Collision info of the table and the old table, if an expand is in progress.
+   */
+  public void calcCollisionInfo(BaseCache.CollisionInfo inf, E[] _hashTable) {
+    calcHashCollisionInfo(inf, _hashTable);
+    E[] _source = migrationSource;
+    if (_source != null) {
+      calcHashCollisionInfo(inf, _source);
+    }
+  }
+
   public static void calcHashCollisionInfo(BaseCache.CollisionInfo inf, Entry[] _hashTable) {
     for (Entry e : _hashTable) {
       if (e != null) {
@@ -139,19 +222,41 @@ public class Hash<E extends Entry> {
     return _entryCount;
   }
 
+  /**
+   * Count the entries in the table and the old table, if an expand is in progress.
+   */
+  public int calcTotalEntryCount(E[] _hashTable) {
+    int _entryCount = calcEntryCount(_hashTable);
+    E[] _source = migrationSource;
+    if (_source != null) {
+      _entryCount += calcEntryCount(_source);
+    }
+    return _entryCount;
+  }
+
   public boolean remove(Entry[] _hashTable, Entry _entry) {
+    if (removeFromTable(_hashTable, _entry)) {
+      size--;
+      return true;
+    }
+    if (migrationSource != null && removeFromTable(migrationSource, _entry)) {
+      size--;
+      return true;
+    }
+    return false;
+  }
+
+  private static boolean removeFromTable(Entry[] _hashTable, Entry _entry) {
     int i = index(_hashTable, _entry.hashCode);
     Entry e = _hashTable[i];
     if (e == _entry) {
       _hashTable[i] = e.another;
-      size--;
       return true;
     }
     while (e != null) {
       Entry _another = e.another;
       if (_another == _entry) {
         e.another = _another.another;
-        size--;
         return true;
       }
       e = _another;
@@ -165,6 +270,17 @@ public class Hash<E extends Entry> {
    * object may be inserted in another hash.
    */
   public E remove(E[] _hashTable, Object key, int hc) {
+    E e = removeFromTable(_hashTable, key, hc);
+    if (e == null && migrationSource != null) {
+      e = removeFromTable(migrationSource, key, hc);
+    }
+    if (e != null) {
+      size--;
+    }
+    return e;
+  }
+
+  private static <E extends Entry> E removeFromTable(E[] _hashTable, Object key, int hc) {
     int i = index(_hashTable, hc);
     Entry e = _hashTable[i];
     if (e == null) {
@@ -172,14 +288,12 @@ public class Hash<E extends Entry> {
     }
     if (e.hashCode == hc && key.equals(e.key)) {
       _hashTable[i] = (E) e.another;
-      size--;
       return (E) e;
     }
     Entry _another = e.another;
     while (_another != null) {
       if (_another.hashCode == hc && key.equals(_another.key)) {
         e.another = _another.another;
-        size--;
         return (E) _another;
       }
       e = _another;
@@ -189,18 +303,46 @@ public class Hash<E extends Entry> {
   }
 
 
+  /**
+   * Insert the entry and move some buckets, if an expand is in progress. Returns the
+   * expanded table, when the fill limit is reached. The expand is postponed while
+   * an iteration is going on, the move of the buckets as well.
+   */
   public E[] insert(E[] _hashTable, Entry _entry) {
     size++;
     insertWoExpand(_hashTable, _entry);
     synchronized (this) {
-      if (size >= maxFill && suppressExpandCount == 0) {
+      if (suppressExpandCount != 0) {
+        return _hashTable;
+      }
+      if (migrationSource != null) {
+        migrate(BaseCache.TUNABLE.rehashBucketsPerInsert);
+      }
+      if (size >= maxFill) {
         maxFill = maxFill * 2;
-        return expandHash(_hashTable);
+        if (migrationSource != null) {
+          migrate(Integer.MAX_VALUE);
+        }
+        if (BaseCache.TUNABLE.rehashBucketsPerInsert <= 0) {
+          return expandHash(_hashTable);
+        }
+        migrationSource = _hashTable;
+        migrationTarget = allocateExpanded(migrationSource);
+        migrationIndex = 0;
+        return migrationTarget;
       }
       return _hashTable;
     }
   }
 
+  /**
+   * The old table while an expand is in progress, for the iteration. Only stable
+   * while the expand is suppressed.
+   */
+  public synchronized E[] getMigrationSource() {
+    return migrationSource;
+  }
+
   /**
    * Usage/reference counter for iterations to suspend expand
    * until the iteration finished. This is needed for correctness
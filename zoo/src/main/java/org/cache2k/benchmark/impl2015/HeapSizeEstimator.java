@@ -0,0 +1,414 @@
+package org.cache2k.benchmark.impl2015;
+
+/*
+ * #%L
+ * zoo
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.cache2k.benchmark.impl2015.util.TunableConstants;
+import org.cache2k.benchmark.impl2015.util.TunableFactory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estimates the retained heap of the cache entries for the capacity bound in bytes,
+ * see {@link CacheConfig#setMaximumHeapBytes(long)}. On every n-th store a random entry
+ * of the cache is sampled and the size of key and value is determined by walking the
+ * object graph. The average is a moving average, so the estimate follows when the
+ * sizes in the cache drift. The entry limit
+ * is the heap bound minus the memory of the policy structures, divided by the bytes of
+ * an entry, which are the overhead of the entry object and the hash table slot plus
+ * the average key and value size.
+ *
+ * <p>Object sizes are calculated from the field types with the layout of a 64 bit
+ * HotSpot JVM, with compressed references if the maximum heap is below 32GB.
+ * Field packing is not modelled, so an object may be off by a few bytes. Objects
+ * shared with other entries are counted for every entry, except when the value is
+ * identical to the key. The fields of classes within a closed module can't be read.
+ * Strings and arrays are calculated directly, collections and maps from their size,
+ * other objects of a closed module count shallow.
+ *
+ * @author Jens Wilke
+ */
+final class HeapSizeEstimator {
+
+  static final Tunable TUNABLE = TunableFactory.get(Tunable.class);
+
+  static final int REFERENCE_SIZE;
+  static final int OBJECT_HEADER_SIZE;
+  static final int ARRAY_HEADER_SIZE;
+  /** Random hash table slots drawn for a sample until an entry is found */
+  static final int MAXIMUM_SLOT_DRAWS = 16;
+
+  static final boolean COMPACT_STRINGS =
+    !System.getProperty("java.specification.version").startsWith("1.");
+
+  /** Node of a hash map: hash, key, value and next */
+  static final int MAP_ENTRY_SIZE;
+
+  static {
+    boolean _32bit = "32".equals(System.getProperty("sun.arch.data.model"));
+    boolean _compressed = !_32bit && Runtime.getRuntime().maxMemory() < 32L * 1024 * 1024 * 1024;
+    REFERENCE_SIZE = _32bit || _compressed ? 4 : 8;
+    OBJECT_HEADER_SIZE = _32bit ? 8 : _compressed ? 12 : 16;
+    ARRAY_HEADER_SIZE = _32bit ? 12 : _compressed ? 16 : 20;
+    MAP_ENTRY_SIZE = (int) align(OBJECT_HEADER_SIZE + 4 + 3 * REFERENCE_SIZE);
+  }
+
+  private static final ClassValue<Layout> LAYOUT = new ClassValue<Layout>() {
+    @Override
+    protected Layout computeValue(Class<?> c) {
+      return new Layout(c);
+    }
+  };
+
+  private final long maximumHeapBytes;
+  private final int entryCapacity;
+  private long entryOverheadBytes;
+
+  /** Stores since the last sample, racy increment */
+  private int storeCnt;
+  private long sampleCnt;
+  private double averageKeyBytes;
+  private double averageValueBytes;
+
+  /**
+   * @param _maximumHeapBytes the heap bound
+   * @param _entryCapacity upper bound of the entry count from the configuration
+   */
+  HeapSizeEstimator(long _maximumHeapBytes, int _entryCapacity) {
+    maximumHeapBytes = _maximumHeapBytes;
+    entryCapacity = _entryCapacity;
+  }
+
+  long getMaximumHeapBytes() {
+    return maximumHeapBytes;
+  }
+
+  int getEntryCapacity() {
+    return entryCapacity;
+  }
+
+  /**
+   * Bytes of the entry object and the hash table slot. Set when the heap cache is
+   * initialized, since the entry type depends on the configuration.
+   */
+  void setEntryOverheadBytes(long v) {
+    entryOverheadBytes = v;
+  }
+
+  /**
+   * True for every store until the initial samples are taken, then for every
+   * n-th store. No synchronization, a lost count is no problem.
+   */
+  boolean isSampleNeeded() {
+    if (sampleCnt < TUNABLE.averagedSamples) {
+      return true;
+    }
+    if (++storeCnt >= TUNABLE.sampleInterval) {
+      storeCnt = 0;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Measure the key and the value of an entry. Until the number of averaged samples is reached the
+   * average is the arithmetic mean, after that each sample has the weight of one of
+   * the averaged samples. Called with the entry lock held.
+   */
+  void sample(Object _key, Object _value) {
+    long _keyBytes = deepSize(_key, null);
+    long _valueBytes = deepSize(_value, _key);
+    synchronized (this) {
+      long n = Math.min(sampleCnt + 1, TUNABLE.averagedSamples);
+      averageKeyBytes += (_keyBytes - averageKeyBytes) / n;
+      averageValueBytes += (_valueBytes - averageValueBytes) / n;
+      sampleCnt++;
+    }
+  }
+
+  long getSampleCount() {
+    return sampleCnt;
+  }
+
+  /**
+   * Average key size, for policies that keep the key of evicted entries.
+   */
+  synchronized long getAverageKeyBytes() {
+    return Math.round(averageKeyBytes);
+  }
+
+  /**
+   * Estimated bytes of one entry including key and value.
+   */
+  synchronized long getEntryBytes() {
+    return entryOverheadBytes + Math.round(averageKeyBytes + averageValueBytes);
+  }
+
+  /**
+   * Number of entries that fit into the heap bound, at most the configured entry
+   * capacity and at least one. Without samples, the entry capacity.
+   *
+   * @param _policyBytes memory of the policy that is not in the entries
+   */
+  int calculateEntryLimit(long _policyBytes) {
+    if (sampleCnt == 0) {
+      return entryCapacity;
+    }
+    long _limit = (maximumHeapBytes - _policyBytes) / Math.max(1, getEntryBytes());
+    return (int) Math.max(1, Math.min(entryCapacity, _limit));
+  }
+
+  /**
+   * Estimated used heap of the entries and the policy structures.
+   */
+  long getEstimatedHeapBytes(int _size, long _policyBytes) {
+    return _size * getEntryBytes() + _policyBytes;
+  }
+
+  String getStatistics(int _size, long _policyBytes) {
+    return ", maximumHeapBytes=" + maximumHeapBytes +
+      ", estimatedHeapBytes=" + getEstimatedHeapBytes(_size, _policyBytes) +
+      ", estimatedEntryBytes=" + getEntryBytes() +
+      ", entryOverheadBytes=" + entryOverheadBytes +
+      ", policyHeapBytes=" + _policyBytes +
+      ", heapSampleCnt=" + sampleCnt;
+  }
+
+  /**
+   * Size of an instance of the class, without the referenced objects.
+   */
+  static long shallowSize(Class<?> c) {
+    return LAYOUT.get(c).size;
+  }
+
+  static long align(long _size) {
+    return (_size + 7) & ~7L;
+  }
+
+  /**
+   * Size of the object itself, without the referenced objects.
+   */
+  static long shallowSize(Object o) {
+    Class<?> c = o.getClass();
+    if (c.isArray()) {
+      return align(ARRAY_HEADER_SIZE + (long) java.lang.reflect.Array.getLength(o) * LAYOUT.get(c).elementSize);
+    }
+    return LAYOUT.get(c).size;
+  }
+
+  /**
+   * Size of the object and all objects reachable from it. Class objects and enum constants
+   * are not counted, since they are shared. The walk stops after the maximum number of
+   * objects configured by {@link Tunable#maximumDeepObjects}.
+   *
+   * @param _shared object that is not counted, or {@code null}
+   */
+  static long deepSize(Object _root, Object _shared) {
+    if (_root == null || _root == _shared) {
+      return 0;
+    }
+    IdentityHashMap<Object, Object> _visited = new IdentityHashMap<Object, Object>();
+    ArrayDeque<Object> _stack = new ArrayDeque<Object>();
+    _stack.push(_root);
+    long _bytes = 0;
+    int _count = 0;
+    while (!_stack.isEmpty()) {
+      Object o = _stack.pop();
+      if (_visited.put(o, o) != null) {
+        continue;
+      }
+      if (++_count > TUNABLE.maximumDeepObjects) {
+        break;
+      }
+      _bytes += shallowSize(o);
+      if (o instanceof String) {
+        _bytes += stringArraySize((String) o);
+        continue;
+      }
+      Class<?> c = o.getClass();
+      if (c.isArray()) {
+        if (!c.getComponentType().isPrimitive()) {
+          for (Object v : (Object[]) o) {
+            push(_stack, v, _shared);
+          }
+        }
+        continue;
+      }
+      Field[] _references = LAYOUT.get(c).references;
+      if (_references == null) {
+        _bytes += closedContainerSize(_stack, o, _shared);
+        continue;
+      }
+      try {
+        for (Field f : _references) {
+          push(_stack, f.get(o), _shared);
+        }
+      } catch (IllegalAccessException ignore) {
+      }
+    }
+    return _bytes;
+  }
+
+  /**
+   * Fields of collections and maps of the JDK are not accessible. Estimate the backing
+   * array or hash table from the size and walk the elements.
+   */
+  private static long closedContainerSize(ArrayDeque<Object> _stack, Object o, Object _shared) {
+    try {
+      if (o instanceof Collection) {
+        Collection<?> _collection = (Collection<?>) o;
+        for (Object v : _collection) {
+          push(_stack, v, _shared);
+        }
+        return align(ARRAY_HEADER_SIZE + (long) _collection.size() * REFERENCE_SIZE);
+      }
+      if (o instanceof Map) {
+        Map<?, ?> _map = (Map<?, ?>) o;
+        for (Map.Entry<?, ?> e : _map.entrySet()) {
+          push(_stack, e.getKey(), _shared);
+          push(_stack, e.getValue(), _shared);
+        }
+        return align(ARRAY_HEADER_SIZE + (long) _map.size() * REFERENCE_SIZE * 4 / 3) +
+          (long) _map.size() * MAP_ENTRY_SIZE;
+      }
+    } catch (RuntimeException ignore) {
+      // concurrently modified, count what we have
+    }
+    return 0;
+  }
+
+  private static void push(ArrayDeque<Object> _stack, Object v, Object _shared) {
+    if (v != null && v != _shared && !(v instanceof Class) && !(v instanceof Enum)) {
+      _stack.push(v);
+    }
+  }
+
+  /**
+   * The array of the string, which can't be reached by reflection with a closed
+   * {@code java.base} module. With compact strings the array has one byte per
+   * character, if all characters are Latin-1.
+   */
+  static long stringArraySize(String s) {
+    int _length = s.length();
+    int _bytesPerChar = 2;
+    if (COMPACT_STRINGS) {
+      _bytesPerChar = 1;
+      for (int i = 0; i < _length; i++) {
+        if (s.charAt(i) > 0xff) {
+          _bytesPerChar = 2;
+          break;
+        }
+      }
+    }
+    return align(ARRAY_HEADER_SIZE + (long) _length * _bytesPerChar);
+  }
+
+  static int primitiveSize(Class<?> c) {
+    if (c == long.class || c == double.class) {
+      return 8;
+    }
+    if (c == int.class || c == float.class) {
+      return 4;
+    }
+    if (c == short.class || c == char.class) {
+      return 2;
+    }
+    return 1;
+  }
+
+  /**
+   * Shallow size and reference fields of a class. The reference fields are
+   * {@code null}, if they can't be made accessible.
+   */
+  static final class Layout {
+
+    final long size;
+    final int elementSize;
+    final Field[] references;
+
+    Layout(Class<?> c) {
+      if (c.isArray()) {
+        Class<?> _component = c.getComponentType();
+        elementSize = _component.isPrimitive() ? primitiveSize(_component) : REFERENCE_SIZE;
+        size = 0;
+        references = null;
+        return;
+      }
+      elementSize = 0;
+      long _size = OBJECT_HEADER_SIZE;
+      List<Field> _references = new ArrayList<Field>();
+      boolean _accessible = true;
+      for (Class<?> k = c; k != null; k = k.getSuperclass()) {
+        for (Field f : k.getDeclaredFields()) {
+          if (Modifier.isStatic(f.getModifiers())) {
+            continue;
+          }
+          if (f.getType().isPrimitive()) {
+            _size += primitiveSize(f.getType());
+            continue;
+          }
+          _size += REFERENCE_SIZE;
+          if (_accessible) {
+            try {
+              f.setAccessible(true);
+              _references.add(f);
+            } catch (RuntimeException ex) {
+              _accessible = false;
+            }
+          }
+        }
+      }
+      size = align(_size);
+      references = _accessible ? _references.toArray(new Field[0]) : null;
+    }
+
+  }
+
+  public static class Tunable extends TunableConstants {
+
+    /** Every n-th stored value is measured */
+    public int sampleInterval = 64;
+
+    /**
+     * Samples in the moving average. The first stores are all measured until this
+     * number of samples is reached.
+     */
+    public int averagedSamples = 128;
+
+    /** Objects visited when measuring a key or value, larger graphs are cut off */
+    public int maximumDeepObjects = 10000;
+
+    /**
+     * The entry capacity follows the estimate if it changes by more than this
+     * percentage, so the policy structures are not resized on every sample.
+     */
+    public int resizeThresholdPercentage = 2;
+
+  }
+
+}
@@ -0,0 +1,551 @@
+package org.cache2k.benchmark.impl2015;
+
+/*
+ * #%L
+ * zoo
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.benchmark.impl2015.util.TunableFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * CLOCK-Pro+ for primitive int keys. In contrast to the {@link BaseCache} based
+ * implementations there are no entry objects: key, hit counter and the clock links
+ * of an entry are kept in parallel arrays indexed by a slot number, the slot is found
+ * via an open addressing index with linear probing. The value storage is provided
+ * by the subclass. The arrays are sized at construction and never grow.
+ *
+ * <p>The eviction follows {@link ClockProPlusCache} and uses its tunable settings.
+ * The ghost history is a ring of keys with its own open addressing index.
+ *
+ * <p>Modifications run under the write lock of a {@link StampedLock}. Reads are
+ * optimistic and retried under the read lock if a concurrent modification happened.
+ * The hit counter increment is not synchronized, a lost hit is tolerated.
+ *
+ * @author Jens Wilke
+ * @see IntIntClockProPlusCache
+ * @see IntObjectClockProPlusCache
+ */
+public abstract class IntClockProPlusCache {
+
+  private static final ClockProPlusCache.Tunable TUNABLE_CLOCK_PRO =
+    TunableFactory.get(ClockProPlusCache.Tunable.class);
+
+  protected static final int NO_SLOT = -1;
+
+  private static final byte FREE = 0;
+  private static final byte COLD = 1;
+  private static final byte HOT = 2;
+
+  protected final StampedLock lock = new StampedLock();
+
+  private final int maxSize;
+  private final int hotMax;
+
+  private final int[] keys;
+  private final int[] hits;
+  private final int[] next;
+  private final int[] prev;
+  private final byte[] state;
+
+  /** Open addressing index of the entries, contains the slot + 1, 0 means empty. */
+  private final int[] index;
+  private final int indexMask;
+
+  /** Ring of evicted keys, the oldest is overwritten. */
+  private final int[] ghostKeys;
+  /** Open addressing index of the ghosts, contains the ring position + 1, 0 means empty. */
+  private final int[] ghostIndex;
+  private final int ghostIndexMask;
+  private int ghostPosition;
+  private int ghostSize;
+
+  private int size;
+  private int allocatedSlots;
+  private int freeSlot = NO_SLOT;
+
+  private int handCold = NO_SLOT;
+  private int handHot = NO_SLOT;
+  private int coldSize;
+  private int hotSize;
+
+  private long coldHits;
+  private long hotHits;
+  private long ghostHitCnt;
+  private long hotRunCnt;
+  private long hotScanCnt;
+  private long coldRunCnt;
+  private long evictedCnt;
+  private long putCnt;
+  private long removeCnt;
+
+  protected IntClockProPlusCache(int _maxSize) {
+    if (_maxSize <= 0) {
+      throw new IllegalArgumentException("maximum size must be positive");
+    }
+    maxSize = _maxSize;
+    hotMax = (int) ((long) _maxSize * TUNABLE_CLOCK_PRO.hotMaxPercentage / 100);
+    keys = new int[_maxSize];
+    hits = new int[_maxSize];
+    next = new int[_maxSize];
+    prev = new int[_maxSize];
+    state = new byte[_maxSize];
+    index = new int[indexSize(_maxSize)];
+    indexMask = index.length - 1;
+    ghostKeys = new int[_maxSize];
+    ghostIndex = new int[indexSize(_maxSize)];
+    ghostIndexMask = ghostIndex.length - 1;
+  }
+
+  /**
+   * Power of two with a load factor of at most 0.5.
+   */
+  private static int indexSize(int _elements) {
+    return Integer.highestOneBit(_elements) << 2;
+  }
+
+  private static int spread(int _key) {
+    int h = _key * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * Find the slot of the key or return {@link #NO_SLOT}. Also called in an optimistic
+   * read, so the probe count is bounded in case the index is modified concurrently.
+   */
+  protected final int findSlot(int _key) {
+    final int[] _index = index;
+    final int _mask = indexMask;
+    int i = spread(_key) & _mask;
+    for (int _probes = 0; _probes <= _mask; _probes++) {
+      int _slot = _index[i] - 1;
+      if (_slot < 0) {
+        return NO_SLOT;
+      }
+      if (keys[_slot] == _key) {
+        return _slot;
+      }
+      i = (i + 1) & _mask;
+    }
+    return NO_SLOT;
+  }
+
+  /**
+   * Count a hit on the slot. Not synchronized, concurrent increments may get lost.
+   */
+  protected final void recordHit(int _slot) {
+    int h = hits[_slot];
+    if (h != Integer.MAX_VALUE) {
+      hits[_slot] = h + 1;
+    }
+  }
+
+  /**
+   * Insert or update the mapping. Called by the subclass with the write lock held,
+   * returns the slot where the subclass stores the value.
+   */
+  protected final int putSlot(int _key) {
+    putCnt++;
+    int _slot = findSlot(_key);
+    if (_slot != NO_SLOT) {
+      return _slot;
+    }
+    if (size >= maxSize) {
+      _slot = evict();
+    } else {
+      _slot = allocateSlot();
+    }
+    keys[_slot] = _key;
+    hits[_slot] = 0;
+    insertIntoIndex(index, indexMask, keys, _key, _slot);
+    size++;
+    if (removeGhost(_key)) {
+      ghostHitCnt++;
+      state[_slot] = HOT;
+      hotSize++;
+      handHot = insertIntoTailCyclicList(handHot, _slot);
+    } else {
+      state[_slot] = COLD;
+      coldSize++;
+      handCold = insertIntoTailCyclicList(handCold, _slot);
+    }
+    return _slot;
+  }
+
+  /**
+   * Remove the mapping. Called by the subclass with the write lock held, returns
+   * the slot that was freed, so the subclass can clear the value, or {@link #NO_SLOT}.
+   */
+  protected final int removeSlot(int _key) {
+    int _slot = findSlot(_key);
+    if (_slot == NO_SLOT) {
+      return NO_SLOT;
+    }
+    removeCnt++;
+    removeFromReplacementList(_slot);
+    removeFromIndex(index, indexMask, keys, _key);
+    state[_slot] = FREE;
+    next[_slot] = freeSlot;
+    freeSlot = _slot;
+    size--;
+    return _slot;
+  }
+
+  /**
+   * Remove all entries and the ghost history. Called by the subclass with the
+   * write lock held, which clears the values.
+   */
+  protected final void clearSlots() {
+    Arrays.fill(index, 0);
+    Arrays.fill(ghostIndex, 0);
+    Arrays.fill(state, FREE);
+    size = allocatedSlots = ghostSize = ghostPosition = coldSize = hotSize = 0;
+    freeSlot = handCold = handHot = NO_SLOT;
+  }
+
+  /**
+   * Slot of an entry that was evicted before. The value of the slot is
+   * overwritten by the caller.
+   */
+  private int allocateSlot() {
+    int _slot = freeSlot;
+    if (_slot != NO_SLOT) {
+      freeSlot = next[_slot];
+      return _slot;
+    }
+    return allocatedSlots++;
+  }
+
+  private void removeFromReplacementList(int _slot) {
+    if (state[_slot] == HOT) {
+      hotHits += hits[_slot];
+      handHot = removeFromCyclicList(handHot, _slot);
+      hotSize--;
+    } else {
+      coldHits += hits[_slot];
+      handCold = removeFromCyclicList(handCold, _slot);
+      coldSize--;
+    }
+  }
+
+  /**
+   * Evict an entry from the cold clock and keep the key in the ghost history.
+   * Returns the slot for reuse.
+   */
+  private int evict() {
+    int _slot = findEvictionCandidate();
+    removeFromReplacementList(_slot);
+    removeFromIndex(index, indexMask, keys, keys[_slot]);
+    insertGhost(keys[_slot]);
+    state[_slot] = FREE;
+    size--;
+    evictedCnt++;
+    return _slot;
+  }
+
+  /**
+   * Same as {@link ClockProPlusCache#findEvictionCandidate()}.
+   */
+  private int findEvictionCandidate() {
+    coldRunCnt++;
+    int _hand = handCold;
+    if (_hand == NO_SLOT) {
+      _hand = refillFromHot(_hand);
+    }
+    if (hits[_hand] > 0) {
+      _hand = refillFromHot(_hand);
+      do {
+        coldHits += hits[_hand];
+        hits[_hand] = 0;
+        int e = _hand;
+        _hand = removeFromCyclicList(e);
+        coldSize--;
+        state[e] = HOT;
+        hotSize++;
+        handHot = insertIntoTailCyclicList(handHot, e);
+      } while (_hand != NO_SLOT && hits[_hand] > 0);
+    }
+    if (_hand == NO_SLOT) {
+      _hand = refillFromHot(_hand);
+    }
+    handCold = _hand;
+    return _hand;
+  }
+
+  private int refillFromHot(int _hand) {
+    while (hotSize > hotMax || _hand == NO_SLOT) {
+      int e = runHandHot();
+      state[e] = COLD;
+      coldSize++;
+      _hand = insertIntoTailCyclicList(_hand, e);
+    }
+    return _hand;
+  }
+
+  /**
+   * Same as {@link ClockProPlusCache#runHandHot()}, returns the slot that was
+   * removed from the hot clock.
+   */
+  private int runHandHot() {
+    hotRunCnt++;
+    int _handStart = handHot;
+    int _hand = _handStart;
+    int _coldCandidate = _hand;
+    long _lowestHits = Long.MAX_VALUE;
+    int _scanCnt = -1;
+    int _decrease = ((hits[_hand] + hits[next[_hand]]) >>> TUNABLE_CLOCK_PRO.hitCounterDecreaseShift) + 1;
+    do {
+      _scanCnt++;
+      int h = hits[_hand];
+      if (h < _lowestHits) {
+        _lowestHits = h;
+        _coldCandidate = _hand;
+        if (h == 0) {
+          break;
+        }
+      }
+      if (h < _decrease) {
+        hits[_hand] = 0;
+        hotHits += h;
+      } else {
+        hits[_hand] = h - _decrease;
+        hotHits += _decrease;
+      }
+      _hand = next[_hand];
+    } while (_hand != _handStart);
+    hotScanCnt += _scanCnt;
+    handHot = removeFromCyclicList(_hand, _coldCandidate);
+    hotSize--;
+    return _coldCandidate;
+  }
+
+  private int insertIntoTailCyclicList(int _head, int e) {
+    if (_head == NO_SLOT) {
+      next[e] = prev[e] = e;
+      return e;
+    }
+    int _tail = prev[_head];
+    next[e] = _head;
+    prev[e] = _tail;
+    next[_tail] = e;
+    prev[_head] = e;
+    return _head;
+  }
+
+  /**
+   * Remove the slot from its list and return the next one or {@link #NO_SLOT} if
+   * the list is empty now.
+   */
+  private int removeFromCyclicList(int e) {
+    int n = next[e];
+    if (n == e) {
+      return NO_SLOT;
+    }
+    int p = prev[e];
+    next[p] = n;
+    prev[n] = p;
+    return n;
+  }
+
+  /**
+   * Remove the slot from the list with the given head and return the new head.
+   */
+  private int removeFromCyclicList(int _head, int e) {
+    int n = removeFromCyclicList(e);
+    return e == _head ? n : _head;
+  }
+
+  private void insertGhost(int _key) {
+    int _position = ghostPosition;
+    int _oldKey = ghostKeys[_position];
+    if (findInIndex(ghostIndex, ghostIndexMask, ghostKeys, _oldKey) == _position) {
+      removeFromIndex(ghostIndex, ghostIndexMask, ghostKeys, _oldKey);
+      ghostSize--;
+    }
+    ghostKeys[_position] = _key;
+    insertIntoIndex(ghostIndex, ghostIndexMask, ghostKeys, _key, _position);
+    ghostSize++;
+    ghostPosition = _position + 1 == ghostKeys.length ? 0 : _position + 1;
+  }
+
+  /**
+   * Remove the key from the ghost history. The ring position stays occupied
+   * until it is overwritten.
+   */
+  private boolean removeGhost(int _key) {
+    if (removeFromIndex(ghostIndex, ghostIndexMask, ghostKeys, _key)) {
+      ghostSize--;
+      return true;
+    }
+    return false;
+  }
+
+  private static int findInIndex(int[] _index, int _mask, int[] _keys, int _key) {
+    int i = spread(_key) & _mask;
+    for (;;) {
+      int _slot = _index[i] - 1;
+      if (_slot < 0) {
+        return NO_SLOT;
+      }
+      if (_keys[_slot] == _key) {
+        return _slot;
+      }
+      i = (i + 1) & _mask;
+    }
+  }
+
+  private static void insertIntoIndex(int[] _index, int _mask, int[] _keys, int _key, int _slot) {
+    int i = spread(_key) & _mask;
+    while (_index[i] != 0) {
+      i = (i + 1) & _mask;
+    }
+    _index[i] = _slot + 1;
+  }
+
+  /**
+   * Remove the key and close the gap by shifting back the following entries
+   * of the probe sequence, so no tombstones are needed.
+   */
+  private static boolean removeFromIndex(int[] _index, int _mask, int[] _keys, int _key) {
+    int i = spread(_key) & _mask;
+    for (;;) {
+      int _slot = _index[i] - 1;
+      if (_slot < 0) {
+        return false;
+      }
+      if (_keys[_slot] == _key) {
+        break;
+      }
+      i = (i + 1) & _mask;
+    }
+    int j = i;
+    for (;;) {
+      j = (j + 1) & _mask;
+      int _slot = _index[j] - 1;
+      if (_slot < 0) {
+        _index[i] = 0;
+        return true;
+      }
+      int _home = spread(_keys[_slot]) & _mask;
+      boolean _stays = i <= j ? (i < _home && _home <= j) : (i < _home || _home <= j);
+      if (!_stays) {
+        _index[i] = _index[j];
+        i = j;
+      }
+    }
+  }
+
+  public final int getMaxSize() {
+    return maxSize;
+  }
+
+  public final int size() {
+    long _stamp = lock.readLock();
+    try {
+      return size;
+    } finally {
+      lock.unlockRead(_stamp);
+    }
+  }
+
+  public final void checkIntegrity() {
+    long _stamp = lock.readLock();
+    try {
+      IntegrityState is = getIntegrityState();
+      if (is.getStateFlags() > 0) {
+        throw new CacheIntegrityError(is.getStateDescriptor(), is.getFailingChecks(), toStringUnlocked());
+      }
+    } finally {
+      lock.unlockRead(_stamp);
+    }
+  }
+
+  private IntegrityState getIntegrityState() {
+    int _indexCount = 0;
+    for (int v : index) {
+      if (v != 0) {
+        _indexCount++;
+      }
+    }
+    int _ghostIndexCount = 0;
+    for (int v : ghostIndex) {
+      if (v != 0) {
+        _ghostIndexCount++;
+      }
+    }
+    boolean _allFound = true;
+    for (int i = 0; i < allocatedSlots; i++) {
+      if (state[i] != FREE && findSlot(keys[i]) != i) {
+        _allFound = false;
+      }
+    }
+    return new IntegrityState()
+      .checkEquals("size == index count", size, _indexCount)
+      .checkEquals("size == coldSize + hotSize", size, coldSize + hotSize)
+      .checkEquals("coldSize == cyclicListSize(handCold)", coldSize, getCyclicListSize(handCold))
+      .checkEquals("hotSize == cyclicListSize(handHot)", hotSize, getCyclicListSize(handHot))
+      .checkEquals("ghostSize == ghost index count", ghostSize, _ghostIndexCount)
+      .checkLessOrEquals("size <= maxSize", size, maxSize)
+      .check("all entries found in index", _allFound);
+  }
+
+  private int getCyclicListSize(int _head) {
+    if (_head == NO_SLOT) {
+      return 0;
+    }
+    int cnt = 0;
+    int e = _head;
+    do {
+      cnt++;
+      e = next[e];
+    } while (e != _head);
+    return cnt;
+  }
+
+  @Override
+  public final String toString() {
+    long _stamp = lock.readLock();
+    try {
+      return toStringUnlocked();
+    } finally {
+      lock.unlockRead(_stamp);
+    }
+  }
+
+  private String toStringUnlocked() {
+    return getClass().getSimpleName() +
+      "(size=" + size +
+      ", maxSize=" + maxSize +
+      ", coldSize=" + coldSize +
+      ", hotSize=" + hotSize +
+      ", hotMaxSize=" + hotMax +
+      ", ghostSize=" + ghostSize +
+      ", coldHits=" + coldHits +
+      ", hotHits=" + hotHits +
+      ", ghostHits=" + ghostHitCnt +
+      ", coldRunCnt=" + coldRunCnt +
+      ", hotRunCnt=" + hotRunCnt +
+      ", hotScanCnt=" + hotScanCnt +
+      ", putCnt=" + putCnt +
+      ", removeCnt=" + removeCnt +
+      ", evictedCnt=" + evictedCnt + ")";
+  }
+
+}
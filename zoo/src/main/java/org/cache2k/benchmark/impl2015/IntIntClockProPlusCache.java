@@ -0,0 +1,144 @@
+package org.cache2k.benchmark.impl2015;
+
+/*
+ * #%L
+ * zoo
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * {@link IntClockProPlusCache} with int values, so no object is allocated per entry.
+ *
+ * @author Jens Wilke
+ */
+public class IntIntClockProPlusCache extends IntClockProPlusCache {
+
+  private final int[] values;
+
+  public IntIntClockProPlusCache(int _maxSize) {
+    super(_maxSize);
+    values = new int[_maxSize];
+  }
+
+  /**
+   * Return the mapped value or the given value if not present.
+   */
+  public int peek(int _key, int _missingValue) {
+    long _stamp = lock.tryOptimisticRead();
+    int _slot = findSlot(_key);
+    int v = _slot != NO_SLOT ? values[_slot] : _missingValue;
+    if (!lock.validate(_stamp)) {
+      _stamp = lock.readLock();
+      try {
+        _slot = findSlot(_key);
+        v = _slot != NO_SLOT ? values[_slot] : _missingValue;
+      } finally {
+        lock.unlockRead(_stamp);
+      }
+    }
+    if (_slot != NO_SLOT) {
+      recordHit(_slot);
+    }
+    return v;
+  }
+
+  /**
+   * Look up all keys with one optimistic read, or one read lock if a writer
+   * interfered. The value of a missing key is set to the given value.
+   */
+  public void peekAll(int[] _keys, int[] _result, int _missingValue) {
+    int[] _slots = new int[_keys.length];
+    long _stamp = lock.tryOptimisticRead();
+    peekSlots(_keys, _slots, _result, _missingValue);
+    if (!lock.validate(_stamp)) {
+      _stamp = lock.readLock();
+      try {
+        peekSlots(_keys, _slots, _result, _missingValue);
+      } finally {
+        lock.unlockRead(_stamp);
+      }
+    }
+    for (int _slot : _slots) {
+      if (_slot != NO_SLOT) {
+        recordHit(_slot);
+      }
+    }
+  }
+
+  private void peekSlots(int[] _keys, int[] _slots, int[] _result, int _missingValue) {
+    for (int i = 0; i < _keys.length; i++) {
+      int _slot = _slots[i] = findSlot(_keys[i]);
+      _result[i] = _slot != NO_SLOT ? values[_slot] : _missingValue;
+    }
+  }
+
+  public boolean containsKey(int _key) {
+    long _stamp = lock.tryOptimisticRead();
+    int _slot = findSlot(_key);
+    if (!lock.validate(_stamp)) {
+      _stamp = lock.readLock();
+      try {
+        _slot = findSlot(_key);
+      } finally {
+        lock.unlockRead(_stamp);
+      }
+    }
+    return _slot != NO_SLOT;
+  }
+
+  public void put(int _key, int _value) {
+    long _stamp = lock.writeLock();
+    try {
+      values[putSlot(_key)] = _value;
+    } finally {
+      lock.unlockWrite(_stamp);
+    }
+  }
+
+  /**
+   * Insert or update all mappings with one acquisition of the write lock.
+   */
+  public void putAll(int[] _keys, int[] _values) {
+    long _stamp = lock.writeLock();
+    try {
+      for (int i = 0; i < _keys.length; i++) {
+        values[putSlot(_keys[i])] = _values[i];
+      }
+    } finally {
+      lock.unlockWrite(_stamp);
+    }
+  }
+
+  public boolean remove(int _key) {
+    long _stamp = lock.writeLock();
+    try {
+      return removeSlot(_key) != NO_SLOT;
+    } finally {
+      lock.unlockWrite(_stamp);
+    }
+  }
+
+  public void clear() {
+    long _stamp = lock.writeLock();
+    try {
+      clearSlots();
+    } finally {
+      lock.unlockWrite(_stamp);
+    }
+  }
+
+}
@@ -0,0 +1,149 @@
+package org.cache2k.benchmark.impl2015;
+
+/*
+ * #%L
+ * zoo
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+
+/**
+ * {@link IntClockProPlusCache} with object values. Null values are not supported,
+ * since null means not present.
+ *
+ * @author Jens Wilke
+ */
+public class IntObjectClockProPlusCache<T> extends IntClockProPlusCache {
+
+  private final Object[] values;
+
+  public IntObjectClockProPlusCache(int _maxSize) {
+    super(_maxSize);
+    values = new Object[_maxSize];
+  }
+
+  /**
+   * Return the mapped value or null if not present.
+   */
+  @SuppressWarnings("unchecked")
+  public T peek(int _key) {
+    long _stamp = lock.tryOptimisticRead();
+    int _slot = findSlot(_key);
+    Object v = _slot != NO_SLOT ? values[_slot] : null;
+    if (!lock.validate(_stamp)) {
+      _stamp = lock.readLock();
+      try {
+        _slot = findSlot(_key);
+        v = _slot != NO_SLOT ? values[_slot] : null;
+      } finally {
+        lock.unlockRead(_stamp);
+      }
+    }
+    if (_slot != NO_SLOT) {
+      recordHit(_slot);
+    }
+    return (T) v;
+  }
+
+  /**
+   * Look up all keys with one optimistic read, or one read lock if a writer
+   * interfered. The value of a missing key is set to null.
+   */
+  public void peekAll(int[] _keys, T[] _result) {
+    int[] _slots = new int[_keys.length];
+    long _stamp = lock.tryOptimisticRead();
+    peekSlots(_keys, _slots, _result);
+    if (!lock.validate(_stamp)) {
+      _stamp = lock.readLock();
+      try {
+        peekSlots(_keys, _slots, _result);
+      } finally {
+        lock.unlockRead(_stamp);
+      }
+    }
+    for (int _slot : _slots) {
+      if (_slot != NO_SLOT) {
+        recordHit(_slot);
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void peekSlots(int[] _keys, int[] _slots, T[] _result) {
+    for (int i = 0; i < _keys.length; i++) {
+      int _slot = _slots[i] = findSlot(_keys[i]);
+      _result[i] = _slot != NO_SLOT ? (T) values[_slot] : null;
+    }
+  }
+
+  public void put(int _key, T _value) {
+    if (_value == null) {
+      throw new NullPointerException("null value not supported");
+    }
+    long _stamp = lock.writeLock();
+    try {
+      values[putSlot(_key)] = _value;
+    } finally {
+      lock.unlockWrite(_stamp);
+    }
+  }
+
+  /**
+   * Insert or update all mappings with one acquisition of the write lock.
+   */
+  public void putAll(int[] _keys, T[] _values) {
+    for (T v : _values) {
+      if (v == null) {
+        throw new NullPointerException("null value not supported");
+      }
+    }
+    long _stamp = lock.writeLock();
+    try {
+      for (int i = 0; i < _keys.length; i++) {
+        values[putSlot(_keys[i])] = _values[i];
+      }
+    } finally {
+      lock.unlockWrite(_stamp);
+    }
+  }
+
+  public boolean remove(int _key) {
+    long _stamp = lock.writeLock();
+    try {
+      int _slot = removeSlot(_key);
+      if (_slot == NO_SLOT) {
+        return false;
+      }
+      values[_slot] = null;
+      return true;
+    } finally {
+      lock.unlockWrite(_stamp);
+    }
+  }
+
+  public void clear() {
+    long _stamp = lock.writeLock();
+    try {
+      clearSlots();
+      Arrays.fill(values, null);
+    } finally {
+      lock.unlockWrite(_stamp);
+    }
+  }
+
+}
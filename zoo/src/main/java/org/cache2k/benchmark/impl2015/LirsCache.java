@@ -0,0 +1,405 @@
+package org.cache2k.benchmark.impl2015;
+
+/*
+ * #%L
+ * zoo
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.cache2k.benchmark.impl2015.util.TunableConstants;
+import org.cache2k.benchmark.impl2015.util.TunableFactory;
+
+/**
+ * LIRS eviction. The hot entries (LIR) are the entries with a low inter-reference
+ * recency. The remaining resident entries (HIR) are kept in the queue Q and the
+ * oldest of them is evicted. The stack S holds the hot entries, the resident HIR
+ * entries and the non-resident entries in recency order. A resident HIR entry that is
+ * hit while it is still within the stack becomes hot and the hot entry at the
+ * stack bottom moves to the queue. The number of non-resident entries is bounded,
+ * the oldest non-resident entry is dropped first.
+ *
+ * <p/>The defaults are identical to the LIRS policy of the Caffeine simulator.
+ *
+ * <p/>Hot entries are not in a list, the list pointers point to the entry itself. The
+ * queue uses the list pointers of the resident entries. The stack is a ring of entries
+ * and the position of an entry in the ring is stored in its hit counter. An entry
+ * that is moved to the stack top is inserted again and the old position
+ * stays in the ring, until the bottom is pruned or the ring is compacted.
+ * A non-resident entry is a separate {@link Ghost} entry, which takes the
+ * position of the removed entry in the stack, is listed in the order of its
+ * creation and can be found by its key in a separate hash table.
+ *
+ * @see <a href="http://dl.acm.org/citation.cfm?id=511340">LIRS: an efficient low inter-reference recency set replacement policy to improve buffer cache performance</a>
+ *
+ * @author Jens Wilke
+ */
+@SuppressWarnings("unchecked")
+public class LirsCache<K, T> extends BufferedHitCache<Entry, K, T> {
+
+  static final Tunable TUNABLE = TunableFactory.get(Tunable.class);
+
+  static final int INITIAL_STACK_SIZE = 64;
+
+  long hits;
+  long ghostHits;
+  long pruneCnt;
+  long compactCnt;
+
+  int hotMax;
+  int hotSize;
+  int ghostMax;
+  int ghostSize;
+
+  /** Resident HIR entries, the oldest entry is evicted next */
+  Entry queueHead;
+
+  /** Non-resident entries, the oldest entry is dropped next */
+  Entry ghostHead;
+
+  Hash<Entry> ghostHashCtrl;
+  Entry[] ghostHash;
+
+  /** Ring of stack entries, the length is a power of two */
+  Entry[] stack;
+  long stackBottom;
+  long stackTop;
+
+  @Override
+  public long getHitCnt() {
+    return hits;
+  }
+
+  @Override
+  protected void initializeHeapCache() {
+    super.initializeHeapCache();
+    hotMax = (int) ((long) getEvictionTargetSize() * TUNABLE.hotPercentage / 100);
+    ghostMax = (int) ((long) maxSize * TUNABLE.nonResidentPercentage / 100);
+    hotSize = 0;
+    ghostSize = 0;
+    queueHead = new Entry().shortCircuit();
+    ghostHead = new Entry().shortCircuit();
+    ghostHashCtrl = new Hash<Entry>();
+    ghostHash = ghostHashCtrl.init(Entry.class);
+    stack = new Entry[INITIAL_STACK_SIZE];
+    stackBottom = stackTop = 0;
+  }
+
+  /**
+   * Buffered hits may arrive after the entry was removed, ignore them.
+   */
+  @Override
+  protected void recordHit(Entry e) {
+    hits++;
+    if (e.isRemovedFromReplacementList()) {
+      return;
+    }
+    if (isHot(e)) {
+      push(e);
+      pruneStack();
+      return;
+    }
+    if (isInStack(e)) {
+      push(e);
+      removeFromList(e);
+      insertHot(e);
+      return;
+    }
+    push(e);
+    moveToFront(queueHead, e);
+  }
+
+  /**
+   * New entries are hot until the hot entries reach their maximum size.
+   */
+  @Override
+  protected void insertIntoReplacementList(Entry e) {
+    push(e);
+    if (hotSize < hotMax) {
+      e.shortCircuit();
+      hotSize++;
+    } else {
+      insertInList(queueHead, e);
+    }
+  }
+
+  @Override
+  protected Entry newEntry() {
+    return newEntryOfConfiguredType();
+  }
+
+  /**
+   * A non-resident entry is always within the stack, so the new entry becomes hot.
+   */
+  @Override
+  protected Entry checkForGhost(K key, int hc) {
+    Entry g = ghostHashCtrl.remove(ghostHash, key, hc);
+    if (g == null) {
+      return null;
+    }
+    removeGhostFromStack(g);
+    ghostHits++;
+    Entry e = newEntry();
+    e.key = key;
+    e.hashCode = hc;
+    push(e);
+    insertHot(e);
+    return e;
+  }
+
+  /**
+   * A removed entry that is within the stack is replaced by a non-resident entry.
+   */
+  @Override
+  protected void removeEntryFromReplacementList(Entry e) {
+    if (isHot(e)) {
+      hotSize--;
+      e.removedFromList();
+    } else {
+      removeFromList(e);
+    }
+    if (isInStack(e)) {
+      insertGhost(e);
+    }
+  }
+
+  @Override
+  protected Entry findEvictionCandidate() {
+    if (queueHead.prev == queueHead) {
+      demoteStackBottom();
+    }
+    return queueHead.prev;
+  }
+
+  private static boolean isHot(Entry e) {
+    return e.next == e;
+  }
+
+  private int stackIndex(long _position) {
+    return (int) (_position & (stack.length - 1));
+  }
+
+  /**
+   * True if the ring position holds the current position of the entry.
+   */
+  private boolean isStackPosition(long _position) {
+    Entry e = stack[stackIndex(_position)];
+    return e != null && e.hitCnt == _position;
+  }
+
+  private boolean isInStack(Entry e) {
+    long _position = e.hitCnt;
+    return _position >= stackBottom && _position < stackTop && stack[stackIndex(_position)] == e;
+  }
+
+  private void push(Entry e) {
+    if (stackTop - stackBottom == stack.length) {
+      compactStack();
+    }
+    e.hitCnt = stackTop;
+    stack[stackIndex(stackTop)] = e;
+    stackTop++;
+  }
+
+  /**
+   * Drop the outdated positions and grow the ring, if it would be more than half full.
+   */
+  private void compactStack() {
+    compactCnt++;
+    int _count = 0;
+    for (long i = stackBottom; i < stackTop; i++) {
+      if (isStackPosition(i)) {
+        _count++;
+      }
+    }
+    int _length = stack.length;
+    while (_count * 2 > _length) {
+      _length <<= 1;
+    }
+    Entry[] _stack = new Entry[_length];
+    int _top = 0;
+    for (long i = stackBottom; i < stackTop; i++) {
+      if (isStackPosition(i)) {
+        Entry e = stack[stackIndex(i)];
+        e.hitCnt = _top;
+        _stack[_top++] = e;
+      }
+    }
+    stack = _stack;
+    stackBottom = 0;
+    stackTop = _top;
+  }
+
+  /**
+   * Remove entries from the stack bottom until a hot entry is at the bottom.
+   */
+  private void pruneStack() {
+    while (stackBottom < stackTop) {
+      int i = stackIndex(stackBottom);
+      if (isStackPosition(stackBottom)) {
+        Entry e = stack[i];
+        if (isHot(e)) {
+          return;
+        }
+        if (e instanceof Ghost) {
+          removeGhost(e);
+        }
+        pruneCnt++;
+      }
+      stack[i] = null;
+      stackBottom++;
+    }
+  }
+
+  /**
+   * Make the entry hot, which is already at the stack top. If there are too many hot
+   * entries, the hot entry at the stack bottom moves to the queue.
+   */
+  private void insertHot(Entry e) {
+    e.shortCircuit();
+    hotSize++;
+    if (hotSize > hotMax) {
+      demoteStackBottom();
+    }
+    pruneStack();
+  }
+
+  private void demoteStackBottom() {
+    pruneStack();
+    int i = stackIndex(stackBottom);
+    Entry e = stack[i];
+    stack[i] = null;
+    stackBottom++;
+    hotSize--;
+    insertInList(queueHead, e);
+    pruneStack();
+  }
+
+  private void insertGhost(Entry e) {
+    Entry g = new Ghost();
+    g.key = e.key;
+    g.hashCode = e.hashCode;
+    g.hitCnt = e.hitCnt;
+    stack[stackIndex(e.hitCnt)] = g;
+    insertInList(ghostHead, g);
+    ghostHash = ghostHashCtrl.insert(ghostHash, g);
+    ghostSize++;
+    if (ghostSize > ghostMax) {
+      removeGhost(ghostHead.prev);
+    }
+  }
+
+  private void removeGhost(Entry g) {
+    ghostHashCtrl.remove(ghostHash, g);
+    removeGhostFromStack(g);
+  }
+
+  private void removeGhostFromStack(Entry g) {
+    removeFromList(g);
+    ghostSize--;
+    if (isInStack(g)) {
+      stack[stackIndex(g.hitCnt)] = null;
+    }
+  }
+
+  int getHotStackEntryCount() {
+    int _count = 0;
+    for (long i = stackBottom; i < stackTop; i++) {
+      if (isStackPosition(i) && isHot(stack[stackIndex(i)])) {
+        _count++;
+      }
+    }
+    return _count;
+  }
+
+  int getGhostStackEntryCount() {
+    int _count = 0;
+    for (long i = stackBottom; i < stackTop; i++) {
+      if (isStackPosition(i) && stack[stackIndex(i)] instanceof Ghost) {
+        _count++;
+      }
+    }
+    return _count;
+  }
+
+  @Override
+  protected String getExtraStatistics() {
+    return super.getExtraStatistics()
+      + ", hotSize=" + hotSize
+      + ", hotMaxSize=" + hotMax
+      + ", ghostSize=" + ghostSize
+      + ", ghostHits=" + ghostHits
+      + ", stackSize=" + (stackTop - stackBottom)
+      + ", stackCapacity=" + stack.length
+      + ", pruneCnt=" + pruneCnt
+      + ", compactCnt=" + compactCnt;
+  }
+
+  @Override
+  protected void maxSizeChanged(int _previousMaxSize) {
+    hotMax = (int) ((long) getEvictionTargetSize() * TUNABLE.hotPercentage / 100);
+    ghostMax = (int) ((long) maxSize * TUNABLE.nonResidentPercentage / 100);
+    while (hotSize > hotMax) {
+      demoteStackBottom();
+    }
+    while (ghostSize > ghostMax) {
+      removeGhost(ghostHead.prev);
+    }
+  }
+
+  /**
+   * The non resident entries keep the key, so the key size counts for them.
+   */
+  @Override
+  protected long getPolicyHeapBytes() {
+    return super.getPolicyHeapBytes() +
+      HeapSizeEstimator.shallowSize(stack) + HeapSizeEstimator.shallowSize(ghostHash) +
+      ghostSize * (HeapSizeEstimator.shallowSize(Ghost.class) + heapSizeEstimator.getAverageKeyBytes());
+  }
+
+  @Override
+  protected IntegrityState getIntegrityState() {
+    synchronized (lock) {
+      return super.getIntegrityState()
+        .checkEquals("hotSize + getListEntryCount(queueHead) + evictedButInHashCnt == getSize()",
+          hotSize + getListEntryCount(queueHead) + evictedButInHashCnt, getLocalSize())
+        .checkEquals("getHotStackEntryCount() == hotSize", getHotStackEntryCount(), hotSize)
+        .checkLessOrEquals("hotSize <= hotMax", hotSize, hotMax)
+        .checkEquals("getListEntryCount(ghostHead) == ghostSize", getListEntryCount(ghostHead), ghostSize)
+        .checkEquals("getGhostStackEntryCount() == ghostSize", getGhostStackEntryCount(), ghostSize)
+        .checkEquals("ghostHashCtrl.calcTotalEntryCount(ghostHash) == ghostSize",
+          ghostHashCtrl.calcTotalEntryCount(ghostHash), ghostSize)
+        .checkLessOrEquals("ghostSize <= ghostMax", ghostSize, ghostMax);
+    }
+  }
+
+  /**
+   * Non-resident entry. Only key and hash code are used.
+   */
+  static final class Ghost extends Entry { }
+
+  public static class Tunable extends TunableConstants {
+
+    /** Maximum size of the hot entries in percent of the eviction target size */
+    public int hotPercentage = 99;
+
+    /** Maximum number of non-resident entries in percent of the cache capacity */
+    public int nonResidentPercentage = 200;
+
+  }
+
+}
@@ -41,9 +41,10 @@ public abstract class LockFreeCache<E extends Entry, K, T>
   @Override
   protected final E lookupOrNewEntrySynchronized(K key) {
     int hc = modifiedHash(key.hashCode());
-    E e = Hash.lookup(mainHash, key, hc);
+    E e = mainHashCtrl.find(mainHash, key, hc);
     if (e != null) {
       recordHit(e);
+      recordAccess(hc);
       return e;
     }
     synchronized (lock) {
@@ -52,13 +53,14 @@ public abstract class LockFreeCache<E extends Entry, K, T>
         e = newEntry(key, hc);
         return e;
       }
+      recordAccess(hc);
       return e;
     }
   }
 
   @Override
   protected final E lookupEntryUnsynchronized(K key, int hc) {
-    E e = Hash.lookup(mainHash, key, hc);
+    E e = mainHashCtrl.find(mainHash, key, hc);
     if (e != null) {
       recordHit(e);
       return e;
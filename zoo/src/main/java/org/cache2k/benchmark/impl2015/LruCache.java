@@ -22,13 +22,14 @@ package org.cache2k.benchmark.impl2015;
  */
 
 /**
- * Cache implementation with LRU eviction algorithm.
+ * Cache implementation with LRU eviction algorithm. Hits are buffered
+ * and the list is reordered in batches, see {@link BufferedHitCache}.
  *
  * @author Jens Wilke
  */
-public class LruCache<K, T> extends BaseCache<LruCache.Entry, K, T> {
+public class LruCache<K, T> extends BufferedHitCache<Entry, K, T> {
 
-  Entry<K,T> head;
+  Entry head;
   long hitCnt;
 
   @Override
@@ -52,7 +53,7 @@ public class LruCache<K, T> extends BaseCache<LruCache.Entry, K, T> {
 
   @Override
   protected Entry newEntry() {
-    return new Entry<K, T>();
+    return newEntryOfConfiguredType();
   }
 
 
@@ -64,7 +65,17 @@ public class LruCache<K, T> extends BaseCache<LruCache.Entry, K, T> {
   @Override
   protected void initializeHeapCache() {
     super.initializeHeapCache();
-    head = new Entry<K,T>().shortCircuit();
+    head = new Entry().shortCircuit();
+  }
+
+  /**
+   * Least recently used first, each restored entry is inserted as most recently used.
+   */
+  @Override
+  protected void collectSnapshotEntries(CacheSnapshot.Collector c) {
+    for (Entry e = head.prev; e != head; e = e.prev) {
+      c.add(e, 0);
+    }
   }
 
   @Override
@@ -75,8 +86,4 @@ public class LruCache<K, T> extends BaseCache<LruCache.Entry, K, T> {
     }
   }
 
-  protected static class Entry<K,T> extends org.cache2k.benchmark.impl2015.Entry<Entry<K,T>, K, T> {
-
-  }
-
 }
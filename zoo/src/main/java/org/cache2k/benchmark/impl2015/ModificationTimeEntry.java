@@ -0,0 +1,66 @@
+package org.cache2k.benchmark.impl2015;
+
+/*
+ * #%L
+ * zoo
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+/**
+ * Cache entry with the modification time, but without the timer links. Used with
+ * lazy expiry, so the expiry calculator and {@link CacheEntry#getLastModification()}
+ * see the modification time, although no timer is scheduled.
+ *
+ * @author Jens Wilke
+ * @see BaseCache#timedEntries
+ */
+public class ModificationTimeEntry<E extends Entry, K, T> extends Entry<E, K, T> {
+
+  /**
+   * Time the entry was last updated by put or by fetching it from the cache source.
+   * The time is the time in millis times 2. A set bit 1 means the entry is fetched from
+   * the storage and not modified since then.
+   */
+  public long fetchedTime;
+
+  @Override
+  public void setLastModification(long t) {
+    fetchedTime = t << 1;
+  }
+
+  @Override
+  public boolean isDirty() {
+    return (fetchedTime & 1) == 0;
+  }
+
+  @Override
+  public void setLastModificationFromStorage(long t) {
+    fetchedTime = t << 1 | 1;
+  }
+
+  @Override
+  public void resetDirty() {
+    fetchedTime = fetchedTime | 1;
+  }
+
+  @Override
+  public long getLastModification() {
+    return fetchedTime >> 1;
+  }
+
+}
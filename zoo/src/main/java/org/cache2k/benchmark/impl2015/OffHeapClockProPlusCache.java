@@ -0,0 +1,161 @@
+package org.cache2k.benchmark.impl2015;
+
+/*
+ * #%L
+ * zoo
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.benchmark.impl2015.util.TunableConstants;
+import org.cache2k.benchmark.impl2015.util.TunableFactory;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * {@link ClockProPlusCache} keeping the values serialized outside the Java heap in a
+ * {@link OffHeapSlabStore}. The entry with the CLOCK-Pro metadata stays on the heap and
+ * holds the handle of the value chunk. Exceptions and values that do not fit in a slab
+ * are kept on the heap.
+ *
+ * <p>A value is read without locking. The handle is checked after the read, if the
+ * value was updated or removed concurrently the read is repeated.
+ *
+ * @author Jens Wilke
+ */
+@SuppressWarnings("unchecked")
+public class OffHeapClockProPlusCache<K, T> extends ClockProPlusCache<K, T> {
+
+  private static final Tunable TUNABLE_OFF_HEAP = TunableFactory.get(Tunable.class);
+
+  /** Marks that the value is in the off heap store */
+  private static final Object OFF_HEAP_VALUE = new Object() {
+    @Override
+    public String toString() {
+      return "OFF_HEAP_VALUE";
+    }
+  };
+
+  private static final AtomicLongFieldUpdater<OffHeapEntry> HANDLE_UPDATER =
+    AtomicLongFieldUpdater.newUpdater(OffHeapEntry.class, "handle");
+
+  private final OffHeapSlabStore store = new OffHeapSlabStore(TUNABLE_OFF_HEAP.slabSize);
+
+  private long readRetryCnt;
+  private long onHeapValueCnt;
+
+  @Override
+  protected Entry newEntry() {
+    return new OffHeapEntry();
+  }
+
+  @Override
+  protected T loadValue(Entry e) {
+    OffHeapEntry oe = (OffHeapEntry) e;
+    for (;;) {
+      Object v = oe.value;
+      if (v != OFF_HEAP_VALUE) {
+        return (T) v;
+      }
+      long _handle = oe.handle;
+      if (_handle == OffHeapSlabStore.NO_HANDLE) {
+        if (oe.value == OFF_HEAP_VALUE) {
+          return null;
+        }
+        continue;
+      }
+      try {
+        v = store.load(_handle);
+      } catch (RuntimeException ex) {
+        if (oe.handle == _handle) {
+          throw ex;
+        }
+      }
+      if (oe.handle == _handle) {
+        return (T) v;
+      }
+      readRetryCnt++;
+    }
+  }
+
+  /**
+   * Publish the handle before the marker. A reader seeing the marker with a stale
+   * handle retries, a removed entry has no handle and yields null.
+   */
+  @Override
+  protected void storeValue(Entry e, T _value) {
+    OffHeapEntry oe = (OffHeapEntry) e;
+    long _handle = OffHeapSlabStore.NO_HANDLE;
+    if (_value != null && !(_value instanceof ExceptionWrapper)) {
+      _handle = store.store(_value);
+    }
+    if (_handle == OffHeapSlabStore.NO_HANDLE) {
+      if (_value != null && !(_value instanceof ExceptionWrapper)) {
+        onHeapValueCnt++;
+      }
+      oe.value = _value;
+      freeHandle(oe);
+      return;
+    }
+    long _previousHandle = HANDLE_UPDATER.getAndSet(oe, _handle);
+    oe.value = OFF_HEAP_VALUE;
+    if (_previousHandle != OffHeapSlabStore.NO_HANDLE) {
+      store.free(_previousHandle);
+    }
+    if (oe.isRemovedState()) {
+      freeHandle(oe);
+    }
+  }
+
+  /**
+   * The value memory is reclaimed when the entry is evicted, removed or expires.
+   */
+  @Override
+  protected void releaseValue(Entry e) {
+    freeHandle((OffHeapEntry) e);
+  }
+
+  private void freeHandle(OffHeapEntry e) {
+    long _handle = HANDLE_UPDATER.getAndSet(e, OffHeapSlabStore.NO_HANDLE);
+    if (_handle != OffHeapSlabStore.NO_HANDLE) {
+      store.free(_handle);
+    }
+  }
+
+  @Override
+  protected String getExtraStatistics() {
+    return super.getExtraStatistics() +
+      store.getStatistics() +
+      ", offHeapReadRetryCnt=" + readRetryCnt +
+      ", onHeapValueCnt=" + onHeapValueCnt;
+  }
+
+  static class OffHeapEntry extends TimedEntry {
+
+    volatile long handle;
+
+  }
+
+  public static class Tunable extends TunableConstants {
+
+    /**
+     * Size of one direct buffer, at most 16MB.
+     */
+    public int slabSize = 1024 * 1024;
+
+  }
+
+}
@@ -0,0 +1,305 @@
+package org.cache2k.benchmark.impl2015;
+
+/*
+ * #%L
+ * zoo
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Stores serialized values in direct byte buffers outside the Java heap.
+ * Memory is organized in slabs of equal size. Each slab is assigned to a size class
+ * and divided into chunks of the class size, the sizes grow in steps of 1.5 and 2.
+ * A freed chunk goes to the free list of its size class and is reused by the next
+ * allocation of the class. Slab memory is never returned to the operating system
+ * before the store is dropped.
+ *
+ * <p>A value is addressed by a handle, containing the slab number, the offset
+ * and a stamp, which is increased with each allocation. The stamp allows an
+ * unsynchronized reader to detect that a chunk was reused.
+ *
+ * <p>Chunk layout: payload length (int), type tag (byte), payload. Integer, Long,
+ * String and byte arrays are stored directly, other values via Java serialization.
+ * Allocation and free are synchronized, reading and writing of the chunk is not.
+ *
+ * @author Jens Wilke
+ */
+final class OffHeapSlabStore {
+
+  static final long NO_HANDLE = 0;
+
+  private static final int HEADER_SIZE = 5;
+  private static final int MINIMUM_CHUNK_SIZE = 16;
+  private static final int OFFSET_BITS = 24;
+  private static final int SLAB_BITS = 24;
+  private static final int OFFSET_MASK = (1 << OFFSET_BITS) - 1;
+  private static final int SLAB_MASK = (1 << SLAB_BITS) - 1;
+  /** The stamp is never 0, so a valid handle is never {@link #NO_HANDLE} */
+  private static final int STAMP_MASK = 0xffff;
+
+  private static final byte TYPE_INTEGER = 1;
+  private static final byte TYPE_LONG = 2;
+  private static final byte TYPE_STRING = 3;
+  private static final byte TYPE_BYTES = 4;
+  private static final byte TYPE_SERIALIZED = 5;
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private final int slabSize;
+  private final int[] chunkSizes;
+  private final long[][] freeChunks;
+  private final int[] freeCount;
+  /** Slab currently divided for the size class, or -1 */
+  private final int[] currentSlab;
+  private final int[] currentOffset;
+
+  /** Copy on write, so an unsynchronized read sees all slabs of published handles. */
+  private volatile ByteBuffer[] slabs = new ByteBuffer[0];
+  private int stamp;
+
+  private long allocateCnt;
+  private long freeCnt;
+  private long usedBytes;
+
+  /**
+   * @param _slabSize slab size in bytes, at most 16MB
+   */
+  OffHeapSlabStore(int _slabSize) {
+    if (_slabSize < MINIMUM_CHUNK_SIZE || _slabSize > OFFSET_MASK + 1) {
+      throw new IllegalArgumentException("slab size out of range: " + _slabSize);
+    }
+    slabSize = _slabSize;
+    int[] _sizes = new int[64];
+    int cnt = 0;
+    for (int s = MINIMUM_CHUNK_SIZE; s <= _slabSize / 2; s <<= 1) {
+      _sizes[cnt++] = s;
+      if (s + s / 2 <= _slabSize / 2) {
+        _sizes[cnt++] = s + s / 2;
+      }
+    }
+    _sizes[cnt++] = _slabSize;
+    chunkSizes = Arrays.copyOf(_sizes, cnt);
+    freeChunks = new long[cnt][];
+    for (int i = 0; i < cnt; i++) {
+      freeChunks[i] = new long[16];
+    }
+    freeCount = new int[cnt];
+    currentSlab = new int[cnt];
+    Arrays.fill(currentSlab, -1);
+    currentOffset = new int[cnt];
+  }
+
+  /**
+   * Serialize the value into a new chunk and return its handle, or {@link #NO_HANDLE} if
+   * the value is too large for a slab.
+   */
+  long store(Object v) {
+    byte _type;
+    byte[] _bytes = null;
+    int _length;
+    if (v instanceof Integer) {
+      _type = TYPE_INTEGER;
+      _length = 4;
+    } else if (v instanceof Long) {
+      _type = TYPE_LONG;
+      _length = 8;
+    } else if (v instanceof String) {
+      _type = TYPE_STRING;
+      _bytes = ((String) v).getBytes(UTF8);
+      _length = _bytes.length;
+    } else if (v instanceof byte[]) {
+      _type = TYPE_BYTES;
+      _bytes = (byte[]) v;
+      _length = _bytes.length;
+    } else {
+      _type = TYPE_SERIALIZED;
+      _bytes = serialize(v);
+      _length = _bytes.length;
+    }
+    if (_length > slabSize - HEADER_SIZE) {
+      return NO_HANDLE;
+    }
+    long _handle = allocate(_length + HEADER_SIZE);
+    ByteBuffer b = slabs[slab(_handle)];
+    int _offset = offset(_handle);
+    b.putInt(_offset, _length);
+    b.put(_offset + 4, _type);
+    int _position = _offset + HEADER_SIZE;
+    switch (_type) {
+      case TYPE_INTEGER:
+        b.putInt(_position, (Integer) v);
+        break;
+      case TYPE_LONG:
+        b.putLong(_position, (Long) v);
+        break;
+      default:
+        ByteBuffer _duplicate = b.duplicate();
+        _duplicate.position(_position);
+        _duplicate.put(_bytes);
+    }
+    return _handle;
+  }
+
+  /**
+   * Read the value. If the chunk is freed and reused concurrently the result may be
+   * garbage or an exception may be thrown. The length in the chunk header is checked
+   * against the slab, so a garbage length yields an {@link IllegalStateException} and
+   * no huge allocation. The caller checks that the handle is still valid after the
+   * read and retries.
+   */
+  Object load(long _handle) {
+    ByteBuffer b = slabs[slab(_handle)];
+    int _offset = offset(_handle);
+    int _length = b.getInt(_offset);
+    byte _type = b.get(_offset + 4);
+    int _position = _offset + HEADER_SIZE;
+    switch (_type) {
+      case TYPE_INTEGER:
+        return b.getInt(_position);
+      case TYPE_LONG:
+        return b.getLong(_position);
+    }
+    if (_length < 0 || _length > slabSize - HEADER_SIZE - _offset) {
+      throw new IllegalStateException("chunk length out of range: " + _length);
+    }
+    byte[] _bytes = new byte[_length];
+    ByteBuffer _duplicate = b.duplicate();
+    _duplicate.position(_position);
+    _duplicate.get(_bytes);
+    switch (_type) {
+      case TYPE_STRING:
+        return new String(_bytes, UTF8);
+      case TYPE_BYTES:
+        return _bytes;
+      case TYPE_SERIALIZED:
+        return deserialize(_bytes);
+    }
+    throw new IllegalStateException("unknown type tag: " + _type);
+  }
+
+  synchronized void free(long _handle) {
+    int _slab = slab(_handle);
+    int _offset = offset(_handle);
+    int _length = slabs[_slab].getInt(_offset);
+    int _class = sizeClass(_length + HEADER_SIZE);
+    long[] _free = freeChunks[_class];
+    int cnt = freeCount[_class];
+    if (cnt == _free.length) {
+      freeChunks[_class] = _free = Arrays.copyOf(_free, cnt * 2);
+    }
+    _free[cnt] = ((long) _slab << OFFSET_BITS) | _offset;
+    freeCount[_class] = cnt + 1;
+    usedBytes -= chunkSizes[_class];
+    freeCnt++;
+  }
+
+  private synchronized long allocate(int _size) {
+    int _class = sizeClass(_size);
+    long _location;
+    int cnt = freeCount[_class];
+    if (cnt > 0) {
+      _location = freeChunks[_class][--cnt];
+      freeCount[_class] = cnt;
+    } else {
+      int _chunkSize = chunkSizes[_class];
+      int _slab = currentSlab[_class];
+      if (_slab < 0 || currentOffset[_class] + _chunkSize > slabSize) {
+        _slab = currentSlab[_class] = addSlab();
+        currentOffset[_class] = 0;
+      }
+      _location = ((long) _slab << OFFSET_BITS) | currentOffset[_class];
+      currentOffset[_class] += _chunkSize;
+    }
+    usedBytes += chunkSizes[_class];
+    allocateCnt++;
+    stamp = stamp == STAMP_MASK ? 1 : stamp + 1;
+    return ((long) stamp << (OFFSET_BITS + SLAB_BITS)) | _location;
+  }
+
+  private int addSlab() {
+    ByteBuffer[] _slabs = slabs;
+    if (_slabs.length > SLAB_MASK) {
+      throw new CacheInternalError("off heap slab limit reached");
+    }
+    _slabs = Arrays.copyOf(_slabs, _slabs.length + 1);
+    _slabs[_slabs.length - 1] = ByteBuffer.allocateDirect(slabSize);
+    slabs = _slabs;
+    return _slabs.length - 1;
+  }
+
+  private int sizeClass(int _size) {
+    int[] _sizes = chunkSizes;
+    for (int i = 0; i < _sizes.length; i++) {
+      if (_sizes[i] >= _size) {
+        return i;
+      }
+    }
+    throw new IllegalArgumentException("chunk size exceeds slab size: " + _size);
+  }
+
+  private static int slab(long _handle) {
+    return (int) (_handle >>> OFFSET_BITS) & SLAB_MASK;
+  }
+
+  private static int offset(long _handle) {
+    return (int) _handle & OFFSET_MASK;
+  }
+
+  private static byte[] serialize(Object v) {
+    try {
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      ObjectOutputStream oos = new ObjectOutputStream(bos);
+      oos.writeObject(v);
+      oos.close();
+      return bos.toByteArray();
+    } catch (IOException ex) {
+      throw new CacheException("off heap serialization failed", ex);
+    }
+  }
+
+  private static Object deserialize(byte[] _bytes) {
+    try {
+      return new ObjectInputStream(new ByteArrayInputStream(_bytes)).readObject();
+    } catch (IOException | ClassNotFoundException ex) {
+      throw new CacheException("off heap deserialization failed", ex);
+    }
+  }
+
+  synchronized String getStatistics() {
+    int _freeChunks = 0;
+    for (int cnt : freeCount) {
+      _freeChunks += cnt;
+    }
+    return
+      ", offHeapSlabs=" + slabs.length +
+      ", offHeapSlabSize=" + slabSize +
+      ", offHeapUsedBytes=" + usedBytes +
+      ", offHeapFreeChunks=" + _freeChunks +
+      ", offHeapAllocateCnt=" + allocateCnt +
+      ", offHeapFreeCnt=" + freeCnt;
+  }
+
+}
@@ -0,0 +1,310 @@
+package org.cache2k.benchmark.impl2015;
+
+/*
+ * #%L
+ * zoo
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.cache2k.benchmark.impl2015.util.TunableConstants;
+import org.cache2k.benchmark.impl2015.util.TunableFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * CLOCK with several hands, so that threads can evict concurrently. The cache has
+ * a fixed array of slots, one per entry, which is split into regions. Each region
+ * has its own hand and the hash of the key selects the region, so inserts with
+ * different keys sweep different regions. There is no structure lock, like in
+ * {@link ClockCache}: the mapping is a {@link ConcurrentHashMap}, a hand is advanced
+ * by an atomic increment, a slot is taken over by CAS and the reference bits are
+ * cleared by CAS. Threads evicting in the same region take turns on the slots.
+ *
+ * <p>A new entry goes into the map first and then gets a slot. While there are
+ * inserts in flight, the map can exceed the capacity by the number of inserting
+ * threads. An entry removed before it got its slot leaves a slot that is not
+ * mapped, the hand reclaims it like an unreferenced entry. A hit that races with
+ * the eviction of its entry may set the reference bit for the entry that took over
+ * the slot.
+ *
+ * <p>The regions are evicted independently. Each region holds a random share of
+ * the keys, so with enough entries per region the eviction is close to a single
+ * CLOCK. Null values are not supported, since null means not present.
+ *
+ * @author Jens Wilke
+ * @see ClockCache
+ */
+public class PartitionedClockCache<K, V> {
+
+  private static final Tunable TUNABLE = TunableFactory.get(Tunable.class);
+
+  private final int maxSize;
+  private final ConcurrentHashMap<K, Node<K, V>> map;
+  private final AtomicReferenceArray<Node<K, V>> slots;
+  private final AtomicIntegerArray references;
+  private final Hand[] hands;
+  private final int handMask;
+
+  private final LongAdder putCnt = new LongAdder();
+  private final LongAdder removeCnt = new LongAdder();
+  private final LongAdder evictedCnt = new LongAdder();
+  private final LongAdder scanCnt = new LongAdder();
+  private final LongAdder forcedEvictCnt = new LongAdder();
+
+  public PartitionedClockCache(int _maxSize) {
+    if (_maxSize <= 0) {
+      throw new IllegalArgumentException("maximum size must be positive");
+    }
+    maxSize = _maxSize;
+    map = new ConcurrentHashMap<K, Node<K, V>>(_maxSize);
+    slots = new AtomicReferenceArray<Node<K, V>>(_maxSize);
+    references = new AtomicIntegerArray(_maxSize);
+    int _handCount = handCount(_maxSize);
+    hands = new Hand[_handCount];
+    handMask = _handCount - 1;
+    for (int i = 0; i < _handCount; i++) {
+      int _start = (int) ((long) _maxSize * i / _handCount);
+      int _end = (int) ((long) _maxSize * (i + 1) / _handCount);
+      hands[i] = new Hand(_start, _end - _start);
+    }
+  }
+
+  /**
+   * Number of hands as power of two. Defaults to four times the available
+   * processors, limited so that each region has the minimum number of slots.
+   */
+  static int handCount(int _maxSize) {
+    int _hands = TUNABLE.handCount > 0 ?
+      TUNABLE.handCount : Runtime.getRuntime().availableProcessors() * 4;
+    _hands = Math.min(_hands, _maxSize / Math.max(1, TUNABLE.minimumSlotsPerHand));
+    return Integer.highestOneBit(Math.max(1, _hands));
+  }
+
+  private static int spread(int h) {
+    h *= 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * Return the mapped value or null if not present.
+   */
+  public V peek(K key) {
+    Node<K, V> n = map.get(key);
+    if (n == null) {
+      return null;
+    }
+    recordHit(n);
+    return n.value;
+  }
+
+  /**
+   * Set the reference bit. The bit is only written if not set already, to
+   * keep the cache line of a hot entry shared.
+   */
+  private void recordHit(Node<K, V> n) {
+    int _slot = n.slot;
+    if (_slot >= 0 && references.get(_slot) == 0) {
+      references.lazySet(_slot, 1);
+    }
+  }
+
+  public void put(K key, V _value) {
+    if (_value == null) {
+      throw new NullPointerException("null value not supported");
+    }
+    putCnt.increment();
+    Node<K, V> n = map.get(key);
+    if (n == null) {
+      Node<K, V> _newNode = new Node<K, V>(key, _value);
+      n = map.putIfAbsent(key, _newNode);
+      if (n == null) {
+        insertIntoSlot(hands[spread(key.hashCode()) & handMask], _newNode);
+        return;
+      }
+    }
+    n.value = _value;
+    recordHit(n);
+  }
+
+  public boolean remove(K key) {
+    Node<K, V> n = map.remove(key);
+    if (n == null) {
+      return false;
+    }
+    removeCnt.increment();
+    int _slot = n.slot;
+    if (_slot >= 0) {
+      slots.compareAndSet(_slot, n, null);
+    }
+    return true;
+  }
+
+  /**
+   * Remove all entries. Not atomic, concurrent inserts may stay in the cache.
+   */
+  public void clear() {
+    map.clear();
+    for (int i = 0; i < maxSize; i++) {
+      slots.set(i, null);
+      references.set(i, 0);
+    }
+  }
+
+  /**
+   * Advance the hand of the region until a free or unreferenced slot is taken
+   * over by CAS. A referenced slot gets its bit cleared and a second chance. If
+   * hits keep the bits set, the entry under the hand is evicted after two rounds.
+   */
+  private void insertIntoSlot(Hand h, Node<K, V> n) {
+    int _scanCnt = 0;
+    int _slot;
+    for (;;) {
+      _slot = h.start + (int) ((Hand.POSITION.getAndIncrement(h) & 0xffffffffL) % h.length);
+      Node<K, V> e = slots.get(_slot);
+      if (e == null) {
+        if (slots.compareAndSet(_slot, null, n)) {
+          break;
+        }
+        continue;
+      }
+      if (references.get(_slot) != 0 && _scanCnt < h.length * 2) {
+        references.compareAndSet(_slot, 1, 0);
+        _scanCnt++;
+        continue;
+      }
+      if (slots.compareAndSet(_slot, e, n)) {
+        if (map.remove(e.key, e)) {
+          evictedCnt.increment();
+        }
+        if (_scanCnt >= h.length * 2) {
+          forcedEvictCnt.increment();
+        }
+        break;
+      }
+    }
+    scanCnt.add(_scanCnt);
+    references.set(_slot, 0);
+    n.slot = _slot;
+  }
+
+  public final int getMaxSize() {
+    return maxSize;
+  }
+
+  public final int size() {
+    return map.size();
+  }
+
+  public final int getHandCount() {
+    return hands.length;
+  }
+
+  /**
+   * Check the structure. Only correct while no operation is in progress.
+   */
+  public final void checkIntegrity() {
+    IntegrityState is = getIntegrityState();
+    if (is.getStateFlags() > 0) {
+      throw new CacheIntegrityError(is.getStateDescriptor(), is.getFailingChecks(), toString());
+    }
+  }
+
+  private IntegrityState getIntegrityState() {
+    boolean _allInSlot = true;
+    for (Node<K, V> n : map.values()) {
+      if (n.slot < 0 || slots.get(n.slot) != n) {
+        _allInSlot = false;
+      }
+    }
+    int _mappedSlots = 0;
+    for (int i = 0; i < maxSize; i++) {
+      Node<K, V> n = slots.get(i);
+      if (n != null && map.get(n.key) == n) {
+        _mappedSlots++;
+      }
+    }
+    return new IntegrityState()
+      .checkEquals("size == mapped slot count", map.size(), _mappedSlots)
+      .checkLessOrEquals("size <= maxSize", map.size(), maxSize)
+      .check("all entries in their slot", _allInSlot);
+  }
+
+  @Override
+  public final String toString() {
+    return getClass().getSimpleName() +
+      "(size=" + map.size() +
+      ", maxSize=" + maxSize +
+      ", handCount=" + hands.length +
+      ", putCnt=" + putCnt.sum() +
+      ", removeCnt=" + removeCnt.sum() +
+      ", evictedCnt=" + evictedCnt.sum() +
+      ", scanCnt=" + scanCnt.sum() +
+      ", forcedEvictCnt=" + forcedEvictCnt.sum() + ")";
+  }
+
+  static final class Node<K, V> {
+
+    final K key;
+    volatile V value;
+    /** Slot of the node, -1 until the inserting thread placed it */
+    volatile int slot = -1;
+
+    Node(K key, V _value) {
+      this.key = key;
+      value = _value;
+    }
+
+  }
+
+  /**
+   * Hand of a region. Padded to keep the positions of different hands out
+   * of the same cache line.
+   */
+  static final class Hand {
+
+    static final AtomicIntegerFieldUpdater<Hand> POSITION =
+      AtomicIntegerFieldUpdater.newUpdater(Hand.class, "position");
+
+    long p00, p01, p02, p03, p04, p05, p06;
+    volatile int position;
+    long p10, p11, p12, p13, p14, p15, p16;
+    final int start;
+    final int length;
+
+    Hand(int _start, int _length) {
+      start = _start;
+      length = _length;
+    }
+
+  }
+
+  public static class Tunable extends TunableConstants {
+
+    /** Number of hands and regions, 0 means four times the available processors */
+    public int handCount = 0;
+
+    /** Fewer hands are used if a region would get less slots */
+    public int minimumSlotsPerHand = 64;
+
+  }
+
+}
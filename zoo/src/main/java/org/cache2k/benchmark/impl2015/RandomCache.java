@@ -44,29 +44,37 @@ public class RandomCache<K, T> extends LockFreeCache<Entry, K, T> {
 
   @Override
   protected Entry newEntry() {
-    return new Entry();
+    return newEntryOfConfiguredType();
   }
 
   /**
-   * Start at arbitrary hash slot and evict the next best entry.
+   * Start at arbitrary hash slot and evict the next best entry. While a hash
+   * table expands, the buckets not yet moved are in the old table, which is
+   * scanned as well.
    */
   @Override
   protected Entry findEvictionCandidate() {
-    Entry[] h0 = mainHash;
-    Entry[] h1 = refreshHash;
-    int idx = evictionIndex % (h0.length + h1.length);
-    if (idx >= h0.length) {
-      idx -= h0.length;
-      Entry[] t = h0;
-      h0 = h1;
-      h1 = t;
+    Entry[][] _tables = {
+      mainHash, refreshHash,
+      mainHashCtrl.getMigrationSource(), refreshHashCtrl.getMigrationSource()};
+    int _total = 0;
+    for (Entry[] t : _tables) {
+      _total += t != null ? t.length : 0;
     }
+    int idx = evictionIndex % _total;
+    int _table = 0;
+    while (_tables[_table] == null || idx >= _tables[_table].length) {
+      idx -= _tables[_table] != null ? _tables[_table].length : 0;
+      _table++;
+    }
+    Entry[] h0 = _tables[_table];
     while (h0[idx] == null) {
       idx++;
       if (idx >= h0.length) {
-        Entry[] t = h0;
-        h0 = h1;
-        h1 = t;
+        do {
+          _table = (_table + 1) % _tables.length;
+        } while (_tables[_table] == null);
+        h0 = _tables[_table];
         idx = 0;
       }
     }
@@ -0,0 +1,280 @@
+package org.cache2k.benchmark.impl2015;
+
+/*
+ * #%L
+ * zoo
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.cache2k.benchmark.impl2015.util.TunableConstants;
+import org.cache2k.benchmark.impl2015.util.TunableFactory;
+
+/**
+ * S3-FIFO eviction with a small FIFO queue for new entries, a main FIFO queue and
+ * a ghost queue of the hash codes evicted from the small queue. An entry that was
+ * hit while in the small queue is moved into the main queue, otherwise it is evicted
+ * and remembered in the ghost queue. A miss that is found within the ghosts is inserted
+ * into the main queue directly. The main queue works like a CLOCK with a frequency
+ * limited to three, which is decremented when the entry is reinserted at the head.
+ *
+ * <p/>The hit counter is used as frequency. Since hits are recorded without lock, the
+ * entries do not carry a marker for the queue they are in. Like in {@link ClockProPlusCache}
+ * a removed entry in the middle of a queue is marked stale and dropped when it
+ * reaches the tail.
+ *
+ * @see <a href="https://dl.acm.org/doi/10.1145/3600006.3613147">FIFO queues are all you need for cache eviction</a>
+ *
+ * @author Jens Wilke
+ */
+@SuppressWarnings("unchecked")
+public class S3FifoCache<K, T> extends LockFreeCache<Entry, K, T> {
+
+  static final Tunable TUNABLE = TunableFactory.get(Tunable.class);
+
+  long hits;
+  long ghostHits;
+  int runCnt;
+  int scanCnt;
+  int promoteCnt;
+  int reinsertCnt;
+  int smallEvictCnt;
+  int mainEvictCnt;
+  int directRemoveCnt;
+
+  int smallSize;
+  int mainSize;
+  int staleSize;
+  int smallMax;
+
+  Entry smallHead;
+  Entry mainHead;
+
+  GhostDirectory ghosts;
+
+  @Override
+  public long getHitCnt() {
+    return hits + sumUpListHits(smallHead) + sumUpListHits(mainHead);
+  }
+
+  private static long sumUpListHits(Entry _head) {
+    long cnt = 0;
+    for (Entry e = _head.next; e != _head; e = e.next) {
+      cnt += e.hitCnt;
+    }
+    return cnt;
+  }
+
+  @Override
+  protected void initializeHeapCache() {
+    super.initializeHeapCache();
+    smallSize = mainSize = staleSize = 0;
+    smallMax = Math.max(1, maxSize * TUNABLE.smallQueuePercentage / 100);
+    ghosts = new GhostDirectory(Math.max(1, maxSize - smallMax));
+    smallHead = new Entry().shortCircuit();
+    mainHead = new Entry().shortCircuit();
+  }
+
+  @Override
+  protected void iterateAllEntriesRemoveAndCancelTimer() {
+    hits += removeAllInList(smallHead) + removeAllInList(mainHead);
+  }
+
+  private long removeAllInList(Entry _head) {
+    Entry e = _head.next;
+    long _hits = 0;
+    while (e != _head) {
+      Entry _next = e.next;
+      if (!e.isStale()) {
+        _hits += e.hitCnt;
+        cancelExpiryTimer(e);
+        releaseValue(e);
+      }
+      e.removedFromList();
+      e = _next;
+    }
+    return _hits;
+  }
+
+  /**
+   * An entry at the tail of a queue, which is the case for evicted entries,
+   * is removed directly. Others are marked stale and skipped when the
+   * eviction reaches them.
+   */
+  @Override
+  protected void removeEntryFromReplacementList(Entry e) {
+    if (smallHead.prev == e) {
+      hits += e.hitCnt;
+      removeFromList(e);
+      smallSize--;
+    } else if (mainHead.prev == e) {
+      hits += e.hitCnt;
+      removeFromList(e);
+      mainSize--;
+    } else {
+      hits += e.hitCnt;
+      e.hitCnt = 0;
+      staleSize++;
+      directRemoveCnt++;
+      e.setStale();
+    }
+  }
+
+  private int getListSize() {
+    return smallSize + mainSize - staleSize;
+  }
+
+  @Override
+  protected void recordHit(Entry e) {
+    e.hitCnt++;
+  }
+
+  @Override
+  protected void insertIntoReplacementList(Entry e) {
+    smallSize++;
+    insertInList(smallHead, e);
+  }
+
+  @Override
+  protected Entry newEntry() {
+    return newEntryOfConfiguredType();
+  }
+
+  /**
+   * A hash code known as ghost goes into the main queue directly.
+   */
+  @Override
+  protected Entry checkForGhost(K key, int hc) {
+    if (!ghosts.remove(hc)) {
+      return null;
+    }
+    Entry e = newEntry();
+    e.key = key;
+    e.hashCode = hc;
+    ghostHits++;
+    mainSize++;
+    insertInList(mainHead, e);
+    return e;
+  }
+
+  /**
+   * Evict from the small queue while it exceeds its target size, otherwise from
+   * the main queue. The candidate stays at the tail of its queue, in case it
+   * cannot be evicted the next run inspects it again.
+   */
+  @Override
+  protected Entry findEvictionCandidate() {
+    runCnt++;
+    for (;;) {
+      scanCnt++;
+      if (smallSize > 0 && (smallSize >= smallMax || mainSize == 0)) {
+        Entry e = smallHead.prev;
+        if (e.isStale()) {
+          removeFromList(e);
+          smallSize--;
+          staleSize--;
+          continue;
+        }
+        if (e.hitCnt >= TUNABLE.moveToMainThreshold) {
+          hits += e.hitCnt;
+          e.hitCnt = 0;
+          removeFromList(e);
+          smallSize--;
+          insertInList(mainHead, e);
+          mainSize++;
+          promoteCnt++;
+          continue;
+        }
+        ghosts.insert(e.hashCode);
+        smallEvictCnt++;
+        return e;
+      }
+      Entry e = mainHead.prev;
+      if (e.isStale()) {
+        removeFromList(e);
+        mainSize--;
+        staleSize--;
+        continue;
+      }
+      long _hitCnt = e.hitCnt;
+      if (_hitCnt > 0) {
+        long _frequency = Math.min(_hitCnt, TUNABLE.maxFrequency) - 1;
+        hits += _hitCnt - _frequency;
+        e.hitCnt = _frequency;
+        moveToFront(mainHead, e);
+        reinsertCnt++;
+        continue;
+      }
+      mainEvictCnt++;
+      return e;
+    }
+  }
+
+  @Override
+  protected void maxSizeChanged(int _previousMaxSize) {
+    smallMax = Math.max(1, maxSize * TUNABLE.smallQueuePercentage / 100);
+    ghosts = ghosts.resize(Math.max(1, maxSize - smallMax));
+  }
+
+  @Override
+  protected long getPolicyHeapBytes() {
+    return super.getPolicyHeapBytes() + HeapSizeEstimator.deepSize(ghosts, null);
+  }
+
+  @Override
+  protected IntegrityState getIntegrityState() {
+    synchronized (lock) {
+      return super.getIntegrityState()
+              .checkEquals("getListSize() + evictedButInHashCnt == getSize()", getListSize() + evictedButInHashCnt, getLocalSize())
+              .checkEquals("getListEntryCount(smallHead) == smallSize", getListEntryCount(smallHead), smallSize)
+              .checkEquals("getListEntryCount(mainHead) == mainSize", getListEntryCount(mainHead), mainSize)
+              .checkEquals("ghosts.size() == ghosts.calculateIndexCount()", ghosts.size(), ghosts.calculateIndexCount())
+              .checkLessOrEquals("ghosts.size() <= maxSize", ghosts.size(), maxSize);
+    }
+  }
+
+  @Override
+  protected String getExtraStatistics() {
+    return ", smallSize=" + smallSize +
+           ", smallMaxSize=" + smallMax +
+           ", mainSize=" + mainSize +
+           ", staleSize=" + staleSize +
+           ", ghostSize=" + ghosts.size() +
+           ", ghostHits=" + ghostHits +
+           ", runCnt=" + runCnt +
+           ", scanCnt=" + scanCnt +
+           ", promoteCnt=" + promoteCnt +
+           ", reinsertCnt=" + reinsertCnt +
+           ", smallEvictCnt=" + smallEvictCnt +
+           ", mainEvictCnt=" + mainEvictCnt +
+           ", directRemoveCnt=" + directRemoveCnt;
+  }
+
+  public static class Tunable extends TunableConstants {
+
+    /** Size of the small queue in percent of the cache capacity */
+    public int smallQueuePercentage = 10;
+
+    /** Hits in the small queue needed to move an entry into the main queue */
+    public int moveToMainThreshold = 1;
+
+    /** Upper limit of the frequency of an entry in the main queue */
+    public int maxFrequency = 3;
+
+  }
+
+}
@@ -0,0 +1,319 @@
+package org.cache2k.benchmark.impl2015;
+
+/*
+ * #%L
+ * zoo
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.cache2k.benchmark.impl2015.util.TunableConstants;
+import org.cache2k.benchmark.impl2015.util.TunableFactory;
+
+/**
+ * Sampled eviction like the approximated LRU and LFU of Redis. The eviction looks at a
+ * few random entries and evicts the one that was not accessed for the longest time or
+ * the one with the lowest access frequency. The best candidates of previous samples
+ * are kept in a small pool and compete with the next sample. A hit only updates the
+ * entry, there is no list that needs to be reordered, so reads need no lock.
+ *
+ * <p/>The access time is a clock counting the inserted entries. With
+ * {@link Tunable#frequency} the lower eight bits of the hit counter are a saturating
+ * access counter, which is decremented for each period of inactivity, the remaining
+ * bits hold the access time.
+ *
+ * <p/>The samples are taken from random slots of the hash table, entries in
+ * a longer collision chain have a lower probability to get sampled. On an empty
+ * slot another slot is drawn. Walking to the next used slot instead would favour
+ * the entries behind a run of empty slots, and with integer keys the used slots
+ * are clustered in the table.
+ *
+ * @see <a href="https://redis.io/docs/latest/develop/reference/eviction/">Redis: Key eviction</a>
+ *
+ * @author Jens Wilke
+ */
+public class SampledCache<K, T> extends LockFreeCache<Entry, K, T> {
+
+  static final Tunable TUNABLE = TunableFactory.get(Tunable.class);
+
+  static final int COUNT_BITS = 8;
+  static final int COUNT_MASK = (1 << COUNT_BITS) - 1;
+
+  /** Random slots drawn for one sample before walking to the next used slot */
+  static final int MAXIMUM_SLOT_DRAWS = 64;
+
+  /** Access clock, incremented for each inserted entry within the structure lock */
+  long clock;
+  int decayPeriod;
+  int random;
+
+  Entry[] pool;
+  long[] poolScore;
+  int poolSize;
+
+  int runCnt;
+  long sampleCnt;
+  long slotScanCnt;
+
+  @Override
+  public long getHitCnt() {
+    return statistics.sum().policyHitCnt;
+  }
+
+  @Override
+  protected void initializeHeapCache() {
+    super.initializeHeapCache();
+    clock = 0;
+    decayPeriod = (int) Math.max(1, (long) maxSize * TUNABLE.decayPeriodPercentage / 100);
+    random = 0x9E3779B9;
+    pool = new Entry[TUNABLE.poolSize];
+    poolScore = new long[TUNABLE.poolSize];
+    poolSize = 0;
+  }
+
+  @Override
+  protected void recordHit(Entry e) {
+    if (STATISTICS) {
+      statistics.get().policyHitCnt++;
+    }
+    long _clock = clock;
+    if (TUNABLE.frequency) {
+      int _count = decayedCount(e.hitCnt, _clock);
+      if (_count < COUNT_MASK) {
+        _count++;
+      }
+      e.hitCnt = _clock << COUNT_BITS | _count;
+    } else {
+      e.hitCnt = _clock;
+    }
+  }
+
+  /**
+   * Mark the entry as being in the replacement structure, like {@link RandomCache}.
+   */
+  @Override
+  protected void insertIntoReplacementList(Entry e) {
+    e.next = e;
+    long _clock = ++clock;
+    e.hitCnt = TUNABLE.frequency ? _clock << COUNT_BITS | 1 : _clock;
+  }
+
+  @Override
+  protected void removeEntryFromReplacementList(Entry e) {
+    e.removedFromList();
+  }
+
+  @Override
+  protected Entry newEntry() {
+    return newEntryOfConfiguredType();
+  }
+
+  private int decayedCount(long _hitCnt, long _clock) {
+    long _count = (_hitCnt & COUNT_MASK) - ((_clock - (_hitCnt >>> COUNT_BITS)) / decayPeriod);
+    return _count > 0 ? (int) _count : 0;
+  }
+
+  /**
+   * The higher the score, the better the entry is for eviction. For the frequency the
+   * access time decides between entries with identical count.
+   */
+  private long score(Entry e) {
+    if (TUNABLE.frequency) {
+      long _idle = clock - (e.hitCnt >>> COUNT_BITS);
+      return (long) (COUNT_MASK - decayedCount(e.hitCnt, clock)) << 48 | Math.min(_idle, (1L << 48) - 1);
+    }
+    return clock - e.hitCnt;
+  }
+
+  /**
+   * Refresh the scores of the pooled candidates, add a new sample and evict the
+   * candidate with the highest score. Without a pool the best entry of the
+   * sample is evicted.
+   */
+  @Override
+  protected Entry findEvictionCandidate() {
+    runCnt++;
+    int _size = 0;
+    for (int i = 0; i < poolSize; i++) {
+      Entry e = pool[i];
+      if (!e.isRemovedFromReplacementList()) {
+        pool[_size] = e;
+        poolScore[_size++] = score(e);
+      }
+    }
+    for (int i = _size; i < poolSize; i++) {
+      pool[i] = null;
+    }
+    poolSize = _size;
+    Entry _best = null;
+    long _bestScore = -1;
+    for (int i = 0; i < TUNABLE.sampleSize; i++) {
+      Entry e = sampleEntry();
+      long _score = score(e);
+      sampleCnt++;
+      if (_score > _bestScore) {
+        _best = e;
+        _bestScore = _score;
+      }
+      insertIntoPool(e, _score);
+    }
+    if (poolSize == 0) {
+      return _best;
+    }
+    int _bestIndex = 0;
+    for (int i = 1; i < poolSize; i++) {
+      if (poolScore[i] > poolScore[_bestIndex]) {
+        _bestIndex = i;
+      }
+    }
+    Entry e = pool[_bestIndex];
+    poolSize--;
+    pool[_bestIndex] = pool[poolSize];
+    poolScore[_bestIndex] = poolScore[poolSize];
+    pool[poolSize] = null;
+    return e;
+  }
+
+  /**
+   * Add the entry if the pool has space or replace the candidate with the lowest score.
+   */
+  private void insertIntoPool(Entry e, long _score) {
+    if (pool.length == 0) {
+      return;
+    }
+    int _lowestIndex = 0;
+    for (int i = 0; i < poolSize; i++) {
+      if (pool[i] == e) {
+        return;
+      }
+      if (poolScore[i] < poolScore[_lowestIndex]) {
+        _lowestIndex = i;
+      }
+    }
+    if (poolSize < pool.length) {
+      pool[poolSize] = e;
+      poolScore[poolSize++] = _score;
+    } else if (_score > poolScore[_lowestIndex]) {
+      pool[_lowestIndex] = e;
+      poolScore[_lowestIndex] = _score;
+    }
+  }
+
+  /**
+   * Entry from a random hash slot and a random entry within the collision chain.
+   * While a hash table expands, the buckets not yet moved are in the old table,
+   * which is sampled as well. The eviction runs only with a full cache, so the
+   * hash table is used to at least a third and a slot is found after a few draws.
+   * After {@link #MAXIMUM_SLOT_DRAWS} the next used slot is taken.
+   */
+  private Entry sampleEntry() {
+    Entry[][] _tables = {
+      mainHash, refreshHash,
+      mainHashCtrl.getMigrationSource(), refreshHashCtrl.getMigrationSource()};
+    int _total = 0;
+    for (Entry[] t : _tables) {
+      _total += t != null ? t.length : 0;
+    }
+    Entry[] h0;
+    int idx;
+    int _draws = 0;
+    do {
+      idx = (int) (((nextRandom() & 0xffffffffL) * _total) >>> 32);
+      int _table = 0;
+      while (_tables[_table] == null || idx >= _tables[_table].length) {
+        idx -= _tables[_table] != null ? _tables[_table].length : 0;
+        _table++;
+      }
+      h0 = _tables[_table];
+      if (h0[idx] != null) {
+        break;
+      }
+      slotScanCnt++;
+      if (++_draws == MAXIMUM_SLOT_DRAWS) {
+        while (h0[idx] == null) {
+          slotScanCnt++;
+          idx++;
+          if (idx >= h0.length) {
+            do {
+              _table = (_table + 1) % _tables.length;
+            } while (_tables[_table] == null);
+            h0 = _tables[_table];
+            idx = 0;
+          }
+        }
+        break;
+      }
+    } while (true);
+    Entry e = h0[idx];
+    if (e.another != null) {
+      int _length = 0;
+      for (Entry x = e; x != null; x = x.another) {
+        _length++;
+      }
+      for (int i = (nextRandom() >>> 1) % _length; i > 0; i--) {
+        e = e.another;
+      }
+    }
+    return e;
+  }
+
+  private int nextRandom() {
+    int x = random;
+    x ^= x << 13;
+    x ^= x >>> 17;
+    x ^= x << 5;
+    return random = x;
+  }
+
+  @Override
+  protected void maxSizeChanged(int _previousMaxSize) {
+    decayPeriod = (int) Math.max(1, (long) maxSize * TUNABLE.decayPeriodPercentage / 100);
+  }
+
+  @Override
+  protected IntegrityState getIntegrityState() {
+    synchronized (lock) {
+      return super.getIntegrityState()
+        .checkLessOrEquals("poolSize <= pool.length", poolSize, pool.length);
+    }
+  }
+
+  @Override
+  protected String getExtraStatistics() {
+    return ", sampledRunCnt=" + runCnt +
+           ", sampleCnt=" + sampleCnt +
+           ", slotScanCnt=" + slotScanCnt +
+           ", poolSize=" + poolSize;
+  }
+
+  public static class Tunable extends TunableConstants {
+
+    /** Number of entries inspected for each eviction */
+    public int sampleSize = 5;
+
+    /** Candidates kept between evictions, 0 disables the pool */
+    public int poolSize = 16;
+
+    /** Evict the entry with the lowest access frequency instead of the least recently used */
+    public boolean frequency = false;
+
+    /** Inserts in percent of the cache capacity until the access counter decreases by one */
+    public int decayPeriodPercentage = 100;
+
+  }
+
+}
@@ -0,0 +1,160 @@
+package org.cache2k.benchmark.impl2015;
+
+/*
+ * #%L
+ * zoo
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+/**
+ * SIEVE eviction. New entries are inserted at the head of a FIFO queue, a hit
+ * only sets the visited marker of an entry. The hand moves from the tail towards
+ * the head, resets the visited marker of the entries it passes and evicts the first
+ * entry without a marker. In contrast to {@link ClockCache} a retained entry stays
+ * at its position and is not moved to the head, so new entries are evicted
+ * quickly when they receive no hit.
+ *
+ * <p/>The hit counter of the entry is used as visited marker.
+ *
+ * @see <a href="https://www.usenix.org/conference/nsdi24/presentation/zhang-yazhuo">SIEVE is Simpler than LRU: an Efficient Turn-Key Eviction Algorithm for Web Caches</a>
+ *
+ * @author Jens Wilke
+ */
+public class SieveCache<K, T> extends LockFreeCache<Entry, K, T> {
+
+  long hits;
+  int runCnt;
+  int scan24hCnt;
+  int scanCnt;
+  int size;
+
+  Entry head;
+
+  /** Next entry to inspect, moving from the tail towards the head, null to start at the tail */
+  Entry hand;
+
+  @Override
+  public long getHitCnt() {
+    return hits + sumUpListHits();
+  }
+
+  private long sumUpListHits() {
+    long cnt = 0;
+    for (Entry e = head.next; e != head; e = e.next) {
+      cnt += e.hitCnt;
+    }
+    return cnt;
+  }
+
+  @Override
+  protected void initializeHeapCache() {
+    super.initializeHeapCache();
+    size = 0;
+    head = new Entry().shortCircuit();
+    hand = null;
+  }
+
+  @Override
+  protected void iterateAllEntriesRemoveAndCancelTimer() {
+    Entry e = head.next;
+    long _hits = 0;
+    while (e != head) {
+      Entry _next = e.next;
+      _hits += e.hitCnt;
+      e.removedFromList();
+      cancelExpiryTimer(e);
+      releaseValue(e);
+      e = _next;
+    }
+    hits += _hits;
+  }
+
+  @Override
+  protected void removeEntryFromReplacementList(Entry e) {
+    if (hand == e) {
+      hand = e.prev == head ? null : e.prev;
+    }
+    hits += e.hitCnt;
+    removeFromList(e);
+    size--;
+  }
+
+  private int getListSize() {
+    return size;
+  }
+
+  @Override
+  protected void recordHit(Entry e) {
+    e.hitCnt++;
+  }
+
+  @Override
+  protected void insertIntoReplacementList(Entry e) {
+    size++;
+    insertInList(head, e);
+  }
+
+  @Override
+  protected Entry newEntry() {
+    return newEntryOfConfiguredType();
+  }
+
+  /**
+   * Run the hand to evict an entry. The hand stays on the candidate, in case the
+   * entry cannot be evicted the next run continues there.
+   */
+  @Override
+  protected Entry findEvictionCandidate() {
+    runCnt++;
+    int _scanCnt = 0;
+    Entry e = hand == null ? head.prev : hand;
+    while (e.hitCnt > 0) {
+      _scanCnt++;
+      hits += e.hitCnt;
+      e.hitCnt = 0;
+      e = e.prev;
+      if (e == head) {
+        e = head.prev;
+      }
+    }
+    if (_scanCnt > size) {
+      scan24hCnt++;
+    }
+    scanCnt += _scanCnt;
+    hand = e;
+    return e;
+  }
+
+  @Override
+  protected IntegrityState getIntegrityState() {
+    synchronized (lock) {
+      return super.getIntegrityState()
+              .checkEquals("getListSize() + evictedButInHashCnt == getSize()", getListSize() + evictedButInHashCnt, getLocalSize())
+              .checkEquals("getListEntryCount(head) == size", getListEntryCount(head), size)
+              .check("hand == null || !hand.isRemovedFromReplacementList()", hand == null || !hand.isRemovedFromReplacementList());
+    }
+  }
+
+  @Override
+  protected String getExtraStatistics() {
+    return  ", sieveRunCnt=" + runCnt +
+            ", scanCnt=" + scanCnt +
+            ", scan24hCnt=" + scan24hCnt;
+  }
+
+}
@@ -0,0 +1,55 @@
+package org.cache2k.benchmark.impl2015;
+
+/*
+ * #%L
+ * zoo
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes and reads keys or values of the cache snapshot. The buffer is a window of
+ * the memory mapped snapshot file. If the object does not fit in the remaining buffer,
+ * the serializer just lets the {@link java.nio.BufferOverflowException} or
+ * {@link java.nio.BufferUnderflowException} escape, the snapshot maps a larger window
+ * and calls the serializer again.
+ *
+ * @author Jens Wilke
+ * @see CacheConfig#setSnapshotFile(java.io.File)
+ */
+public interface SnapshotSerializer<T> {
+
+  /** Serializer for integer keys or values, used by the benchmarks. */
+  SnapshotSerializer<Integer> INTEGER = new SnapshotSerializer<Integer>() {
+    @Override
+    public void write(ByteBuffer buf, Integer v) {
+      buf.putInt(v);
+    }
+
+    @Override
+    public Integer read(ByteBuffer buf) {
+      return buf.getInt();
+    }
+  };
+
+  void write(ByteBuffer buf, T v);
+
+  T read(ByteBuffer buf);
+
+}
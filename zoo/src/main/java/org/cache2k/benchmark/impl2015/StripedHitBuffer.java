@@ -0,0 +1,160 @@
+package org.cache2k.benchmark.impl2015;
+
+/*
+ * #%L
+ * zoo
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lossy, striped ring buffers to record entry hits without taking the structure
+ * lock. A thread writes to the stripe selected by its id. The buffers are drained
+ * in batches by the cache while it holds the structure lock. If a stripe is full
+ * or a concurrent writer wins the slot, the hit is dropped. Loosing a hit only
+ * makes the replacement decision slightly less accurate, so we prefer
+ * this over blocking the reader.
+ *
+ * @author Jens Wilke
+ */
+@SuppressWarnings("unchecked")
+final class StripedHitBuffer<E extends Entry> {
+
+  private final Stripe[] stripes;
+  private final int stripeMask;
+  private final int bufferSize;
+  private final int bufferMask;
+
+  long drainCnt;
+  long drainedHitCnt;
+
+  /**
+   * @param _stripeCount number of stripes, rounded up to a power of two
+   * @param _bufferSize entries per stripe, rounded up to a power of two
+   */
+  StripedHitBuffer(int _stripeCount, int _bufferSize) {
+    int _stripes = powerOfTwo(_stripeCount);
+    bufferSize = powerOfTwo(_bufferSize);
+    bufferMask = bufferSize - 1;
+    stripeMask = _stripes - 1;
+    stripes = new Stripe[_stripes];
+    for (int i = 0; i < _stripes; i++) {
+      stripes[i] = new Stripe(bufferSize);
+    }
+  }
+
+  static int powerOfTwo(int v) {
+    int n = 1;
+    while (n < v) {
+      n <<= 1;
+    }
+    return n;
+  }
+
+  private Stripe stripe() {
+    int h = (int) Thread.currentThread().getId() * 0x9E3779B9;
+    return stripes[(h ^ (h >>> 16)) & stripeMask];
+  }
+
+  /**
+   * Record a hit. No locks are taken.
+   *
+   * @return false, if the stripe is full and should be drained by the caller
+   */
+  boolean offer(E e) {
+    Stripe s = stripe();
+    int w = s.writeCounter;
+    int _fill = w - s.readCounter;
+    if (_fill >= bufferSize) {
+      s.dropCnt++;
+      return false;
+    }
+    if (!Stripe.WRITE_COUNTER.compareAndSet(s, w, w + 1)) {
+      s.dropCnt++;
+      return true;
+    }
+    s.slots.lazySet(w & bufferMask, e);
+    return _fill + 1 < bufferSize;
+  }
+
+  /**
+   * Pass all recorded hits to the cache. Needs to be called under the structure lock.
+   * Hits to entries removed in the meantime are passed as well, the replacement
+   * algorithm needs to ignore them.
+   */
+  void drain(BaseCache<E, ?, ?> c) {
+    drainCnt++;
+    for (Stripe s : stripes) {
+      int r = s.readCounter;
+      int w = s.writeCounter;
+      while (r != w) {
+        int idx = r & bufferMask;
+        E e = (E) s.slots.get(idx);
+        if (e == null) {
+          break;
+        }
+        s.slots.lazySet(idx, null);
+        c.recordHit(e);
+        drainedHitCnt++;
+        r++;
+      }
+      s.readCounter = r;
+    }
+  }
+
+  long getDropCnt() {
+    long cnt = 0;
+    for (Stripe s : stripes) {
+      cnt += s.dropCnt;
+    }
+    return cnt;
+  }
+
+  int getStripeCount() {
+    return stripes.length;
+  }
+
+  int getBufferSize() {
+    return bufferSize;
+  }
+
+  /**
+   * Single ring buffer. Padded to keep the counters of different stripes out
+   * of the same cache line.
+   */
+  static final class Stripe {
+
+    static final AtomicIntegerFieldUpdater<Stripe> WRITE_COUNTER =
+      AtomicIntegerFieldUpdater.newUpdater(Stripe.class, "writeCounter");
+
+    long p00, p01, p02, p03, p04, p05, p06;
+    volatile int writeCounter;
+    long p10, p11, p12, p13, p14, p15, p16;
+    volatile int readCounter;
+    /** Dropped hits, not exact, only updated by the writing threads. */
+    long dropCnt;
+    final AtomicReferenceArray<Entry> slots;
+
+    Stripe(int _size) {
+      slots = new AtomicReferenceArray<Entry>(_size);
+    }
+
+  }
+
+}
@@ -0,0 +1,44 @@
+package org.cache2k.benchmark.impl2015;
+
+/*
+ * #%L
+ * zoo
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Cache entry with the links for the timing wheel and the modification time. Used when
+ * the cache has a timer or a cache source. With lazy expiry the policy creates a
+ * {@link ModificationTimeEntry}, otherwise the compact {@link Entry}.
+ *
+ * @author Jens Wilke
+ * @see BaseCache#timedEntries
+ */
+public class TimedEntry<E extends Entry, K, T> extends ModificationTimeEntry<E, K, T> {
+
+  /**
+   * Timing wheel: links in the bucket list, null if no timer event is scheduled.
+   *
+   * @see TimingWheel
+   */
+  TimedEntry timerNext;
+  TimedEntry timerPrev;
+
+  /** Timing wheel: scheduled time in millis */
+  long timerTime;
+
+}
@@ -0,0 +1,314 @@
+package org.cache2k.benchmark.impl2015;
+
+/*
+ * #%L
+ * zoo
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+
+/**
+ * Hierarchical timing wheel for the expiry of cache entries, replacing the
+ * {@link java.util.Timer} with a task object per entry.
+ *
+ * <p>Time is divided into ticks of 2^{@code tickMillisShift} milliseconds. There are
+ * {@value #LEVELS} wheels with {@value #BUCKETS} buckets each, a bucket of level n
+ * covers 64^n ticks. An entry goes into the bucket of the lowest level that covers its
+ * distance from the current tick. When the lowest wheel finishes a round, the next bucket
+ * of the level above is cascaded and its entries are distributed to the lower levels.
+ * The buckets are cyclic lists linked via the entry fields {@link TimedEntry#timerNext} and
+ * {@link TimedEntry#timerPrev}, so schedule and cancel are O(1) and need no extra object.
+ * Only a {@link TimedEntry} can be scheduled, the cache creates these when it has a timer.
+ *
+ * <p>A daemon thread advances the wheel and sleeps until the next tick with a non
+ * empty bucket or the next cascade. The entries of a tick are unlinked under the wheel
+ * lock and then processed as a batch via {@link BaseCache#timerEvent} without holding
+ * the lock. An entry fires at most one tick late, never early.
+ *
+ * @author Jens Wilke
+ */
+@SuppressWarnings("unchecked")
+final class TimingWheel<E extends Entry> implements Runnable {
+
+  static final int LEVELS = 6;
+  static final int BUCKETS = 64;
+
+  private static final int BITS = 6;
+  private static final int MASK = BUCKETS - 1;
+  /** Maximum distance in ticks that can be represented */
+  private static final long MAX_TICKS = (1L << (BITS * LEVELS)) - 1;
+
+  private final BaseCache<E, ?, ?> cache;
+  private final int tickMillisShift;
+  private final TimedEntry[][] buckets = new TimedEntry[LEVELS][BUCKETS];
+  private final Thread thread;
+
+  private long currentTick;
+  private long wakeupTick;
+  private int size;
+  private boolean cancelled;
+
+  private TimedEntry[] batch = new TimedEntry[16];
+  private long[] batchTimes = new long[16];
+
+  private long scheduleCnt;
+  private long cancelCnt;
+  private long cascadeCnt;
+  private long batchCnt;
+  private long firedCnt;
+
+  TimingWheel(String _name, BaseCache<E, ?, ?> _cache, int _tickMillisShift) {
+    cache = _cache;
+    tickMillisShift = _tickMillisShift;
+    for (TimedEntry[] _wheel : buckets) {
+      for (int i = 0; i < BUCKETS; i++) {
+        TimedEntry _sentinel = new TimedEntry();
+        _sentinel.timerNext = _sentinel.timerPrev = _sentinel;
+        _wheel[i] = _sentinel;
+      }
+    }
+    currentTick = wakeupTick = System.currentTimeMillis() >> tickMillisShift;
+    thread = new Thread(this, _name);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Schedule the timer event for the entry, a previous schedule is cancelled.
+   */
+  synchronized void schedule(E _entry, long _time) {
+    if (cancelled) {
+      return;
+    }
+    TimedEntry e = (TimedEntry) _entry;
+    if (e.timerNext != null) {
+      unlink(e);
+      size--;
+    }
+    if (size == 0) {
+      currentTick = Math.max(currentTick, System.currentTimeMillis() >> tickMillisShift);
+    }
+    e.timerTime = _time;
+    long _tick = toTick(_time);
+    int _level = insert(e, Math.max(_tick, currentTick + 1));
+    size++;
+    scheduleCnt++;
+    if (wakeupTick == Long.MAX_VALUE || (_level == 0 && _tick < wakeupTick)) {
+      notify();
+    }
+  }
+
+  synchronized void cancel(Entry _entry) {
+    TimedEntry e = (TimedEntry) _entry;
+    if (e.timerNext != null) {
+      unlink(e);
+      size--;
+      cancelCnt++;
+    }
+  }
+
+  /**
+   * Stop the thread and drop all scheduled entries.
+   */
+  synchronized void cancel() {
+    cancelled = true;
+    for (TimedEntry[] _wheel : buckets) {
+      for (TimedEntry _sentinel : _wheel) {
+        TimedEntry e = _sentinel.timerNext;
+        while (e != _sentinel) {
+          TimedEntry _next = e.timerNext;
+          e.timerNext = e.timerPrev = null;
+          e = _next;
+        }
+        _sentinel.timerNext = _sentinel.timerPrev = _sentinel;
+      }
+    }
+    size = 0;
+    notify();
+  }
+
+  boolean isScheduled(Entry e) {
+    return ((TimedEntry) e).timerNext != null;
+  }
+
+  /**
+   * The tick is rounded up, so the event never fires before the scheduled time.
+   */
+  private long toTick(long _time) {
+    return (_time + (1L << tickMillisShift) - 1) >> tickMillisShift;
+  }
+
+  /**
+   * Insert into the bucket of the lowest level covering the distance, returns the level.
+   */
+  private int insert(TimedEntry e, long _tick) {
+    long _delta = _tick - currentTick;
+    if (_delta > MAX_TICKS) {
+      _tick = currentTick + MAX_TICKS;
+      _delta = MAX_TICKS;
+    }
+    int _level = 0;
+    while (_level < LEVELS - 1 && (_delta >>> (BITS * (_level + 1))) != 0) {
+      _level++;
+    }
+    TimedEntry _sentinel = buckets[_level][(int) (_tick >>> (BITS * _level)) & MASK];
+    TimedEntry _tail = _sentinel.timerPrev;
+    e.timerNext = _sentinel;
+    e.timerPrev = _tail;
+    _tail.timerNext = e;
+    _sentinel.timerPrev = e;
+    return _level;
+  }
+
+  private static void unlink(TimedEntry e) {
+    e.timerPrev.timerNext = e.timerNext;
+    e.timerNext.timerPrev = e.timerPrev;
+    e.timerNext = e.timerPrev = null;
+  }
+
+  @Override
+  public void run() {
+    for (;;) {
+      int _batchSize;
+      synchronized (this) {
+        try {
+          _batchSize = waitAndAdvance();
+        } catch (InterruptedException ex) {
+          return;
+        }
+        if (_batchSize < 0) {
+          return;
+        }
+      }
+      for (int i = 0; i < _batchSize; i++) {
+        E e = (E) batch[i];
+        batch[i] = null;
+        try {
+          cache.timerEvent(e, batchTimes[i]);
+        } catch (CacheClosedException ignore) {
+        } catch (Throwable t) {
+          cache.getLog().warn("Exception in timer event", t);
+        }
+      }
+    }
+  }
+
+  /**
+   * Wait for the next tick that needs processing and collect the due entries.
+   * Returns the batch size or -1 if cancelled.
+   */
+  private int waitAndAdvance() throws InterruptedException {
+    for (;;) {
+      if (cancelled) {
+        return -1;
+      }
+      long _now = System.currentTimeMillis();
+      long _nowTick = _now >> tickMillisShift;
+      if (size == 0) {
+        currentTick = Math.max(currentTick, _nowTick);
+        wakeupTick = Long.MAX_VALUE;
+        wait();
+        wakeupTick = currentTick;
+        continue;
+      }
+      if (_nowTick < wakeupTick) {
+        wait(Math.max(1, (wakeupTick << tickMillisShift) - _now));
+        continue;
+      }
+      int _batchSize = 0;
+      while (currentTick < _nowTick && _batchSize == 0) {
+        currentTick++;
+        cascade();
+        _batchSize = collect(buckets[0][(int) currentTick & MASK]);
+      }
+      wakeupTick = currentTick < _nowTick ? currentTick + 1 : nextWakeupTick();
+      if (_batchSize > 0) {
+        batchCnt++;
+        firedCnt += _batchSize;
+        return _batchSize;
+      }
+    }
+  }
+
+  /**
+   * Cascade the buckets of the higher levels, when the levels below finished a round.
+   * Higher levels first, since their entries may go into the bucket cascaded next.
+   */
+  private void cascade() {
+    int _level = 0;
+    while (_level < LEVELS - 1 && (currentTick & ((1L << (BITS * (_level + 1))) - 1)) == 0) {
+      _level++;
+    }
+    for (; _level > 0; _level--) {
+      TimedEntry _sentinel = buckets[_level][(int) (currentTick >>> (BITS * _level)) & MASK];
+      TimedEntry e = _sentinel.timerNext;
+      _sentinel.timerNext = _sentinel.timerPrev = _sentinel;
+      while (e != _sentinel) {
+        TimedEntry _next = e.timerNext;
+        insert(e, Math.max(toTick(e.timerTime), currentTick));
+        cascadeCnt++;
+        e = _next;
+      }
+    }
+  }
+
+  private int collect(TimedEntry _sentinel) {
+    int cnt = 0;
+    TimedEntry e = _sentinel.timerNext;
+    while (e != _sentinel) {
+      if (cnt == batch.length) {
+        batch = Arrays.copyOf(batch, cnt * 2);
+        batchTimes = Arrays.copyOf(batchTimes, cnt * 2);
+      }
+      TimedEntry _next = e.timerNext;
+      e.timerNext = e.timerPrev = null;
+      batch[cnt] = e;
+      batchTimes[cnt] = e.timerTime;
+      cnt++;
+      e = _next;
+    }
+    _sentinel.timerNext = _sentinel.timerPrev = _sentinel;
+    size -= cnt;
+    return cnt;
+  }
+
+  /**
+   * Next tick with a non empty bucket in the lowest level, or the next cascade.
+   */
+  private long nextWakeupTick() {
+    long _tick = currentTick + 1;
+    for (; (_tick & MASK) != 0; _tick++) {
+      TimedEntry _sentinel = buckets[0][(int) _tick & MASK];
+      if (_sentinel.timerNext != _sentinel) {
+        return _tick;
+      }
+    }
+    return _tick;
+  }
+
+  synchronized String getStatistics() {
+    return
+      ", timerSize=" + size +
+      ", timerScheduleCnt=" + scheduleCnt +
+      ", timerCancelCnt=" + cancelCnt +
+      ", timerCascadeCnt=" + cascadeCnt +
+      ", timerBatchCnt=" + batchCnt +
+      ", timerFiredCnt=" + firedCnt;
+  }
+
+}
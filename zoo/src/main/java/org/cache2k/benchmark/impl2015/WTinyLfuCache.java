@@ -0,0 +1,324 @@
+package org.cache2k.benchmark.impl2015;
+
+/*
+ * #%L
+ * zoo
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.cache2k.benchmark.impl2015.util.TunableConstants;
+import org.cache2k.benchmark.impl2015.util.TunableFactory;
+
+/**
+ * Window TinyLFU eviction. New entries go into a small LRU window. An entry that drops
+ * out of the window moves into the probation segment of the main area, which is a
+ * segmented LRU. It competes with the oldest entry in probation, the entry with the
+ * lower estimated access frequency is evicted, on a tie the new one. A hit in probation
+ * moves the entry into the protected segment.
+ *
+ * <p/>The best window size depends on the workload, a bigger window favors recency, a
+ * smaller window favors frequency. The window size is adapted by hill climbing: The hit
+ * rate is sampled in periods of ten times the cache size. If the hit rate improved
+ * since the last period the window is changed again in the same direction, otherwise
+ * in the other direction. The step size decays, a big change in the hit rate resets it.
+ * The window grows by inserts and shrinks by the next evictions, no entries are moved
+ * when the target sizes are adapted.
+ *
+ * <p/>The frequency sketch counts hits and misses, it is updated within the
+ * structure lock, when the buffered hits are applied. The hit counter of an entry holds
+ * the number of its segment.
+ *
+ * @see <a href="https://arxiv.org/abs/1512.00727">TinyLFU: A Highly Efficient Cache Admission Policy</a>
+ * @see <a href="https://dl.acm.org/doi/10.1145/3274808.3274816">Adaptive Software Cache Management</a>
+ *
+ * @author Jens Wilke
+ */
+@SuppressWarnings("unchecked")
+public class WTinyLfuCache<K, T> extends BufferedHitCache<Entry, K, T> {
+
+  static final Tunable TUNABLE = TunableFactory.get(Tunable.class);
+
+  static final int WINDOW = 0;
+  static final int PROBATION = 1;
+  static final int PROTECTED = 2;
+
+  long hits;
+  long admitCnt;
+  long rejectCnt;
+  long adaptCnt;
+  long evictionRunCnt;
+
+  int windowSize;
+  int probationSize;
+  int protectedSize;
+
+  int windowMax;
+  int protectedMax;
+  int windowMaxLowest;
+  int windowMaxHighest;
+
+  Entry windowHead;
+  Entry probationHead;
+  Entry protectedHead;
+
+  FrequencySketch sketch;
+
+  /** Target window size as fraction, the step size may be smaller than one entry */
+  double windowTarget;
+  double stepSize;
+  double previousHitRate;
+  long sampleSize;
+  long sampleHitCnt;
+  long sampleMissCnt;
+
+  @Override
+  public long getHitCnt() {
+    return hits;
+  }
+
+  @Override
+  protected void initializeHeapCache() {
+    super.initializeHeapCache();
+    windowSize = probationSize = protectedSize = 0;
+    windowHead = new Entry().shortCircuit();
+    probationHead = new Entry().shortCircuit();
+    protectedHead = new Entry().shortCircuit();
+    sketch = new FrequencySketch(maxSize);
+    windowTarget = (double) maxSize * TUNABLE.windowPercentage / 100;
+    stepSize = (double) maxSize * TUNABLE.stepPercentage / 100;
+    previousHitRate = 0;
+    sampleSize = (long) maxSize * TUNABLE.samplePeriodFactor;
+    sampleHitCnt = sampleMissCnt = 0;
+    setWindowMax();
+    windowMaxLowest = windowMaxHighest = windowMax;
+  }
+
+  private void setWindowMax() {
+    windowMax = (int) windowTarget;
+    protectedMax = (int) ((long) (maxSize - windowMax) * TUNABLE.protectedPercentage / 100);
+  }
+
+  /**
+   * Buffered hits may arrive after the entry was removed, they are counted for
+   * the hit rate, but do not move the entry.
+   */
+  @Override
+  protected void recordHit(Entry e) {
+    hits++;
+    sampleHitCnt++;
+    sketch.increment(e.hashCode);
+    if (!e.isRemovedFromReplacementList()) {
+      if (e.hitCnt == WINDOW) {
+        moveToFront(windowHead, e);
+      } else if (e.hitCnt == PROTECTED) {
+        moveToFront(protectedHead, e);
+      } else {
+        removeFromList(e);
+        probationSize--;
+        e.hitCnt = PROTECTED;
+        insertInList(protectedHead, e);
+        protectedSize++;
+        demoteProtected();
+      }
+    }
+    adaptWindow();
+  }
+
+  @Override
+  protected void insertIntoReplacementList(Entry e) {
+    sampleMissCnt++;
+    sketch.increment(e.hashCode);
+    e.hitCnt = WINDOW;
+    insertInList(windowHead, e);
+    windowSize++;
+    adaptWindow();
+  }
+
+  @Override
+  protected Entry newEntry() {
+    return newEntryOfConfiguredType();
+  }
+
+  @Override
+  protected void removeEntryFromReplacementList(Entry e) {
+    if (e.hitCnt == WINDOW) {
+      windowSize--;
+    } else if (e.hitCnt == PROBATION) {
+      probationSize--;
+    } else {
+      protectedSize--;
+    }
+    removeFromList(e);
+  }
+
+  /**
+   * Move entries that exceed the window into probation. The last one competes
+   * with the oldest entry in probation. If the window is below its
+   * target, the oldest entry in probation is evicted.
+   *
+   * <p>A batch eviction calls this once per evicted entry, after the writers
+   * inserted a number of entries into the window. Each of these competes in its
+   * own call, only the overflow beyond the entries still to evict, after an
+   * initial fill or a smaller window, moves without competing.
+   */
+  @Override
+  protected Entry findEvictionCandidate() {
+    evictionRunCnt++;
+    Entry _candidate = null;
+    int _pending = Math.max(1, getLocalSize() - getEvictionTargetSize());
+    while (windowSize > windowMax) {
+      _candidate = windowHead.prev;
+      removeFromList(_candidate);
+      windowSize--;
+      _candidate.hitCnt = PROBATION;
+      insertInList(probationHead, _candidate);
+      probationSize++;
+      if (windowSize < windowMax + _pending) {
+        break;
+      }
+    }
+    Entry _victim = probationHead.prev;
+    if (_victim == probationHead) {
+      _victim = protectedHead.prev;
+      if (_victim == protectedHead) {
+        _victim = windowHead.prev;
+      }
+    }
+    if (_candidate == null || _candidate == _victim) {
+      return _victim;
+    }
+    if (sketch.frequency(_candidate.hashCode) > sketch.frequency(_victim.hashCode)) {
+      admitCnt++;
+      return _victim;
+    }
+    rejectCnt++;
+    return _candidate;
+  }
+
+  private void demoteProtected() {
+    while (protectedSize > protectedMax) {
+      Entry e = protectedHead.prev;
+      removeFromList(e);
+      protectedSize--;
+      e.hitCnt = PROBATION;
+      insertInList(probationHead, e);
+      probationSize++;
+    }
+  }
+
+  /**
+   * Change the window size, when a sample period is complete. Starts after the
+   * first eviction.
+   */
+  private void adaptWindow() {
+    if (!TUNABLE.adaptive || evictionRunCnt == 0 || sampleHitCnt + sampleMissCnt < sampleSize) {
+      return;
+    }
+    double _hitRate = (double) sampleHitCnt / (sampleHitCnt + sampleMissCnt);
+    double _hitRateChange = _hitRate - previousHitRate;
+    double _amount = _hitRateChange >= 0 ? stepSize : -stepSize;
+    if (Math.abs(_hitRateChange) >= TUNABLE.restartPercentage / 100.0) {
+      stepSize = Math.copySign((double) maxSize * TUNABLE.stepPercentage / 100, _amount);
+    } else {
+      stepSize = _amount * TUNABLE.stepDecayPercentage / 100;
+    }
+    previousHitRate = _hitRate;
+    sampleHitCnt = sampleMissCnt = 0;
+    windowTarget = Math.max(0, Math.min(maxSize, windowTarget + _amount));
+    setWindowMax();
+    demoteProtected();
+    windowMaxLowest = Math.min(windowMaxLowest, windowMax);
+    windowMaxHighest = Math.max(windowMaxHighest, windowMax);
+    adaptCnt++;
+  }
+
+  @Override
+  protected String getExtraStatistics() {
+    return super.getExtraStatistics()
+      + ", windowSize=" + windowSize
+      + ", windowMaxSize=" + windowMax
+      + ", windowMaxLowest=" + windowMaxLowest
+      + ", windowMaxHighest=" + windowMaxHighest
+      + ", probationSize=" + probationSize
+      + ", protectedSize=" + protectedSize
+      + ", protectedMaxSize=" + protectedMax
+      + ", admitCnt=" + admitCnt
+      + ", rejectCnt=" + rejectCnt
+      + ", adaptCnt=" + adaptCnt
+      + ", sketchResetCnt=" + sketch.getResetCount();
+  }
+
+  /**
+   * Scale the adapted window to the new capacity. The sketch keeps its size, so the
+   * frequencies are not lost.
+   */
+  @Override
+  protected void maxSizeChanged(int _previousMaxSize) {
+    double _factor = (double) maxSize / _previousMaxSize;
+    windowTarget = Math.min(maxSize, windowTarget * _factor);
+    stepSize = stepSize * _factor;
+    sampleSize = (long) maxSize * TUNABLE.samplePeriodFactor;
+    setWindowMax();
+    demoteProtected();
+  }
+
+  @Override
+  protected long getPolicyHeapBytes() {
+    return super.getPolicyHeapBytes() + HeapSizeEstimator.deepSize(sketch, null);
+  }
+
+  @Override
+  protected IntegrityState getIntegrityState() {
+    synchronized (lock) {
+      return super.getIntegrityState()
+        .checkEquals("windowSize + probationSize + protectedSize + evictedButInHashCnt == getSize()",
+          windowSize + probationSize + protectedSize + evictedButInHashCnt, getLocalSize())
+        .checkEquals("getListEntryCount(windowHead) == windowSize", getListEntryCount(windowHead), windowSize)
+        .checkEquals("getListEntryCount(probationHead) == probationSize", getListEntryCount(probationHead), probationSize)
+        .checkEquals("getListEntryCount(protectedHead) == protectedSize", getListEntryCount(protectedHead), protectedSize)
+        .checkLessOrEquals("protectedSize <= protectedMax", protectedSize, protectedMax)
+        .checkLessOrEquals("windowMax <= maxSize", windowMax, maxSize);
+    }
+  }
+
+  public static class Tunable extends TunableConstants {
+
+    /** Initial size of the window in percent of the cache capacity */
+    public int windowPercentage = 1;
+
+    /** Size of the protected segment in percent of the main area */
+    public int protectedPercentage = 80;
+
+    /** Adapt the window size by hill climbing */
+    public boolean adaptive = true;
+
+    /** Length of a sample period as multiple of the cache capacity */
+    public int samplePeriodFactor = 10;
+
+    /** Initial step of the window size in percent of the cache capacity */
+    public int stepPercentage = 6;
+
+    /** The step size decreases with every adaption to this percentage */
+    public int stepDecayPercentage = 98;
+
+    /** A hit rate change of this many percent points restarts with the initial step size */
+    public int restartPercentage = 5;
+
+  }
+
+}
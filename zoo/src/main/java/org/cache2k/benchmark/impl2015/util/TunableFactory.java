@@ -54,6 +54,8 @@ public final class TunableFactory {
 
   private static Properties customProperties;
 
+  private static Properties overrideProperties;
+
   /**
    * Reload the tunable configuration from the system properties
    * and the configuration file.
@@ -64,6 +66,20 @@ public final class TunableFactory {
     defaultProperties = loadFile(DEFAULT_TUNING_FILE_NAME);
   }
 
+  /**
+   * Reload and apply the properties after the configuration files and the system
+   * properties. The tunables are kept in static constants of the cache classes, so
+   * this has only an effect on classes that are not initialized yet. Used by the
+   * tuner, which loads the cache classes within a separate class loader for each
+   * configuration.
+   *
+   * @param p Properties overriding the tunables, or null
+   */
+  public static synchronized void reload(Properties p) {
+    reload();
+    overrideProperties = p;
+  }
+
   static Properties loadFile(final String _fileName) {
     InputStream in =
       TunableConstants.class.getResourceAsStream(_fileName);
@@ -126,6 +142,7 @@ public final class TunableFactory {
       apply(defaultProperties, cfg);
       apply(customProperties, cfg);
       apply(System.getProperties(), cfg);
+      apply(overrideProperties, cfg);
       map.put(c, cfg);
     }
     return cfg;
@@ -0,0 +1,76 @@
+package org.cache2k.benchmark.tuning;
+
+/*
+ * #%L
+ * zoo
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.cache2k.benchmark.impl2015.BaseCache;
+import org.cache2k.benchmark.impl2015.CacheConfig;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Replays a trace through a fresh cache and returns the miss count. The replay
+ * is the same as the cache2k 2015 factory and the benchmark base do it: a peek
+ * and a put on a miss. Loaded by the {@link TunableClassLoader}, so the cache
+ * classes see the tunables of the configuration.
+ *
+ * @author Jens Wilke
+ */
+public final class TraceReplay implements Callable<Long> {
+
+  private final String implementation;
+  private final Integer[] trace;
+  private final int size;
+
+  public TraceReplay(String _implementation, Integer[] _trace, int _size) {
+    implementation = _implementation;
+    trace = _trace;
+    size = _size;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public Long call() throws Exception {
+    BaseCache<?, Integer, Integer> c = (BaseCache<?, Integer, Integer>)
+      Class.forName(implementation, true, TraceReplay.class.getClassLoader()).newInstance();
+    CacheConfig<Integer, Integer> cc = new CacheConfig<>();
+    cc.setExpirySeconds(Integer.MAX_VALUE);
+    cc.setEntryCapacity(size);
+    cc.setBackgroundRefresh(false);
+    cc.setKeepDataAfterExpired(false);
+    c.setCacheConfig(cc);
+    c.init();
+    long _missCount = 0;
+    try {
+      for (Integer k : trace) {
+        if (c.peek(k) == null) {
+          c.put(k, k);
+          _missCount++;
+        }
+      }
+      c.checkIntegrity();
+    } finally {
+      c.destroy();
+    }
+    return _missCount;
+  }
+
+}
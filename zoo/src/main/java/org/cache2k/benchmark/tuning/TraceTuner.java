@@ -0,0 +1,430 @@
+package org.cache2k.benchmark.tuning;
+
+/*
+ * #%L
+ * zoo
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.cache2k.benchmark.impl2015.BaseCache;
+import org.cache2k.benchmark.impl2015.util.TunableConstants;
+import org.cache2k.benchmark.util.AccessTrace;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Offline tuner for the tunables of the 2015 cache implementations. Replays traces
+ * through a policy with different tunable values and writes the configuration with the
+ * best mean hit rate as properties file for the {@link
+ * org.cache2k.benchmark.impl2015.util.TunableFactory}. The file can be used as
+ * {@code /org/cache2k/tuning.properties} in the class path or its lines as system
+ * properties.
+ *
+ * <p>The grid search tries all combinations of the parameter values. The coordinate
+ * search starts with the defaults and varies one parameter at a time, keeping the
+ * best value, until a pass over all parameters brings no improvement. It needs much
+ * less replays for bigger grids, but may end in a local optimum.
+ *
+ * <p>After the search, the sensitivity of each parameter is reported: the hit rate
+ * for each of its values, with the other parameters at the best configuration.
+ * Each configuration replays within its own {@link TunableClassLoader}, the
+ * replays run in parallel on all cores. Example:
+ *
+ * <pre>
+ * java -cp zoo/target/classes:traces/target/classes:util/target/classes:... \
+ *   org.cache2k.benchmark.tuning.TraceTuner -policy ClockProPlusCache \
+ *   -trace Web12:300 -trace Oltp:5000 -trace Sprite:200 \
+ *   -param ClockProPlusCache.hotMaxPercentage=80..98:2 \
+ *   -param ClockProPlusCache.hitCounterDecreaseShift=2..8:1
+ * </pre>
+ *
+ * @author Jens Wilke
+ */
+public class TraceTuner {
+
+  static final String IMPLEMENTATION_PACKAGE = BaseCache.class.getPackage().getName() + ".";
+  static final String TRACE_CLASS_PREFIX = "org.cache2k.benchmark.traces.CacheAccessTrace";
+  static final String USAGE =
+    "Usage: TraceTuner [options]\n" +
+    "  -policy <class>            cache implementation, default ClockProPlusCache\n" +
+    "  -trace <trace>:<size>      trace, e.g. Web12, and cache size, repeatable\n" +
+    "  -param <tunable>=<values>  tunable, e.g. ClockProPlusCache.hotMaxPercentage or the\n" +
+    "                             property name, values as list 80,90,97 or range 80..98:2\n" +
+    "  -search grid|coordinate    search strategy, default grid\n" +
+    "  -threads <count>           parallel replays, default available processors\n" +
+    "  -output <file>             properties file, default tuning.properties\n";
+
+  private String implementation = IMPLEMENTATION_PACKAGE + "ClockProPlusCache";
+  private final List<String> traceNames = new ArrayList<>();
+  private final List<Integer[]> traces = new ArrayList<>();
+  private final List<Integer> sizes = new ArrayList<>();
+  private final Map<String, List<String>> parameters = new LinkedHashMap<>();
+  private boolean coordinateSearch = false;
+  private int threads = Runtime.getRuntime().availableProcessors();
+  private String output = "tuning.properties";
+  private ExecutorService executor;
+
+  /** Hit rates in percent for each trace, by configuration */
+  private final Map<Map<String, String>, double[]> results = new HashMap<>();
+
+  public static void main(String[] args) throws Exception {
+    TraceTuner t = new TraceTuner();
+    try {
+      t.parse(args);
+    } catch (IllegalArgumentException ex) {
+      System.err.println(ex.getMessage());
+      System.err.print(USAGE);
+      System.exit(1);
+    }
+    t.run();
+  }
+
+  void parse(String[] args) {
+    for (int i = 0; i < args.length; i++) {
+      String _option = args[i];
+      if (i + 1 == args.length) {
+        throw new IllegalArgumentException("Missing value for " + _option);
+      }
+      String _value = args[++i];
+      switch (_option) {
+        case "-policy": implementation = implementationClass(_value).getName(); break;
+        case "-trace": addTrace(_value); break;
+        case "-param": addParameter(_value); break;
+        case "-search": coordinateSearch = parseSearch(_value); break;
+        case "-threads": threads = Integer.parseInt(_value); break;
+        case "-output": output = _value; break;
+        default: throw new IllegalArgumentException("Unknown option " + _option);
+      }
+    }
+    if (traces.isEmpty()) {
+      throw new IllegalArgumentException("No trace");
+    }
+    if (parameters.isEmpty()) {
+      throw new IllegalArgumentException("No tunable");
+    }
+  }
+
+  static Class<?> implementationClass(String _name) {
+    String _className = _name.indexOf('.') < 0 ? IMPLEMENTATION_PACKAGE + _name : _name;
+    try {
+      Class<?> c = Class.forName(_className);
+      if (!BaseCache.class.isAssignableFrom(c) || Modifier.isAbstract(c.getModifiers())) {
+        throw new IllegalArgumentException("Not a cache implementation: " + _name);
+      }
+      return c;
+    } catch (ClassNotFoundException ex) {
+      throw new IllegalArgumentException("Unknown policy: " + _name);
+    }
+  }
+
+  static boolean parseSearch(String _value) {
+    switch (_value) {
+      case "grid": return false;
+      case "coordinate": return true;
+      default: throw new IllegalArgumentException("Unknown search: " + _value);
+    }
+  }
+
+  void addTrace(String _value) {
+    int idx = _value.lastIndexOf(':');
+    if (idx < 0) {
+      throw new IllegalArgumentException("Cache size missing: " + _value);
+    }
+    String _name = _value.substring(0, idx);
+    AccessTrace t;
+    try {
+      t = (AccessTrace) Class.forName(TRACE_CLASS_PREFIX + _name).getMethod("getInstance").invoke(null);
+    } catch (ClassNotFoundException ex) {
+      throw new IllegalArgumentException("Unknown trace: " + _name);
+    } catch (Exception ex) {
+      throw new IllegalStateException("cannot read trace " + _name, ex);
+    }
+    traceNames.add(_value);
+    traces.add(t.getObjectTrace());
+    sizes.add(Integer.parseInt(_value.substring(idx + 1)));
+  }
+
+  void addParameter(String _value) {
+    int idx = _value.indexOf('=');
+    if (idx < 0) {
+      throw new IllegalArgumentException("Values missing: " + _value);
+    }
+    String _name = _value.substring(0, idx);
+    String _property = _name.startsWith("org.") ? _name :
+      IMPLEMENTATION_PACKAGE + _name.replaceFirst("\\.([^.]*)$", ".Tunable.$1");
+    checkTunable(_property);
+    parameters.put(_property, parseValues(_value.substring(idx + 1)));
+  }
+
+  /**
+   * The property needs a public field in a tunable class, otherwise the
+   * tunable factory would silently ignore it.
+   */
+  static void checkTunable(String _property) {
+    int idx = _property.lastIndexOf('.');
+    String _className = _property.substring(0, idx);
+    for (;;) {
+      try {
+        Class<?> c = Class.forName(_className);
+        Field f = c.getField(_property.substring(idx + 1));
+        if (!TunableConstants.class.isAssignableFrom(c) || Modifier.isStatic(f.getModifiers())) {
+          throw new IllegalArgumentException("Not a tunable: " + _property);
+        }
+        return;
+      } catch (ClassNotFoundException ex) {
+        int _dot = _className.lastIndexOf('.');
+        if (_dot < 0) {
+          throw new IllegalArgumentException("Unknown tunable: " + _property);
+        }
+        _className = _className.substring(0, _dot) + '$' + _className.substring(_dot + 1);
+      } catch (NoSuchFieldException ex) {
+        throw new IllegalArgumentException("Unknown tunable: " + _property);
+      }
+    }
+  }
+
+  static List<String> parseValues(String _values) {
+    List<String> l = new ArrayList<>();
+    int _range = _values.indexOf("..");
+    if (_range < 0) {
+      l.addAll(Arrays.asList(_values.split(",")));
+      return l;
+    }
+    int _step = _values.indexOf(':');
+    long _from = Long.parseLong(_values.substring(0, _range));
+    long _to = Long.parseLong(_values.substring(_range + 2, _step < 0 ? _values.length() : _step));
+    long _increment = _step < 0 ? 1 : Long.parseLong(_values.substring(_step + 1));
+    if (_increment <= 0 || _to < _from) {
+      throw new IllegalArgumentException("Illegal range: " + _values);
+    }
+    for (long v = _from; v <= _to; v += _increment) {
+      l.add(Long.toString(v));
+    }
+    return l;
+  }
+
+  void run() throws Exception {
+    executor = Executors.newFixedThreadPool(threads);
+    try {
+      Map<String, String> _defaults = Collections.emptyMap();
+      Map<String, String> _best = coordinateSearch ? coordinateSearch(_defaults) : gridSearch(_defaults);
+      List<String> _sensitivity = sensitivity(_best);
+      writeProperties(_best, _defaults);
+      System.out.println();
+      System.out.println("Hit rate per trace, default -> best:");
+      for (int i = 0; i < traces.size(); i++) {
+        System.out.println("  " + traceNames.get(i) + ": " +
+          format(results.get(_defaults)[i]) + " -> " + format(results.get(_best)[i]));
+      }
+      System.out.println("Sensitivity, hit rate for each value with the other tunables at the best configuration:");
+      for (String s : _sensitivity) {
+        System.out.println("  " + s);
+      }
+      System.out.println("Best configuration written to " + output + ", mean hit rate " +
+        format(score(_defaults)) + " -> " + format(score(_best)));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  Map<String, String> gridSearch(Map<String, String> _defaults) throws Exception {
+    List<Map<String, String>> _grid = new ArrayList<>();
+    _grid.add(_defaults);
+    addCombinations(_grid, new TreeMap<String, String>(), new ArrayList<>(parameters.keySet()));
+    evaluate(_grid);
+    Map<String, String> _best = _defaults;
+    for (Map<String, String> m : _grid) {
+      if (score(m) > score(_best)) {
+        _best = m;
+      }
+    }
+    return _best;
+  }
+
+  void addCombinations(List<Map<String, String>> _grid, Map<String, String> _partial, List<String> _open) {
+    if (_open.isEmpty()) {
+      _grid.add(_partial);
+      return;
+    }
+    String _property = _open.get(0);
+    for (String v : parameters.get(_property)) {
+      Map<String, String> m = new TreeMap<>(_partial);
+      m.put(_property, v);
+      addCombinations(_grid, m, _open.subList(1, _open.size()));
+    }
+  }
+
+  Map<String, String> coordinateSearch(Map<String, String> _defaults) throws Exception {
+    evaluate(Collections.singleton(_defaults));
+    Map<String, String> _best = _defaults;
+    boolean _improved = true;
+    while (_improved) {
+      _improved = false;
+      for (String _property : parameters.keySet()) {
+        List<Map<String, String>> _variants = variants(_best, _property);
+        evaluate(_variants);
+        for (Map<String, String> m : _variants) {
+          if (score(m) > score(_best)) {
+            _best = m;
+            _improved = true;
+          }
+        }
+      }
+    }
+    return _best;
+  }
+
+  List<Map<String, String>> variants(Map<String, String> _base, String _property) {
+    List<Map<String, String>> l = new ArrayList<>();
+    for (String v : parameters.get(_property)) {
+      Map<String, String> m = new TreeMap<>(_base);
+      m.put(_property, v);
+      l.add(m);
+    }
+    return l;
+  }
+
+  List<String> sensitivity(Map<String, String> _best) throws Exception {
+    List<String> l = new ArrayList<>();
+    for (String _property : parameters.keySet()) {
+      List<Map<String, String>> _variants = variants(_best, _property);
+      evaluate(_variants);
+      double _min = Double.MAX_VALUE;
+      double _max = -Double.MAX_VALUE;
+      StringBuilder sb = new StringBuilder(shortName(_property)).append(":");
+      if (!_best.containsKey(_property)) {
+        _min = _max = score(_best);
+        sb.append(" default=").append(format(_max)).append('*');
+      }
+      for (Map<String, String> m : _variants) {
+        double _score = score(m);
+        _min = Math.min(_min, _score);
+        _max = Math.max(_max, _score);
+        sb.append(' ').append(m.get(_property)).append('=').append(format(_score));
+        if (m.equals(_best)) {
+          sb.append('*');
+        }
+      }
+      l.add(sb.append(", range=").append(format(_max - _min)).toString());
+    }
+    return l;
+  }
+
+  /**
+   * Replay all traces for the configurations that have no result yet. Each replay is
+   * a separate task, so the cores are used even with few configurations.
+   */
+  void evaluate(Collection<Map<String, String>> _configurations) throws Exception {
+    Set<Map<String, String>> _open = new LinkedHashSet<>(_configurations);
+    _open.removeAll(results.keySet());
+    Map<Map<String, String>, List<Future<Long>>> _futures = new LinkedHashMap<>();
+    List<TunableClassLoader> _loaders = new ArrayList<>();
+    for (Map<String, String> m : _open) {
+      Properties p = new Properties();
+      p.putAll(m);
+      TunableClassLoader _loader = new TunableClassLoader(p);
+      _loaders.add(_loader);
+      List<Future<Long>> l = new ArrayList<>();
+      for (int i = 0; i < traces.size(); i++) {
+        Callable<Long> _replay = _loader.newReplay(implementation, traces.get(i), sizes.get(i));
+        l.add(executor.submit(_replay));
+      }
+      _futures.put(m, l);
+    }
+    for (Map.Entry<Map<String, String>, List<Future<Long>>> e : _futures.entrySet()) {
+      double[] _hitRates = new double[traces.size()];
+      for (int i = 0; i < _hitRates.length; i++) {
+        int _length = traces.get(i).length;
+        _hitRates[i] = (_length - e.getValue().get(i).get()) * 100D / _length;
+      }
+      results.put(e.getKey(), _hitRates);
+      System.out.println(format(score(e.getKey())) + " " + describe(e.getKey()));
+    }
+    for (TunableClassLoader _loader : _loaders) {
+      _loader.close();
+    }
+  }
+
+  /** Mean hit rate over all traces */
+  double score(Map<String, String> _configuration) {
+    double _sum = 0;
+    for (double v : results.get(_configuration)) {
+      _sum += v;
+    }
+    return _sum / traces.size();
+  }
+
+  void writeProperties(Map<String, String> _best, Map<String, String> _defaults) throws IOException {
+    try (PrintWriter w = new PrintWriter(new FileWriter(output))) {
+      w.println("# Tuning for " + implementation + ", " +
+        (coordinateSearch ? "coordinate" : "grid") + " search over " + results.size() + " configurations");
+      w.println("# Traces: " + String.join(", ", traceNames));
+      w.println("# Mean hit rate default: " + format(score(_defaults)) + ", best: " + format(score(_best)));
+      for (String _property : parameters.keySet()) {
+        if (_best.containsKey(_property)) {
+          w.println(_property + "=" + _best.get(_property));
+        } else {
+          w.println("# " + _property + " no improvement over the default");
+        }
+      }
+    }
+  }
+
+  static String describe(Map<String, String> _configuration) {
+    if (_configuration.isEmpty()) {
+      return "default";
+    }
+    StringBuilder sb = new StringBuilder();
+    for (Map.Entry<String, String> e : _configuration.entrySet()) {
+      if (sb.length() > 0) {
+        sb.append(", ");
+      }
+      sb.append(shortName(e.getKey())).append('=').append(e.getValue());
+    }
+    return sb.toString();
+  }
+
+  static String shortName(String _property) {
+    return _property.replace(IMPLEMENTATION_PACKAGE, "").replace(".Tunable.", ".");
+  }
+
+  static String format(double v) {
+    return String.format("%.2f", v);
+  }
+
+}
@@ -0,0 +1,89 @@
+package org.cache2k.benchmark.tuning;
+
+/*
+ * #%L
+ * zoo
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.cache2k.benchmark.impl2015.BaseCache;
+import org.cache2k.benchmark.impl2015.util.TunableFactory;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+
+/**
+ * Class loader with its own copy of the cache implementation classes. The tunables
+ * are read once into static constants, so each configuration needs its own copy of
+ * the classes. Classes of the cache implementation and the {@link TraceReplay} are
+ * loaded child first, everything else, e.g. the traces, comes from the parent.
+ *
+ * @author Jens Wilke
+ */
+final class TunableClassLoader extends URLClassLoader {
+
+  private static final String IMPLEMENTATION_PACKAGE =
+    BaseCache.class.getPackage().getName() + ".";
+
+  TunableClassLoader(Properties _tuning) {
+    super(new URL[]{
+      BaseCache.class.getProtectionDomain().getCodeSource().getLocation(),
+      TraceReplay.class.getProtectionDomain().getCodeSource().getLocation()},
+      TunableClassLoader.class.getClassLoader());
+    try {
+      loadClass(TunableFactory.class.getName())
+        .getMethod("reload", Properties.class).invoke(null, _tuning);
+    } catch (Exception ex) {
+      throw new IllegalStateException("cannot apply tuning", ex);
+    }
+  }
+
+  @Override
+  protected Class<?> loadClass(String _name, boolean _resolve) throws ClassNotFoundException {
+    if (!_name.startsWith(IMPLEMENTATION_PACKAGE) && !_name.equals(TraceReplay.class.getName())) {
+      return super.loadClass(_name, _resolve);
+    }
+    synchronized (getClassLoadingLock(_name)) {
+      Class<?> c = findLoadedClass(_name);
+      if (c == null) {
+        c = findClass(_name);
+      }
+      if (_resolve) {
+        resolveClass(c);
+      }
+      return c;
+    }
+  }
+
+  /**
+   * Create the replay within this class loader.
+   */
+  @SuppressWarnings("unchecked")
+  Callable<Long> newReplay(String _implementation, Integer[] _trace, int _size) {
+    try {
+      return (Callable<Long>) loadClass(TraceReplay.class.getName())
+        .getConstructor(String.class, Integer[].class, Integer.TYPE)
+        .newInstance(_implementation, _trace, _size);
+    } catch (Exception ex) {
+      throw new IllegalStateException("cannot create replay", ex);
+    }
+  }
+
+}
@@ -0,0 +1,95 @@
+package org.cache2k.benchmark.impl2015;
+
+/*
+ * #%L
+ * zoo
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.cache2k.benchmark.util.AccessPattern;
+import org.cache2k.benchmark.util.ZipfianPattern;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The evictor thread runs the size down to the low watermark in batches. The hit rate
+ * of the adaptive policies must not drop because their segments and histories are
+ * sized close to the capacity.
+ *
+ * @author Jens Wilke
+ */
+public class BackgroundEvictionTest {
+
+  static final int CAPACITY = 1000;
+  static final int OPERATIONS = 1000 * 1000;
+
+  @SuppressWarnings("unchecked")
+  double hitRate(Class<?> _policy, boolean _backgroundEviction) throws Exception {
+    BaseCache<Entry, Integer, Integer> c = (BaseCache<Entry, Integer, Integer>) _policy.newInstance();
+    CacheConfig<Integer, Integer> cc = new CacheConfig<Integer, Integer>();
+    cc.setName(BackgroundEvictionTest.class.getSimpleName() + "-" + _policy.getSimpleName() + "-" + _backgroundEviction);
+    cc.setEntryCapacity(CAPACITY);
+    cc.setEternal(true);
+    cc.setBackgroundEviction(_backgroundEviction);
+    c.setCacheConfig(cc);
+    c.init();
+    AccessPattern _pattern = new ZipfianPattern(CAPACITY * 10);
+    long _hitCnt = 0;
+    for (int i = 0; i < OPERATIONS; i++) {
+      Integer k = _pattern.next();
+      if (c.peek(k) == null) {
+        c.put(k, k);
+      } else {
+        _hitCnt++;
+      }
+    }
+    c.checkIntegrity();
+    c.destroy();
+    return (double) _hitCnt / OPERATIONS;
+  }
+
+  void check(Class<?> _policy, double _delta) throws Exception {
+    assertEquals(_policy.getSimpleName(), hitRate(_policy, false), hitRate(_policy, true), _delta);
+  }
+
+  @Test
+  public void car() throws Exception {
+    check(CarCache.class, 0.01);
+  }
+
+  @Test
+  public void arc() throws Exception {
+    check(ArcCache.class, 0.01);
+  }
+
+  @Test
+  public void lirs() throws Exception {
+    check(LirsCache.class, 0.01);
+  }
+
+  /**
+   * The sketch depends on the random hash seed, so the hit rate varies by about
+   * one percent point between runs.
+   */
+  @Test
+  public void wTinyLfu() throws Exception {
+    check(WTinyLfuCache.class, 0.025);
+  }
+
+}
@@ -0,0 +1,183 @@
+package org.cache2k.benchmark.impl2015;
+
+/*
+ * #%L
+ * zoo
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Write and restore a snapshot, and check that a truncated or corrupt snapshot
+ * lets the cache start empty.
+ *
+ * @author Jens Wilke
+ */
+public class CacheSnapshotTest {
+
+  static final Charset UTF8 = Charset.forName("UTF-8");
+
+  /** Length prefixed UTF-8, a corrupt length yields a runtime exception on read */
+  static final SnapshotSerializer<String> STRING = new SnapshotSerializer<String>() {
+    @Override
+    public void write(ByteBuffer buf, String v) {
+      byte[] _bytes = v.getBytes(UTF8);
+      buf.putInt(_bytes.length);
+      buf.put(_bytes);
+    }
+
+    @Override
+    public String read(ByteBuffer buf) {
+      byte[] _bytes = new byte[buf.getInt()];
+      buf.get(_bytes);
+      return new String(_bytes, UTF8);
+    }
+  };
+
+  static final int COUNT = 100;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  File file;
+  BaseCache<Entry, Integer, String> cache;
+  int cacheCount;
+
+  @Before
+  public void setUp() throws IOException {
+    file = new File(folder.getRoot(), "snapshot");
+    cache = create();
+    for (int i = 0; i < COUNT; i++) {
+      cache.put(i, "value" + i);
+    }
+    cache.close();
+  }
+
+  @After
+  public void tearDown() {
+    cache.close();
+  }
+
+  BaseCache<Entry, Integer, String> create() {
+    ClockProPlusCache<Integer, String> c = new ClockProPlusCache<Integer, String>();
+    CacheConfig<Integer, String> cc = new CacheConfig<Integer, String>();
+    cc.setName(CacheSnapshotTest.class.getSimpleName() + cacheCount++);
+    cc.setEternal(true);
+    cc.setEntryCapacity(COUNT * 2);
+    cc.setSnapshotFile(file);
+    cc.setSnapshotKeySerializer(SnapshotSerializer.INTEGER);
+    cc.setSnapshotValueSerializer(STRING);
+    c.setCacheConfig(cc);
+    c.init();
+    return (BaseCache) c;
+  }
+
+  void writeInt(long _position, int v) throws IOException {
+    RandomAccessFile f = new RandomAccessFile(file, "rw");
+    try {
+      f.seek(_position);
+      f.writeInt(v);
+    } finally {
+      f.close();
+    }
+  }
+
+  int readInt(long _position) throws IOException {
+    RandomAccessFile f = new RandomAccessFile(file, "r");
+    try {
+      f.seek(_position);
+      return f.readInt();
+    } finally {
+      f.close();
+    }
+  }
+
+  void assertStartsEmpty() {
+    cache = create();
+    assertEquals(0, cache.getTotalEntryCount());
+    cache.checkIntegrity();
+    cache.put(1, "new");
+    assertEquals("new", cache.peek(1));
+  }
+
+  @Test
+  public void roundTrip() {
+    cache = create();
+    assertEquals(COUNT, cache.getTotalEntryCount());
+    for (int i = 0; i < COUNT; i++) {
+      assertEquals("value" + i, cache.peek(i));
+    }
+    cache.checkIntegrity();
+  }
+
+  @Test
+  public void truncated() throws IOException {
+    RandomAccessFile f = new RandomAccessFile(file, "rw");
+    try {
+      f.setLength(f.length() / 2);
+    } finally {
+      f.close();
+    }
+    assertStartsEmpty();
+  }
+
+  @Test
+  public void truncatedHeader() throws IOException {
+    RandomAccessFile f = new RandomAccessFile(file, "rw");
+    try {
+      f.setLength(CacheSnapshot.HEADER_SIZE - 1);
+    } finally {
+      f.close();
+    }
+    assertStartsEmpty();
+  }
+
+  @Test
+  public void negativeGhostCount() throws IOException {
+    writeInt(12, -1);
+    assertStartsEmpty();
+  }
+
+  @Test
+  public void recordCountExceedsFile() throws IOException {
+    writeInt(8, Integer.MAX_VALUE);
+    assertStartsEmpty();
+  }
+
+  @Test
+  public void corruptValueLength() throws IOException {
+    int _ghostCount = readInt(12);
+    long _firstValue = CacheSnapshot.HEADER_SIZE + _ghostCount * 4L + CacheSnapshot.RECORD_HEADER_SIZE + 4;
+    writeInt(_firstValue, -5);
+    assertStartsEmpty();
+  }
+
+}
@@ -0,0 +1,92 @@
+package org.cache2k.benchmark.impl2015;
+
+/*
+ * #%L
+ * zoo
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Run each policy with the entry types selected by the configuration. The key range
+ * exceeds the capacity, so ghost entries of the adaptive policies are hit and go back
+ * into the main hash, which has the array type of {@link BaseCache#newEntry()}.
+ *
+ * @author Jens Wilke
+ */
+public class EntryTypeTest {
+
+  static final Class<?>[] POLICIES = {
+    ArcCache.class, CarCache.class, ClockCache.class, ClockProPlusCache.class,
+    AdaptiveClockProPlusCache.class, LirsCache.class, LruCache.class, RandomCache.class,
+    S3FifoCache.class, SampledCache.class, SieveCache.class, WTinyLfuCache.class
+  };
+
+  static final int CAPACITY = 500;
+
+  @SuppressWarnings("unchecked")
+  void run(String _mode) throws Exception {
+    for (Class<?> _policy : POLICIES) {
+      BaseCache<Entry, Integer, Integer> c = (BaseCache<Entry, Integer, Integer>) _policy.newInstance();
+      CacheConfig<Integer, Integer> cc = new CacheConfig<Integer, Integer>();
+      cc.setName(EntryTypeTest.class.getSimpleName() + "-" + _policy.getSimpleName() + "-" + _mode);
+      cc.setEntryCapacity(CAPACITY);
+      if (_mode.equals("eternal")) {
+        cc.setEternal(true);
+      } else {
+        cc.setExpiryMillis(60000);
+        cc.setLazyExpiry(_mode.equals("lazy"));
+      }
+      c.setCacheConfig(cc);
+      c.init();
+      Random _random = new Random(1802);
+      for (int i = 0; i < 20000; i++) {
+        int k = _random.nextInt(CAPACITY * 3);
+        Integer v = c.peek(k);
+        if (v == null) {
+          c.put(k, k);
+        } else {
+          assertEquals(_policy.getSimpleName(), (Integer) k, v);
+        }
+      }
+      c.checkIntegrity();
+      c.destroy();
+    }
+  }
+
+  @Test
+  public void eternal() throws Exception {
+    run("eternal");
+  }
+
+  @Test
+  public void expiry() throws Exception {
+    run("expiry");
+  }
+
+  @Test
+  public void lazyExpiry() throws Exception {
+    run("lazy");
+  }
+
+}
@@ -0,0 +1,137 @@
+package org.cache2k.benchmark.impl2015;
+
+/*
+ * #%L
+ * zoo
+ * %%
+ * Copyright (C) 2013 - 2016 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Incremental expand of the hash table and the iteration of a cache while
+ * buckets of the old table are not yet moved.
+ *
+ * @author Jens Wilke
+ */
+public class HashTest {
+
+  static Entry entry(int k) {
+    Entry e = new Entry();
+    e.key = k;
+    e.hashCode = k;
+    return e;
+  }
+
+  /**
+   * Insert until the first expand starts, then check every key with the
+   * instance lookups, while part of the keys are still in the old table.
+   */
+  @Test
+  public void findAndContainsDuringMigration() {
+    Hash<Entry> _ctl = new Hash<Entry>();
+    Entry[] _table = _ctl.init(Entry.class);
+    int _count = 0;
+    while (_ctl.getMigrationSource() == null) {
+      _table = _ctl.insert(_table, entry(_count++));
+    }
+    for (int i = 0; i < _count; i++) {
+      assertNotNull(_ctl.find(_table, i, i));
+      assertTrue(_ctl.contains(_table, i, i));
+    }
+    assertFalse(_ctl.contains(_table, _count, _count));
+    assertEquals(_count, _ctl.calcTotalEntryCount(_table));
+  }
+
+  @Test
+  public void removeDuringMigration() {
+    Hash<Entry> _ctl = new Hash<Entry>();
+    Entry[] _table = _ctl.init(Entry.class);
+    int _count = 0;
+    while (_ctl.getMigrationSource() == null) {
+      _table = _ctl.insert(_table, entry(_count++));
+    }
+    for (int i = 0; i < _count; i += 2) {
+      assertNotNull(_ctl.remove(_table, i, i));
+    }
+    for (int i = 0; i < _count; i++) {
+      assertEquals(i % 2 == 1, _ctl.contains(_table, i, i));
+    }
+  }
+
+  /**
+   * The migration completes with further inserts and all entries are in the
+   * expanded table afterwards.
+   */
+  @Test
+  public void migrationCompletes() {
+    Hash<Entry> _ctl = new Hash<Entry>();
+    Entry[] _table = _ctl.init(Entry.class);
+    int _count = 0;
+    while (_ctl.getMigrationSource() == null) {
+      _table = _ctl.insert(_table, entry(_count++));
+    }
+    while (_ctl.getMigrationSource() != null) {
+      _table = _ctl.insert(_table, entry(_count++));
+    }
+    for (int i = 0; i < _count; i++) {
+      assertSame(i, Hash.lookup(_table, i, i).key);
+    }
+  }
+
+  /**
+   * Iterate caches with sizes around an expand, each entry is returned once.
+   */
+  @Test
+  public void iterateAcrossExpand() {
+    for (int _size = 1000; _size <= 44000; _size += 1000) {
+      ClockProPlusCache<Integer, Integer> c = new ClockProPlusCache<Integer, Integer>();
+      CacheConfig<Integer, Integer> cc = new CacheConfig<Integer, Integer>();
+      cc.setName(HashTest.class.getSimpleName() + _size);
+      cc.setEternal(true);
+      cc.setEntryCapacity(_size);
+      c.setCacheConfig(cc);
+      c.init();
+      for (int i = 0; i < _size; i++) {
+        c.put(i, i);
+      }
+      Set<Integer> _keys = new HashSet<Integer>();
+      int _iterated = 0;
+      ClosableIterator<CacheEntry<Integer, Integer>> it = c.iterator();
+      while (it.hasNext()) {
+        _keys.add(it.next().getKey());
+        _iterated++;
+      }
+      it.close();
+      assertEquals("distinct, size " + _size, _size, _keys.size());
+      assertEquals("iterated, size " + _size, _size, _iterated);
+      c.destroy();
+    }
+  }
+
+}